@@ -34,11 +34,17 @@ import com.graphhopper.reader.osm.RestrictionTagParser;
 import com.graphhopper.routing.*;
 import com.graphhopper.routing.ch.CHPreparationHandler;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.ch.ShortcutAggregator;
+import com.graphhopper.routing.hl.HubLabelBuilder;
+import com.graphhopper.routing.hl.HubLabelStorage;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.lm.LMConfig;
 import com.graphhopper.routing.lm.LMPreparationHandler;
 import com.graphhopper.routing.lm.LandmarkStorage;
 import com.graphhopper.routing.lm.PrepareLandmarks;
+import com.graphhopper.routing.mld.CellOverlayCache;
+import com.graphhopper.routing.mld.CellPartition;
+import com.graphhopper.routing.mld.InertialPartitioner;
 import com.graphhopper.routing.subnetwork.EdgeBasedTarjanSCC;
 import com.graphhopper.routing.subnetwork.PrepareRoutingSubnetworks;
 import com.graphhopper.routing.subnetwork.PrepareRoutingSubnetworks.PrepareJob;
@@ -57,21 +63,30 @@ import com.graphhopper.util.*;
 import com.graphhopper.util.Parameters.Landmark;
 import com.graphhopper.util.Parameters.Routing;
 import com.graphhopper.util.details.PathDetailsBuilderFactory;
+import com.graphhopper.util.exceptions.ProfileNotReadyException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
+import java.util.zip.CRC32C;
 
 import static com.graphhopper.util.GHUtility.readCountries;
 import static com.graphhopper.util.Helper.*;
@@ -84,6 +99,15 @@ import static com.graphhopper.util.Parameters.Algorithms.RoundTrip;
  */
 public class GraphHopper {
     private static final Logger logger = LoggerFactory.getLogger(GraphHopper.class);
+    // the stages of the import in the order they are run, the last completed stage is stored in the properties
+    private static final List<String> IMPORT_STAGES = List.of("osm", "post_import", "subnetworks", "preparation");
+    private static final String IMPORT_STAGE = "graph.import.stage";
+    // set while the files might contain a part of the changes of the stage, i.e. they match neither this stage nor
+    // the last completed one
+    private static final String IMPORT_STAGE_IN_PROGRESS = "graph.import.stage_in_progress";
+    // the checksums of the files are stored in the properties with this prefix followed by the file name
+    private static final String FILE_CHECKSUM = "graph.file_checksum.";
+
     private MaxSpeedCalculator maxSpeedCalculator;
     private final Map<String, Profile> profilesByName = new LinkedHashMap<>();
     private final String fileLockName = "gh.lock";
@@ -106,10 +130,19 @@ public class GraphHopper {
     private boolean fileBacked = true;
     private final LinkedHashMap<String, String> dataAccessConfig = new LinkedHashMap<>();
     private boolean sortGraph = true;
+    private int sortGraphThreads = 1;
+    private boolean adjacencyIndex = false;
+    private boolean turnCostIndex = false;
     private boolean elevation = false;
     private LockFactory lockFactory = new NativeFSLockFactory();
     private boolean readOnly = false;
-    private boolean fullyLoaded = false;
+    private volatile boolean fullyLoaded = false;
+    private int loadThreads = 1;
+    private boolean fileChecksums = false;
+    private boolean loadLMInBackground = false;
+    private Thread lmLoadingThread;
+    // the state of the profiles whose landmarks are loaded after load() returned
+    private final Map<String, ProfileState> lmProfileStates = new ConcurrentHashMap<>();
     private final OSMReaderConfig osmReaderConfig = new OSMReaderConfig();
     // for routing
     private final RouterConfig routerConfig = new RouterConfig();
@@ -131,7 +164,17 @@ public class GraphHopper {
     private final LMPreparationHandler lmPreparationHandler = new LMPreparationHandler();
     private final CHPreparationHandler chPreparationHandler = new CHPreparationHandler();
     private Map<String, RoutingCHGraph> chGraphs = Collections.emptyMap();
-    private Map<String, LandmarkStorage> landmarks = Collections.emptyMap();
+    private volatile Map<String, LandmarkStorage> landmarks = Collections.emptyMap();
+    // overlay routing, disabled if the cell size is zero
+    private int mldCellSize = 0;
+    private int mldCacheSize = 10;
+    private int mldThreads = Runtime.getRuntime().availableProcessors();
+    private int mldMaxCustomizations = 1;
+    private long mldCustomizationTimeoutMillis = 120_000;
+    private CellOverlayCache cellOverlays;
+    // hub labels, created from the CH graphs of these profiles
+    private List<String> hubLabelProfiles = Collections.emptyList();
+    private Map<String, HubLabelStorage> hubLabels = Collections.emptyMap();
 
     // for data reader
     private String osmFile;
@@ -362,6 +405,75 @@ public class GraphHopper {
         return this;
     }
 
+    /**
+     * Sets the number of threads used to sort the graph along the Hilbert curve. With more than one thread the nodes and
+     * edges are sorted via a temporary copy, which needs additional memory or disk space.
+     */
+    public GraphHopper setSortGraphThreads(int sortGraphThreads) {
+        if (sortGraphThreads < 1)
+            throw new IllegalArgumentException("graph.sort.threads must be positive, but was " + sortGraphThreads);
+        this.sortGraphThreads = sortGraphThreads;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads used to read the files of the graph in {@link #load()} and to calculate the file
+     * checksums, see {@link #setFileChecksums(boolean)}. Each file is read by a single thread and the location index
+     * is only loaded after the base graph.
+     */
+    public GraphHopper setLoadThreads(int loadThreads) {
+        if (loadThreads < 1)
+            throw new IllegalArgumentException("graph.load.threads must be positive, but was " + loadThreads);
+        this.loadThreads = loadThreads;
+        return this;
+    }
+
+    /**
+     * Enables a CRC32C checksum for every file of the graph. The checksums are stored in the properties when the import
+     * is finished and they are verified before the files are read in {@link #load()}, so a truncated or otherwise
+     * corrupted file fails the start instead of producing wrong routes.
+     */
+    public GraphHopper setFileChecksums(boolean fileChecksums) {
+        ensureNotLoaded();
+        this.fileChecksums = fileChecksums;
+        return this;
+    }
+
+    /**
+     * If enabled and all landmark preparations exist already, {@link #load()} returns before the landmarks are loaded
+     * and they are loaded in a background thread instead. Until then the profiles that need the landmarks are rejected
+     * with a {@link ProfileNotReadyException}, see {@link #getProfileStates()}, but the other profiles can be used
+     * already. The background thread only loads the landmarks: if they cannot be loaded the profiles are FAILED and
+     * a new import is required to prepare them.
+     */
+    public GraphHopper setLoadLMInBackground(boolean loadLMInBackground) {
+        ensureNotLoaded();
+        this.loadLMInBackground = loadLMInBackground;
+        return this;
+    }
+
+    /**
+     * Enables an index that stores the edges of every node next to each other once the graph is frozen. The edge
+     * explorers iterate over this index instead of the linked lists of the edges, which needs 8 bytes per edge and 4
+     * bytes per node in addition.
+     */
+    public GraphHopper setAdjacencyIndex(boolean adjacencyIndex) {
+        ensureNotLoaded();
+        this.adjacencyIndex = adjacencyIndex;
+        return this;
+    }
+
+    /**
+     * Enables an index that sorts the turn cost entries of every via node once the graph is frozen, so the turn costs
+     * are found via a binary search instead of walking a linked list. This needs 4 bytes per turn cost entry in
+     * addition.
+     */
+    public GraphHopper setTurnCostIndex(boolean turnCostIndex) {
+        ensureNotLoaded();
+        this.turnCostIndex = turnCostIndex;
+        return this;
+    }
+
     /**
      * The underlying graph used in algorithms.
      *
@@ -500,6 +612,12 @@ public class GraphHopper {
         }
 
         sortGraph = ghConfig.getBool("graph.sort", sortGraph);
+        setSortGraphThreads(ghConfig.getInt("graph.sort.threads", sortGraphThreads));
+        setAdjacencyIndex(ghConfig.getBool("graph.adjacency_index", adjacencyIndex));
+        setTurnCostIndex(ghConfig.getBool("graph.turn_cost_index", turnCostIndex));
+        setLoadThreads(ghConfig.getInt("graph.load.threads", loadThreads));
+        setFileChecksums(ghConfig.getBool("graph.file_checksums", fileChecksums));
+        setLoadLMInBackground(ghConfig.getBool("graph.load.lm_in_background", loadLMInBackground));
         if (ghConfig.getBool("max_speed_calculator.enabled", false))
             maxSpeedCalculator = new MaxSpeedCalculator(MaxSpeedCalculator.createLegalDefaultSpeeds());
 
@@ -540,6 +658,8 @@ public class GraphHopper {
         osmReaderConfig.setLongEdgeSamplingDistance(ghConfig.getDouble("graph.elevation.long_edge_sampling_distance", osmReaderConfig.getLongEdgeSamplingDistance()));
         osmReaderConfig.setElevationMaxWayPointDistance(ghConfig.getDouble("graph.elevation.way_point_max_distance", osmReaderConfig.getElevationMaxWayPointDistance()));
         routerConfig.setElevationWayPointMaxDistance(ghConfig.getDouble("graph.elevation.way_point_max_distance", routerConfig.getElevationWayPointMaxDistance()));
+        osmReaderConfig.setElevationLookupBatchSize(ghConfig.getInt("graph.elevation.lookup_batch_size", osmReaderConfig.getElevationLookupBatchSize()));
+        osmReaderConfig.setElevationLookupThreads(ghConfig.getInt("graph.elevation.lookup_threads", osmReaderConfig.getElevationLookupThreads()));
         ElevationProvider elevationProvider = createElevationProvider(ghConfig);
         setElevationProvider(elevationProvider);
 
@@ -554,6 +674,18 @@ public class GraphHopper {
         chPreparationHandler.init(ghConfig);
         lmPreparationHandler.init(ghConfig);
 
+        // prepare the cell partition for the overlay routing
+        mldCellSize = ghConfig.getInt(Parameters.MLD.CELL_SIZE, mldCellSize);
+        mldCacheSize = ghConfig.getInt(Parameters.MLD.CACHE_SIZE, mldCacheSize);
+        mldThreads = ghConfig.getInt(Parameters.MLD.PREPARE + "threads", mldThreads);
+        mldMaxCustomizations = ghConfig.getInt(Parameters.MLD.MAX_CUSTOMIZATIONS, mldMaxCustomizations);
+        mldCustomizationTimeoutMillis = ghConfig.getLong(Parameters.MLD.CUSTOMIZATION_TIMEOUT_MS, mldCustomizationTimeoutMillis);
+        routerConfig.setMLDPreferredOverLM(ghConfig.getBool(Parameters.MLD.PREFER_OVER_LM, routerConfig.isMLDPreferredOverLM()));
+
+        // prepare hub labels for some of the CH profiles
+        hubLabelProfiles = Arrays.stream(ghConfig.getString(Parameters.HubLabels.PROFILES, "").split(","))
+                .map(String::trim).filter(hlProfile -> !hlProfile.isEmpty()).collect(Collectors.toList());
+
         // osm import
         // We do a few checks for import.osm.ignored_highways to prevent configuration errors when migrating from an older
         // GH version.
@@ -571,6 +703,7 @@ public class GraphHopper {
         osmReaderConfig.setPreferredLanguage(ghConfig.getString("datareader.preferred_language", osmReaderConfig.getPreferredLanguage()));
         osmReaderConfig.setMaxWayPointDistance(ghConfig.getDouble(Routing.INIT_WAY_POINT_MAX_DISTANCE, osmReaderConfig.getMaxWayPointDistance()));
         osmReaderConfig.setWorkerThreads(ghConfig.getInt("datareader.worker_threads", osmReaderConfig.getWorkerThreads()));
+        osmReaderConfig.setStoreOSMNodes(ghConfig.getBool("datareader.store_osm_nodes", osmReaderConfig.isStoreOSMNodes()));
 
         // index
         preciseIndexResolution = ghConfig.getInt("index.high_resolution", preciseIndexResolution);
@@ -709,6 +842,8 @@ public class GraphHopper {
                 : ghConfig.getBool("graph.elevation.calc_mean", false);
         boolean removeTempElevationFiles = ghConfig.getBool("graph.elevation.clear",
                 ghConfig.getBool("graph.elevation.cgiar.clear", false));
+        // 0 means no limit
+        long maxCacheBytes = ghConfig.getInt("graph.elevation.cache_max_mb", 0) * (1L << 20);
 
         ElevationProvider elevationProvider = ElevationProvider.NOOP;
         if (eleProviderStr.equalsIgnoreCase("hgt")) {
@@ -732,11 +867,14 @@ public class GraphHopper {
         } else if (eleProviderStr.equalsIgnoreCase("pmtiles")) {
             int zoom = ghConfig.getInt("graph.elevation.pmtiles.zoom", -1);
             String terrainEncoding = ghConfig.getString("graph.elevation.pmtiles.terrain_encoding", "terrarium");
-            elevationProvider = new PMTilesElevationProvider(
+            PMTilesElevationProvider pmTilesProvider = new PMTilesElevationProvider(
                     ghConfig.getString("graph.elevation.pmtiles.location", "/tmp/planet.pmtiles"),
                     PMTilesElevationProvider.TerrainEncoding.valueOf(terrainEncoding.toUpperCase(Locale.ROOT)),
                     interpolate, zoom, cacheDirStr)
                     .setAutoRemoveTemporaryFiles(removeTempElevationFiles);
+            if (maxCacheBytes > 0)
+                pmTilesProvider.setMaxCacheBytes(maxCacheBytes);
+            elevationProvider = pmTilesProvider;
         } else if (!eleProviderStr.isEmpty() && !eleProviderStr.equalsIgnoreCase("noop")) {
             throw new IllegalArgumentException("Did not find elevation provider: " + eleProviderStr);
         }
@@ -756,6 +894,8 @@ public class GraphHopper {
                     .setDAType(elevationDAType);
             if (!baseURL.isEmpty())
                 provider.setBaseURL(baseURL);
+            if (maxCacheBytes > 0)
+                provider.setMaxCacheBytes(maxCacheBytes);
         }
         return elevationProvider;
     }
@@ -827,6 +967,8 @@ public class GraphHopper {
                 .setFileBacked(fileBacked)
                 .set3D(hasElevation())
                 .withTurnCosts(encodingManager.needsTurnCostsSupport())
+                .withAdjacencyIndex(adjacencyIndex)
+                .withTurnCostIndex(turnCostIndex)
                 .build();
         properties = new StorableProperties(directory);
         checkProfilesConsistency();
@@ -841,21 +983,264 @@ public class GraphHopper {
             }
             ensureWriteAccess();
 
-            importOSM();
-            postImportOSM();
-            cleanUp();
-
-            properties.put("profiles", getProfilesString());
-            writeEncodingManagerToProperties();
-
-            postProcessing(closeEarly);
+            int completedStages = resumeImport(directory);
+            List<String> report = new ArrayList<>();
+            runImportStage(0, completedStages, report, () -> {
+                importOSM();
+                properties.put("profiles", getProfilesString());
+                writeEncodingManagerToProperties();
+                if (maxSpeedCalculator != null && fileBacked)
+                    maxSpeedCalculator.flush();
+            });
+            runImportStage(1, completedStages, report, this::postImportOSM);
+            runImportStage(2, completedStages, report, this::cleanUp);
+            runImportStage(3, completedStages, report, () -> postProcessing(closeEarly));
+            if (fileBacked)
+                setImportStageInProgress(IMPORT_STAGES.get(3));
             flush();
+            if (fileBacked) {
+                properties.remove(IMPORT_STAGE_IN_PROGRESS);
+                properties.flush();
+            }
+            logger.info("import finished, " + String.join(", ", report));
         } finally {
             if (lock != null)
                 lock.release();
         }
     }
 
+    /**
+     * Checks if an earlier import into the same location failed after some of the {@link #IMPORT_STAGES} were
+     * completed. In this case the graph of the last completed stage is loaded, so the import can be resumed. If the
+     * import stopped while the files were changed, e.g. during a stage that uses memory mapped files, they match no
+     * stage and the import starts over.
+     *
+     * @return the number of import stages that do not need to be run again
+     */
+    private int resumeImport(GHDirectory directory) {
+        if (!fileBacked || !properties.loadExisting())
+            return 0;
+        String stage = properties.get(IMPORT_STAGE);
+        int completedStages = IMPORT_STAGES.indexOf(stage) + 1;
+        String interruptedStage = properties.get(IMPORT_STAGE_IN_PROGRESS);
+        if (!interruptedStage.isEmpty()) {
+            logger.warn("The import in " + ghLocation + " was interrupted while stage '" + interruptedStage
+                    + "' was written, the files cannot be used to resume the import");
+            completedStages = 0;
+        }
+        if (completedStages == 0) {
+            // there is no checkpoint we could resume from, so we start over
+            directory.remove("properties");
+            properties = new StorableProperties(directory);
+            return 0;
+        }
+        loadImportedGraph("resume the import in " + ghLocation + " after stage '" + stage + "'");
+        logger.info("resuming the import in " + ghLocation + " after stage '" + stage + "'");
+        if (completedStages == IMPORT_STAGES.size() - 1 && dataAccessDefaultType.isMMap()) {
+            // the preparation stage failed. the preparations that were completed have a version, but the memory mapped
+            // files of the others and of the location index might have been written partially
+            removePreparations(directory, (type, profile) -> properties.get("graph.profiles." + type + "." + profile + ".version").isEmpty());
+            directory.create("location_index");
+            directory.remove("location_index");
+        }
+        if (maxSpeedCalculator != null && completedStages == 1)
+            maxSpeedCalculator.loadDataAccessForParser(directory);
+        return completedStages;
+    }
+
+    /**
+     * Loads the base graph of an import into the configured location, which must use the configured profiles and
+     * encoded values.
+     */
+    private void loadImportedGraph(String action) {
+        if (!properties.get("profiles").equals(getProfilesString())
+                || !properties.get("graph.encoded_values").equals(encodingManager.toEncodedValuesAsString()))
+            throw new IllegalStateException("Cannot " + action + ", because the profiles or encoded values changed. "
+                    + "Delete the folder to run a new import.");
+        if (!baseGraph.loadExisting())
+            throw new IllegalStateException("Cannot " + action + ", because the graph could not be loaded. "
+                    + "Delete the folder to run a new import.");
+    }
+
+    /**
+     * Applies the changes of an OSM change file (.osc or .osc.gz) to the graph stored in the graph location without
+     * running a new import, see {@link OSMReader#applyChanges} for the changes that can be applied. This requires the
+     * osm_way_id encoded value to find the edges of the changed ways. Afterwards the subnetworks no longer match the
+     * graph and neither do the preparations of the profiles for which the weight of a changed edge is different, or of
+     * all profiles if edges were added. Their CH and hub label preparations and the location index are removed and the
+     * import is reset to the stage before the subnetwork removal, i.e. the next {@link #importOrLoad} determines the
+     * subnetworks and prepares these profiles again, but it does not read the OSM file. Their landmarks are kept, but
+     * they are marked as stale: they are still used until more than prepare.lm.max_stale_changes change files were
+     * applied since their preparation, see {@link LandmarkStorage#setStale}, and only then the next
+     * {@link #importOrLoad} prepares them again. The preparations of the other profiles are kept.
+     *
+     * @return the number of changed and added edges
+     */
+    public int applyOSMChanges(String changeFile) {
+        ensureNotLoaded();
+        ensureWriteAccess();
+        if (!fileBacked)
+            throw new IllegalStateException("Applying OSM changes requires a file backed graph");
+        if (maxSpeedCalculator != null)
+            throw new IllegalArgumentException("Applying OSM changes is not supported together with max_speed_calculator");
+        prepareImport();
+        if (!encodingManager.hasEncodedValue(OSMWayID.KEY))
+            throw new IllegalArgumentException("Applying OSM changes requires the encoded value " + OSMWayID.KEY + ", add it to graph.encoded_values");
+        GHDirectory directory = new GHDirectory(ghLocation, dataAccessDefaultType, defaultSegmentSize);
+        directory.configure(dataAccessConfig);
+        baseGraph = new BaseGraph.Builder(getEncodingManager())
+                .setDir(directory)
+                .setFileBacked(fileBacked)
+                .set3D(hasElevation())
+                .withTurnCosts(encodingManager.needsTurnCostsSupport())
+                .withAdjacencyIndex(adjacencyIndex)
+                .withTurnCostIndex(turnCostIndex)
+                .build();
+        properties = new StorableProperties(directory);
+        lockFactory.setLockDir(new File(ghLocation));
+        GHLock lock = lockFactory.create(fileLockName, true);
+        if (!lock.tryLock())
+            throw new RuntimeException("To avoid multiple writers we need to obtain a write lock but it failed. In " + ghLocation, lock.getObtainFailedReason());
+        try {
+            if (!properties.loadExisting())
+                throw new IllegalStateException("There is no graph in " + ghLocation + " the OSM changes could be applied to");
+            String stage = properties.get(IMPORT_STAGE);
+            if (!stage.isEmpty() && IMPORT_STAGES.indexOf(stage) < IMPORT_STAGES.indexOf("post_import"))
+                throw new IllegalStateException("Cannot apply OSM changes to the graph in " + ghLocation + ", because its import was not completed");
+            loadImportedGraph("apply OSM changes to the graph in " + ghLocation);
+
+            List<IntEncodedValue> preserved = Stream.of(UrbanDensity.KEY, Curvature.KEY, AverageSlope.KEY, MaxSlope.KEY,
+                            IsSoftblockedAtEntry.KEY, BikeNetwork.KEY, FootNetwork.KEY, MtbNetwork.KEY)
+                    .filter(encodingManager::hasEncodedValue)
+                    .map(key -> encodingManager.getEncodedValue(key, IntEncodedValue.class))
+                    .collect(Collectors.toList());
+            List<String> preparedProfiles = Stream.of(
+                            chPreparationHandler.getCHProfiles().stream().map(CHProfile::getProfile),
+                            lmPreparationHandler.getLMProfiles().stream().map(LMProfile::getProfile),
+                            hubLabelProfiles.stream())
+                    .flatMap(Function.identity()).distinct().toList();
+            List<Weighting> weightings = preparedProfiles.stream().map(p -> createWeighting(profilesByName.get(p), new PMap())).toList();
+            BitSet changedWeightings = new BitSet(weightings.size());
+            OSMReader reader = new OSMReader(baseGraph, osmParsers, osmReaderConfig).setAreaIndex(createAreaIndex());
+            int nodes = baseGraph.getNodes(), edges = baseGraph.getEdges();
+            if (dataAccessDefaultType.isMMap())
+                setImportStageInProgress("osm_changes");
+            int changedEdges;
+            try {
+                changedEdges = reader.applyChanges(new File(changeFile), encodingManager.getIntEncodedValue(OSMWayID.KEY), preserved,
+                        weightings, changedWeightings);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+
+            // the preparations of all profiles need to know the added nodes and edges
+            boolean graphChanged = nodes != baseGraph.getNodes() || edges != baseGraph.getEdges();
+            Set<String> changedProfiles = new HashSet<>();
+            for (int i = 0; i < preparedProfiles.size(); i++)
+                if (graphChanged || changedWeightings.get(i))
+                    changedProfiles.add(preparedProfiles.get(i));
+            logger.info("The graph or the weights of the profiles {} changed, their CH and hub label preparations are removed and their landmarks are stale. "
+                    + "Kept the preparations of: {}", changedProfiles, preparedProfiles.stream().filter(p -> !changedProfiles.contains(p)).toList());
+            removePreparations(directory, (type, profile) -> !type.equals("lm") && changedProfiles.contains(profile));
+            for (LMProfile lmProfile : lmPreparationHandler.getLMProfiles())
+                if (changedProfiles.contains(lmProfile.getProfile()) && !getLMProfileVersion(lmProfile.getProfile()).isEmpty())
+                    properties.put("graph.profiles.lm." + lmProfile.getProfile() + ".stale_changes", getLMStaleChanges(lmProfile.getProfile()) + 1);
+            // the location index is built again from the changed graph
+            directory.create("location_index");
+            directory.remove("location_index");
+            // the changed files do not match their checksums anymore, they are calculated again at the end of the import
+            properties.getAll().keySet().stream().filter(key -> key.startsWith(FILE_CHECKSUM)).toList().forEach(properties::remove);
+            properties.put("datareader.changes.date", createFormatter().format(new Date()));
+            setImportStageInProgress("osm_changes");
+            baseGraph.flush();
+            properties.remove(IMPORT_STAGE_IN_PROGRESS);
+            properties.put(IMPORT_STAGE, "post_import");
+            properties.flush();
+            return changedEdges;
+        } finally {
+            baseGraph.close();
+            properties.close();
+            lock.release();
+        }
+    }
+
+    /**
+     * Removes the files and the versions of the CH ("ch"), LM ("lm") and hub label ("hl") preparations for which the
+     * given predicate of the preparation type and the profile name is true.
+     */
+    private void removePreparations(Directory directory, BiPredicate<String, String> remove) {
+        List<String> names = new ArrayList<>();
+        for (CHProfile chProfile : chPreparationHandler.getCHProfiles()) {
+            String profile = chProfile.getProfile();
+            if (!remove.test("ch", profile))
+                continue;
+            names.addAll(List.of("nodes_ch_" + profile, "shortcuts_" + profile, "shortcut_aggregates_" + profile));
+            properties.remove("graph.profiles.ch." + profile + ".version");
+        }
+        for (LMProfile lmProfile : lmPreparationHandler.getLMProfiles()) {
+            String profile = lmProfile.getProfile();
+            if (!remove.test("lm", profile))
+                continue;
+            names.addAll(List.of("landmarks_" + profile, "landmarks_subnetwork_" + profile));
+            properties.remove("graph.profiles.lm." + profile + ".version");
+            properties.remove("graph.profiles.lm." + profile + ".stale_changes");
+        }
+        for (String profile : hubLabelProfiles) {
+            if (!remove.test("hl", profile))
+                continue;
+            names.addAll(List.of("hub_label_index_" + profile, "hub_labels_" + profile));
+            properties.remove("graph.profiles.hl." + profile + ".version");
+        }
+        // removes the files of the preparations
+        for (String name : names) {
+            directory.create(name);
+            directory.remove(name);
+        }
+    }
+
+    /**
+     * Runs the import stage with the given index unless it was completed in an earlier run. Afterwards the graph is
+     * flushed and the stage is stored in the properties, so a failure in one of the following stages does not require
+     * to run this stage again.
+     */
+    private void runImportStage(int index, int completedStages, List<String> report, Runnable stage) {
+        String name = IMPORT_STAGES.get(index);
+        if (index < completedStages) {
+            report.add(name + ": resumed");
+            return;
+        }
+        StopWatch sw = StopWatch.started();
+        // memory mapped files are changed while the stage runs, the others only when they are flushed. the first
+        // stage creates the files and there is no checkpoint before it anyway. the last stage does not change the
+        // files of the base graph, its preparations are checked separately when the import is resumed
+        if (fileBacked && index > 0 && index < IMPORT_STAGES.size() - 1 && dataAccessDefaultType.isMMap())
+            setImportStageInProgress(name);
+        stage.run();
+        // the last stage is flushed together with the rest of the graph
+        if (fileBacked && index < IMPORT_STAGES.size() - 1) {
+            setImportStageInProgress(name);
+            baseGraph.flush();
+            properties.remove(IMPORT_STAGE_IN_PROGRESS);
+        }
+        properties.put(IMPORT_STAGE, name);
+        if (fileBacked && index < IMPORT_STAGES.size() - 1)
+            properties.flush();
+        String took = sw.stop().getTimeString();
+        logger.info("import stage '" + name + "' finished, took: " + took + ", " + getMemInfo());
+        report.add(name + ": " + took + " (" + Helper.getUsedMB() + "MB used)");
+    }
+
+    /**
+     * Marks the files as inconsistent until the stage is completed, so a crash in between is not mistaken for a
+     * checkpoint, see {@link #resumeImport}.
+     */
+    private void setImportStageInProgress(String name) {
+        if (properties.get(IMPORT_STAGE_IN_PROGRESS).equals(name))
+            return;
+        properties.put(IMPORT_STAGE_IN_PROGRESS, name);
+        properties.flush();
+    }
+
     protected void prepareImport() {
         Map<String, PMap> encodedValuesWithProps = parseEncodedValueString(encodedValuesString);
         NameValidator nameValidator = s -> importRegistry.createImportUnit(s) != null;
@@ -930,8 +1315,12 @@ public class GraphHopper {
         if (encodingManager.hasEncodedValue(Curvature.KEY))
             new CurvatureCalculator(encodingManager.getDecimalEncodedValue(Curvature.KEY)).execute(baseGraph.getBaseGraph());
 
-        if (sortGraph)
-            sortGraphAlongHilbertCurve(baseGraph);
+        if (sortGraph) {
+            if (sortGraphThreads > 1)
+                sortGraphAlongHilbertCurve(baseGraph, sortGraphThreads);
+            else
+                sortGraphAlongHilbertCurve(baseGraph);
+        }
     }
 
     private void calculateSoftblocks() {
@@ -1033,15 +1422,7 @@ public class GraphHopper {
             throw new IllegalStateException("Couldn't load from existing folder: " + ghLocation
                     + " but also cannot use file for DataReader as it wasn't specified!");
 
-        List<CustomArea> customAreas = readCountries();
-        if (isEmpty(customAreasDirectory)) {
-            logger.info("No custom areas are used, custom_areas.directory not given");
-        } else {
-            logger.info("Creating custom area index, reading custom areas from: '" + customAreasDirectory + "'");
-            customAreas.addAll(readCustomAreas());
-        }
-
-        AreaIndex<CustomArea> areaIndex = new AreaIndex<>(customAreas);
+        AreaIndex<CustomArea> areaIndex = createAreaIndex();
 
         eleProvider.init();
         logger.info("start creating graph from " + osmFile);
@@ -1063,6 +1444,17 @@ public class GraphHopper {
             properties.put("datareader.data.date", f.format(reader.getDataDate()));
     }
 
+    private AreaIndex<CustomArea> createAreaIndex() {
+        List<CustomArea> customAreas = readCountries();
+        if (isEmpty(customAreasDirectory)) {
+            logger.info("No custom areas are used, custom_areas.directory not given");
+        } else {
+            logger.info("Creating custom area index, reading custom areas from: '" + customAreasDirectory + "'");
+            customAreas.addAll(readCustomAreas());
+        }
+        return new AreaIndex<>(customAreas);
+    }
+
     protected void createBaseGraphAndProperties() {
         baseGraph.create(100);
         properties.create(100);
@@ -1098,6 +1490,62 @@ public class GraphHopper {
         sortGraphForGivenOrdering(graph, newNodesByOldNodes, newEdgesByOldEdges);
     }
 
+    /**
+     * Sorts the graph like {@link #sortGraphAlongHilbertCurve(BaseGraph)}, but the Hilbert indices are calculated
+     * concurrently, the nodes and edges are ordered by a parallel sort of primitive keys and the sorted nodes and edges
+     * are written sequentially into a temporary copy instead of being permuted in place.
+     */
+    public static void sortGraphAlongHilbertCurve(BaseGraph graph, int threads) {
+        logger.info("sorting graph along Hilbert curve using " + threads + " threads.... (memory:" + getMemInfo() + ")");
+        StopWatch sw = StopWatch.started();
+        final int nodes = graph.getNodes();
+        final int edges = graph.getEdges();
+        final int chunkSize = 1 << 16;
+        NodeAccess na = graph.getNodeAccess();
+        // the node is stored in the lowest bits of each key, so this is the highest order the remaining bits allow,
+        // i.e. 16 for planet-sized graphs. Nodes within the same cell keep their relative order.
+        final int nodeBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(nodes - 1));
+        final int order = Math.min(31, (63 - nodeBits) / 2);
+        final long[] nodeKeys = new long[nodes];
+        GHUtility.runConcurrently(IntStream.range(0, (nodes + chunkSize - 1) / chunkSize).mapToObj(chunk -> () -> {
+            for (int node = chunk * chunkSize; node < Math.min(nodes, (chunk + 1) * chunkSize); node++)
+                nodeKeys[node] = latLonToHilbertIndex(na.getLat(node), na.getLon(node), order) << nodeBits | node;
+        }), threads);
+        parallelSort(nodeKeys, threads);
+        final long nodeMask = (1L << nodeBits) - 1;
+        final int[] newNodesByOldNodes = new int[nodes];
+        GHUtility.runConcurrently(IntStream.range(0, (nodes + chunkSize - 1) / chunkSize).mapToObj(chunk -> () -> {
+            for (int i = chunk * chunkSize; i < Math.min(nodes, (chunk + 1) * chunkSize); i++)
+                newNodesByOldNodes[(int) (nodeKeys[i] & nodeMask)] = i;
+        }), threads);
+
+        // like in the sequential version the edges are ordered by the first of their nodes in the new order
+        final long[] edgeKeys = new long[edges];
+        GHUtility.runConcurrently(IntStream.range(0, (edges + chunkSize - 1) / chunkSize).mapToObj(chunk -> () -> {
+            AllEdgesIterator iter = graph.getAllEdges(chunk * chunkSize, Math.min(edges, (chunk + 1) * chunkSize));
+            while (iter.next()) {
+                long firstNode = Math.min(newNodesByOldNodes[iter.getBaseNode()], newNodesByOldNodes[iter.getAdjNode()]);
+                edgeKeys[iter.getEdge()] = firstNode << 31 | iter.getEdge();
+            }
+        }), threads);
+        parallelSort(edgeKeys, threads);
+        final int[] newEdgesByOldEdges = new int[edges];
+        GHUtility.runConcurrently(IntStream.range(0, (edges + chunkSize - 1) / chunkSize).mapToObj(chunk -> () -> {
+            for (int i = chunk * chunkSize; i < Math.min(edges, (chunk + 1) * chunkSize); i++)
+                newEdgesByOldEdges[(int) (edgeKeys[i] & Integer.MAX_VALUE)] = i;
+        }), threads);
+        logger.info("calculating sort order took: " + sw.stop().getTimeString() + ", memory:" + getMemInfo());
+
+        sw = StopWatch.started();
+        graph.sortNodesAndEdges(newNodesByOldNodes, newEdgesByOldEdges, threads);
+        logger.info("sorting {} nodes and {} edges took: {}", Helper.nf(nodes), Helper.nf(edges), sw.stop().getTimeString());
+    }
+
+    private static void parallelSort(long[] keys, int threads) {
+        // Arrays.parallelSort forks its tasks into the pool of the calling thread, so this limits it to the given threads
+        GHUtility.runConcurrently(Stream.of(() -> Arrays.parallelSort(keys)), threads);
+    }
+
     public static void sortGraphForGivenOrdering(BaseGraph baseGraph, IntArrayList newNodesByOldNodes, IntArrayList newEdgesByOldEdges) {
         if (!ArrayUtil.isPermutation(newEdgesByOldEdges))
             throw new IllegalStateException("New edges: not a permutation");
@@ -1234,15 +1682,32 @@ public class GraphHopper {
                 // the -gh folder exists, but there is no properties file. it might be just empty, so let's act as if
                 // the import did not run yet or is not complete for some reason
                 return false;
+            String importStage = properties.get(IMPORT_STAGE);
+            if (!properties.get(IMPORT_STAGE_IN_PROGRESS).isEmpty()) {
+                // the files might be incomplete, process() starts the import over
+                logger.info("The import in " + ghLocation + " was interrupted in stage '" + properties.get(IMPORT_STAGE_IN_PROGRESS) + "'");
+                properties.close();
+                return false;
+            }
+            if (!importStage.isEmpty() && !importStage.equals(IMPORT_STAGES.get(IMPORT_STAGES.size() - 1))) {
+                // an earlier import failed after stage importStage, process() will resume it
+                logger.info("The import in " + ghLocation + " was not completed, last completed stage: '" + importStage + "'");
+                properties.close();
+                return false;
+            }
+            if (fileChecksums)
+                verifyFileChecksums(directory);
             encodingManager = EncodingManager.fromProperties(properties);
             baseGraph = new BaseGraph.Builder(encodingManager)
                     .setDir(directory)
                     .setFileBacked(fileBacked)
                     .set3D(hasElevation())
                     .withTurnCosts(encodingManager.needsTurnCostsSupport())
+                    .withAdjacencyIndex(adjacencyIndex)
+                    .withTurnCostIndex(turnCostIndex)
                     .build();
             checkProfilesConsistency();
-            baseGraph.loadExisting();
+            baseGraph.loadExisting(loadThreads);
             if (!skipProfileMatchCheck) {
                 String storedProfilesString = properties.get("profiles");
                 Map<String, Integer> storedProfileHashes = Arrays.stream(storedProfilesString.split(",")).map(s -> s.split("\\|", 2)).collect((Collectors.toMap(kv -> kv[0], kv -> Integer.parseInt(kv[1]))));
@@ -1263,6 +1728,8 @@ public class GraphHopper {
             postProcessing(false);
             directory.loadMMap();
             setFullyLoaded();
+            if (!lmProfileStates.isEmpty())
+                startLoadingLM();
             return true;
         } finally {
             if (lock != null)
@@ -1343,9 +1810,12 @@ public class GraphHopper {
         for (CHProfile chProfile : chProfiles) {
             Profile profile = profilesByName.get(chProfile.getProfile());
             if (profile.hasTurnCosts()) {
+                if (chProfile.isStoreAggregates())
+                    throw new IllegalArgumentException("store_aggregates is not supported for CH profiles with turn costs: " + profile.getName());
                 chConfigs.add(CHConfig.edgeBased(profile.getName(), createWeighting(profile, new PMap())));
             } else {
-                chConfigs.add(CHConfig.nodeBased(profile.getName(), createWeighting(profile, new PMap())));
+                chConfigs.add(CHConfig.nodeBased(profile.getName(), createWeighting(profile, new PMap()))
+                        .setStoreAggregates(chProfile.isStoreAggregates()));
             }
         }
         return chConfigs;
@@ -1390,8 +1860,17 @@ public class GraphHopper {
                 baseGraph.closeGeometryAndNameStorage(fileBacked);
         }
 
-        if (lmPreparationHandler.isEnabled())
-            loadOrPrepareLM(closeEarly);
+        if (lmPreparationHandler.isEnabled()) {
+            if (loadLMInBackground && !closeEarly && isImportCompleted() && lmPreparationsExist()) {
+                // the landmarks are loaded after the rest of the graph, see startLoadingLM
+                checkLMProfileVersions();
+                lmPreparationHandler.getLMProfiles().forEach(p -> lmProfileStates.put(p.getProfile(), ProfileState.LOADING));
+            } else
+                loadOrPrepareLM(closeEarly);
+        }
+
+        if (mldCellSize > 0)
+            loadOrPrepareMLD();
 
         if (closeEarly)
             // we needed the location index for the LM preparation, but we don't need it for CH
@@ -1399,6 +1878,9 @@ public class GraphHopper {
 
         if (chPreparationHandler.isEnabled())
             loadOrPrepareCH(closeEarly);
+
+        if (!hubLabelProfiles.isEmpty())
+            loadOrPrepareHubLabels();
     }
 
     protected void importPublicTransit() {
@@ -1438,9 +1920,40 @@ public class GraphHopper {
     }
 
     public GHResponse route(GHRequest request) {
+        ProfileState lmState = lmProfileStates.getOrDefault(request.getProfile(), ProfileState.READY);
+        if (lmState != ProfileState.READY && needsLM(request))
+            return new GHResponse().addError(new ProfileNotReadyException("The landmarks of profile '" + request.getProfile() + "' are "
+                    + (lmState == ProfileState.LOADING ? "still loading" : "not available, because they could not be loaded"),
+                    request.getProfile(), lmState == ProfileState.LOADING));
         return createRouter().route(request);
     }
 
+    private boolean needsLM(GHRequest request) {
+        if (request.getHints().getBool(Landmark.DISABLE, false))
+            return false;
+        return !chGraphs.containsKey(request.getProfile()) || request.getHints().getBool(Parameters.CH.DISABLE, false);
+    }
+
+    public enum ProfileState {LOADING, READY, FAILED}
+
+    /**
+     * @return the state of every profile. All profiles are ready once {@link #load()} or the import finished, unless
+     * the landmarks are loaded in the background, see {@link #setLoadLMInBackground(boolean)}. Then the profiles that
+     * need the landmarks are only ready once their landmarks are loaded, unless they can use CH.
+     */
+    public Map<String, ProfileState> getProfileStates() {
+        Map<String, ProfileState> states = new LinkedHashMap<>();
+        for (String profile : profilesByName.keySet()) {
+            if (!fullyLoaded)
+                states.put(profile, ProfileState.LOADING);
+            else if (chGraphs.containsKey(profile))
+                states.put(profile, ProfileState.READY);
+            else
+                states.put(profile, lmProfileStates.getOrDefault(profile, ProfileState.READY));
+        }
+        return states;
+    }
+
     private Router createRouter() {
         if (baseGraph == null || !fullyLoaded)
             throw new IllegalStateException("Do a successful call to load or importOrLoad before routing");
@@ -1450,7 +1963,7 @@ public class GraphHopper {
             throw new IllegalStateException("Location index not initialized");
 
         return doCreateRouter(baseGraph, encodingManager, locationIndex, profilesByName, pathBuilderFactory,
-                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks);
+                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks).setCellOverlays(cellOverlays);
     }
 
     protected Router doCreateRouter(BaseGraph baseGraph, EncodingManager encodingManager, LocationIndex locationIndex, Map<String, Profile> profilesByName,
@@ -1532,11 +2045,33 @@ public class GraphHopper {
         properties.put("graph.profiles.lm." + profile + ".version", version);
     }
 
+    /**
+     * @return the number of OSM change files that changed the weights of the given profile since its landmarks were
+     * prepared, see {@link #applyOSMChanges}
+     */
+    private int getLMStaleChanges(String profile) {
+        String staleChanges = properties.get("graph.profiles.lm." + profile + ".stale_changes");
+        return staleChanges.isEmpty() ? 0 : Integer.parseInt(staleChanges);
+    }
+
+    /**
+     * @return the version of the CH preparation, which also depends on whether the shortcut aggregates are stored
+     */
+    private int getCHProfileHash(CHProfile chProfile) {
+        int hash = getProfileHash(profilesByName.get(chProfile.getProfile()));
+        // the hash stays the same without aggregates, so the versions stored for older graphs remain valid
+        return chProfile.isStoreAggregates() ? 31 * hash + 1 : hash;
+    }
+
     protected void loadOrPrepareCH(boolean closeEarly) {
-        for (CHProfile profile : chPreparationHandler.getCHProfiles())
-            if (!getCHProfileVersion(profile.getProfile()).isEmpty()
-                    && !getCHProfileVersion(profile.getProfile()).equals("" + getProfileHash(profilesByName.get(profile.getProfile()))))
+        for (CHProfile profile : chPreparationHandler.getCHProfiles()) {
+            String version = getCHProfileVersion(profile.getProfile());
+            // the aggregates can be added to a preparation without them, see below
+            boolean addAggregates = profile.isStoreAggregates()
+                    && version.equals("" + getProfileHash(profilesByName.get(profile.getProfile())));
+            if (!version.isEmpty() && !version.equals("" + getCHProfileHash(profile)) && !addAggregates)
                 throw new IllegalArgumentException("CH preparation of " + profile.getProfile() + " already exists in storage and doesn't match configuration");
+        }
 
         // we load ch graphs that already exist and prepare the other ones
         List<CHConfig> chConfigs = createCHConfigs(chPreparationHandler.getCHProfiles());
@@ -1550,11 +2085,28 @@ public class GraphHopper {
             if (loaded.containsKey(profile.getProfile()) && prepared.containsKey(profile.getProfile()))
                 throw new IllegalStateException("CH graph should be either loaded or prepared, but not both: " + profile.getProfile());
             else if (prepared.containsKey(profile.getProfile())) {
-                setCHProfileVersion(profile.getProfile(), getProfileHash(profilesByName.get(profile.getProfile())));
+                setCHProfileVersion(profile.getProfile(), getCHProfileHash(profile));
                 PrepareContractionHierarchies.Result res = prepared.get(profile.getProfile());
                 chGraphs.put(profile.getProfile(), RoutingCHGraphImpl.fromGraph(baseGraph.getBaseGraph(), res.getCHStorage(), res.getCHConfig()));
             } else if (loaded.containsKey(profile.getProfile())) {
-                chGraphs.put(profile.getProfile(), loaded.get(profile.getProfile()));
+                if (getCHProfileVersion(profile.getProfile()).isEmpty())
+                    // the preparation was flushed by an import that failed afterwards, see IMPORT_STAGES
+                    setCHProfileVersion(profile.getProfile(), getCHProfileHash(profile));
+                RoutingCHGraph chGraph = loaded.get(profile.getProfile());
+                if (profile.isStoreAggregates() && !chGraph.hasShortcutAggregates()) {
+                    // the aggregates were enabled after the preparation, but we can add them without a new preparation
+                    ensureWriteAccess();
+                    CHStorage store = ((RoutingCHGraphImpl) chGraph).getCHStorage();
+                    new ShortcutAggregator(chGraph).storeAggregates(store);
+                    setCHProfileVersion(profile.getProfile(), getCHProfileHash(profile));
+                    if (fileBacked) {
+                        store.flush();
+                        // the changed files do not match their checksums anymore
+                        removeFileChecksums("nodes_ch_" + profile.getProfile(), "shortcuts_" + profile.getProfile());
+                        properties.flush();
+                    }
+                }
+                chGraphs.put(profile.getProfile(), chGraph);
             } else
                 throw new IllegalStateException("CH graph should be either loaded or prepared: " + profile.getProfile());
         }
@@ -1564,6 +2116,79 @@ public class GraphHopper {
         });
     }
 
+    /**
+     * Loads the cell partition for the overlay routing or creates it if it does not exist yet. The overlays for the
+     * different profiles and custom models are created on demand when routing.
+     */
+    protected void loadOrPrepareMLD() {
+        String storedCellSize = properties.get("graph.mld.cell_size");
+        if (!storedCellSize.isEmpty() && !storedCellSize.equals("" + mldCellSize))
+            throw new IllegalArgumentException("Cell partition with " + Parameters.MLD.CELL_SIZE + "=" + storedCellSize
+                    + " already exists in storage and doesn't match configuration: " + mldCellSize);
+        CellPartition partition = new CellPartition(baseGraph.getDirectory());
+        if (!partition.loadExisting()) {
+            ensureWriteAccess();
+            partition.create(baseGraph.getNodes());
+            new InertialPartitioner(baseGraph, partition, mldCellSize).partition();
+            properties.put("graph.mld.cell_size", mldCellSize);
+            if (fileBacked)
+                partition.flush();
+        } else if (partition.getNodes() != baseGraph.getNodes()) {
+            throw new IllegalStateException("Cell partition has " + partition.getNodes() + " nodes, but the graph has " + baseGraph.getNodes());
+        }
+        cellOverlays = new CellOverlayCache(baseGraph, partition, mldCacheSize, mldThreads, mldMaxCustomizations, mldCustomizationTimeoutMillis);
+        logger.info("Overlay routing available, cells: " + partition.getCells() + ", boundary nodes: " + partition.getBoundaryNodes()
+                + ", " + Helper.nf(partition.getCapacity() / Helper.MB) + "MB");
+    }
+
+    /**
+     * Loads the hub labels for the configured profiles or creates them from the corresponding CH graphs.
+     */
+    protected void loadOrPrepareHubLabels() {
+        hubLabels = new LinkedHashMap<>();
+        for (String profile : hubLabelProfiles) {
+            RoutingCHGraph chGraph = chGraphs.get(profile);
+            if (chGraph == null)
+                throw new IllegalArgumentException("Hub labels require a CH preparation, but there is none for profile '" + profile + "', "
+                        + Parameters.HubLabels.PROFILES + ": " + hubLabelProfiles + ", CH profiles: " + chGraphs.keySet());
+            if (chGraph.isEdgeBased())
+                throw new IllegalArgumentException("Hub labels are not supported for profiles with turn costs: " + profile);
+            // the labels only depend on the contraction, not on whether the shortcut aggregates are stored
+            String chVersion = "" + getProfileHash(profilesByName.get(profile));
+            String storedVersion = properties.get("graph.profiles.hl." + profile + ".version");
+            if (!storedVersion.isEmpty() && !storedVersion.equals(chVersion))
+                throw new IllegalArgumentException("Hub labels of " + profile + " already exist in storage and don't match the CH preparation");
+            HubLabelStorage storage = new HubLabelStorage(baseGraph.getDirectory(), profile);
+            if (!storage.loadExisting(chGraph.getNodes())) {
+                ensureWriteAccess();
+                // the labels were not stored or they belong to a different graph
+                storage.remove();
+                storage = new HubLabelStorage(baseGraph.getDirectory(), profile);
+                storage.create(chGraph.getNodes());
+                new HubLabelBuilder(chGraph, storage).build();
+                properties.put("graph.profiles.hl." + profile + ".version", chVersion);
+                if (fileBacked)
+                    storage.flush();
+            }
+            hubLabels.put(profile, storage);
+            logger.info("Hub labels available for profile {}, {}", profile, storage.toDetailsString());
+        }
+    }
+
+    /**
+     * @return the hub labels for the profiles configured via {@link Parameters.HubLabels#PROFILES}
+     */
+    public Map<String, HubLabelStorage> getHubLabels() {
+        return hubLabels;
+    }
+
+    /**
+     * @return the overlays for the overlay routing or null if it is not enabled
+     */
+    public CellOverlayCache getCellOverlays() {
+        return cellOverlays;
+    }
+
     protected Map<String, PrepareContractionHierarchies.Result> prepareCH(boolean closeEarly, List<CHConfig> configsToPrepare) {
         if (!configsToPrepare.isEmpty())
             ensureWriteAccess();
@@ -1572,24 +2197,94 @@ public class GraphHopper {
         return chPreparationHandler.prepare(baseGraph, properties, configsToPrepare, closeEarly, fileBacked);
     }
 
+    private boolean isImportCompleted() {
+        String importStage = properties.get(IMPORT_STAGE);
+        // the stage is not stored for graphs that were imported before the stages were introduced
+        return importStage.isEmpty() || importStage.equals(IMPORT_STAGES.get(IMPORT_STAGES.size() - 1));
+    }
+
+    private boolean lmPreparationsExist() {
+        return lmPreparationHandler.getLMProfiles().stream().allMatch(p -> !getLMProfileVersion(p.getProfile()).isEmpty());
+    }
+
     /**
-     * For landmarks it is required to always call this method: either it creates the landmark data or it loads it.
+     * Loads the landmarks in a background thread. Until they are loaded the profiles that need them are rejected.
      */
-    protected void loadOrPrepareLM(boolean closeEarly) {
+    private void startLoadingLM() {
+        lmLoadingThread = new Thread(() -> {
+            StopWatch sw = StopWatch.started();
+            try {
+                loadLM();
+                logger.info("loaded landmarks in the background, took: " + sw.stop().getTimeString());
+            } catch (Exception ex) {
+                logger.error("Could not load the landmarks", ex);
+                lmProfileStates.replaceAll((profile, state) -> ProfileState.FAILED);
+            }
+        }, "lm-loading");
+        lmLoadingThread.setDaemon(true);
+        lmLoadingThread.start();
+    }
+
+    /**
+     * Loads the existing landmarks, but unlike {@link #loadOrPrepareLM} it does not prepare the missing ones: this runs
+     * while the routing requests are served already, so there is neither the memory for a preparation nor may the
+     * properties be changed. The profiles whose landmarks cannot be loaded are marked as FAILED instead.
+     */
+    private void loadLM() {
+        List<LMConfig> lmConfigs = createLMConfigs(lmPreparationHandler.getLMProfiles());
+        Set<String> staleLMs = lmConfigs.stream().map(LMConfig::getName).filter(name -> getLMStaleChanges(name) > 0).collect(Collectors.toSet());
+        List<LandmarkStorage> loaded = lmPreparationHandler.load(lmConfigs, baseGraph, encodingManager, staleLMs);
+        Map<String, LandmarkStorage> landmarks = new LinkedHashMap<>();
+        for (LMProfile lmp : lmPreparationHandler.getLMProfiles()) {
+            String prepProfile = lmp.usesOtherPreparation() ? lmp.getPreparationProfile() : lmp.getProfile();
+            loaded.stream().filter(lms -> lms.getLMConfig().getName().equals(prepProfile)).findFirst()
+                    .ifPresent(lms -> landmarks.put(lmp.getProfile(), lms));
+        }
+        this.landmarks = landmarks;
+        for (LMProfile lmp : lmPreparationHandler.getLMProfiles()) {
+            if (landmarks.containsKey(lmp.getProfile())) {
+                lmProfileStates.put(lmp.getProfile(), ProfileState.READY);
+            } else {
+                logger.error("Could not load the landmarks of profile '" + lmp.getProfile() + "', a new import is required to prepare them");
+                lmProfileStates.put(lmp.getProfile(), ProfileState.FAILED);
+            }
+        }
+    }
+
+    private void checkLMProfileVersions() {
         for (LMProfile profile : lmPreparationHandler.getLMProfiles())
             if (!getLMProfileVersion(profile.getProfile()).isEmpty()
                     && !getLMProfileVersion(profile.getProfile()).equals("" + getProfileHash(profilesByName.get(profile.getProfile()))))
                 throw new IllegalArgumentException("LM preparation of " + profile.getProfile() + " already exists in storage and doesn't match configuration");
+    }
+
+    /**
+     * For landmarks it is required to always call this method: either it creates the landmark data or it loads it.
+     */
+    protected void loadOrPrepareLM(boolean closeEarly) {
+        checkLMProfileVersions();
 
         // we load landmark storages that already exist and prepare the other ones
         List<LMConfig> lmConfigs = createLMConfigs(lmPreparationHandler.getLMProfiles());
-        List<LandmarkStorage> loaded = lmPreparationHandler.load(lmConfigs, baseGraph, encodingManager);
+        // stale landmarks are used until too many OSM changes were applied, see applyOSMChanges
+        Set<String> staleLMs = new HashSet<>();
+        for (LMConfig lmConfig : lmConfigs) {
+            int staleChanges = getLMStaleChanges(lmConfig.getName());
+            if (staleChanges > lmPreparationHandler.getMaxStaleChanges()) {
+                ensureWriteAccess();
+                logger.info("The landmarks of {} are stale after {} OSM changes, they are prepared again", lmConfig.getName(), staleChanges);
+                removePreparations(baseGraph.getDirectory(), (type, profile) -> type.equals("lm") && profile.equals(lmConfig.getName()));
+            } else if (staleChanges > 0) {
+                staleLMs.add(lmConfig.getName());
+            }
+        }
+        List<LandmarkStorage> loaded = lmPreparationHandler.load(lmConfigs, baseGraph, encodingManager, staleLMs);
         List<LMConfig> loadedConfigs = loaded.stream().map(LandmarkStorage::getLMConfig).toList();
         List<LMConfig> configsToPrepare = lmConfigs.stream().filter(c -> !loadedConfigs.contains(c)).collect(Collectors.toList());
         List<PrepareLandmarks> prepared = prepareLM(closeEarly, configsToPrepare);
 
         // we map all profile names for which there is LM support to the according LM storages
-        landmarks = new LinkedHashMap<>();
+        Map<String, LandmarkStorage> landmarks = new LinkedHashMap<>();
         for (LMProfile lmp : lmPreparationHandler.getLMProfiles()) {
             // cross-querying
             String prepProfile = lmp.usesOtherPreparation() ? lmp.getPreparationProfile() : lmp.getProfile();
@@ -1599,10 +2294,17 @@ public class GraphHopper {
                 throw new IllegalStateException("LM should be either loaded or prepared, but not both: " + prepProfile);
             else if (preparedLMS.isPresent()) {
                 setLMProfileVersion(lmp.getProfile(), getProfileHash(profilesByName.get(lmp.getProfile())));
+                properties.remove("graph.profiles.lm." + lmp.getProfile() + ".stale_changes");
                 landmarks.put(lmp.getProfile(), preparedLMS.get().getLandmarkStorage());
-            } else
-                loadedLMS.ifPresent(landmarkStorage -> landmarks.put(lmp.getProfile(), landmarkStorage));
+            } else if (loadedLMS.isPresent()) {
+                if (getLMProfileVersion(lmp.getProfile()).isEmpty())
+                    // the preparation was flushed by an import that failed afterwards, see IMPORT_STAGES
+                    setLMProfileVersion(lmp.getProfile(), getProfileHash(profilesByName.get(lmp.getProfile())));
+                landmarks.put(lmp.getProfile(), loadedLMS.get());
+            }
         }
+        // the landmarks might be loaded while the routing requests are served already, see startLoadingLM
+        this.landmarks = landmarks;
     }
 
     protected List<PrepareLandmarks> prepareLM(boolean closeEarly, List<LMConfig> configsToPrepare) {
@@ -1639,17 +2341,83 @@ public class GraphHopper {
             logger.info("flushing graph " + getBaseGraphString() + ", details:" + baseGraph.toDetailsString() + ", "
                     + getMemInfo() + ")");
             baseGraph.flush();
+            if (fileChecksums)
+                storeFileChecksums();
             properties.flush();
             logger.info("flushed graph " + getMemInfo() + ")");
         }
         setFullyLoaded();
     }
 
+    private void storeFileChecksums() {
+        StopWatch sw = StopWatch.started();
+        Directory dir = baseGraph.getDirectory();
+        List<String> names = new ArrayList<>(dir.getDAs().keySet()).stream()
+                // the properties contain the checksums themselves
+                .filter(name -> !name.equals("properties") && Files.isRegularFile(Paths.get(dir.getLocation(), name)))
+                .toList();
+        Map<String, String> checksums = new ConcurrentHashMap<>();
+        GHUtility.runConcurrently(names.stream().map(name -> () ->
+                checksums.put(name, calcFileChecksum(Paths.get(dir.getLocation(), name)))), loadThreads);
+        new TreeMap<>(checksums).forEach((name, checksum) -> properties.put(FILE_CHECKSUM + name, checksum));
+        logger.info("calculated checksums of " + checksums.size() + " files, took: " + sw.stop().getTimeString());
+    }
+
+    private void verifyFileChecksums(Directory dir) {
+        StopWatch sw = StopWatch.started();
+        Map<String, String> stored = properties.getAll().entrySet().stream()
+                .filter(e -> e.getKey().startsWith(FILE_CHECKSUM))
+                .collect(Collectors.toMap(e -> e.getKey().substring(FILE_CHECKSUM.length()), Map.Entry::getValue));
+        if (stored.isEmpty()) {
+            logger.warn("No file checksums are stored in " + ghLocation + ", they are calculated at the end of the import");
+            return;
+        }
+        Set<String> corrupted = ConcurrentHashMap.newKeySet();
+        GHUtility.runConcurrently(stored.entrySet().stream().map(e -> () -> {
+            Path file = Paths.get(dir.getLocation(), e.getKey());
+            // files that were removed on purpose are created again, e.g. the location index
+            if (Files.exists(file) && !calcFileChecksum(file).equals(e.getValue()))
+                corrupted.add(e.getKey());
+        }), loadThreads);
+        if (!corrupted.isEmpty())
+            throw new IllegalStateException("The checksums of the files " + new TreeSet<>(corrupted) + " in " + ghLocation
+                    + " do not match. The files are corrupted, please run the import again.");
+        logger.info("verified checksums of " + stored.size() + " files, took: " + sw.stop().getTimeString());
+    }
+
+    private void removeFileChecksums(String... names) {
+        for (String name : names)
+            properties.remove(FILE_CHECKSUM + name);
+    }
+
+    private static String calcFileChecksum(Path file) {
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not read " + file, ex);
+        }
+        return Long.toHexString(crc.getValue());
+    }
+
     /**
      * Releases all associated resources like memory or files. But it does not remove them. To
      * remove the files created in graphhopperLocation you have to call clean().
      */
     public void close() {
+        if (lmLoadingThread != null) {
+            try {
+                // otherwise the landmarks that are loaded afterwards would not be closed
+                lmLoadingThread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
         if (baseGraph != null)
             baseGraph.close();
         if (properties != null)
@@ -1657,6 +2425,9 @@ public class GraphHopper {
 
         chGraphs.values().forEach(RoutingCHGraph::close);
         landmarks.values().forEach(LandmarkStorage::close);
+        hubLabels.values().forEach(HubLabelStorage::close);
+        if (cellOverlays != null)
+            cellOverlays.getPartition().close();
 
         if (locationIndex != null)
             locationIndex.close();
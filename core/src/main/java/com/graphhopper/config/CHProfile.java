@@ -18,6 +18,8 @@
 
 package com.graphhopper.config;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.util.Objects;
 
 import static com.graphhopper.config.Profile.validateProfileName;
@@ -30,6 +32,7 @@ import static com.graphhopper.config.Profile.validateProfileName;
  */
 public class CHProfile {
     private String profile = "";
+    private boolean storeAggregates = false;
 
     private CHProfile() {
         // default constructor needed for jackson
@@ -37,6 +40,7 @@ public class CHProfile {
 
     public CHProfile(CHProfile profile) {
         this.profile = profile.profile;
+        this.storeAggregates = profile.storeAggregates;
     }
 
     public CHProfile(String profile) {
@@ -52,6 +56,20 @@ public class CHProfile {
         this.profile = profile;
     }
 
+    /**
+     * @return true if the distance and time of every shortcut shall be stored, which makes requests without points and
+     * instructions faster
+     */
+    public boolean isStoreAggregates() {
+        return storeAggregates;
+    }
+
+    @JsonProperty("store_aggregates")
+    public CHProfile setStoreAggregates(boolean storeAggregates) {
+        this.storeAggregates = storeAggregates;
+        return this;
+    }
+
     @Override
     public String toString() {
         return profile;
@@ -62,11 +80,11 @@ public class CHProfile {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         CHProfile that = (CHProfile) o;
-        return Objects.equals(profile, that.profile);
+        return storeAggregates == that.storeAggregates && Objects.equals(profile, that.profile);
     }
 
     @Override
     public int hashCode() {
-        return profile.hashCode();
+        return Objects.hash(profile, storeAggregates);
     }
 }
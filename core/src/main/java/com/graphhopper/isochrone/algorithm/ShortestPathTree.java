@@ -19,6 +19,7 @@ package com.graphhopper.isochrone.algorithm;
 
 import com.carrotsearch.hppc.IntObjectHashMap;
 import com.carrotsearch.hppc.cursors.ObjectCursor;
+import com.graphhopper.coll.GHBitSetImpl;
 import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.AbstractRoutingAlgorithm;
 import com.graphhopper.routing.Path;
@@ -31,6 +32,7 @@ import com.graphhopper.util.GHUtility;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.PriorityQueue;
+import java.util.TreeSet;
 import java.util.function.Consumer;
 
 import static com.graphhopper.isochrone.algorithm.ShortestPathTree.ExploreType.*;
@@ -72,6 +74,8 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
         public long time;
         public double distance;
         public IsoLabel parent;
+        // the key of this label in the shortest path tree or -1 for the start label of an edge-based search
+        int traversalId = -1;
 
         @Override
         public String toString() {
@@ -92,6 +96,10 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
     private double limit = -1;
     private ExploreType exploreType = TIME;
     private final boolean reverseFlow;
+    // only used if the settled labels are released, see setReleaseSettledLabels
+    private GHBitSetImpl settled;
+    // replaces queueByZ if the settled labels are released, so settled and replaced labels can be removed from it
+    private TreeSet<IsoLabel> frontierByZ;
 
     public ShortestPathTree(Graph g, Weighting weighting, boolean reverseFlow, TraversalMode traversalMode) {
         super(g, weighting, traversalMode);
@@ -130,14 +138,30 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
         this.queueByZ = new PriorityQueue<>(1000, comparingDouble(l -> l.weight));
     }
 
+    /**
+     * If enabled, a label is dropped as soon as it was passed to the consumer of {@link #search}. The settled nodes
+     * (or edges for edge-based traversal) are only remembered in a bit set, and the parent of a label is a copy of
+     * the settled label without its own parent. Settled and replaced labels are removed from the queue that decides
+     * when the search is finished, so it only holds the search frontier. Replaced labels can stay in the Dijkstra
+     * queue until their weight is reached, see the implementation note. The labels are passed to the consumer in the
+     * same order as without this option, but getIsochroneEdges cannot be used afterwards.
+     */
+    public void setReleaseSettledLabels(boolean releaseSettledLabels) {
+        settled = releaseSettledLabels ? new GHBitSetImpl() : null;
+    }
+
     public void search(int from, final Consumer<IsoLabel> consumer) {
         checkAlreadyRun();
+        if (settled != null)
+            // the traversal ids of the labels in the frontier are unique, so they break the ties
+            frontierByZ = new TreeSet<>(comparingDouble(this::getExploreValue).thenComparingInt(l -> l.traversalId));
         IsoLabel currentLabel = new IsoLabel(from, -1, 0, 0, 0, null);
-        queueByWeighting.add(currentLabel);
-        queueByZ.add(currentLabel);
         if (traversalMode == TraversalMode.NODE_BASED) {
+            currentLabel.traversalId = from;
             fromMap.put(from, currentLabel);
         }
+        queueByWeighting.add(currentLabel);
+        addToQueueByZ(currentLabel);
         while (!finished()) {
             currentLabel = queueByWeighting.poll();
             if (currentLabel.deleted)
@@ -147,6 +171,15 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
             }
             currentLabel.deleted = true;
             visitedNodes++;
+            IsoLabel parentLabel = currentLabel;
+            if (settled != null) {
+                frontierByZ.remove(currentLabel);
+                if (currentLabel.traversalId >= 0) {
+                    settled.add(currentLabel.traversalId);
+                    fromMap.remove(currentLabel.traversalId);
+                }
+                parentLabel = new IsoLabel(currentLabel.node, currentLabel.edge, currentLabel.weight, currentLabel.time, currentLabel.distance, null);
+            }
 
             EdgeIterator iter = edgeExplorer.setBaseNode(currentLabel.node);
             while (iter.next()) {
@@ -161,18 +194,25 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
                 double nextDistance = iter.getDistance() + currentLabel.distance;
                 long nextTime = GHUtility.calcMillisWithTurnMillis(weighting, iter, reverseFlow, currentLabel.edge) + currentLabel.time;
                 int nextTraversalId = traversalMode.createTraversalId(iter, reverseFlow);
+                // the weights are not negative, so a settled label cannot be improved
+                if (settled != null && settled.contains(nextTraversalId))
+                    continue;
                 IsoLabel nextLabel = fromMap.get(nextTraversalId);
                 if (nextLabel == null) {
-                    nextLabel = new IsoLabel(iter.getAdjNode(), iter.getEdge(), nextWeight, nextTime, nextDistance, currentLabel);
+                    nextLabel = new IsoLabel(iter.getAdjNode(), iter.getEdge(), nextWeight, nextTime, nextDistance, parentLabel);
+                    nextLabel.traversalId = nextTraversalId;
                     fromMap.put(nextTraversalId, nextLabel);
                     queueByWeighting.add(nextLabel);
-                    queueByZ.add(nextLabel);
+                    addToQueueByZ(nextLabel);
                 } else if (nextLabel.weight > nextWeight) {
                     nextLabel.deleted = true;
-                    nextLabel = new IsoLabel(iter.getAdjNode(), iter.getEdge(), nextWeight, nextTime, nextDistance, currentLabel);
+                    if (frontierByZ != null)
+                        frontierByZ.remove(nextLabel);
+                    nextLabel = new IsoLabel(iter.getAdjNode(), iter.getEdge(), nextWeight, nextTime, nextDistance, parentLabel);
+                    nextLabel.traversalId = nextTraversalId;
                     fromMap.put(nextTraversalId, nextLabel);
                     queueByWeighting.add(nextLabel);
-                    queueByZ.add(nextLabel);
+                    addToQueueByZ(nextLabel);
                 }
             }
         }
@@ -184,6 +224,8 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
     }
 
     public ArrayList<IsoLabel> getIsochroneEdges(double z) {
+        if (settled != null)
+            throw new IllegalStateException("The isochrone edges are not available if the settled labels are released");
         ArrayList<IsoLabel> result = new ArrayList<>();
         for (ObjectCursor<IsoLabel> cursor : fromMap.values()) {
             if (cursor.value.parent != null &&
@@ -202,7 +244,23 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
         return label.distance;
     }
 
+    private void addToQueueByZ(IsoLabel label) {
+        if (frontierByZ != null)
+            frontierByZ.add(label);
+        else
+            queueByZ.add(label);
+    }
+
+    /**
+     * @return the number of labels in the queue that decides when the search is finished, including the deleted ones
+     */
+    int getQueueByZSize() {
+        return frontierByZ != null ? frontierByZ.size() : queueByZ.size();
+    }
+
     protected boolean finished() {
+        if (frontierByZ != null)
+            return frontierByZ.isEmpty() || getExploreValue(frontierByZ.first()) >= limit;
         while (queueByZ.peek() != null && queueByZ.peek().deleted)
             queueByZ.poll();
         if (queueByZ.peek() == null)
@@ -0,0 +1,196 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread-safe cache of elevation tiles that is bounded by the size of the tiles in bytes and evicts the least
+ * recently used tiles first. The tile payloads are not copied to the heap: they usually stay in the memory mapped
+ * DataAccess or file they were loaded into, so the limit bounds the mapped memory of an elevation provider.
+ * <p>
+ * A tile is loaded only once even if several threads request it at the same time. Tiles are only accessed via
+ * {@link #read}, so an evicted tile is released when the last thread stops reading from it and never while it is
+ * still in use. Until then a request for the same key gets the evicted tile back instead of loading it again.
+ */
+public class ElevationTileCache<K, T> {
+    private static final int LOAD_LOCKS = 64;
+
+    private static final class Entry<T> {
+        final T tile;
+        final long bytes;
+        int readers;
+        boolean evicted;
+
+        Entry(T tile, long bytes) {
+            this.tile = tile;
+            this.bytes = bytes;
+        }
+    }
+
+    private final ToLongFunction<T> weigher;
+    private final Consumer<T> releaser;
+    // access order, i.e. the least recently used entry comes first
+    private final LinkedHashMap<K, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // evicted entries that are still read from
+    private final Map<K, Entry<T>> evicted = new HashMap<>();
+    // loading a tile can take long (download, decoding), so we do not block the lookups of the other tiles meanwhile
+    private final Object[] loadLocks = new Object[LOAD_LOCKS];
+    private long maxBytes = Long.MAX_VALUE;
+    private long bytes;
+
+    /**
+     * @param weigher  returns the size of a tile in bytes
+     * @param releaser releases the resources of a tile after it was evicted, called while no thread reads from it
+     */
+    public ElevationTileCache(ToLongFunction<T> weigher, Consumer<T> releaser) {
+        this.weigher = weigher;
+        this.releaser = releaser;
+        for (int i = 0; i < loadLocks.length; i++)
+            loadLocks[i] = new Object();
+    }
+
+    /**
+     * Sets the maximum size of all cached tiles in bytes. The most recently used tile is always kept, even if it is
+     * larger. Default is no limit.
+     */
+    public synchronized ElevationTileCache<K, T> setMaxBytes(long maxBytes) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("The maximum size of the elevation tile cache must be positive, but was " + maxBytes);
+        this.maxBytes = maxBytes;
+        evict();
+        return this;
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the size of the cached tiles in bytes, without the evicted tiles that are still read from
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Reads a value from the tile with the specified key. If the tile is not cached it is loaded first.
+     *
+     * @param loader loads the tile, must not return null
+     * @param reader reads the value from the tile. The tile must not be used after this method returns.
+     */
+    public double read(K key, Function<K, T> loader, ToDoubleFunction<T> reader) {
+        Entry<T> entry = acquire(key, loader);
+        try {
+            return reader.applyAsDouble(entry.tile);
+        } finally {
+            unpin(entry);
+        }
+    }
+
+    private Entry<T> acquire(K key, Function<K, T> loader) {
+        Entry<T> entry = pin(key);
+        if (entry != null)
+            return entry;
+
+        synchronized (loadLocks[(key.hashCode() & Integer.MAX_VALUE) % LOAD_LOCKS]) {
+            // another thread might have loaded the tile while we were waiting
+            entry = pin(key);
+            if (entry != null)
+                return entry;
+
+            T tile = loader.apply(key);
+            if (tile == null)
+                throw new IllegalStateException("Elevation tile " + key + " could not be loaded");
+            entry = new Entry<>(tile, weigher.applyAsLong(tile));
+            synchronized (this) {
+                entry.readers = 1;
+                entries.put(key, entry);
+                bytes += entry.bytes;
+                evict();
+            }
+            return entry;
+        }
+    }
+
+    private synchronized Entry<T> pin(K key) {
+        Entry<T> entry = entries.get(key);
+        if (entry == null) {
+            entry = evicted.remove(key);
+            if (entry == null)
+                return null;
+            entry.evicted = false;
+            entries.put(key, entry);
+            bytes += entry.bytes;
+            evict();
+        }
+        entry.readers++;
+        return entry;
+    }
+
+    private synchronized void unpin(Entry<T> entry) {
+        entry.readers--;
+        if (entry.evicted && entry.readers == 0)
+            releaseEvicted(entry);
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<K, Entry<T>>> iter = entries.entrySet().iterator();
+        while (bytes > maxBytes && entries.size() > 1) {
+            Map.Entry<K, Entry<T>> eldest = iter.next();
+            iter.remove();
+            Entry<T> entry = eldest.getValue();
+            bytes -= entry.bytes;
+            entry.evicted = true;
+            if (entry.readers == 0)
+                releaseEvicted(entry);
+            else
+                evicted.put(eldest.getKey(), entry);
+        }
+    }
+
+    private void releaseEvicted(Entry<T> entry) {
+        // we release under the lock of this cache so the tile cannot be loaded again before it is released
+        evicted.values().remove(entry);
+        releaser.accept(entry.tile);
+    }
+
+    /**
+     * Removes all tiles from this cache and releases them. Must not be called while other threads read from it.
+     */
+    public synchronized void clear() {
+        for (Entry<T> entry : entries.values())
+            releaser.accept(entry.tile);
+        for (Entry<T> entry : evicted.values())
+            releaser.accept(entry.tile);
+        entries.clear();
+        evicted.clear();
+        bytes = 0;
+    }
+}
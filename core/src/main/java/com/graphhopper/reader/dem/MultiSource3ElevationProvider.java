@@ -119,6 +119,17 @@ public class MultiSource3ElevationProvider extends TileBasedElevationProvider {
         sonnyProvider.release();
     }
 
+    /**
+     * The limit applies to each of the sources separately.
+     */
+    @Override
+    public MultiSource3ElevationProvider setMaxCacheBytes(long maxCacheBytes) {
+        srtmProvider.setMaxCacheBytes(maxCacheBytes);
+        globalProvider.setMaxCacheBytes(maxCacheBytes);
+        sonnyProvider.setMaxCacheBytes(maxCacheBytes);
+        return this;
+    }
+
     @Override
     public MultiSource3ElevationProvider setAutoRemoveTemporaryFiles(boolean autoRemoveTemporary) {
         srtmProvider.setAutoRemoveTemporaryFiles(autoRemoveTemporary);
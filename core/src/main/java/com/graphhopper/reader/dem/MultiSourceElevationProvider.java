@@ -107,6 +107,16 @@ public class MultiSourceElevationProvider extends TileBasedElevationProvider {
         globalProvider.release();
     }
 
+    /**
+     * The limit applies to each of the sources separately.
+     */
+    @Override
+    public MultiSourceElevationProvider setMaxCacheBytes(long maxCacheBytes) {
+        srtmProvider.setMaxCacheBytes(maxCacheBytes);
+        globalProvider.setMaxCacheBytes(maxCacheBytes);
+        return this;
+    }
+
     @Override
     public MultiSourceElevationProvider setAutoRemoveTemporaryFiles(boolean autoRemoveTemporary) {
         srtmProvider.setAutoRemoveTemporaryFiles(autoRemoveTemporary);
@@ -25,6 +25,7 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.ShortBuffer;
@@ -32,8 +33,6 @@ import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayDeque;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * GraphHopper ElevationProvider that reads elevation data directly from a
@@ -44,7 +43,7 @@ import java.util.Map;
  * Otherwise tiles are decoded from PMTiles on first access and written as .tile
  * files so subsequent runs skip decoding.
  * <p>
- * Not thread-safe.
+ * The tiles are kept in an {@link ElevationTileCache}, so getEle can be called from several threads.
  */
 public class PMTilesElevationProvider implements ElevationProvider {
 
@@ -91,6 +90,10 @@ public class PMTilesElevationProvider implements ElevationProvider {
             throw new IllegalStateException("Unknown packed block type: " + type);
         }
 
+        long getBytes() {
+            return data == null ? 0 : data.capacity() + 4L * blockOffsets.length;
+        }
+
         void release() {
             if (data != null && data.isDirect()) // ensure it is not MISSING or SEA or heap allocated
                 MMapDataAccess.cleanMappedByteBuffer(data);
@@ -119,17 +122,16 @@ public class PMTilesElevationProvider implements ElevationProvider {
     private long hilbertBase;
     private int n; // 1 << zoom
 
+    // not thread-safe, so all reads are synchronized on it
     private final PMTilesReader reader = new PMTilesReader();
 
     // Cache of packed tiles, keyed by Hilbert tile ID. Missing (or all-sea) tiles use marker objects.
     // On-disk .tile files use the packed block format defined in PackedTileCodex.
-    private final Map<Long, PackedTileData> tileBuffers = new HashMap<>();
+    private final ElevationTileCache<Long, PackedTileData> tileCache = new ElevationTileCache<>(
+            PackedTileData::getBytes, PackedTileData::release);
 
-    // Last-tile cache: consecutive getEle() calls typically hit the same tile.
-    private long lastTileId = -1;
-    private PackedTileData lastTileBuf;
-
-    private int tileSize;
+    // set by the first tile, all further tiles must have the same size
+    private volatile int tileSize;
 
     // Directory for .tile files. If non-null and writable, decoded tiles are persisted
     // there so subsequent runs can mmap them without re-decoding.
@@ -183,6 +185,15 @@ public class PMTilesElevationProvider implements ElevationProvider {
         return this;
     }
 
+    /**
+     * Limits the size of the decoded tiles that are kept in memory or mapped. Least recently used tiles are
+     * released (but their .tile files are kept) if the limit is exceeded. Default is no limit.
+     */
+    public PMTilesElevationProvider setMaxCacheBytes(long maxCacheBytes) {
+        tileCache.setMaxBytes(maxCacheBytes);
+        return this;
+    }
+
     @Override
     public double getEle(double lat, double lon) {
         try {
@@ -200,12 +211,7 @@ public class PMTilesElevationProvider implements ElevationProvider {
 
     @Override
     public void release() {
-        for (PackedTileData p : tileBuffers.values()) {
-            p.release();
-        }
-        tileBuffers.clear();
-        lastTileId = -1;
-        lastTileBuf = null;
+        tileCache.clear();
         reader.close();
         if (clearTileFiles && tileDir != null) {
             File[] files = tileDir.listFiles((dir, name) -> name.endsWith(".tile"));
@@ -218,7 +224,7 @@ public class PMTilesElevationProvider implements ElevationProvider {
         return hilbertBase + PMTilesReader.xyToHilbertD(zoom, x, y);
     }
 
-    private double sampleElevation(double lat, double lon) throws IOException {
+    private double sampleElevation(double lat, double lon) {
         double xTileD = (lon + 180.0) / 360.0 * n;
         double latRad = Math.toRadians(lat);
         double yTileD = (1.0 - Math.log(Math.tan(latRad) + 1.0 / Math.cos(latRad)) / Math.PI) / 2.0 * n;
@@ -226,13 +232,17 @@ public class PMTilesElevationProvider implements ElevationProvider {
         int tileX = Math.max(0, Math.min(n - 1, (int) Math.floor(xTileD)));
         int tileY = Math.max(0, Math.min(n - 1, (int) Math.floor(yTileD)));
 
-        PackedTileData tile = getTileBuffer(zxyToTileId(tileX, tileY), tileX, tileY);
+        return tileCache.read(zxyToTileId(tileX, tileY), tileId -> loadTile(tileId, tileX, tileY),
+                tile -> sampleTile(tile, xTileD - tileX, yTileD - tileY));
+    }
+
+    private double sampleTile(PackedTileData tile, double xInTile, double yInTile) {
         if (tile == MISSING_TILE) return Double.NaN;
         if (tile == SEA_LEVEL_TILE) return 0;
 
         int w = tileSize, h = tileSize;
-        double px = (xTileD - tileX) * (w - 1);
-        double py = (yTileD - tileY) * (h - 1);
+        double px = xInTile * (w - 1);
+        double py = yInTile * (h - 1);
 
         if (interpolate) {
             int x0 = Math.max(0, Math.min(w - 2, (int) Math.floor(px)));
@@ -255,21 +265,23 @@ public class PMTilesElevationProvider implements ElevationProvider {
         }
     }
 
-    private PackedTileData getTileBuffer(long tileId, int tileX, int tileY) throws IOException {
-        if (tileId == lastTileId) return lastTileBuf;
-
-        PackedTileData existing = tileBuffers.get(tileId);
-        if (existing != null) {
-            lastTileId = tileId;
-            lastTileBuf = existing;
-            return existing;
+    private PackedTileData loadTile(long tileId, int tileX, int tileY) {
+        try {
+            return loadTileBuffer(tileId, tileX, tileY);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
         }
+    }
 
+    private PackedTileData loadTileBuffer(long tileId, int tileX, int tileY) throws IOException {
         // Try pre-decoded .tile file first
         PackedTileData buf = tryMmapTileFile(tileId);
         if (buf == null) {
             // Decode from PMTiles
-            byte[] raw = reader.getTileBytes(tileId);
+            byte[] raw;
+            synchronized (reader) {
+                raw = reader.getTileBytes(tileId);
+            }
             if (raw == null) {
                 buf = MISSING_TILE;
             } else {
@@ -284,10 +296,6 @@ public class PMTilesElevationProvider implements ElevationProvider {
                 }
             }
         }
-
-        tileBuffers.put(tileId, buf);
-        lastTileId = tileId;
-        lastTileBuf = buf;
         return buf;
     }
 
@@ -18,17 +18,22 @@
 package com.graphhopper.reader.dem;
 
 import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.util.Downloader;
+import com.graphhopper.util.Helper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Provides basic methods that are usually used in an ElevationProvider using tiles from files.
+ * Provides basic methods that are usually used in an ElevationProvider using tiles from files. The tiles are kept in
+ * an {@link ElevationTileCache}, so getEle can be called from several threads.
  *
  * @author Robin Boldt
  */
@@ -43,6 +48,11 @@ public abstract class TileBasedElevationProvider implements ElevationProvider {
     boolean interpolate = false;
     boolean autoRemoveTemporary = true;
     long sleep = 2000;
+    // the keys are provider specific
+    final ElevationTileCache<Object, HeightTile> tileCache = new ElevationTileCache<>(
+            tile -> tile.getHeights() == null ? 0 : tile.getHeights().getCapacity(), this::releaseTile);
+    // the names of the tiles that were evicted from the cache, their files are not known to the directory anymore
+    private final Set<String> releasedTiles = ConcurrentHashMap.newKeySet();
 
     protected TileBasedElevationProvider(String cacheDirString) {
         this.cacheDirString = cacheDirString;
@@ -110,6 +120,15 @@ public abstract class TileBasedElevationProvider implements ElevationProvider {
         return this;
     }
 
+    /**
+     * Limits the size of the elevation tiles that are kept open. Least recently used tiles are closed (but not
+     * removed from the cache directory) if the limit is exceeded. Default is no limit.
+     */
+    public TileBasedElevationProvider setMaxCacheBytes(long maxCacheBytes) {
+        tileCache.setMaxBytes(maxCacheBytes);
+        return this;
+    }
+
     public TileBasedElevationProvider setDownloader(Downloader downloader) {
         this.downloader = downloader;
         return this;
@@ -119,7 +138,7 @@ public abstract class TileBasedElevationProvider implements ElevationProvider {
         return cacheDir;
     }
 
-    protected Directory getDirectory() {
+    protected synchronized Directory getDirectory() {
         if (dir != null)
             return dir;
 
@@ -128,4 +147,29 @@ public abstract class TileBasedElevationProvider implements ElevationProvider {
         return dir = new GHDirectory(cacheDir.getAbsolutePath(), daType);
     }
 
+    private void releaseTile(HeightTile tile) {
+        DataAccess heights = tile.getHeights();
+        if (heights == null)
+            return;
+        // we keep the file so that the tile can be loaded again without downloading and converting it
+        dir.getDAs().remove(heights.getName());
+        heights.close();
+        releasedTiles.add(heights.getName());
+    }
+
+    @Override
+    public void release() {
+        tileCache.clear();
+        if (dir != null) {
+            // for memory mapped type we remove temporary files
+            if (autoRemoveTemporary) {
+                dir.clear();
+                for (String name : releasedTiles)
+                    Helper.removeDir(new File(dir.getLocation() + name));
+            } else
+                dir.close();
+        }
+        releasedTiles.clear();
+    }
+
 }
@@ -0,0 +1,116 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm;
+
+import com.graphhopper.reader.ReaderNode;
+import com.graphhopper.reader.ReaderWay;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads an OSM change file (.osc or .osc.gz), see https://wiki.openstreetmap.org/wiki/OsmChange. The ways are passed on
+ * together with the action of the section they appear in and the created or modified nodes are passed on with their
+ * new coordinates. Deleted nodes and all relations are only counted.
+ */
+class OSMChangeInput {
+    enum Action {CREATE, MODIFY, DELETE}
+
+    private long nodes;
+    private long relations;
+
+    void read(File file, Consumer<ReaderNode> nodeHandler, BiConsumer<Action, ReaderWay> wayHandler) throws IOException, XMLStreamException {
+        try (InputStream inputStream = open(file)) {
+            XMLStreamReader parser = XMLInputFactory.newInstance().createXMLStreamReader(inputStream, "UTF-8");
+            try {
+                if (parser.nextTag() != XMLStreamConstants.START_ELEMENT || !parser.getLocalName().equals("osmChange"))
+                    throw new IllegalArgumentException("File is not a valid OSM change file: " + file);
+                Action action = null;
+                for (int event = parser.next(); event != XMLStreamConstants.END_DOCUMENT; event = parser.next()) {
+                    if (event == XMLStreamConstants.END_ELEMENT && toAction(parser.getLocalName()) != null) {
+                        action = null;
+                    } else if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = parser.getLocalName();
+                        if (toAction(name) != null) {
+                            action = toAction(name);
+                        } else if (name.equals("node")) {
+                            nodes++;
+                            // deleted nodes do not necessarily have coordinates
+                            if (action == Action.CREATE || action == Action.MODIFY)
+                                nodeHandler.accept(OSMXMLHelper.createNode(Long.parseLong(parser.getAttributeValue(null, "id")), parser));
+                        } else if (name.equals("relation")) {
+                            relations++;
+                        } else if (name.equals("way")) {
+                            if (action == null)
+                                throw new IllegalArgumentException("Way " + parser.getAttributeValue(null, "id")
+                                        + " is not inside of a create, modify or delete element in " + file);
+                            wayHandler.accept(action, OSMXMLHelper.createWay(Long.parseLong(parser.getAttributeValue(null, "id")), parser));
+                        }
+                    }
+                }
+            } finally {
+                parser.close();
+            }
+        }
+    }
+
+    private static Action toAction(String name) {
+        switch (name) {
+            case "create":
+                return Action.CREATE;
+            case "modify":
+                return Action.MODIFY;
+            case "delete":
+                return Action.DELETE;
+            default:
+                return null;
+        }
+    }
+
+    private static InputStream open(File file) throws IOException {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(file), 50000);
+        inputStream.mark(2);
+        int first = inputStream.read();
+        int second = inputStream.read();
+        inputStream.reset();
+        // the minutely and hourly diffs are usually gzipped
+        if (first == 0x1f && second == 0x8b)
+            return new GZIPInputStream(inputStream, 50000);
+        return inputStream;
+    }
+
+    /**
+     * @return the number of created, modified or deleted nodes
+     */
+    long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the number of created, modified or deleted relations
+     */
+    long getRelations() {
+        return relations;
+    }
+}
@@ -66,6 +66,10 @@ class OSMNodeData {
 
     private final PointAccess towerNodes;
 
+    // the elevation of pillar nodes (as float bits) by their packed coordinates, only used if the elevation is looked
+    // up while reading the nodes, see SortedElevationLookup
+    private LongLongMap pillarElevations;
+
     // this map stores an index for each OSM node we keep the node tags of. a value of -1 means there is no entry yet.
     private final LongLongMap nodeTagIndicesByOsmNodeIds;
 
@@ -141,7 +145,8 @@ class OSMNodeData {
 
     /**
      * Stores the given coordinates for the given OSM node ID, but only if a non-empty node type was set for this
-     * OSM node ID previously. Elevation is not stored here — it is looked up later during edge creation.
+     * OSM node ID previously. Elevation is not stored here — it is looked up later during edge creation or set via
+     * {@link #setElevation}.
      *
      * @return the node type this OSM node was associated with before this method was called
      */
@@ -225,7 +230,33 @@ class OSMNodeData {
             throw new IllegalStateException("Pillar node was already converted to tower node: " + id);
         double lat = unpackLat(id);
         double lon = unpackLon(id);
-        return addTowerNode(osmNodeId, lat, lon);
+        long towerId = addTowerNode(osmNodeId, lat, lon);
+        double ele = getPillarElevation(id);
+        if (!Double.isNaN(ele))
+            towerNodes.setNode(idToTowerNode(towerId), lat, lon, ele);
+        return towerId;
+    }
+
+    /**
+     * Stores the elevation of the given tower or pillar node
+     */
+    void setElevation(long id, double ele) {
+        if (isTowerNode(id)) {
+            int tower = idToTowerNode(id);
+            towerNodes.setNode(tower, towerNodes.getLat(tower), towerNodes.getLon(tower), ele);
+        } else if (isPillarNode(id)) {
+            if (pillarElevations == null)
+                pillarElevations = new GHLongLongBTree(200, 4, Long.MIN_VALUE);
+            pillarElevations.put(id, Float.floatToRawIntBits((float) ele));
+        } else
+            throw new IllegalArgumentException("Not a node id: " + id);
+    }
+
+    private double getPillarElevation(long id) {
+        if (pillarElevations == null)
+            return Double.NaN;
+        long bits = pillarElevations.get(id);
+        return bits == Long.MIN_VALUE ? Double.NaN : Float.intBitsToFloat((int) bits);
     }
 
     public GHPoint3D getCoordinates(long id) {
@@ -239,7 +270,7 @@ class OSMNodeData {
     }
 
     public void addCoordinatesToPointList(long id, PointList pointList) {
-        double lat, lon;
+        double lat, lon, ele = Double.NaN;
         if (isTowerNode(id)) {
             int tower = idToTowerNode(id);
             lat = towerNodes.getLat(tower);
@@ -247,10 +278,11 @@ class OSMNodeData {
         } else if (isPillarNode(id)) {
             lat = unpackLat(id);
             lon = unpackLon(id);
+            ele = getPillarElevation(id);
         } else
             throw new IllegalArgumentException();
-        // elevation is NaN — filled in later during edge creation
-        pointList.add(lat, lon, Double.NaN);
+        // elevation is NaN unless it was set already — filled in later during edge creation
+        pointList.add(lat, lon, ele);
     }
 
     public void setTags(ReaderNode node) {
@@ -283,6 +315,8 @@ class OSMNodeData {
         nodeTagIndicesByOsmNodeIds.clear();
         nodeKVStorage.clear();
         nodesToBeSplit.clear();
+        if (pillarElevations != null)
+            pillarElevations.clear();
     }
 
     public long towerNodeToId(long towerId) {
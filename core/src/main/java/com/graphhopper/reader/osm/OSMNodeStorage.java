@@ -0,0 +1,112 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm;
+
+import com.carrotsearch.hppc.LongSet;
+import com.graphhopper.coll.GHLongObjectHashMap;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Constants;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+
+/**
+ * Stores the OSM node ID and the coordinates of the nodes of the edges that were created from OSM ways, so the OSM
+ * changes that are applied to the graph later can refer to these nodes, see {@link OSMReader#applyChanges}. The node
+ * IDs of the graph are not stored, because the nodes and edges are sorted after the import: the tower nodes are found
+ * via their coordinates instead, and for the pillar nodes the OSM way ID is stored (a pillar node belongs to a single
+ * way), so their edge can be found via the OSM way ID of the edges. Entries are only appended, and the last entry of an
+ * OSM node replaces the earlier ones, e.g. if a pillar node became a tower node when a created way was connected to it.
+ */
+class OSMNodeStorage {
+    static final long TOWER_NODE = -1;
+    // OSM node ID, OSM way ID of a pillar node or TOWER_NODE, latitude and longitude
+    private static final int BYTES_PER_ENTRY = 24;
+    private final DataAccess da;
+    private long entries;
+
+    OSMNodeStorage(Directory dir) {
+        da = dir.create("osm_nodes", dir.getDefaultType("osm_nodes", true));
+    }
+
+    OSMNodeStorage create() {
+        da.create(1000L * BYTES_PER_ENTRY);
+        entries = 0;
+        return this;
+    }
+
+    boolean loadExisting() {
+        if (!da.loadExisting())
+            return false;
+        GHUtility.checkDAVersion(da.getName(), Constants.VERSION_OSM_NODES, da.getHeader(0));
+        entries = ((long) da.getHeader(8) << 32) | (da.getHeader(4) & 0xFFFF_FFFFL);
+        return true;
+    }
+
+    /**
+     * @param osmWayId the OSM way of a pillar node or {@link #TOWER_NODE}
+     */
+    void add(long osmNodeId, long osmWayId, double lat, double lon) {
+        long pointer = entries * BYTES_PER_ENTRY;
+        da.ensureCapacity(pointer + BYTES_PER_ENTRY);
+        da.setInt(pointer, (int) osmNodeId);
+        da.setInt(pointer + 4, (int) (osmNodeId >> 32));
+        da.setInt(pointer + 8, (int) osmWayId);
+        da.setInt(pointer + 12, (int) (osmWayId >> 32));
+        da.setInt(pointer + 16, Helper.degreeToInt(lat));
+        da.setInt(pointer + 20, Helper.degreeToInt(lon));
+        entries++;
+    }
+
+    /**
+     * Finds the last entries of the given OSM nodes. This scans all entries, so all nodes that are needed for a
+     * change should be looked up at once.
+     */
+    GHLongObjectHashMap<Entry> find(LongSet osmNodeIds) {
+        GHLongObjectHashMap<Entry> result = new GHLongObjectHashMap<>(osmNodeIds.size());
+        for (long pointer = 0; pointer < entries * BYTES_PER_ENTRY; pointer += BYTES_PER_ENTRY) {
+            long osmNodeId = ((long) da.getInt(pointer + 4) << 32) | (da.getInt(pointer) & 0xFFFF_FFFFL);
+            if (!osmNodeIds.contains(osmNodeId))
+                continue;
+            long osmWayId = ((long) da.getInt(pointer + 12) << 32) | (da.getInt(pointer + 8) & 0xFFFF_FFFFL);
+            result.put(osmNodeId, new Entry(osmWayId, Helper.intToDegree(da.getInt(pointer + 16)), Helper.intToDegree(da.getInt(pointer + 20))));
+        }
+        return result;
+    }
+
+    long getEntries() {
+        return entries;
+    }
+
+    void flush() {
+        da.setHeader(0, Constants.VERSION_OSM_NODES);
+        da.setHeader(4, (int) entries);
+        da.setHeader(8, (int) (entries >> 32));
+        da.flush();
+    }
+
+    void close() {
+        da.close();
+    }
+
+    record Entry(long osmWayId, double lat, double lon) {
+        boolean isTowerNode() {
+            return osmWayId == TOWER_NODE;
+        }
+    }
+}
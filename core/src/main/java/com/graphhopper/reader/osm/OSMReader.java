@@ -18,8 +18,16 @@
 package com.graphhopper.reader.osm;
 
 import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.cursors.LongCursor;
+import com.carrotsearch.hppc.cursors.LongObjectCursor;
+import com.carrotsearch.hppc.cursors.ObjectCursor;
+import com.graphhopper.coll.GHLongHashSet;
 import com.graphhopper.coll.GHLongLongHashMap;
+import com.graphhopper.coll.GHLongObjectHashMap;
 import com.graphhopper.reader.ReaderElement;
 import com.graphhopper.reader.ReaderNode;
 import com.graphhopper.reader.ReaderRelation;
@@ -31,12 +39,16 @@ import com.graphhopper.reader.dem.ElevationProvider;
 import com.graphhopper.routing.OSMReaderConfig;
 import com.graphhopper.routing.ev.Country;
 import com.graphhopper.routing.ev.EdgeIntAccess;
+import com.graphhopper.routing.ev.IntEncodedValue;
 import com.graphhopper.routing.ev.State;
+import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.AreaIndex;
 import com.graphhopper.routing.util.CustomArea;
 import com.graphhopper.routing.util.FerrySpeedCalculator;
 import com.graphhopper.routing.util.OSMParsers;
 import com.graphhopper.routing.util.parsers.RestrictionSetter;
+import com.graphhopper.routing.util.parsers.TagParser;
+import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.search.KVStorage;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.IntsRef;
@@ -48,9 +60,11 @@ import com.graphhopper.util.shapes.GHPoint3D;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.function.DoubleSupplier;
 import java.util.function.LongToIntFunction;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -154,17 +168,31 @@ public class OSMReader {
         if (!baseGraph.isInitialized())
             throw new IllegalStateException("BaseGraph must be initialize before we can read OSM");
 
-        WaySegmentParser waySegmentParser = new WaySegmentParser.Builder(baseGraph.getNodeAccess(), baseGraph.getDirectory())
+        WaySegmentParser.Builder builder = new WaySegmentParser.Builder(baseGraph.getNodeAccess(), baseGraph.getDirectory())
                 .setWayFilter(this::acceptWay)
                 .setSplitNodeFilter(this::isBarrierNode)
                 .setWayPreprocessor(this::preprocessWay)
                 .setRelationPreprocessor(this::preprocessRelations)
                 .setRelationProcessor(this::processRelation)
                 .setEdgeHandler(this::addEdge)
-                .setWorkerThreads(config.getWorkerThreads())
-                .build();
+                .setWorkerThreads(config.getWorkerThreads());
+        if (nodeAccess.is3D() && eleProvider != ElevationProvider.NOOP && config.getElevationLookupBatchSize() > 0)
+            builder.setElevationLookup(this::lookupElevation, config.getElevationLookupBatchSize(), config.getElevationLookupThreads());
+        OSMNodeStorage osmNodeStorage = config.isStoreOSMNodes() ? new OSMNodeStorage(baseGraph.getDirectory()).create() : null;
+        if (osmNodeStorage != null)
+            builder.setSegmentNodesHandler((osmNodeIds, pointList, way) -> {
+                for (int i = 0; i < osmNodeIds.length; i++)
+                    osmNodeStorage.add(osmNodeIds[i], i == 0 || i == osmNodeIds.length - 1 ? OSMNodeStorage.TOWER_NODE : way.getId(),
+                            pointList.getLat(i), pointList.getLon(i));
+            });
+        WaySegmentParser waySegmentParser = builder.build();
         waySegmentParser.readOSM(osmFile);
         osmDataDate = waySegmentParser.getTimestamp();
+        if (osmNodeStorage != null) {
+            osmNodeStorage.flush();
+            osmNodeStorage.close();
+            LOGGER.info("Stored {} OSM nodes of the graph", nf(osmNodeStorage.getEntries()));
+        }
         if (baseGraph.getNodes() == 0)
             throw new RuntimeException("Graph after reading OSM must not be empty");
         releaseEverythingExceptRestrictionData();
@@ -181,6 +209,519 @@ public class OSMReader {
         return osmDataDate;
     }
 
+    /**
+     * Applies the changes of the given OSM change file (.osc or .osc.gz) to the graph: the edges of modified ways are
+     * encoded again from the new tags and the edges of deleted ways (or of ways that are no longer accepted) are
+     * blocked by encoding them without any tags. The edges of a way are found via the OSM way ID that is stored for
+     * every edge. A modified way is checked against the stored geometry of its edges: its geometry changed if it has
+     * fewer nodes than its edges have points, or if one of its nodes was created or moved away from the stored
+     * geometry.
+     * <p>
+     * Created ways and changed geometries can only be applied if the OSM nodes were stored during the import, see
+     * {@link OSMReaderConfig#setStoreOSMNodes}. Then the created ways (and modified ways that were not accepted before)
+     * are added to the graph: their nodes connect to the existing tower nodes, an edge is split at a pillar node that
+     * becomes a junction and the other nodes are added as new nodes. The edges of a modified way whose geometry changed
+     * are blocked and the way is added again, and moved nodes of ways that are not in the change file are moved in the
+     * graph as well, unless the node was removed by the simplification of the way geometry. Added edges do not get
+     * turn restrictions or barrier edges, the turn restrictions of a split edge are lost and the encoded values that
+     * are calculated after the import, like the urban density, keep their default values for the added edges.
+     * Without the stored OSM nodes a warning is logged for each created way and for each modified way whose geometry
+     * changed, and only the tags of the latter are applied. Changed relations and node tags are never taken into
+     * account, which is why the edges at barriers keep their encoding unless their way was removed.
+     * <p>
+     * The way distance that is needed for the speed of ferries with a duration tag is calculated from the stored
+     * geometry of the edges of a modified way.
+     *
+     * @param osmWayIdEnc            the encoded value that stores the OSM way ID of every edge
+     * @param preservedEncodedValues encoded values that are not set by the way tag parsers, e.g. because they were
+     *                               calculated after the import. Their values are kept for the changed edges.
+     * @param weightings             the weightings whose edge weights should be compared before and after the change
+     * @param changedWeightings      the indices of the weightings for which the weight of at least one changed edge
+     *                               is different afterwards, or for which an added edge is accessible, are set in this
+     *                               bit set
+     * @return the number of changed and added edges
+     */
+    public int applyChanges(File changeFile, IntEncodedValue osmWayIdEnc, List<IntEncodedValue> preservedEncodedValues,
+                            List<Weighting> weightings, BitSet changedWeightings) throws IOException {
+        if (!baseGraph.isInitialized())
+            throw new IllegalStateException("BaseGraph must be initialized before we can apply OSM changes");
+        StopWatch sw = StopWatch.started();
+        GHLongObjectHashMap<ReaderWay> changedWays = new GHLongObjectHashMap<>();
+        GHLongObjectHashMap<GHPoint> changedNodes = new GHLongObjectHashMap<>();
+        List<ReaderWay> createdWays = new ArrayList<>();
+        OSMChangeInput input = new OSMChangeInput();
+        try {
+            input.read(changeFile, node -> changedNodes.put(node.getId(), new GHPoint(node.getLat(), node.getLon())), (action, way) -> {
+                if (action == OSMChangeInput.Action.CREATE) {
+                    createdWays.add(way);
+                } else if (action == OSMChangeInput.Action.MODIFY && acceptWay(way)) {
+                    changedWays.put(way.getId(), way);
+                } else {
+                    changedWays.put(way.getId(), new ReaderWay(way.getId()));
+                }
+            });
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not read OSM change file " + changeFile, e);
+        }
+
+        OSMNodeStorage osmNodeStorage = new OSMNodeStorage(baseGraph.getDirectory());
+        if (!osmNodeStorage.loadExisting()) {
+            baseGraph.getDirectory().remove("osm_nodes");
+            osmNodeStorage = null;
+        }
+        // the stored OSM nodes of the created and modified ways and of the changed nodes
+        GHLongObjectHashMap<OSMNodeStorage.Entry> osmNodes = new GHLongObjectHashMap<>();
+        if (osmNodeStorage != null) {
+            GHLongHashSet osmNodeIds = new GHLongHashSet();
+            createdWays.forEach(way -> osmNodeIds.addAll(way.getNodes()));
+            for (ObjectCursor<ReaderWay> way : changedWays.values())
+                osmNodeIds.addAll(way.value.getNodes());
+            osmNodeIds.addAll(changedNodes.keys());
+            osmNodes = osmNodeStorage.find(osmNodeIds);
+        }
+
+        // we need the edges of the changed ways and of the ways that contain one of these nodes as pillar node
+        GHLongHashSet ways = new GHLongHashSet();
+        ways.addAll(changedWays.keys());
+        for (ObjectCursor<OSMNodeStorage.Entry> entry : osmNodes.values())
+            if (!entry.value.isTowerNode())
+                ways.add(entry.value.osmWayId());
+        GHLongObjectHashMap<IntArrayList> edgesByWay = new GHLongObjectHashMap<>();
+        AllEdgesIterator iter = baseGraph.getAllEdges();
+        while (iter.next()) {
+            int wayId = osmWayIdEnc.getInt(false, iter.getEdge(), edgeIntAccess);
+            if (!ways.contains(wayId))
+                continue;
+            IntArrayList edges = edgesByWay.get(wayId);
+            if (edges == null) {
+                edges = new IntArrayList();
+                edgesByWay.put(wayId, edges);
+            }
+            edges.add(iter.getEdge());
+        }
+
+        IntsRef emptyRelationFlags = osmParsers.createRelationFlags();
+        int[] preservedValues = new int[2 * preservedEncodedValues.size()];
+        int changedEdges = 0, missingWays = 0, changedGeometries = 0;
+        // the ways whose edges are blocked and the ways that are added to the graph
+        GHLongHashSet removedWays = new GHLongHashSet();
+        List<ReaderWay> waysToAdd = new ArrayList<>();
+        for (LongObjectCursor<ReaderWay> wayCursor : changedWays) {
+            ReaderWay way = wayCursor.value;
+            IntArrayList edges = edgesByWay.get(wayCursor.key);
+            if (edges == null) {
+                if (way.hasTags()) {
+                    // e.g. a way that was not accepted before, because its tags changed
+                    if (osmNodeStorage != null) {
+                        waysToAdd.add(way);
+                    } else {
+                        OSM_WARNING_LOGGER.warn("OSM way " + way.getId() + " is not part of the graph, a new import is required to add it");
+                        missingWays++;
+                    }
+                }
+                continue;
+            }
+            List<EdgeIteratorState> edgeStates = new ArrayList<>(edges.size());
+            List<PointList> pointLists = new ArrayList<>(edges.size());
+            List<PointList> wayGeometry = new ArrayList<>(edges.size());
+            for (IntCursor edge : edges) {
+                EdgeIteratorState edgeState = baseGraph.getEdgeIteratorState(edge.value, Integer.MIN_VALUE);
+                PointList pointList = edgeState.fetchWayGeometry(FetchMode.ALL);
+                edgeStates.add(edgeState);
+                pointLists.add(pointList);
+                if (!isBarrierEdge(pointList))
+                    wayGeometry.add(pointList);
+            }
+            // the edges of a modified way whose geometry changed are blocked and the way is added again
+            ReaderWay encodedWay = way;
+            if (way.hasTags()) {
+                if (isGeometryChanged(way, wayGeometry, changedNodes)) {
+                    if (osmNodeStorage != null) {
+                        waysToAdd.add(way);
+                        encodedWay = new ReaderWay(way.getId());
+                    } else {
+                        OSM_WARNING_LOGGER.warn("The nodes of OSM way " + way.getId() + " changed, only its tags are applied and a new import is required to change its geometry");
+                    }
+                    changedGeometries++;
+                }
+                if (encodedWay.hasTags())
+                    preprocessWay(way, osmNodeId -> Collections.emptyMap(), () -> calc2DDistance(wayGeometry));
+            }
+            if (!encodedWay.hasTags())
+                removedWays.add(way.getId());
+
+            for (int e = 0; e < edgeStates.size(); e++) {
+                EdgeIteratorState edge = edgeStates.get(e);
+                PointList pointList = pointLists.get(e);
+                if (encodedWay.hasTags() && isBarrierEdge(pointList))
+                    // the artificial edge of a barrier node is encoded from the node tags, which we do not know
+                    continue;
+                double[] weights = calcWeights(edge, weightings);
+                for (int i = 0; i < preservedEncodedValues.size(); i++) {
+                    preservedValues[2 * i] = preservedEncodedValues.get(i).getInt(false, edge.getEdge(), edgeIntAccess);
+                    preservedValues[2 * i + 1] = preservedEncodedValues.get(i).getInt(true, edge.getEdge(), edgeIntAccess);
+                }
+                edge.setFlags(new IntsRef(edge.getFlags().length));
+                for (int i = 0; i < preservedEncodedValues.size(); i++) {
+                    IntEncodedValue encodedValue = preservedEncodedValues.get(i);
+                    encodedValue.setInt(false, edge.getEdge(), edgeIntAccess, preservedValues[2 * i]);
+                    if (encodedValue.isStoreTwoDirections())
+                        encodedValue.setInt(true, edge.getEdge(), edgeIntAccess, preservedValues[2 * i + 1]);
+                }
+                setArtificialWayTags(pointList, encodedWay, edge.getDistance(), Collections.nCopies(pointList.size(), Collections.<String, Object>emptyMap()));
+                for (TagParser parser : osmParsers.getWayTagParsers())
+                    parser.handleWayTags(edge.getEdge(), edgeIntAccess, encodedWay, emptyRelationFlags);
+                Map<String, KValue> keyValues = encodedWay.getTag("key_values", Collections.emptyMap());
+                edge.setKeyValues(keyValues);
+                if (encodedWay != way)
+                    // the blocked edges no longer belong to the way, which is added again
+                    osmWayIdEnc.setInt(false, edge.getEdge(), edgeIntAccess, 0);
+                markChangedWeightings(edge, weights, weightings, changedWeightings);
+                changedEdges++;
+            }
+        }
+
+        int movedNodes = 0, addedEdges = 0, ignoredWays = 0;
+        if (osmNodeStorage != null) {
+            // the tower nodes of the graph are found via their coordinates
+            LongIntHashMap towerNodesByCoordinates = new LongIntHashMap();
+            for (ObjectCursor<OSMNodeStorage.Entry> entry : osmNodes.values())
+                if (entry.value.isTowerNode())
+                    towerNodesByCoordinates.put(toCoordinateKey(entry.value.lat(), entry.value.lon()), -1);
+            for (int node = 0; node < baseGraph.getNodes(); node++) {
+                int index = towerNodesByCoordinates.indexOf(toCoordinateKey(nodeAccess.getLat(node), nodeAccess.getLon(node)));
+                if (index >= 0 && towerNodesByCoordinates.indexGet(index) < 0)
+                    towerNodesByCoordinates.indexReplace(index, node);
+            }
+
+            if (baseGraph.isFrozen() && (!createdWays.isEmpty() || !waysToAdd.isEmpty()))
+                baseGraph.unfreeze();
+            for (LongObjectCursor<GHPoint> node : changedNodes) {
+                OSMNodeStorage.Entry entry = osmNodes.get(node.key);
+                if (entry == null || toCoordinateKey(entry.lat(), entry.lon()) == toCoordinateKey(node.value.lat, node.value.lon))
+                    continue;
+                if (entry.isTowerNode()) {
+                    int towerNode = towerNodesByCoordinates.getOrDefault(toCoordinateKey(entry.lat(), entry.lon()), -1);
+                    if (towerNode >= 0)
+                        changedEdges += moveTowerNode(towerNode, node.value, weightings, changedWeightings);
+                } else if (!removedWays.contains(entry.osmWayId()) && edgesByWay.containsKey(entry.osmWayId())) {
+                    changedEdges += movePillarNode(edgesByWay.get(entry.osmWayId()), entry, node.value, weightings, changedWeightings);
+                }
+                osmNodeStorage.add(node.key, entry.osmWayId(), node.value.lat, node.value.lon);
+                movedNodes++;
+            }
+
+            for (ReaderWay way : createdWays) {
+                if (acceptWay(way))
+                    waysToAdd.add(way);
+                else
+                    ignoredWays++;
+            }
+            // the split edges count as added edges as well
+            int edgesBefore = baseGraph.getEdges();
+            if (!waysToAdd.isEmpty())
+                addWays(waysToAdd, changedNodes, osmNodes, towerNodesByCoordinates, edgesByWay, removedWays,
+                        osmNodeStorage, weightings, changedWeightings);
+            addedEdges = baseGraph.getEdges() - edgesBefore;
+            osmNodeStorage.flush();
+            osmNodeStorage.close();
+        } else {
+            for (ReaderWay way : createdWays)
+                OSM_WARNING_LOGGER.warn("OSM way " + way.getId() + " was created, a new import is required to add it");
+        }
+        LOGGER.info("Applied OSM changes from {}: {} modified or deleted ways, {} changed edges, {} added ways, {} added edges, {} moved nodes, took: {}",
+                changeFile.getAbsolutePath(), nf(changedWays.size()), nf(changedEdges), nf(waysToAdd.size()), nf(addedEdges),
+                nf(movedNodes), sw.stop().getTimeString());
+        if (osmNodeStorage == null) {
+            if (changedGeometries > 0)
+                LOGGER.warn("The nodes of {} modified ways changed, only their tags were applied and a new import is required to change their geometry",
+                        nf(changedGeometries));
+            if (!createdWays.isEmpty() || missingWays > 0 || input.getNodes() > 0)
+                LOGGER.warn("Ignored {} created ways, {} modified ways that are not part of the graph and {} changed nodes (only the "
+                                + "nodes of modified ways are checked), a new import with datareader.store_osm_nodes is required to apply them",
+                        nf(createdWays.size()), nf(missingWays), nf(input.getNodes()));
+        } else if (ignoredWays > 0) {
+            LOGGER.info("Ignored {} created ways that are not accepted", nf(ignoredWays));
+        }
+        if (input.getRelations() > 0)
+            LOGGER.warn("Ignored {} changed relations, a new import is required to apply them", nf(input.getRelations()));
+        return changedEdges + addedEdges;
+    }
+
+    /**
+     * Adds the given ways to the graph, see {@link #applyChanges}.
+     */
+    private void addWays(List<ReaderWay> ways, GHLongObjectHashMap<GHPoint> changedNodes, GHLongObjectHashMap<OSMNodeStorage.Entry> osmNodes,
+                        LongIntHashMap towerNodesByCoordinates, GHLongObjectHashMap<IntArrayList> edgesByWay, GHLongHashSet removedWays,
+                        OSMNodeStorage osmNodeStorage, List<Weighting> weightings, BitSet changedWeightings) {
+        // a node that appears more than once in the added ways is a junction
+        LongIntHashMap occurrences = new LongIntHashMap();
+        for (ReaderWay way : ways)
+            for (LongCursor node : way.getNodes())
+                occurrences.addTo(node.value, 1);
+        // the graph nodes of the tower nodes of the added ways
+        LongIntHashMap towerNodes = new LongIntHashMap();
+        for (ReaderWay way : ways) {
+            LongArrayList nodes = way.getNodes();
+            int size = nodes.size();
+            GHLongObjectHashMap<GHPoint3D> coordinates = new GHLongObjectHashMap<>(size);
+            boolean[] isTowerNode = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                long node = nodes.get(i);
+                GHPoint point = changedNodes.get(node);
+                OSMNodeStorage.Entry entry = osmNodes.get(node);
+                if (point == null && entry != null)
+                    point = new GHPoint(entry.lat(), entry.lon());
+                if (point != null)
+                    coordinates.put(node, new GHPoint3D(point.lat, point.lon, Double.NaN));
+                // a pillar node of an existing edge becomes a tower node, unless the way of the edge was removed
+                isTowerNode[i] |= i == 0 || i == size - 1 || occurrences.get(node) > 1 || entry != null && (entry.isTowerNode()
+                        || !removedWays.contains(entry.osmWayId()) && edgesByWay.containsKey(entry.osmWayId()));
+                if (point == null) {
+                    // like in WaySegmentParser the way is split at missing nodes
+                    if (i > 0)
+                        isTowerNode[i - 1] = true;
+                    if (i < size - 1)
+                        isTowerNode[i + 1] = true;
+                }
+            }
+            if (size > 2 && nodes.get(0) == nodes.get(size - 1))
+                // a closed way is split into two edges
+                isTowerNode[size - 2] = true;
+            preprocessWay(way, coordinates::get, osmNodeId -> Collections.emptyMap());
+
+            int start = -1;
+            for (int i = 0; i < size; i++) {
+                if (!coordinates.containsKey(nodes.get(i))) {
+                    start = -1;
+                } else if (isTowerNode[i]) {
+                    if (start >= 0)
+                        addSegment(way, start, i, coordinates, osmNodes, towerNodes, towerNodesByCoordinates, edgesByWay,
+                                removedWays, osmNodeStorage, weightings, changedWeightings);
+                    start = i;
+                }
+            }
+        }
+    }
+
+    private void addSegment(ReaderWay way, int start, int end, GHLongObjectHashMap<GHPoint3D> coordinates,
+                               GHLongObjectHashMap<OSMNodeStorage.Entry> osmNodes, LongIntHashMap towerNodes,
+                               LongIntHashMap towerNodesByCoordinates, GHLongObjectHashMap<IntArrayList> edgesByWay,
+                               GHLongHashSet removedWays, OSMNodeStorage osmNodeStorage, List<Weighting> weightings,
+                               BitSet changedWeightings) {
+        LongArrayList nodes = way.getNodes();
+        int[] towers = new int[2];
+        for (int t = 0; t < 2; t++) {
+            long osmNodeId = nodes.get(t == 0 ? start : end);
+            int towerNode = towerNodes.getOrDefault(osmNodeId, -1);
+            if (towerNode < 0) {
+                GHPoint point = coordinates.get(osmNodeId);
+                OSMNodeStorage.Entry entry = osmNodes.get(osmNodeId);
+                if (entry != null && entry.isTowerNode())
+                    towerNode = towerNodesByCoordinates.getOrDefault(toCoordinateKey(entry.lat(), entry.lon()), -1);
+                else if (entry != null && !removedWays.contains(entry.osmWayId()) && edgesByWay.containsKey(entry.osmWayId()))
+                    towerNode = splitEdge(edgesByWay.get(entry.osmWayId()), point);
+                if (towerNode < 0) {
+                    towerNode = baseGraph.getNodes();
+                    nodeAccess.setNode(towerNode, point.lat, point.lon, Helper.ELE_UNKNOWN);
+                }
+                towerNodes.put(osmNodeId, towerNode);
+            }
+            towers[t] = towerNode;
+        }
+        if (towers[0] == towers[1] && end - start == 1) {
+            LOGGER.warn("Loop in OSM way: {}, will be ignored, duplicate node: {}", way.getId(), nodes.get(start));
+            return;
+        }
+
+        PointList pointList = new PointList(end - start + 1, nodeAccess.is3D());
+        pointList.add(nodeAccess.getLat(towers[0]), nodeAccess.getLon(towers[0]), Double.NaN);
+        for (int i = start + 1; i < end; i++) {
+            GHPoint3D point = coordinates.get(nodes.get(i));
+            pointList.add(point.lat, point.lon, Double.NaN);
+        }
+        pointList.add(nodeAccess.getLat(towers[1]), nodeAccess.getLon(towers[1]), Double.NaN);
+        addEdge(towers[0], towers[1], pointList, way, Collections.nCopies(pointList.size(), Collections.<String, Object>emptyMap()));
+        EdgeIteratorState edge = baseGraph.getEdgeIteratorState(baseGraph.getEdges() - 1, Integer.MIN_VALUE);
+        for (int i = 0; i < weightings.size(); i++)
+            if (Double.isFinite(weightings.get(i).calcEdgeWeight(edge, false)) || Double.isFinite(weightings.get(i).calcEdgeWeight(edge, true)))
+                changedWeightings.set(i);
+        for (int i = start; i <= end; i++) {
+            GHPoint3D point = coordinates.get(nodes.get(i));
+            osmNodeStorage.add(nodes.get(i), i == start || i == end ? OSMNodeStorage.TOWER_NODE : way.getId(), point.lat, point.lon);
+        }
+    }
+
+    /**
+     * Splits the edge of the given edges that is closest to the given point into two edges with the same flags at a new
+     * tower node. The old edge is blocked and the given edges are updated. If the point was removed from the geometry
+     * by the simplification, it is inserted into the closest segment.
+     *
+     * @return the new tower node or the node of the edge at the given point
+     */
+    private int splitEdge(IntArrayList edges, GHPoint point) {
+        int bestEdge = -1, bestIndex = -1;
+        boolean insert = false;
+        double bestDist = Double.MAX_VALUE;
+        for (IntCursor edge : edges) {
+            PointList pointList = baseGraph.getEdgeIteratorState(edge.value, Integer.MIN_VALUE).fetchWayGeometry(FetchMode.ALL);
+            for (int i = 0; i < pointList.size(); i++) {
+                double dist = distCalc.calcNormalizedDist(point.lat, point.lon, pointList.getLat(i), pointList.getLon(i));
+                if (dist < bestDist) {
+                    bestDist = dist;
+                    bestEdge = edge.value;
+                    bestIndex = i;
+                    insert = false;
+                }
+                if (i > 0 && distCalc.validEdgeDistance(point.lat, point.lon, pointList.getLat(i - 1), pointList.getLon(i - 1), pointList.getLat(i), pointList.getLon(i))) {
+                    dist = distCalc.calcNormalizedEdgeDistance(point.lat, point.lon, pointList.getLat(i - 1), pointList.getLon(i - 1), pointList.getLat(i), pointList.getLon(i));
+                    if (dist < bestDist) {
+                        bestDist = dist;
+                        bestEdge = edge.value;
+                        // the point is inserted before this index
+                        bestIndex = i;
+                        insert = true;
+                    }
+                }
+            }
+        }
+        if (bestEdge < 0)
+            return -1;
+        EdgeIteratorState edge = baseGraph.getEdgeIteratorState(bestEdge, Integer.MIN_VALUE);
+        PointList pointList = edge.fetchWayGeometry(FetchMode.ALL);
+        if (!insert && bestIndex == 0)
+            return edge.getBaseNode();
+        if (!insert && bestIndex == pointList.size() - 1)
+            return edge.getAdjNode();
+
+        double ele = Double.NaN;
+        if (pointList.is3D())
+            ele = insert ? (pointList.getEle(bestIndex - 1) + pointList.getEle(bestIndex)) / 2 : pointList.getEle(bestIndex);
+        int towerNode = baseGraph.getNodes();
+        nodeAccess.setNode(towerNode, point.lat, point.lon, ele);
+        PointList first = new PointList(bestIndex + 1, pointList.is3D());
+        for (int i = 0; i < bestIndex; i++)
+            first.add(pointList, i);
+        PointList second = new PointList(pointList.size() - bestIndex + 1, pointList.is3D());
+        for (PointList part : List.of(first, second))
+            part.add(nodeAccess.getLat(towerNode), nodeAccess.getLon(towerNode), pointList.is3D() ? nodeAccess.getEle(towerNode) : Double.NaN);
+        for (int i = insert ? bestIndex : bestIndex + 1; i < pointList.size(); i++)
+            second.add(pointList, i);
+
+        edges.removeAll(bestEdge);
+        for (PointList part : List.of(first, second)) {
+            EdgeIteratorState newEdge = part == first ? baseGraph.edge(edge.getBaseNode(), towerNode) : baseGraph.edge(towerNode, edge.getAdjNode());
+            newEdge.setFlags(edge.getFlags());
+            newEdge.setKeyValues(edge.getKeyValues());
+            newEdge.setDistance(Math.max(0.001, distCalc.calcDistance(part)));
+            if (part.size() > 2)
+                newEdge.setWayGeometry(part.shallowCopy(1, part.size() - 1, false));
+            edges.add(newEdge.getEdge());
+        }
+        edge.setFlags(new IntsRef(edge.getFlags().length));
+        return towerNode;
+    }
+
+    private int moveTowerNode(int towerNode, GHPoint point, List<Weighting> weightings, BitSet changedWeightings) {
+        nodeAccess.setNode(towerNode, point.lat, point.lon, nodeAccess.is3D() ? nodeAccess.getEle(towerNode) : Double.NaN);
+        int changedEdges = 0;
+        EdgeIterator iter = baseGraph.createEdgeExplorer().setBaseNode(towerNode);
+        while (iter.next()) {
+            double[] weights = calcWeights(iter, weightings);
+            iter.setDistance(Math.max(0.001, distCalc.calcDistance(iter.fetchWayGeometry(FetchMode.ALL))));
+            markChangedWeightings(iter, weights, weightings, changedWeightings);
+            changedEdges++;
+        }
+        return changedEdges;
+    }
+
+    private int movePillarNode(IntArrayList edges, OSMNodeStorage.Entry entry, GHPoint point, List<Weighting> weightings, BitSet changedWeightings) {
+        long key = toCoordinateKey(entry.lat(), entry.lon());
+        for (IntCursor e : edges) {
+            EdgeIteratorState edge = baseGraph.getEdgeIteratorState(e.value, Integer.MIN_VALUE);
+            PointList pointList = edge.fetchWayGeometry(FetchMode.ALL);
+            for (int i = 1; i < pointList.size() - 1; i++) {
+                if (toCoordinateKey(pointList.getLat(i), pointList.getLon(i)) != key)
+                    continue;
+                double[] weights = calcWeights(edge, weightings);
+                pointList.set(i, point.lat, point.lon, pointList.is3D() ? pointList.getEle(i) : Double.NaN);
+                edge.setWayGeometry(pointList.shallowCopy(1, pointList.size() - 1, false));
+                edge.setDistance(Math.max(0.001, distCalc.calcDistance(pointList)));
+                markChangedWeightings(edge, weights, weightings, changedWeightings);
+                return 1;
+            }
+        }
+        // the node was removed by the simplification of the geometry
+        return 0;
+    }
+
+    private static double[] calcWeights(EdgeIteratorState edge, List<Weighting> weightings) {
+        double[] weights = new double[2 * weightings.size()];
+        for (int i = 0; i < weightings.size(); i++) {
+            weights[2 * i] = weightings.get(i).calcEdgeWeight(edge, false);
+            weights[2 * i + 1] = weightings.get(i).calcEdgeWeight(edge, true);
+        }
+        return weights;
+    }
+
+    private static void markChangedWeightings(EdgeIteratorState edge, double[] weights, List<Weighting> weightings, BitSet changedWeightings) {
+        for (int i = 0; i < weightings.size(); i++) {
+            if (Double.compare(weights[2 * i], weightings.get(i).calcEdgeWeight(edge, false)) != 0
+                    || Double.compare(weights[2 * i + 1], weightings.get(i).calcEdgeWeight(edge, true)) != 0)
+                changedWeightings.set(i);
+        }
+    }
+
+    private static long toCoordinateKey(double lat, double lon) {
+        return ((long) Helper.degreeToInt(lat) << 32) | (Helper.degreeToInt(lon) & 0xFFFF_FFFFL);
+    }
+
+    private static boolean isBarrierEdge(PointList pointList) {
+        return pointList.size() == 2 && pointList.getLat(0) == pointList.getLat(1) && pointList.getLon(0) == pointList.getLon(1);
+    }
+
+    /**
+     * @return true if the given (modified) way cannot be the way the given edge geometry was created from
+     */
+    private boolean isGeometryChanged(ReaderWay way, List<PointList> wayGeometry, GHLongObjectHashMap<GHPoint> changedNodes) {
+        // the first point of an edge is the last point of the previous one, unless some nodes of the way were missing.
+        // the simplification can remove pillar nodes, but there cannot be more points than nodes (without edge sampling)
+        int points = 1;
+        for (PointList pointList : wayGeometry)
+            points += pointList.size() - 1;
+        if (config.getLongEdgeSamplingDistance() == Double.MAX_VALUE && way.getNodes().size() < points)
+            return true;
+        // a created or moved node must be within the tolerance of the simplification to be an unchanged node
+        double maxDistance = config.getMaxWayPointDistance() + 0.1;
+        for (LongCursor node : way.getNodes()) {
+            GHPoint point = changedNodes.get(node.value);
+            if (point != null && calcDistance(point, wayGeometry) > maxDistance)
+                return true;
+        }
+        return false;
+    }
+
+    private double calcDistance(GHPoint point, List<PointList> wayGeometry) {
+        double minNormedDist = Double.MAX_VALUE;
+        for (PointList pointList : wayGeometry) {
+            for (int i = 0; i < pointList.size(); i++) {
+                minNormedDist = Math.min(minNormedDist, distCalc.calcNormalizedDist(point.lat, point.lon, pointList.getLat(i), pointList.getLon(i)));
+                if (i > 0 && distCalc.validEdgeDistance(point.lat, point.lon, pointList.getLat(i - 1), pointList.getLon(i - 1), pointList.getLat(i), pointList.getLon(i)))
+                    minNormedDist = Math.min(minNormedDist, distCalc.calcNormalizedEdgeDistance(point.lat, point.lon,
+                            pointList.getLat(i - 1), pointList.getLon(i - 1), pointList.getLat(i), pointList.getLon(i)));
+            }
+        }
+        return distCalc.calcDenormalizedDist(minNormedDist);
+    }
+
+    private double calc2DDistance(List<PointList> wayGeometry) {
+        double distance = 0;
+        for (PointList pointList : wayGeometry)
+            for (int i = 1; i < pointList.size(); i++)
+                distance += distCalc.calcDist(pointList.getLat(i - 1), pointList.getLon(i - 1), pointList.getLat(i), pointList.getLon(i));
+        return distance;
+    }
+
     private double lookupElevation(double lat, double lon) {
         double ele = eleProvider.getEle(lat, lon);
         return Double.isNaN(ele) ? config.getDefaultElevation() : ele;
@@ -310,7 +851,8 @@ public class OSMReader {
             throw new AssertionError("there should be as many maps of node tags as there are points. node tags: " + nodeTags.size() + ", points: " + pointList.size());
 
         if (pointList.is3D()) {
-            // fill in all elevations (deferred from node scanning for cache-friendliness in elevation provider)
+            // fill in all elevations (deferred from node scanning for cache-friendliness in elevation provider), unless
+            // they were already looked up while reading the nodes
             int last = pointList.size() - 1;
             for (int i = 0; i <= last; i++) {
                 double ele;
@@ -323,7 +865,9 @@ public class OSMReader {
                         nodeAccess.setNode(towerIndex, pointList.getLat(i), pointList.getLon(i), ele);
                     }
                 } else {
-                    ele = lookupElevation(pointList.getLat(i), pointList.getLon(i));
+                    ele = pointList.getEle(i);
+                    if (Double.isNaN(ele))
+                        ele = lookupElevation(pointList.getLat(i), pointList.getLon(i));
                 }
                 pointList.setElevation(i, ele);
             }
@@ -419,6 +963,14 @@ public class OSMReader {
      */
     protected void preprocessWay(ReaderWay way, WaySegmentParser.CoordinateSupplier coordinateSupplier,
                                  WaySegmentParser.NodeTagSupplier nodeTagSupplier) {
+        preprocessWay(way, nodeTagSupplier, () -> calc2DDistance(way, coordinateSupplier));
+    }
+
+    /**
+     * @param wayDistance the 2D distance of the way, only called if {@link #isCalculateWayDistance} is true. It must
+     *                    return NaN if the distance cannot be determined.
+     */
+    private void preprocessWay(ReaderWay way, WaySegmentParser.NodeTagSupplier nodeTagSupplier, DoubleSupplier wayDistance) {
         Map<String, KValue> map = new LinkedHashMap<>();
         if (config.isParseWayNames()) {
             // http://wiki.openstreetmap.org/wiki/Key:name
@@ -492,7 +1044,7 @@ public class OSMReader {
         if (!isCalculateWayDistance(way))
             return;
 
-        double distance = calc2DDistance(way, coordinateSupplier);
+        double distance = wayDistance.getAsDouble();
         if (Double.isNaN(distance)) {
             // Some nodes were missing, and we cannot determine the distance. This can happen when ways are only
             // included partially in an OSM extract. In this case we cannot calculate the speed either, so we return.
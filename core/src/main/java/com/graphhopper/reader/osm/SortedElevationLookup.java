@@ -0,0 +1,112 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.sorting.IndirectSort;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.shapes.GHPoint3D;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Looks up the elevation of the tower and pillar nodes in batches while the nodes are read in the second pass of
+ * {@link WaySegmentParser}. The order of the OSM nodes is hardly related to their location, so looking up the
+ * elevation in this order would jump between the tiles of the elevation provider all the time. Instead, every batch
+ * is sorted along a Hilbert curve, so the nodes of a tile are looked up one after the other, and the sorted batch is
+ * split into chunks that are looked up in parallel. The results are stored in {@link OSMNodeData}.
+ */
+class SortedElevationLookup {
+    // the nodes of one chunk are usually located within a single elevation tile
+    private static final int CHUNK_SIZE = 10_000;
+    // 2^16 cells per axis are already much finer than the elevation tiles
+    private static final int HILBERT_ORDER = 16;
+
+    private final OSMNodeData nodeData;
+    private final DoubleBinaryOperator elevationLookup;
+    private final int batchSize;
+    private final int threads;
+    private final LongArrayList ids = new LongArrayList();
+    private long nodes;
+
+    /**
+     * @param elevationLookup returns the elevation for the given latitude and longitude, must be thread-safe if more
+     *                        than one thread is used
+     */
+    SortedElevationLookup(OSMNodeData nodeData, DoubleBinaryOperator elevationLookup, int batchSize, int threads) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("batch size must be positive, but was " + batchSize);
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive, but was " + threads);
+        this.nodeData = nodeData;
+        this.elevationLookup = elevationLookup;
+        this.batchSize = batchSize;
+        this.threads = threads;
+    }
+
+    /**
+     * Adds the given tower or pillar node to the current batch. Its elevation is set at the latest when {@link #flush}
+     * is called.
+     */
+    void add(long id) {
+        ids.add(id);
+        if (ids.size() >= batchSize)
+            flush();
+    }
+
+    void flush() {
+        final int size = ids.size();
+        if (size == 0)
+            return;
+        final double[] lats = new double[size];
+        final double[] lons = new double[size];
+        final long[] sortKeys = new long[size];
+        for (int i = 0; i < size; i++) {
+            GHPoint3D point = nodeData.getCoordinates(ids.get(i));
+            lats[i] = point.getLat();
+            lons[i] = point.getLon();
+            sortKeys[i] = GraphHopper.latLonToHilbertIndex(lats[i], lons[i], HILBERT_ORDER);
+        }
+        final int[] order = IndirectSort.mergesort(0, size, (a, b) -> Long.compare(sortKeys[a], sortKeys[b]));
+
+        final float[] elevations = new float[size];
+        Stream<Runnable> runnables = IntStream.range(0, (size + CHUNK_SIZE - 1) / CHUNK_SIZE).mapToObj(chunk -> () -> {
+            int end = Math.min(size, (chunk + 1) * CHUNK_SIZE);
+            for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                int index = order[i];
+                elevations[index] = (float) elevationLookup.applyAsDouble(lats[index], lons[index]);
+            }
+        });
+        GHUtility.runConcurrently(runnables, threads);
+
+        for (int i = 0; i < size; i++)
+            nodeData.setElevation(ids.get(i), elevations[i]);
+        nodes += size;
+        ids.clear();
+    }
+
+    /**
+     * @return the number of nodes whose elevation was looked up so far
+     */
+    long getNodes() {
+        return nodes;
+    }
+}
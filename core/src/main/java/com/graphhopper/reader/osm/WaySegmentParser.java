@@ -72,7 +72,11 @@ public class WaySegmentParser {
     };
     private EdgeHandler edgeHandler = (from, to, pointList, way, nodeTags) ->
             System.out.println("edge " + from + "->" + to + " (" + pointList.size() + " points)");
+    private SegmentNodesHandler segmentNodesHandler;
     private int workerThreads = 2;
+    private DoubleBinaryOperator elevationLookup;
+    private int elevationLookupBatchSize;
+    private int elevationLookupThreads;
 
     private final OSMNodeData nodeData;
     private Date timestamp;
@@ -180,6 +184,8 @@ public class WaySegmentParser {
     }
 
     private class Pass2Handler implements ReaderElementHandler {
+        private final SortedElevationLookup sortedElevationLookup = elevationLookup == null ? null
+                : new SortedElevationLookup(nodeData, elevationLookup, elevationLookupBatchSize, elevationLookupThreads);
         private boolean handledNodes;
         private boolean handledWays;
         private boolean handledRelations;
@@ -208,6 +214,8 @@ public class WaySegmentParser {
                 return;
 
             acceptedNodes++;
+            if (sortedElevationLookup != null)
+                sortedElevationLookup.add(nodeData.getId(node.getId()));
 
             // remember which nodes we want to split
             if (splitNodeFilter.test(node)) {
@@ -235,6 +243,7 @@ public class WaySegmentParser {
         @Override
         public void handleWay(ReaderWay way) {
             if (!handledWays) {
+                finishElevationLookup();
                 LOGGER.info("pass2 - start reading OSM ways");
                 handledWays = true;
             }
@@ -373,9 +382,21 @@ public class WaySegmentParser {
             }
             if (from < 0 || to < 0)
                 throw new IllegalStateException("The first and last nodes of a segment must be tower nodes, way: " + way.getId());
+            if (segmentNodesHandler != null)
+                // the edge handler may change the point list, e.g. to simplify it
+                segmentNodesHandler.handleSegmentNodes(segment.stream().mapToLong(n -> n.osmNodeId).toArray(), pointList, way);
             edgeHandler.handleEdge(from, to, pointList, way, nodeTags);
         }
 
+        private void finishElevationLookup() {
+            if (sortedElevationLookup == null)
+                return;
+            StopWatch sw = StopWatch.started();
+            sortedElevationLookup.flush();
+            LOGGER.info("pass2 - looked up elevation of {} nodes, last batch took: {}, {}",
+                    nf(sortedElevationLookup.getNodes()), sw.stop().getTimeString(), Helper.getMemInfo());
+        }
+
         @Override
         public void handleRelation(ReaderRelation relation) {
             if (!handledRelations) {
@@ -474,6 +495,15 @@ public class WaySegmentParser {
             return this;
         }
 
+        /**
+         * @param segmentNodesHandler callback function that is called with the OSM node IDs and the coordinates of the
+         *                            nodes of each edge (way segment) right before the edge handler is called for it
+         */
+        public Builder setSegmentNodesHandler(SegmentNodesHandler segmentNodesHandler) {
+            waySegmentParser.segmentNodesHandler = segmentNodesHandler;
+            return this;
+        }
+
         /**
          * @param workerThreads the number of threads used for the low level reading of the OSM file
          */
@@ -482,6 +512,23 @@ public class WaySegmentParser {
             return this;
         }
 
+        /**
+         * @param elevationLookup returns the elevation for the given latitude and longitude. If set, the elevation of
+         *                        all nodes is looked up while the nodes are read, in batches of the given size that
+         *                        are sorted by location, see {@link SortedElevationLookup}. The point lists passed to
+         *                        the edge handler then contain the elevation of the pillar nodes and the tower nodes
+         *                        have their elevation set. Otherwise, the elevation is NaN and must be looked up by
+         *                        the edge handler.
+         * @param threads         the number of threads used for the lookup, if this is more than one the lookup must
+         *                        be thread-safe
+         */
+        public Builder setElevationLookup(DoubleBinaryOperator elevationLookup, int batchSize, int threads) {
+            waySegmentParser.elevationLookup = elevationLookup;
+            waySegmentParser.elevationLookupBatchSize = batchSize;
+            waySegmentParser.elevationLookupThreads = threads;
+            return this;
+        }
+
         public WaySegmentParser build() {
             return waySegmentParser;
         }
@@ -527,6 +574,14 @@ public class WaySegmentParser {
         void handleEdge(int from, int to, PointList pointList, ReaderWay way, List<Map<String, Object>> nodeTags);
     }
 
+    public interface SegmentNodesHandler {
+        /**
+         * @param osmNodeIds the OSM node IDs of the points of the given point list. The first and the last node are
+         *                   tower nodes. The nodes of barrier edges are copied and their copies have artificial IDs.
+         */
+        void handleSegmentNodes(long[] osmNodeIds, PointList pointList, ReaderWay way);
+    }
+
     public interface RelationProcessor {
         void processRelation(ReaderRelation relation, LongToIntFunction getNodeIdForOSMNodeId);
     }
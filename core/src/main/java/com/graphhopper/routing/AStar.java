@@ -17,7 +17,6 @@
  */
 package com.graphhopper.routing;
 
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.BeelineWeightApproximator;
 import com.graphhopper.routing.weighting.WeightApproximator;
@@ -25,8 +24,6 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.*;
 
-import java.util.PriorityQueue;
-
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
 import static com.graphhopper.util.EdgeIterator.NO_EDGE;
 
@@ -40,9 +37,8 @@ import static com.graphhopper.util.EdgeIterator.NO_EDGE;
  * @author Peter Karich
  */
 public class AStar extends AbstractRoutingAlgorithm implements EdgeToEdgeRoutingAlgorithm {
-    private GHIntObjectHashMap<AStarEntry> fromMap;
-    private PriorityQueue<AStarEntry> fromHeap;
-    private AStarEntry currEdge;
+    private SearchState state;
+    private int currSlot = SearchState.NO_SLOT;
     private int visitedNodes;
     private int to = -1;
     private WeightApproximator weightApprox;
@@ -67,8 +63,7 @@ public class AStar extends AbstractRoutingAlgorithm implements EdgeToEdgeRouting
     }
 
     protected void initCollections(int size) {
-        fromMap = new GHIntObjectHashMap<>();
-        fromHeap = new PriorityQueue<>(size);
+        state = SearchState.acquire(size);
     }
 
     @Override
@@ -86,80 +81,70 @@ public class AStar extends AbstractRoutingAlgorithm implements EdgeToEdgeRouting
         checkAlreadyRun();
         setupFinishTime();
         this.to = to;
-        if (fromOutEdge == NO_EDGE || toInEdge == NO_EDGE)
-            return extractPath();
-        weightApprox.setTo(to);
-        double weightToGoal = weightApprox.approximate(from);
-        if (Double.isInfinite(weightToGoal))
-            return extractPath();
-        AStarEntry startEntry = new AStarEntry(EdgeIterator.NO_EDGE, from, 0 + weightToGoal, 0);
-        fromHeap.add(startEntry);
-        if (!traversalMode.isEdgeBased())
-            fromMap.put(from, currEdge);
-        runAlgo();
-        return extractPath();
+        if (fromOutEdge != NO_EDGE && toInEdge != NO_EDGE) {
+            weightApprox.setTo(to);
+            double weightToGoal = weightApprox.approximate(from);
+            if (!Double.isInfinite(weightToGoal)) {
+                state.add(traversalMode.isEdgeBased() ? SearchState.NO_KEY : from, NO_EDGE, from, 0, SearchState.NO_SLOT, weightToGoal);
+                runAlgo();
+            }
+        }
+        Path path = extractPath();
+        state.release();
+        state = null;
+        return path;
     }
 
     private void runAlgo() {
         double currWeightToGoal, estimationFullWeight;
-        while (!fromHeap.isEmpty()) {
-            currEdge = fromHeap.poll();
-            if (currEdge.isDeleted())
-                continue;
+        while (!state.isEmpty()) {
+            currSlot = state.poll();
             visitedNodes++;
             if (isMaxVisitedNodesExceeded() || finished() || isTimeoutExceeded())
                 break;
 
-            int currNode = currEdge.adjNode;
-            EdgeIterator iter = edgeExplorer.setBaseNode(currNode);
+            int currEdge = state.getEdge(currSlot);
+            double currWeight = state.getWeight(currSlot);
+            EdgeIterator iter = edgeExplorer.setBaseNode(state.getAdjNode(currSlot));
             while (iter.next()) {
-                if (!accept(iter, currEdge.edge) || (currEdge.edge == NO_EDGE && fromOutEdge != ANY_EDGE && iter.getEdge() != fromOutEdge))
+                if (!accept(iter, currEdge) || (currEdge == NO_EDGE && fromOutEdge != ANY_EDGE && iter.getEdge() != fromOutEdge))
                     continue;
 
-                double tmpWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, false, currEdge.edge) + currEdge.weightOfVisitedPath;
+                double tmpWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, false, currEdge) + currWeight;
                 if (Double.isInfinite(tmpWeight)) {
                     continue;
                 }
                 int traversalId = traversalMode.createTraversalId(iter, false);
 
-                AStarEntry ase = fromMap.get(traversalId);
-                if (ase == null || ase.weightOfVisitedPath > tmpWeight) {
+                int slot = state.find(traversalId);
+                if (slot == SearchState.NO_SLOT || state.getWeight(slot) > tmpWeight) {
                     int neighborNode = iter.getAdjNode();
                     currWeightToGoal = weightApprox.approximate(neighborNode);
                     if (Double.isInfinite(currWeightToGoal))
                         continue;
                     estimationFullWeight = tmpWeight + currWeightToGoal;
-                    if (ase == null) {
-                        ase = new AStarEntry(iter.getEdge(), neighborNode, estimationFullWeight, tmpWeight, currEdge);
-                        fromMap.put(traversalId, ase);
-                    } else {
-//                        assert (ase.weight > 0.9999999 * estimationFullWeight) : "Inconsistent distance estimate. It is expected weight >= estimationFullWeight but was "
-//                                + ase.weight + " < " + estimationFullWeight + " (" + ase.weight / estimationFullWeight + "), and weightOfVisitedPath:"
-//                                + ase.weightOfVisitedPath + " vs. alreadyVisitedWeight:" + alreadyVisitedWeight + " (" + ase.weightOfVisitedPath / alreadyVisitedWeight + ")";
-                        ase.setDeleted();
-                        ase = new AStarEntry(iter.getEdge(), neighborNode, estimationFullWeight, tmpWeight, currEdge);
-                        fromMap.put(traversalId, ase);
-                    }
-                    fromHeap.add(ase);
-                    updateBestPath(iter, ase, traversalId);
+                    if (slot == SearchState.NO_SLOT)
+                        state.add(traversalId, iter.getEdge(), neighborNode, tmpWeight, currSlot, estimationFullWeight);
+                    else
+                        state.update(slot, iter.getEdge(), tmpWeight, currSlot, estimationFullWeight);
+                    updateBestPath(iter, traversalId);
                 }
             }
         }
     }
 
     private boolean finished() {
-        return currEdge.adjNode == to && (toInEdge == ANY_EDGE || currEdge.edge == toInEdge) && (fromOutEdge == ANY_EDGE || currEdge.edge != NO_EDGE);
+        int currEdge = state.getEdge(currSlot);
+        return state.getAdjNode(currSlot) == to && (toInEdge == ANY_EDGE || currEdge == toInEdge) && (fromOutEdge == ANY_EDGE || currEdge != NO_EDGE);
     }
 
     protected Path extractPath() {
-        if (currEdge == null || !finished())
+        if (currSlot == SearchState.NO_SLOT || !finished())
             return createEmptyPath();
 
-        return PathExtractor.extractPath(graph, weighting, currEdge)
-                // the path extractor uses currEdge.weight to set the weight, but this is the one that includes the
-                // A* approximation, not the weight of the visited path! this is still correct, because the approximation
-                // at the to-node (the end of the route) must be zero. Still it seems clearer to set the weight explicitly.
-                .setWeight(currEdge.getWeightOfVisitedPath());
+        // the entries created by the search state carry the weight of the visited path, not the one including the
+        // A* approximation that was used for the queue
+        return PathExtractor.extractPath(graph, weighting, state.createEntry(currSlot));
     }
 
     @Override
@@ -167,7 +152,7 @@ public class AStar extends AbstractRoutingAlgorithm implements EdgeToEdgeRouting
         return visitedNodes;
     }
 
-    protected void updateBestPath(EdgeIteratorState edgeState, SPTEntry bestSPTEntry, int traversalId) {
+    protected void updateBestPath(EdgeIteratorState edgeState, int traversalId) {
     }
 
     public static class AStarEntry extends SPTEntry {
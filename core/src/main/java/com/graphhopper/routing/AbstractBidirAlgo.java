@@ -18,7 +18,6 @@
 package com.graphhopper.routing;
 
 import com.carrotsearch.hppc.IntObjectMap;
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.util.EdgeIterator;
 
@@ -47,6 +46,8 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
     private long finishTimeMillis = Long.MAX_VALUE;
     PriorityQueue<SPTEntry> pqOpenSetFrom;
     PriorityQueue<SPTEntry> pqOpenSetTo;
+    private SearchCollections<SPTEntry> collectionsFrom;
+    private SearchCollections<SPTEntry> collectionsTo;
     protected boolean updateBestPath = true;
     protected boolean finishedFrom;
     protected boolean finishedTo;
@@ -61,11 +62,31 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
     }
 
     protected void initCollections(int size) {
-        pqOpenSetFrom = new PriorityQueue<>(size);
-        bestWeightMapFrom = new GHIntObjectHashMap<>(size);
+        initCollections(SearchCollections.acquire(size), SearchCollections.acquire(size));
+    }
+
+    void initCollections(SearchCollections<SPTEntry> collectionsFrom, SearchCollections<SPTEntry> collectionsTo) {
+        this.collectionsFrom = collectionsFrom;
+        pqOpenSetFrom = collectionsFrom.getQueue();
+        bestWeightMapFrom = collectionsFrom.getMap();
+
+        this.collectionsTo = collectionsTo;
+        pqOpenSetTo = collectionsTo.getQueue();
+        bestWeightMapTo = collectionsTo.getMap();
+    }
 
-        pqOpenSetTo = new PriorityQueue<>(size);
-        bestWeightMapTo = new GHIntObjectHashMap<>(size);
+    /**
+     * Hands the collections over to the next search, see {@link SearchCollections}. Must only
+     * be called once the shortest path tree of this search is no longer needed.
+     */
+    protected void releaseCollections() {
+        if (collectionsFrom != null)
+            collectionsFrom.release();
+        if (collectionsTo != null)
+            collectionsTo.release();
+        collectionsFrom = collectionsTo = null;
+        pqOpenSetFrom = pqOpenSetTo = null;
+        bestWeightMapFrom = bestWeightMapTo = bestWeightMapOther = null;
     }
 
     /**
@@ -94,7 +115,9 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
         setupFinishTime();
         init(from, 0, to, 0);
         runAlgo();
-        return extractPath();
+        Path path = extractPath();
+        releaseCollections();
+        return path;
     }
 
     void init(int from, double fromWeight, int to, double toWeight) {
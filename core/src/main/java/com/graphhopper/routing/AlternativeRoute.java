@@ -98,6 +98,12 @@ public class AlternativeRoute extends AStarBidirection implements RoutingAlgorit
         this.minPlateauFactor = hints.getDouble("alternative_route.min_plateau_factor", 0.1);
     }
 
+    @Override
+    protected void initCollections(int size) {
+        // the alternatives depend on the iteration order of the maps, which must not depend on earlier searches
+        initCollections(new SearchCollections<>(size), new SearchCollections<>(size));
+    }
+
     static List<String> getAltNames(Graph graph, SPTEntry ee) {
         if (ee == null || !EdgeIterator.Edge.isValid(ee.edge))
             return Collections.emptyList();
@@ -54,6 +54,13 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
         maxPaths = hints.getInt("alternative_route.max_paths", 3);
     }
 
+    @Override
+    protected void initCollections(int size) {
+        // the alternatives depend on the iteration order of the maps, which must not depend on earlier searches
+        size = Math.min(size, 2000);
+        initCollections(new SearchCollections<>(size), new SearchCollections<>(size));
+    }
+
     @Override
     public boolean finished() {
         if (finishedFrom && finishedTo)
@@ -17,8 +17,6 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
@@ -27,8 +25,6 @@ import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.Parameters;
 
-import java.util.PriorityQueue;
-
 /**
  * Implements a single source shortest path algorithm
  * http://en.wikipedia.org/wiki/Dijkstra's_algorithm
@@ -37,9 +33,8 @@ import java.util.PriorityQueue;
  * @author Peter Karich
  */
 public class Dijkstra extends AbstractRoutingAlgorithm {
-    protected IntObjectMap<SPTEntry> fromMap;
-    protected PriorityQueue<SPTEntry> fromHeap;
-    protected SPTEntry currEdge;
+    private SearchState state;
+    private int currSlot = SearchState.NO_SLOT;
     private int visitedNodes;
     private int to = -1;
 
@@ -50,8 +45,7 @@ public class Dijkstra extends AbstractRoutingAlgorithm {
     }
 
     protected void initCollections(int size) {
-        fromHeap = new PriorityQueue<>(size);
-        fromMap = new GHIntObjectHashMap<>(size);
+        state = SearchState.acquire(size);
     }
 
     @Override
@@ -59,62 +53,70 @@ public class Dijkstra extends AbstractRoutingAlgorithm {
         checkAlreadyRun();
         setupFinishTime();
         this.to = to;
-        SPTEntry startEntry = new SPTEntry(from, 0);
-        fromHeap.add(startEntry);
-        if (!traversalMode.isEdgeBased())
-            fromMap.put(from, currEdge);
+        state.add(traversalMode.isEdgeBased() ? SearchState.NO_KEY : from, EdgeIterator.NO_EDGE, from, 0, SearchState.NO_SLOT, 0);
         runAlgo();
-        return extractPath();
+        Path path = extractPath();
+        state.release();
+        state = null;
+        return path;
     }
 
     protected void runAlgo() {
-        while (!fromHeap.isEmpty()) {
-            currEdge = fromHeap.poll();
-            if (currEdge.isDeleted())
-                continue;
+        while (!state.isEmpty()) {
+            currSlot = state.poll();
             visitedNodes++;
             if (isMaxVisitedNodesExceeded() || finished() || isTimeoutExceeded())
                 break;
 
-            int currNode = currEdge.adjNode;
-            EdgeIterator iter = edgeExplorer.setBaseNode(currNode);
+            int currEdge = state.getEdge(currSlot);
+            double currWeight = state.getWeight(currSlot);
+            EdgeIterator iter = edgeExplorer.setBaseNode(state.getAdjNode(currSlot));
             while (iter.next()) {
-                if (!accept(iter, currEdge.edge))
+                if (!accept(iter, currEdge))
                     continue;
 
-                double tmpWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, false, currEdge.edge) + currEdge.weight;
+                double tmpWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, false, currEdge) + currWeight;
                 if (Double.isInfinite(tmpWeight)) {
                     continue;
                 }
                 int traversalId = traversalMode.createTraversalId(iter, false);
 
-                SPTEntry nEdge = fromMap.get(traversalId);
-                if (nEdge == null) {
-                    nEdge = new SPTEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight, currEdge);
-                    fromMap.put(traversalId, nEdge);
-                    fromHeap.add(nEdge);
-                } else if (nEdge.weight > tmpWeight) {
-                    nEdge.setDeleted();
-                    nEdge = new SPTEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight, currEdge);
-                    fromMap.put(traversalId, nEdge);
-                    fromHeap.add(nEdge);
-                } else
+                int slot = state.find(traversalId);
+                if (slot == SearchState.NO_SLOT)
+                    state.add(traversalId, iter.getEdge(), iter.getAdjNode(), tmpWeight, currSlot, tmpWeight);
+                else if (state.getWeight(slot) > tmpWeight)
+                    state.update(slot, iter.getEdge(), tmpWeight, currSlot, tmpWeight);
+                else
                     continue;
 
-                updateBestPath(iter, nEdge, traversalId);
+                updateBestPath(iter, traversalId);
             }
         }
     }
 
     protected boolean finished() {
-        return currEdge.adjNode == to;
+        return getCurrNode() == to;
+    }
+
+    /**
+     * @return the node of the entry that was polled last
+     */
+    protected int getCurrNode() {
+        return state.getAdjNode(currSlot);
+    }
+
+    /**
+     * @return the weight of the entry that was polled last
+     */
+    protected double getCurrWeight() {
+        return state.getWeight(currSlot);
     }
 
     private Path extractPath() {
-        if (currEdge == null || !finished())
+        if (currSlot == SearchState.NO_SLOT || !finished())
             return createEmptyPath();
 
-        return PathExtractor.extractPath(graph, weighting, currEdge);
+        return PathExtractor.extractPath(graph, weighting, state.createEntry(currSlot));
     }
 
     @Override
@@ -122,7 +124,7 @@ public class Dijkstra extends AbstractRoutingAlgorithm {
         return visitedNodes;
     }
 
-    protected void updateBestPath(EdgeIteratorState edgeState, SPTEntry bestSPTEntry, int traversalId) {
+    protected void updateBestPath(EdgeIteratorState edgeState, int traversalId) {
     }
 
     @Override
@@ -34,6 +34,9 @@ public class OSMReaderConfig {
     private double longEdgeSamplingDistance = Double.MAX_VALUE;
     private int workerThreads = 2;
     private double defaultElevation = 0;
+    private int elevationLookupBatchSize = 0;
+    private int elevationLookupThreads = 2;
+    private boolean storeOSMNodes = false;
 
     public List<String> getIgnoredHighways() {
         return ignoredHighways;
@@ -168,4 +171,46 @@ public class OSMReaderConfig {
         this.defaultElevation = defaultElevation;
         return this;
     }
+
+    public int getElevationLookupBatchSize() {
+        return elevationLookupBatchSize;
+    }
+
+    /**
+     * Sets the number of nodes whose elevation is looked up at once, sorted by their location, while the OSM nodes are
+     * read. This avoids jumping between the tiles of the elevation provider, but requires additional memory to keep
+     * the elevation of the pillar nodes until the edges are created. 0 disables the sorted lookup and the elevation
+     * is looked up during edge creation instead. Default is 0.
+     */
+    public OSMReaderConfig setElevationLookupBatchSize(int elevationLookupBatchSize) {
+        this.elevationLookupBatchSize = elevationLookupBatchSize;
+        return this;
+    }
+
+    public int getElevationLookupThreads() {
+        return elevationLookupThreads;
+    }
+
+    /**
+     * Sets the number of threads used for the sorted elevation lookup, see {@link #setElevationLookupBatchSize(int)}.
+     * The elevation provider must be thread-safe if more than one thread is used.
+     */
+    public OSMReaderConfig setElevationLookupThreads(int elevationLookupThreads) {
+        this.elevationLookupThreads = elevationLookupThreads;
+        return this;
+    }
+
+    public boolean isStoreOSMNodes() {
+        return storeOSMNodes;
+    }
+
+    /**
+     * Enables/disables storing the OSM node IDs and coordinates of the graph nodes, which is required to add created
+     * ways and to change the geometry of modified ways when OSM changes are applied to the graph. This needs 24 bytes
+     * per node of the accepted ways.
+     */
+    public OSMReaderConfig setStoreOSMNodes(boolean storeOSMNodes) {
+        this.storeOSMNodes = storeOSMNodes;
+        return this;
+    }
 }
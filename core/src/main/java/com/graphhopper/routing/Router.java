@@ -27,6 +27,9 @@ import com.graphhopper.routing.ch.CHRoutingAlgorithmFactory;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.lm.LMRoutingAlgorithmFactory;
 import com.graphhopper.routing.lm.LandmarkStorage;
+import com.graphhopper.routing.mld.CellOverlay;
+import com.graphhopper.routing.mld.CellOverlayCache;
+import com.graphhopper.routing.mld.MLDRoutingAlgorithmFactory;
 import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.weighting.Weighting;
@@ -64,6 +67,7 @@ public class Router {
     protected final WeightingFactory weightingFactory;
     protected final Map<String, RoutingCHGraph> chGraphs;
     protected final Map<String, LandmarkStorage> landmarks;
+    protected CellOverlayCache cellOverlays;
 
     public Router(BaseGraph graph, EncodingManager encodingManager, LocationIndex locationIndex,
                   Map<String, Profile> profilesByName, PathDetailsBuilderFactory pathDetailsBuilderFactory,
@@ -86,6 +90,15 @@ public class Router {
         }
     }
 
+    /**
+     * Enables the overlay routing for all requests that use a profile without turn costs and neither CH nor a
+     * specific algorithm.
+     */
+    public Router setCellOverlays(CellOverlayCache cellOverlays) {
+        this.cellOverlays = cellOverlays;
+        return this;
+    }
+
     public GHResponse route(GHRequest request) {
         try {
             checkNoLegacyParameters(request);
@@ -180,9 +193,12 @@ public class Router {
     }
 
     protected Solver createSolver(GHRequest request) {
+        boolean useLM = landmarks.containsKey(request.getProfile()) && !getDisableLM(request.getHints());
         if (chGraphs.containsKey(request.getProfile()) && !getDisableCH(request.getHints())) {
             return createCHSolver(request, profilesByName, routerConfig, encodingManager, chGraphs);
-        } else if (landmarks.containsKey(request.getProfile()) && !getDisableLM(request.getHints())) {
+        } else if (cellOverlays != null && isMLDRequest(request) && (!useLM || routerConfig.isMLDPreferredOverLM())) {
+            return createMLDSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, graph, locationIndex, cellOverlays);
+        } else if (useLM) {
             return createLMSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, graph, locationIndex, landmarks);
         } else {
             return createFlexSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, graph, locationIndex);
@@ -200,6 +216,19 @@ public class Router {
         return new LMSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, baseGraph, locationIndex, landmarks);
     }
 
+    protected Solver createMLDSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig,
+                                     EncodingManager encodingManager, WeightingFactory weightingFactory, BaseGraph baseGraph,
+                                     LocationIndex locationIndex, CellOverlayCache cellOverlays) {
+        return new MLDSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, baseGraph, locationIndex, cellOverlays);
+    }
+
+    private boolean isMLDRequest(GHRequest request) {
+        Profile profile = profilesByName.get(request.getProfile());
+        return profile != null && !profile.hasTurnCosts()
+                && !request.getHints().getBool(Parameters.MLD.DISABLE, false)
+                && (Helper.isEmpty(request.getAlgorithm()) || Parameters.Algorithms.DIJKSTRA_BI.equalsIgnoreCase(request.getAlgorithm()));
+    }
+
     protected Solver createFlexSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig,
                                       EncodingManager encodingManager, WeightingFactory weightingFactory, BaseGraph baseGraph,
                                       LocationIndex locationIndex) {
@@ -214,18 +243,23 @@ public class Router {
         List<Snap> snaps = RoundTripRouting.lookup(request.getPoints(), solver.createSnapFilter(), locationIndex, params);
         ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
 
-        QueryGraph queryGraph = QueryGraph.create(graph, snaps);
-        FlexiblePathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
+        QueryGraph queryGraph = QueryGraph.acquire(graph, snaps);
+        try {
+            FlexiblePathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
 
-        RoundTripRouting.Result result = RoundTripRouting.calcPaths(snaps, pathCalculator);
-        // we merge the different legs of the roundtrip into one response path
-        // note that the waypoints are not just the snapped points of the snaps, as usual, because we do some kind of tweak
-        // to avoid 'unnecessary tails' in the roundtrip algo
-        ResponsePath responsePath = concatenatePaths(request, solver.weighting, queryGraph, result.paths, result.wayPoints);
-        ghRsp.add(responsePath);
-        ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
-        ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes / (snaps.size() - 1));
-        return ghRsp;
+            RoundTripRouting.Result result = RoundTripRouting.calcPaths(snaps, pathCalculator);
+            // we merge the different legs of the roundtrip into one response path
+            // note that the waypoints are not just the snapped points of the snaps, as usual, because we do some kind of tweak
+            // to avoid 'unnecessary tails' in the roundtrip algo
+            ResponsePath responsePath = concatenatePaths(request, solver.weighting, queryGraph, result.paths, result.wayPoints);
+            ghRsp.add(responsePath);
+            ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
+            ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes / (snaps.size() - 1));
+            return ghRsp;
+        } finally {
+            // the response contains copies of everything it needs from the query graph
+            queryGraph.release();
+        }
     }
 
     protected GHResponse routeAlt(GHRequest request, Solver solver) {
@@ -237,30 +271,35 @@ public class Router {
         List<Snap> snaps = ViaRouting.lookup(encodingManager, request.getPoints(), solver.createSnapFilter(), locationIndex,
                 request.getSnapPreventions(), request.getPointHints(), directedEdgeFilter, request.getHeadings());
         ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
-        QueryGraph queryGraph = QueryGraph.create(graph, snaps);
-        PathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
-        boolean passThrough = getPassThrough(request.getHints());
-        String curbsideStrictness = getCurbsideStrictness(request.getHints());
-        if (passThrough)
-            throw new IllegalArgumentException("Alternative paths and " + PASS_THROUGH + " at the same time is currently not supported");
-        if (!request.getCurbsides().isEmpty())
-            throw new IllegalArgumentException("Alternative paths do not support the " + CURBSIDE + " parameter yet");
-
-        ViaRouting.Result result = ViaRouting.calcPaths(request.getPoints(), queryGraph, snaps, directedEdgeFilter,
-                pathCalculator, request.getCurbsides(), curbsideStrictness, request.getHeadings(), passThrough, encodingManager);
-        if (result.paths.isEmpty())
-            throw new RuntimeException("Empty paths for alternative route calculation not expected");
-
-        // each path represents a different alternative and we do the path merging for each of them
-        PathMerger pathMerger = createPathMerger(request, solver.weighting, queryGraph);
-        for (Path path : result.paths) {
-            PointList waypoints = getWaypoints(snaps);
-            ResponsePath responsePath = pathMerger.doWork(waypoints, Collections.singletonList(path), encodingManager, translationMap.getWithFallBack(request.getLocale()));
-            ghRsp.add(responsePath);
+        QueryGraph queryGraph = QueryGraph.acquire(graph, snaps);
+        try {
+            PathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
+            boolean passThrough = getPassThrough(request.getHints());
+            String curbsideStrictness = getCurbsideStrictness(request.getHints());
+            if (passThrough)
+                throw new IllegalArgumentException("Alternative paths and " + PASS_THROUGH + " at the same time is currently not supported");
+            if (!request.getCurbsides().isEmpty())
+                throw new IllegalArgumentException("Alternative paths do not support the " + CURBSIDE + " parameter yet");
+
+            ViaRouting.Result result = ViaRouting.calcPaths(request.getPoints(), queryGraph, snaps, directedEdgeFilter,
+                    pathCalculator, request.getCurbsides(), curbsideStrictness, request.getHeadings(), passThrough, encodingManager);
+            if (result.paths.isEmpty())
+                throw new RuntimeException("Empty paths for alternative route calculation not expected");
+
+            // each path represents a different alternative and we do the path merging for each of them
+            PathMerger pathMerger = createPathMerger(request, solver.weighting, queryGraph);
+            for (Path path : result.paths) {
+                PointList waypoints = getWaypoints(snaps);
+                ResponsePath responsePath = pathMerger.doWork(waypoints, Collections.singletonList(path), encodingManager, translationMap.getWithFallBack(request.getLocale()));
+                ghRsp.add(responsePath);
+            }
+            ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
+            ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes / (snaps.size() - 1));
+            return ghRsp;
+        } finally {
+            // the response contains copies of everything it needs from the query graph
+            queryGraph.release();
         }
-        ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
-        ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes / (snaps.size() - 1));
-        return ghRsp;
     }
 
     protected GHResponse routeVia(GHRequest request, Solver solver) {
@@ -272,23 +311,28 @@ public class Router {
         ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
         // (base) query graph used to resolve headings, curbsides etc. this is not necessarily the same thing as
         // the (possibly implementation specific) query graph used by PathCalculator
-        QueryGraph queryGraph = QueryGraph.create(graph, snaps);
-        PathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
-        boolean passThrough = getPassThrough(request.getHints());
-        String curbsideStrictness = getCurbsideStrictness(request.getHints());
-        ViaRouting.Result result = ViaRouting.calcPaths(request.getPoints(), queryGraph, snaps, directedEdgeFilter,
-                pathCalculator, request.getCurbsides(), curbsideStrictness, request.getHeadings(), passThrough, encodingManager);
-
-        if (request.getPoints().size() != result.paths.size() + 1)
-            throw new RuntimeException("There should be exactly one more point than paths. points:" + request.getPoints().size() + ", paths:" + result.paths.size());
-
-        // here each path represents one leg of the via-route and we merge them all together into one response path
-        ResponsePath responsePath = concatenatePaths(request, solver.weighting, queryGraph, result.paths, getWaypoints(snaps));
-        responsePath.addDebugInfo(result.debug);
-        ghRsp.add(responsePath);
-        ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
-        ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes / (snaps.size() - 1));
-        return ghRsp;
+        QueryGraph queryGraph = QueryGraph.acquire(graph, snaps);
+        try {
+            PathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
+            boolean passThrough = getPassThrough(request.getHints());
+            String curbsideStrictness = getCurbsideStrictness(request.getHints());
+            ViaRouting.Result result = ViaRouting.calcPaths(request.getPoints(), queryGraph, snaps, directedEdgeFilter,
+                    pathCalculator, request.getCurbsides(), curbsideStrictness, request.getHeadings(), passThrough, encodingManager);
+
+            if (request.getPoints().size() != result.paths.size() + 1)
+                throw new RuntimeException("There should be exactly one more point than paths. points:" + request.getPoints().size() + ", paths:" + result.paths.size());
+
+            // here each path represents one leg of the via-route and we merge them all together into one response path
+            ResponsePath responsePath = concatenatePaths(request, solver.weighting, queryGraph, result.paths, getWaypoints(snaps));
+            responsePath.addDebugInfo(result.debug);
+            ghRsp.add(responsePath);
+            ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
+            ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes / (snaps.size() - 1));
+            return ghRsp;
+        } finally {
+            // the response contains copies of everything it needs from the query graph
+            queryGraph.release();
+        }
     }
 
     private PathMerger createPathMerger(GHRequest request, Weighting weighting, Graph graph) {
@@ -351,7 +395,7 @@ public class Router {
     public static abstract class Solver {
         protected final GHRequest request;
         private final Map<String, Profile> profilesByName;
-        private final RouterConfig routerConfig;
+        protected final RouterConfig routerConfig;
         protected Profile profile;
         protected Weighting weighting;
         protected final EncodedValueLookup lookup;
@@ -480,6 +524,12 @@ public class Router {
             opts.putObject(ALGORITHM, request.getAlgorithm());
             opts.putObject(MAX_VISITED_NODES, getMaxVisitedNodes(request.getHints()));
             opts.putObject(TIMEOUT_MS, getTimeoutMillis(request.getHints()));
+            // without points, instructions and path details we do not need the edges of the path and use the stored
+            // distance and time of the shortcuts (if available) instead of unpacking them
+            boolean distanceAndTimeOnly = !request.getHints().getBool(CALC_POINTS, routerConfig.isCalcPoints())
+                    && !request.getHints().getBool(INSTRUCTIONS, routerConfig.isInstructionsEnabled())
+                    && request.getPathDetails().isEmpty();
+            opts.putObject(Parameters.CH.DISTANCE_AND_TIME_ONLY, distanceAndTimeOnly);
             return new CHPathCalculator(new CHRoutingAlgorithmFactory(getRoutingCHGraph(profile.getName()), queryGraph), opts);
         }
 
@@ -587,4 +637,20 @@ public class Router {
             return new FlexiblePathCalculator(queryGraph, routingAlgorithmFactory, weighting, getAlgoOpts());
         }
     }
+
+    private static class MLDSolver extends FlexSolver {
+        private final CellOverlayCache cellOverlays;
+
+        MLDSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig, EncodedValueLookup lookup,
+                  WeightingFactory weightingFactory, BaseGraph graph, LocationIndex locationIndex, CellOverlayCache cellOverlays) {
+            super(request, profilesByName, routerConfig, lookup, weightingFactory, graph, locationIndex);
+            this.cellOverlays = cellOverlays;
+        }
+
+        @Override
+        protected FlexiblePathCalculator createPathCalculator(QueryGraph queryGraph) {
+            CellOverlay overlay = cellOverlays.get(profile.getName(), request.getCustomModel(), weighting);
+            return new FlexiblePathCalculator(queryGraph, new MLDRoutingAlgorithmFactory(overlay), weighting, getAlgoOpts());
+        }
+    }
 }
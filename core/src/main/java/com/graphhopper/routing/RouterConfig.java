@@ -32,6 +32,7 @@ public class RouterConfig {
     private boolean simplifyResponse = true;
     private double elevationWayPointMaxDistance = Double.MAX_VALUE;
     private int activeLandmarkCount = 8;
+    private boolean mldPreferredOverLM = true;
 
     public int getMaxVisitedNodes() {
         return maxVisitedNodes;
@@ -58,6 +59,18 @@ public class RouterConfig {
         this.timeoutMillis = timeoutMillis;
     }
 
+    public boolean isMLDPreferredOverLM() {
+        return mldPreferredOverLM;
+    }
+
+    /**
+     * Specifies if the overlay routing or LM is used for profiles that support both. In both cases the other one is
+     * used if it is disabled for the request, e.g. with mld.disable=true.
+     */
+    public void setMLDPreferredOverLM(boolean mldPreferredOverLM) {
+        this.mldPreferredOverLM = mldPreferredOverLM;
+    }
+
     public int getMaxRoundTripRetries() {
         return maxRoundTripRetries;
     }
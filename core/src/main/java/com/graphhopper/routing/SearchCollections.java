@@ -0,0 +1,132 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.GHIntObjectHashMap;
+
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+
+/**
+ * The map from traversal ids to shortest path tree entries and the priority queue of one search direction. These
+ * collections are sized for a good part of the graph, so creating them for every request produces a lot of garbage.
+ * Instead they are kept in a pool that is shared by all threads: {@link #acquire} returns collections released by an
+ * earlier search (or new ones) and {@link #release} clears them and makes them available for the next search.
+ * Collections that are not released are simply garbage collected. A pool per thread would not help for requests
+ * on virtual threads, which are never reused, and it would keep the collections of every thread of a big pool.
+ * <p>
+ * The pool is bounded by the number of collections and by their estimated memory, collections that do not fit
+ * are left to the garbage collector.
+ * <p>
+ * These collections are used by the bidirectional algorithms, which keep {@link SPTEntry} objects because path
+ * extraction, alternative routes and the landmark preparation walk them. Dijkstra and A* use the primitive arrays of
+ * {@link SearchState} instead.
+ * <p>
+ * Note that the iteration order of a reused map depends on its capacity, so algorithms that iterate over the map
+ * should not use pooled collections.
+ */
+public class SearchCollections<E extends SPTEntry> {
+    // enough for the two directions of two bidirectional searches on every core
+    static final int MAX_POOLED = 4 * Runtime.getRuntime().availableProcessors();
+    // the references of the map and the queue plus the keys of the map, the entries themselves are not retained
+    static final long MAX_POOLED_BYTES = 64L << 20;
+    // do not keep collections around that grew very large for a single long search
+    private static final int MAX_POOLED_ENTRIES = 200_000;
+    private static final ArrayDeque<SearchCollections<?>> POOL = new ArrayDeque<>();
+    private static long pooledBytes;
+
+    private final GHIntObjectHashMap<E> map;
+    private final PriorityQueue<E> queue;
+    // the queue does not expose its capacity, but it is at least the largest size it ever had
+    private int maxQueueSize;
+    private boolean pooled;
+
+    public SearchCollections(int size) {
+        map = new GHIntObjectHashMap<>(size);
+        queue = new PriorityQueue<>(size);
+        maxQueueSize = size;
+    }
+
+    /**
+     * @param size the expected number of entries, only used if no released collections are available
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends SPTEntry> SearchCollections<E> acquire(int size) {
+        SearchCollections<E> collections;
+        synchronized (POOL) {
+            collections = (SearchCollections<E>) POOL.pollFirst();
+            if (collections == null)
+                return new SearchCollections<>(size);
+            pooledBytes -= collections.getEstimatedBytes();
+            collections.pooled = false;
+        }
+        return collections;
+    }
+
+    /**
+     * Makes these collections available for the next search. They must not be used anymore afterwards.
+     */
+    public void release() {
+        if (map.size() > MAX_POOLED_ENTRIES)
+            return;
+        maxQueueSize = Math.max(maxQueueSize, queue.size());
+        synchronized (POOL) {
+            if (pooled)
+                return;
+            long bytes = getEstimatedBytes();
+            if (bytes > MAX_POOLED_BYTES)
+                return;
+            map.clear();
+            queue.clear();
+            pooled = true;
+            POOL.addFirst(this);
+            pooledBytes += bytes;
+            // drop the collections that were released first
+            while (POOL.size() > MAX_POOLED || pooledBytes > MAX_POOLED_BYTES) {
+                SearchCollections<?> removed = POOL.removeLast();
+                removed.pooled = false;
+                pooledBytes -= removed.getEstimatedBytes();
+            }
+        }
+    }
+
+    long getEstimatedBytes() {
+        // an int key and a reference per slot of the map and a reference per element of the queue
+        return 8L * map.keys.length + 4L * maxQueueSize;
+    }
+
+    static long getPooledBytes() {
+        synchronized (POOL) {
+            return pooledBytes;
+        }
+    }
+
+    static int getPooled() {
+        synchronized (POOL) {
+            return POOL.size();
+        }
+    }
+
+    public GHIntObjectHashMap<E> getMap() {
+        return map;
+    }
+
+    public PriorityQueue<E> getQueue() {
+        return queue;
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The shortest path tree and the priority queue of a unidirectional search, stored in primitive arrays instead of
+ * {@link SPTEntry} objects. Every entry of the tree has a slot, i.e. an index into the parallel arrays of the edge,
+ * the adjacent node, the weight and the parent slot. The slot of a traversal id (see
+ * {@link com.graphhopper.routing.util.TraversalMode#createTraversalId}) is found via an open addressing index whose
+ * buckets carry the number of the search that wrote them, so starting the next search only increments this number.
+ * The queue is a binary heap of slots with an update operation like {@link com.graphhopper.coll.MinHeapWithUpdate},
+ * but with double values and a capacity that grows with the search.
+ * <p>
+ * The arrays grow with the number of entries instead of the size of the graph, so they stay small for short
+ * searches on large graphs. They are kept in a pool that is shared by all threads: {@link #acquire} returns a state
+ * released by an earlier search (or a new one) and {@link #release} makes it available for the next search. A state
+ * that is not released is simply garbage collected, and states that grew too large are not pooled.
+ */
+public class SearchState {
+    public static final int NO_SLOT = -1;
+    public static final int NO_KEY = -1;
+    // enough for a search and a nested search like the one of LMApproximator on every core
+    static final int MAX_POOLED = 2 * Runtime.getRuntime().availableProcessors();
+    // about 200k entries, do not keep the state of a single long search
+    static final long MAX_POOLED_BYTES = 8L << 20;
+    private static final AtomicReferenceArray<SearchState> POOL = new AtomicReferenceArray<>(MAX_POOLED);
+
+    // the index from traversal ids to slots, a bucket is used if its stamp equals the current stamp
+    private int[] indexKeys;
+    private int[] indexSlots;
+    private int[] indexStamps;
+    private int stamp = 1;
+
+    // the entries of the shortest path tree
+    private int[] keys;
+    private int[] edges;
+    private int[] adjNodes;
+    private int[] parents;
+    private double[] weights;
+    private int size;
+
+    // the heap of slots, the 0th element is not used
+    private int[] heapSlots;
+    private double[] heapValues;
+    private int[] heapPositions;
+    private int heapSize;
+    private boolean released;
+
+    public SearchState(int size) {
+        int capacity = Math.max(16, size);
+        keys = new int[capacity];
+        edges = new int[capacity];
+        adjNodes = new int[capacity];
+        parents = new int[capacity];
+        weights = new double[capacity];
+        heapSlots = new int[capacity + 1];
+        heapValues = new double[capacity + 1];
+        heapValues[0] = Double.NEGATIVE_INFINITY;
+        heapPositions = new int[capacity];
+        int buckets = Integer.highestOneBit(capacity - 1) << 2;
+        indexKeys = new int[buckets];
+        indexSlots = new int[buckets];
+        indexStamps = new int[buckets];
+    }
+
+    /**
+     * @param size the expected number of entries, only used if no released state is available
+     */
+    public static SearchState acquire(int size) {
+        int start = (int) (Thread.currentThread().threadId() % MAX_POOLED);
+        for (int i = 0; i < MAX_POOLED; i++) {
+            int index = (start + i) % MAX_POOLED;
+            if (POOL.get(index) != null) {
+                SearchState state = POOL.getAndSet(index, null);
+                if (state != null) {
+                    state.released = false;
+                    return state;
+                }
+            }
+        }
+        return new SearchState(size);
+    }
+
+    /**
+     * Clears this state and makes it available for the next search. It must not be used anymore afterwards.
+     */
+    public void release() {
+        if (released)
+            return;
+        released = true;
+        clear();
+        if (getEstimatedBytes() > MAX_POOLED_BYTES)
+            return;
+        int start = (int) (Thread.currentThread().threadId() % MAX_POOLED);
+        for (int i = 0; i < MAX_POOLED; i++) {
+            int index = (start + i) % MAX_POOLED;
+            if (POOL.compareAndSet(index, null, this))
+                return;
+        }
+    }
+
+    void clear() {
+        size = 0;
+        heapSize = 0;
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(indexStamps, 0);
+            stamp = 0;
+        }
+        stamp++;
+    }
+
+    long getEstimatedBytes() {
+        // key, slot and stamp per bucket of the index, key, edge, node, parent and weight per entry and slot, value
+        // and position per element of the heap
+        return 12L * indexKeys.length + 24L * keys.length + 16L * heapPositions.length;
+    }
+
+    static int getPooled() {
+        int pooled = 0;
+        for (int i = 0; i < MAX_POOLED; i++)
+            if (POOL.get(i) != null)
+                pooled++;
+        return pooled;
+    }
+
+    /**
+     * @return the slot of the given traversal id or {@link #NO_SLOT} if it was not added yet
+     */
+    public int find(int key) {
+        int mask = indexKeys.length - 1;
+        int bucket = mix(key) & mask;
+        while (indexStamps[bucket] == stamp) {
+            if (indexKeys[bucket] == key)
+                return indexSlots[bucket];
+            bucket = (bucket + 1) & mask;
+        }
+        return NO_SLOT;
+    }
+
+    /**
+     * Adds an entry that is reached via the given edge from the given parent slot and pushes it to the queue.
+     *
+     * @param key    the traversal id of the entry, or {@link #NO_KEY} if the entry cannot be found via {@link #find}
+     * @param parent the slot of the parent or {@link #NO_SLOT} for the root of the tree
+     * @return the slot of the new entry
+     */
+    public int add(int key, int edge, int adjNode, double weight, int parent, double heapValue) {
+        if (size == keys.length)
+            grow();
+        int slot = size++;
+        keys[slot] = key;
+        edges[slot] = edge;
+        adjNodes[slot] = adjNode;
+        weights[slot] = weight;
+        parents[slot] = parent;
+        heapPositions[slot] = 0;
+        if (key != NO_KEY) {
+            if (2 * size > indexKeys.length)
+                growIndex();
+            putIndex(key, slot);
+        }
+        push(slot, heapValue);
+        return slot;
+    }
+
+    /**
+     * Replaces the edge, the weight and the parent of the given entry and pushes it to the queue, or updates its
+     * position in the queue if it was not polled yet.
+     */
+    public void update(int slot, int edge, double weight, int parent, double heapValue) {
+        edges[slot] = edge;
+        weights[slot] = weight;
+        parents[slot] = parent;
+        int position = heapPositions[slot];
+        if (position == 0) {
+            push(slot, heapValue);
+        } else {
+            double prev = heapValues[position];
+            heapValues[position] = heapValue;
+            if (heapValue < prev)
+                percolateUp(position);
+            else if (heapValue > prev)
+                percolateDown(position);
+        }
+    }
+
+    public boolean isEmpty() {
+        return heapSize == 0;
+    }
+
+    /**
+     * Removes the slot with the smallest value from the queue
+     */
+    public int poll() {
+        int slot = heapSlots[1];
+        heapPositions[slot] = 0;
+        heapSlots[1] = heapSlots[heapSize];
+        heapValues[1] = heapValues[heapSize];
+        heapSize--;
+        if (heapSize > 0) {
+            heapPositions[heapSlots[1]] = 1;
+            percolateDown(1);
+        }
+        return slot;
+    }
+
+    public int getEdge(int slot) {
+        return edges[slot];
+    }
+
+    public int getAdjNode(int slot) {
+        return adjNodes[slot];
+    }
+
+    public double getWeight(int slot) {
+        return weights[slot];
+    }
+
+    public int getParent(int slot) {
+        return parents[slot];
+    }
+
+    /**
+     * Creates the chain of {@link SPTEntry} objects from the root of the tree to the given slot, e.g. to extract the
+     * path with {@link PathExtractor}. The weights of the entries are the weights of the visited path.
+     */
+    public SPTEntry createEntry(int slot) {
+        if (slot == NO_SLOT)
+            return null;
+        SPTEntry entry = new SPTEntry(edges[slot], adjNodes[slot], weights[slot], null);
+        SPTEntry child = entry;
+        for (int parent = parents[slot]; parent != NO_SLOT; parent = parents[parent]) {
+            child.parent = new SPTEntry(edges[parent], adjNodes[parent], weights[parent], null);
+            child = child.parent;
+        }
+        assert child.edge == EdgeIterator.NO_EDGE : "the root of the tree must not have an edge";
+        return entry;
+    }
+
+    private void grow() {
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        edges = Arrays.copyOf(edges, capacity);
+        adjNodes = Arrays.copyOf(adjNodes, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        heapSlots = Arrays.copyOf(heapSlots, capacity + 1);
+        heapValues = Arrays.copyOf(heapValues, capacity + 1);
+        heapPositions = Arrays.copyOf(heapPositions, capacity);
+    }
+
+    private void growIndex() {
+        int buckets = indexKeys.length * 2;
+        indexKeys = new int[buckets];
+        indexSlots = new int[buckets];
+        indexStamps = new int[buckets];
+        for (int slot = 0; slot < size; slot++)
+            if (keys[slot] != NO_KEY)
+                putIndex(keys[slot], slot);
+    }
+
+    private void putIndex(int key, int slot) {
+        int mask = indexKeys.length - 1;
+        int bucket = mix(key) & mask;
+        while (indexStamps[bucket] == stamp) {
+            if (indexKeys[bucket] == key) {
+                indexSlots[bucket] = slot;
+                return;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        indexStamps[bucket] = stamp;
+        indexKeys[bucket] = key;
+        indexSlots[bucket] = slot;
+    }
+
+    private static int mix(int key) {
+        // the traversal ids of neighbouring nodes and edges are close to each other, so they need to be spread
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void push(int slot, double value) {
+        heapSize++;
+        heapSlots[heapSize] = slot;
+        heapValues[heapSize] = value;
+        heapPositions[slot] = heapSize;
+        percolateUp(heapSize);
+    }
+
+    private void percolateUp(int index) {
+        final int slot = heapSlots[index];
+        final double value = heapValues[index];
+        // the loop stops at the root, because heapValues[0] is -infinity
+        while (value < heapValues[index >> 1]) {
+            int parent = index >> 1;
+            heapSlots[index] = heapSlots[parent];
+            heapValues[index] = heapValues[parent];
+            heapPositions[heapSlots[index]] = index;
+            index = parent;
+        }
+        heapSlots[index] = slot;
+        heapValues[index] = value;
+        heapPositions[slot] = index;
+    }
+
+    private void percolateDown(int index) {
+        final int slot = heapSlots[index];
+        final double value = heapValues[index];
+        while (index << 1 <= heapSize) {
+            int child = index << 1;
+            if (child != heapSize && heapValues[child + 1] < heapValues[child])
+                child++;
+            if (heapValues[child] >= value)
+                break;
+            heapSlots[index] = heapSlots[child];
+            heapValues[index] = heapValues[child];
+            heapPositions[heapSlots[index]] = index;
+            index = child;
+        }
+        heapSlots[index] = slot;
+        heapValues[index] = value;
+        heapPositions[slot] = index;
+    }
+}
@@ -106,6 +106,7 @@ public class CHPreparationHandler {
                         // todo: this is ugly, see comments in LMPreparationHandler
                         graph.getDirectory().remove("nodes_ch_" + c.getName());
                         graph.getDirectory().remove("shortcuts_" + c.getName());
+                        graph.getDirectory().remove("shortcut_aggregates_" + c.getName());
                     }
                 });
         GHUtility.runConcurrently(runnables, preparationThreads);
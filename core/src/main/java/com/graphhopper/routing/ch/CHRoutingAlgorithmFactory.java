@@ -25,6 +25,7 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters.CH;
 
 import static com.graphhopper.util.Parameters.Algorithms.*;
 import static com.graphhopper.util.Parameters.Routing.*;
@@ -78,20 +79,24 @@ public class CHRoutingAlgorithmFactory {
         String algo = opts.getString(ALGORITHM, defaultAlgo);
         if (Helper.isEmpty(algo))
             algo = defaultAlgo;
+        AbstractBidirCHAlgo bidirAlgo;
         if (ASTAR_BI.equals(algo)) {
-            return new AStarBidirectionCH(g)
+            bidirAlgo = new AStarBidirectionCH(g)
                     .setApproximation(RoutingAlgorithmFactorySimple.getApproximation(ASTAR_BI, opts, getWeighting(), g.getBaseGraph().getNodeAccess()));
         } else if (DIJKSTRA_BI.equals(algo) || Helper.isEmpty(algo)) {
             if (opts.getBool("stall_on_demand", true)) {
-                return new DijkstraBidirectionCH(g);
+                bidirAlgo = new DijkstraBidirectionCH(g);
             } else {
-                return new DijkstraBidirectionCHNoSOD(g);
+                bidirAlgo = new DijkstraBidirectionCHNoSOD(g);
             }
         } else if (ALT_ROUTE.equalsIgnoreCase(algo)) {
             return new AlternativeRouteCH(g, opts);
         } else {
             throw new IllegalArgumentException("Algorithm " + algo + " not supported for node-based Contraction Hierarchies. Try with ch.disable=true");
         }
+        if (opts.getBool(CH.DISTANCE_AND_TIME_ONLY, false) && g.hasShortcutAggregates())
+            bidirAlgo.setPathExtractorSupplier(() -> new NodeBasedCHBidirPathExtractor(g, true));
+        return bidirAlgo;
     }
 
     private Weighting getWeighting() {
@@ -20,22 +20,45 @@ package com.graphhopper.routing.ch;
 
 import com.graphhopper.routing.DefaultBidirPathExtractor;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.RoutingCHEdgeIteratorState;
 import com.graphhopper.storage.RoutingCHGraph;
 
 public class NodeBasedCHBidirPathExtractor extends DefaultBidirPathExtractor {
     private final ShortcutUnpacker shortcutUnpacker;
     private final RoutingCHGraph routingGraph;
     private final Weighting weighting;
+    private final boolean distanceAndTimeOnly;
 
     public NodeBasedCHBidirPathExtractor(RoutingCHGraph routingGraph) {
+        this(routingGraph, false);
+    }
+
+    /**
+     * @param distanceAndTimeOnly if true the stored distance and time of the shortcuts are used instead of unpacking
+     *                            them. The resulting path has the correct distance, time and weight, but no edges, so
+     *                            it cannot be used to calculate points, instructions or path details.
+     */
+    public NodeBasedCHBidirPathExtractor(RoutingCHGraph routingGraph, boolean distanceAndTimeOnly) {
         super(routingGraph.getBaseGraph(), routingGraph.getWeighting());
+        if (distanceAndTimeOnly && !routingGraph.hasShortcutAggregates())
+            throw new IllegalArgumentException("The distance and time of the shortcuts are not stored for " + routingGraph.getWeighting());
         this.routingGraph = routingGraph;
+        this.distanceAndTimeOnly = distanceAndTimeOnly;
         shortcutUnpacker = createShortcutUnpacker();
         weighting = routingGraph.getBaseGraph().wrapWeighting(routingGraph.getWeighting());
     }
 
     @Override
     public void onEdge(int edge, int adjNode, boolean reverse, int prevOrNextEdge) {
+        if (distanceAndTimeOnly) {
+            RoutingCHEdgeIteratorState edgeState = routingGraph.getEdgeIteratorState(edge, adjNode);
+            if (edgeState.isShortcut()) {
+                path.addDistance_mm(routingGraph.getShortcutDistance_mm(edge));
+                // in the backward search we travel from adjNode towards the base node
+                path.addTime(routingGraph.getShortcutTime(edge, reverse ? edgeState.getBaseNode() : adjNode));
+                return;
+            }
+        }
         if (reverse) {
             shortcutUnpacker.visitOriginalEdgesBwd(edge, adjNode, true, prevOrNextEdge);
         } else {
@@ -47,7 +70,8 @@ public class NodeBasedCHBidirPathExtractor extends DefaultBidirPathExtractor {
         return new ShortcutUnpacker(routingGraph, (edge, reverse, prevOrNextEdgeId) -> {
             path.addDistance_mm(edge.getDistance_mm());
             path.addTime(weighting.calcEdgeMillis(edge, reverse));
-            path.addEdge(edge.getEdge());
+            if (!distanceAndTimeOnly)
+                path.addEdge(edge.getEdge());
         }, false);
     }
 }
@@ -100,6 +100,7 @@ public class PrepareContractionHierarchies {
         params.setMaxNeighborUpdates(pMap.getInt(NEIGHBOR_UPDATES_MAX, params.getMaxNeighborUpdates()));
         params.setNodesContractedPercentage(pMap.getInt(CONTRACTED_NODES, params.getNodesContractedPercentage()));
         params.setLogMessagesPercentage(pMap.getInt(LOG_MESSAGES, params.getLogMessagesPercentage()));
+        params.setSortShortcuts(pMap.getBool(SORT_SHORTCUTS, params.isSortShortcuts()));
         return this;
     }
 
@@ -131,6 +132,10 @@ public class PrepareContractionHierarchies {
         allSW.start();
         initFromGraph();
         runGraphContraction();
+        if (params.isSortShortcuts())
+            sortShortcuts();
+        if (chConfig.isStoreAggregates())
+            storeAggregates();
         allSW.stop();
         logFinalGraphStats();
         return new Result(
@@ -143,6 +148,18 @@ public class PrepareContractionHierarchies {
         );
     }
 
+    private void sortShortcuts() {
+        StopWatch sw = StopWatch.started();
+        chStore.sortShortcutsByNode(graph.getEdges());
+        logger.info("sorted {} shortcuts by node, took: {}s", nf(chStore.getShortcuts()), sw.stop().getSeconds());
+    }
+
+    private void storeAggregates() {
+        StopWatch sw = StopWatch.started();
+        new ShortcutAggregator(RoutingCHGraphImpl.fromGraph(graph, chStore, chConfig)).storeAggregates(chStore);
+        logger.info("stored distance and time of {} shortcuts, took: {}s", nf(chStore.getShortcuts()), sw.stop().getSeconds());
+    }
+
     public boolean isPrepared() {
         return prepared;
     }
@@ -516,6 +533,11 @@ public class PrepareContractionHierarchies {
          * @see #periodicUpdatesPercentage
          */
         private int logMessagesPercentage;
+        /**
+         * Whether the shortcuts should be grouped by node instead of the contraction order after the contraction,
+         * see {@link CHStorage#sortShortcutsByNode}.
+         */
+        private boolean sortShortcuts;
 
         static Params forTraversalMode(TraversalMode traversalMode) {
             // Lower values for the neighbor update percentage (and/or max neighbor updates) yield a slower
@@ -590,6 +612,14 @@ public class PrepareContractionHierarchies {
             this.logMessagesPercentage = logMessagesPercentage;
         }
 
+        boolean isSortShortcuts() {
+            return sortShortcuts;
+        }
+
+        void setSortShortcuts(boolean sortShortcuts) {
+            this.sortShortcuts = sortShortcuts;
+        }
+
         private void checkPercentage(String name, int value) {
             if (value < 0 || value > 100) {
                 throw new IllegalArgumentException(name + " has to be in [0, 100], to disable it use 0");
@@ -0,0 +1,178 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHStorage;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.RoutingCHEdgeIteratorState;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.Arrays;
+
+/**
+ * Calculates the distance and time of the edges of a node-based CH graph. For shortcuts these are the sums over the
+ * original edges. Instead of unpacking a shortcut completely the values are calculated from the two skipped edges
+ * and cached, so every shortcut is only visited once per direction.
+ * <p>
+ * The time depends on the direction of travel, so it is cached separately for both directions of a shortcut. If the
+ * CH graph already contains the aggregated values they are used directly. When the aggregates are stored the storage
+ * itself is used as the cache, otherwise the cache arrays are only allocated once a shortcut is requested. This class
+ * is not thread-safe.
+ */
+public class ShortcutAggregator {
+    private final RoutingCHGraph chGraph;
+    private final Graph baseGraph;
+    private final Weighting weighting;
+    private final int baseEdges;
+    private final boolean useStoredAggregates;
+    // the storage the aggregates are written to, see storeAggregates. while it is set it replaces the arrays below
+    private CHStorage store;
+    // the values calculated so far or -1, the times are in the directions from node A to node B and vice versa
+    private long[] distances;
+    private int[] millisAB;
+    private int[] millisBA;
+
+    public ShortcutAggregator(RoutingCHGraph chGraph) {
+        if (chGraph.isEdgeBased())
+            throw new IllegalArgumentException("ShortcutAggregator only supports node-based CH");
+        this.chGraph = chGraph;
+        this.baseGraph = chGraph.getBaseGraph();
+        this.weighting = chGraph.getWeighting();
+        this.baseEdges = baseGraph.getEdges();
+        this.useStoredAggregates = chGraph.hasShortcutAggregates();
+    }
+
+    /**
+     * @return the distance in millimeter of the specified CH edge
+     */
+    public long getDistance_mm(int chEdge) {
+        if (chEdge < baseEdges)
+            return baseGraph.getEdgeIteratorState(chEdge, Integer.MIN_VALUE).getDistance_mm();
+        if (useStoredAggregates)
+            return chGraph.getShortcutDistance_mm(chEdge);
+        int shortcut = chEdge - baseEdges;
+        long distance = getCachedDistance(shortcut);
+        if (distance < 0) {
+            RoutingCHEdgeIteratorState state = chGraph.getEdgeIteratorState(chEdge, Integer.MIN_VALUE);
+            distance = getDistance_mm(state.getSkippedEdge1()) + getDistance_mm(state.getSkippedEdge2());
+            setCachedDistance(shortcut, distance);
+        }
+        return distance;
+    }
+
+    /**
+     * @return the time in milliseconds it takes to travel along the specified CH edge from the node 'from' to the
+     * node 'to'
+     */
+    public long getMillis(int chEdge, int from, int to) {
+        if (chEdge < baseEdges) {
+            EdgeIteratorState edgeState = baseGraph.getEdgeIteratorState(chEdge, to);
+            return weighting.calcEdgeMillis(edgeState, false);
+        }
+        if (useStoredAggregates)
+            return chGraph.getShortcutTime(chEdge, to);
+        int shortcut = chEdge - baseEdges;
+        RoutingCHEdgeIteratorState state = chGraph.getEdgeIteratorState(chEdge, Integer.MIN_VALUE);
+        boolean ab = state.getAdjNode() == to;
+        long millis = getCachedMillis(shortcut, ab);
+        if (millis < 0) {
+            // one of the skipped edges connects 'from' with the contracted node, the other one connects it with 'to'
+            int skip1 = state.getSkippedEdge1(), skip2 = state.getSkippedEdge2();
+            RoutingCHEdgeIteratorState second = chGraph.getEdgeIteratorState(skip2, to);
+            if (second == null) {
+                second = chGraph.getEdgeIteratorState(skip1, to);
+                skip1 = skip2;
+                skip2 = second.getEdge();
+            }
+            int via = second.getBaseNode();
+            millis = getMillis(skip1, from, via) + getMillis(skip2, via, to);
+            setCachedMillis(shortcut, ab, millis);
+        }
+        return millis;
+    }
+
+    /**
+     * Calculates the distance and time of all shortcuts of the CH graph and adds them to the given storage, which
+     * needs to be the storage of the CH graph. The values are written to the storage while they are calculated, so
+     * no additional memory is needed.
+     */
+    public void storeAggregates(CHStorage store) {
+        if (store.getShortcuts() != chGraph.getShortcuts())
+            throw new IllegalArgumentException("The storage does not belong to the CH graph, shortcuts: " + store.getShortcuts() + " vs. " + chGraph.getShortcuts());
+        store.createAggregates();
+        for (int shortcut = 0; shortcut < store.getShortcuts(); shortcut++)
+            store.setAggregates(shortcut, -1, -1, -1);
+        this.store = store;
+        for (int shortcut = 0; shortcut < store.getShortcuts(); shortcut++) {
+            long pointer = store.toShortcutPointer(shortcut);
+            int nodeA = store.getNodeA(pointer), nodeB = store.getNodeB(pointer);
+            getDistance_mm(baseEdges + shortcut);
+            // the time is only meaningful in the directions the shortcut can be used, it stays -1 otherwise
+            if (store.getFwdAccess(pointer))
+                getMillis(baseEdges + shortcut, nodeA, nodeB);
+            if (store.getBwdAccess(pointer))
+                getMillis(baseEdges + shortcut, nodeB, nodeA);
+        }
+    }
+
+    private long getCachedDistance(int shortcut) {
+        if (store != null)
+            return store.getDistance_mm(shortcut);
+        ensureCacheArrays();
+        return distances[shortcut];
+    }
+
+    private void setCachedDistance(int shortcut, long distance) {
+        if (store != null)
+            store.setAggregates(shortcut, distance, store.getMillis(shortcut, true), store.getMillis(shortcut, false));
+        else
+            distances[shortcut] = distance;
+    }
+
+    private long getCachedMillis(int shortcut, boolean ab) {
+        if (store != null)
+            return store.getMillis(shortcut, ab);
+        ensureCacheArrays();
+        return ab ? millisAB[shortcut] : millisBA[shortcut];
+    }
+
+    private void setCachedMillis(int shortcut, boolean ab, long millis) {
+        if (millis > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("shortcut time too large: " + millis);
+        if (store != null)
+            store.setAggregates(shortcut, store.getDistance_mm(shortcut),
+                    ab ? millis : store.getMillis(shortcut, true), ab ? store.getMillis(shortcut, false) : millis);
+        else if (ab)
+            millisAB[shortcut] = (int) millis;
+        else
+            millisBA[shortcut] = (int) millis;
+    }
+
+    private void ensureCacheArrays() {
+        if (distances != null)
+            return;
+        distances = new long[chGraph.getShortcuts()];
+        millisAB = new int[chGraph.getShortcuts()];
+        millisBA = new int[chGraph.getShortcuts()];
+        Arrays.fill(distances, -1);
+        Arrays.fill(millisAB, -1);
+        Arrays.fill(millisBA, -1);
+    }
+}
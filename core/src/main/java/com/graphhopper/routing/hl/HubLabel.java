@@ -0,0 +1,80 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.hl;
+
+import java.util.Arrays;
+
+/**
+ * The decoded forward or backward label of a single node: a list of hubs sorted by their CH level together with the
+ * weight, distance and time from the node to the hub (forward) or from the hub to the node (backward). Instances
+ * are reused for many nodes to avoid allocations.
+ */
+class HubLabel {
+    int size;
+    int[] hubs = new int[16];
+    long[] weights = new long[16];
+    long[] distances = new long[16];
+    long[] millis = new long[16];
+    // used to read the encoded label
+    byte[] buffer = new byte[64];
+
+    void clear() {
+        size = 0;
+    }
+
+    void add(int hub, long weight, long distance, long time) {
+        if (size == hubs.length) {
+            int newSize = size * 2;
+            hubs = Arrays.copyOf(hubs, newSize);
+            weights = Arrays.copyOf(weights, newSize);
+            distances = Arrays.copyOf(distances, newSize);
+            millis = Arrays.copyOf(millis, newSize);
+        }
+        hubs[size] = hub;
+        weights[size] = weight;
+        distances[size] = distance;
+        millis[size] = time;
+        size++;
+    }
+
+    /**
+     * @return the index of the common hub with the smallest summed weight of this forward label and the specified
+     * backward label or -1 if they have no common hub. The index of the other label is stored in otherIndex[0].
+     */
+    int intersect(HubLabel bwd, int[] otherIndex) {
+        long best = Long.MAX_VALUE;
+        int bestIndex = -1;
+        for (int i = 0, j = 0; i < size && j < bwd.size; ) {
+            if (hubs[i] < bwd.hubs[j]) {
+                i++;
+            } else if (hubs[i] > bwd.hubs[j]) {
+                j++;
+            } else {
+                long weight = weights[i] + bwd.weights[j];
+                if (weight < best) {
+                    best = weight;
+                    bestIndex = i;
+                    otherIndex[0] = j;
+                }
+                i++;
+                j++;
+            }
+        }
+        return bestIndex;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.hl;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.ch.ShortcutAggregator;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Creates hub labels from a node-based CH graph. The hubs of a node are the nodes found by the upward CH search
+ * starting at this node, so the label of a node can be created from the labels of its upward neighbors. Therefore
+ * the nodes are processed from the highest to the lowest CH level. Entries that are not part of a shortest path
+ * (i.e. the distance to the hub is shorter via another hub of the label) are pruned.
+ * <p>
+ * The hubs are identified by their CH level, which makes the query a simple merge of two sorted lists, see
+ * {@link HubLabelQuery}. The label sizes and thus the memory usage and preparation time grow quickly with the size
+ * of the graph, so hub labels are meant for small and medium sized areas.
+ */
+public class HubLabelBuilder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HubLabelBuilder.class);
+    private final RoutingCHGraph chGraph;
+    private final HubLabelStorage storage;
+    private final ShortcutAggregator aggregator;
+    private final int nodes;
+    // the node for every CH level
+    private final int[] nodeByLevel;
+    // the best entry found so far for every hub while a label is created
+    private final long[] weights;
+    private final long[] distances;
+    private final long[] millis;
+    private final IntArrayList touchedHubs = new IntArrayList();
+    private final HubLabel candidates = new HubLabel();
+    private final HubLabel neighborLabel = new HubLabel();
+    private final HubLabel hubLabel = new HubLabel();
+    private final HubLabel label = new HubLabel();
+    private final int[] otherIndex = new int[1];
+
+    public HubLabelBuilder(RoutingCHGraph chGraph, HubLabelStorage storage) {
+        if (chGraph.isEdgeBased())
+            throw new IllegalArgumentException("Hub labels can only be created for node-based CH");
+        this.chGraph = chGraph;
+        this.storage = storage;
+        this.aggregator = new ShortcutAggregator(chGraph);
+        this.nodes = chGraph.getNodes();
+        nodeByLevel = new int[nodes];
+        Arrays.fill(nodeByLevel, -1);
+        for (int node = 0; node < nodes; node++) {
+            int level = chGraph.getLevel(node);
+            if (nodeByLevel[level] >= 0)
+                throw new IllegalStateException("Hub labels require a fully contracted CH graph, but nodes "
+                        + nodeByLevel[level] + " and " + node + " have the same level " + level);
+            nodeByLevel[level] = node;
+        }
+        weights = new long[nodes];
+        distances = new long[nodes];
+        millis = new long[nodes];
+        Arrays.fill(weights, Long.MAX_VALUE);
+    }
+
+    public void build() {
+        StopWatch sw = StopWatch.started();
+        RoutingCHEdgeExplorer outExplorer = chGraph.createOutEdgeExplorer();
+        RoutingCHEdgeExplorer inExplorer = chGraph.createInEdgeExplorer();
+        for (int level = nodes - 1; level >= 0; level--) {
+            int node = nodeByLevel[level];
+            buildLabel(node, level, outExplorer, false);
+            buildLabel(node, level, inExplorer, true);
+            if (level % 100_000 == 0 && level > 0)
+                LOGGER.info("remaining nodes: " + Helper.nf(level) + ", label entries: " + Helper.nf(storage.getEntries()) + ", " + Helper.getMemInfo());
+        }
+        LOGGER.info("created hub labels, " + storage.toDetailsString() + ", took: " + sw.stop().getSeconds() + "s");
+    }
+
+    private void buildLabel(int node, int level, RoutingCHEdgeExplorer explorer, boolean reverse) {
+        touchedHubs.clear();
+        update(level, 0, 0, 0);
+        RoutingCHEdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next()) {
+            int adj = iter.getAdjNode();
+            if (adj == node || chGraph.getLevel(adj) < level)
+                continue;
+            double edgeWeight = iter.getWeight(reverse);
+            if (Double.isInfinite(edgeWeight))
+                continue;
+            long edgeDistance = aggregator.getDistance_mm(iter.getEdge());
+            long edgeMillis = reverse ? aggregator.getMillis(iter.getEdge(), adj, node) : aggregator.getMillis(iter.getEdge(), node, adj);
+            storage.getLabel(adj, reverse, neighborLabel);
+            for (int i = 0; i < neighborLabel.size; i++)
+                update(neighborLabel.hubs[i], (long) edgeWeight + neighborLabel.weights[i],
+                        edgeDistance + neighborLabel.distances[i], edgeMillis + neighborLabel.millis[i]);
+        }
+
+        Arrays.sort(touchedHubs.buffer, 0, touchedHubs.size());
+        candidates.clear();
+        for (int i = 0; i < touchedHubs.size(); i++) {
+            int hub = touchedHubs.get(i);
+            candidates.add(hub, weights[hub], distances[hub], millis[hub]);
+            weights[hub] = Long.MAX_VALUE;
+        }
+
+        // for the forward label of this node we check the weight to every hub using the backward label of the hub
+        // and vice versa
+        label.clear();
+        for (int i = 0; i < candidates.size; i++) {
+            int hub = candidates.hubs[i];
+            if (hub != level) {
+                storage.getLabel(nodeByLevel[hub], !reverse, hubLabel);
+                if (isDominated(reverse, candidates.weights[i]))
+                    continue;
+            }
+            label.add(hub, candidates.weights[i], candidates.distances[i], candidates.millis[i]);
+        }
+        storage.setLabel(node, reverse, label);
+    }
+
+    private boolean isDominated(boolean reverse, long weight) {
+        int index = reverse ? hubLabel.intersect(candidates, otherIndex) : candidates.intersect(hubLabel, otherIndex);
+        if (index < 0)
+            return false;
+        long best = reverse
+                ? hubLabel.weights[index] + candidates.weights[otherIndex[0]]
+                : candidates.weights[index] + hubLabel.weights[otherIndex[0]];
+        return best < weight;
+    }
+
+    private void update(int hub, long weight, long distance, long time) {
+        if (weights[hub] == Long.MAX_VALUE)
+            touchedHubs.add(hub);
+        else if (weights[hub] <= weight)
+            return;
+        weights[hub] = weight;
+        distances[hub] = distance;
+        millis[hub] = time;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.hl;
+
+/**
+ * Calculates the weight, distance and time of the shortest path between two nodes of the graph by intersecting the
+ * forward label of the start node with the backward label of the target node. No graph exploration is needed, but
+ * only nodes of the base graph are supported, i.e. the query points need to be snapped to tower nodes without using
+ * a QueryGraph, e.g. via LocationIndex.findClosest(...).getClosestNode().
+ * <p>
+ * This class is not thread-safe, use one instance per thread.
+ */
+public class HubLabelQuery {
+    private final HubLabelStorage storage;
+    private final HubLabel fwdLabel = new HubLabel();
+    private final HubLabel bwdLabel = new HubLabel();
+    private final int[] bwdIndex = new int[1];
+    private long weight;
+    private long distance;
+    private long millis;
+
+    public HubLabelQuery(HubLabelStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * @return true if a path from the node 'from' to the node 'to' exists
+     */
+    public boolean calc(int from, int to) {
+        if (from < 0 || from >= storage.getNodes() || to < 0 || to >= storage.getNodes())
+            throw new IllegalArgumentException("Invalid nodes " + from + " -> " + to + ", nodes: " + storage.getNodes());
+        weight = Long.MAX_VALUE;
+        distance = 0;
+        millis = 0;
+        if (from == to) {
+            weight = 0;
+            return true;
+        }
+        storage.getLabel(from, false, fwdLabel);
+        storage.getLabel(to, true, bwdLabel);
+        int index = fwdLabel.intersect(bwdLabel, bwdIndex);
+        if (index < 0)
+            return false;
+        weight = fwdLabel.weights[index] + bwdLabel.weights[bwdIndex[0]];
+        distance = fwdLabel.distances[index] + bwdLabel.distances[bwdIndex[0]];
+        millis = fwdLabel.millis[index] + bwdLabel.millis[bwdIndex[0]];
+        return true;
+    }
+
+    /**
+     * @return the weight of the path found by the last call to {@link #calc} or infinity if no path was found
+     */
+    public double getWeight() {
+        return weight == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : weight;
+    }
+
+    /**
+     * @return the distance in meters
+     */
+    public double getDistance() {
+        return distance / 1000.0;
+    }
+
+    /**
+     * @return the time in milliseconds
+     */
+    public long getTime() {
+        return millis;
+    }
+}
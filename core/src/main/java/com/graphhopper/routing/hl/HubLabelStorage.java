@@ -0,0 +1,222 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.hl;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+
+import java.util.Arrays;
+
+/**
+ * DataAccess-based storage of the forward and backward hub labels of all nodes, see {@link HubLabelBuilder}.
+ * <p>
+ * Every label is stored as its byte length, its number of entries and then the entries as variable length integers:
+ * the difference of the hub to the previous hub (the hubs are sorted), the weight, the distance in millimeter and
+ * the time in milliseconds. The index stores the position of the forward and the backward label of every node.
+ */
+public class HubLabelStorage {
+    private static final int VERSION = 1;
+    private static final int INDEX_BYTES = 16;
+    private final Directory dir;
+    private final DataAccess index;
+    private final DataAccess labels;
+    private int nodes = -1;
+    private long bytes;
+    private long entries;
+
+    public HubLabelStorage(Directory dir, String name) {
+        this.dir = dir;
+        index = dir.create("hub_label_index_" + name);
+        labels = dir.create("hub_labels_" + name);
+    }
+
+    public HubLabelStorage create(int nodes) {
+        if (this.nodes >= 0)
+            throw new IllegalStateException("HubLabelStorage can only be created once");
+        this.nodes = nodes;
+        index.create((long) nodes * INDEX_BYTES);
+        labels.create(1024);
+        return this;
+    }
+
+    /**
+     * @param expectedNodes the number of nodes of the graph the labels are used for
+     * @return false if the labels were not stored or if they were stored for a different number of nodes. In both
+     * cases the storage needs to be removed via {@link #remove} and created again.
+     */
+    public boolean loadExisting(int expectedNodes) {
+        if (!index.loadExisting() || !labels.loadExisting())
+            return false;
+        GHUtility.checkDAVersion(labels.getName(), VERSION, labels.getHeader(0));
+        nodes = labels.getHeader(4);
+        bytes = bitsToLong(labels.getHeader(8), labels.getHeader(12));
+        entries = bitsToLong(labels.getHeader(16), labels.getHeader(20));
+        return nodes == expectedNodes;
+    }
+
+    /**
+     * Closes this storage and removes its files from the directory
+     */
+    public void remove() {
+        dir.remove(index.getName());
+        dir.remove(labels.getName());
+    }
+
+    public void flush() {
+        labels.setHeader(0, VERSION);
+        labels.setHeader(4, nodes);
+        labels.setHeader(8, (int) bytes);
+        labels.setHeader(12, (int) (bytes >>> 32));
+        labels.setHeader(16, (int) entries);
+        labels.setHeader(20, (int) (entries >>> 32));
+        index.flush();
+        labels.flush();
+    }
+
+    public void close() {
+        index.close();
+        labels.close();
+    }
+
+    public boolean isClosed() {
+        return labels.isClosed();
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the total number of label entries of all nodes
+     */
+    public long getEntries() {
+        return entries;
+    }
+
+    public long getCapacity() {
+        return index.getCapacity() + labels.getCapacity();
+    }
+
+    public String toDetailsString() {
+        return "nodes: " + Helper.nf(nodes) + ", label entries: " + Helper.nf(entries)
+                + ", avg per label: " + (nodes == 0 ? 0 : Math.round(entries / (2.0 * nodes)))
+                + ", " + Helper.nf(getCapacity() / Helper.MB) + "MB";
+    }
+
+    /**
+     * Appends the encoded label and stores its position for the specified node
+     */
+    void setLabel(int node, boolean reverse, HubLabel label) {
+        byte[] buffer = label.buffer;
+        int length = 0;
+        int prevHub = 0;
+        for (int i = 0; i < label.size; i++) {
+            // make sure there is enough space for four variable length longs
+            if (buffer.length < length + 4 * 10) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + 4 * 10));
+                label.buffer = buffer;
+            }
+            length = writeVarLong(buffer, length, label.hubs[i] - prevHub);
+            length = writeVarLong(buffer, length, label.weights[i]);
+            length = writeVarLong(buffer, length, label.distances[i]);
+            length = writeVarLong(buffer, length, label.millis[i]);
+            prevHub = label.hubs[i];
+        }
+        long pointer = bytes;
+        // keep the positions aligned so the ints at the beginning of the labels do not cross segment borders
+        long newBytes = pointer + 8 + ((length + 3) & ~3);
+        labels.ensureCapacity(newBytes);
+        labels.setInt(pointer, length);
+        labels.setInt(pointer + 4, label.size);
+        labels.setBytes(pointer + 8, buffer, length);
+        bytes = newBytes;
+        entries += label.size;
+
+        long indexPointer = (long) node * INDEX_BYTES + (reverse ? 8 : 0);
+        index.setInt(indexPointer, (int) pointer);
+        index.setInt(indexPointer + 4, (int) (pointer >>> 32));
+    }
+
+    /**
+     * Decodes the forward (reverse=false) or backward label of the specified node into the specified label.
+     */
+    void getLabel(int node, boolean reverse, HubLabel label) {
+        long indexPointer = (long) node * INDEX_BYTES + (reverse ? 8 : 0);
+        long pointer = bitsToLong(index.getInt(indexPointer), index.getInt(indexPointer + 4));
+        int length = labels.getInt(pointer);
+        int size = labels.getInt(pointer + 4);
+        if (label.buffer.length < length)
+            label.buffer = new byte[Math.max(length, label.buffer.length * 2)];
+        byte[] buffer = label.buffer;
+        labels.getBytes(pointer + 8, buffer, length);
+        label.clear();
+        int pos = 0;
+        int hub = 0;
+        for (int i = 0; i < size; i++) {
+            long value = 0;
+            // we decode inline instead of calling a method per value because this is the hot loop of the queries
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            hub += (int) value;
+            long weight = 0;
+            shift = 0;
+            do {
+                b = buffer[pos++];
+                weight |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            long distance = 0;
+            shift = 0;
+            do {
+                b = buffer[pos++];
+                distance |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            long millis = 0;
+            shift = 0;
+            do {
+                b = buffer[pos++];
+                millis |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            label.add(hub, weight, distance, millis);
+        }
+    }
+
+    private static int writeVarLong(byte[] buffer, int pos, long value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Cannot store negative value " + value);
+        while ((value & ~0x7FL) != 0) {
+            buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static long bitsToLong(int low, int high) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+}
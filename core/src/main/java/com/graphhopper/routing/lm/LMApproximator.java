@@ -46,6 +46,11 @@ public class LMApproximator implements WeightApproximator {
     private double epsilon = 1;
     private int towerNodeNextToT = -1;
     private double weightFromTToTowerNode;
+    // the stored landmark weights can be smaller than the real weights by less than this step
+    private int weightStep = 1;
+    // the shift of the compressed weights of the subnetwork of the target, so the subnetwork is not looked up for
+    // every weight
+    private int weightShift;
     private boolean recalculateActiveLandmarks = true;
     private final double factor;
     private final boolean reverse;
@@ -114,8 +119,8 @@ public class LMApproximator implements WeightApproximator {
             recalculateActiveLandmarks = false;
             if (lms.chooseActiveLandmarks(v, towerNodeNextToT, activeLandmarkIndices, reverse)) {
                 for (int i = 0; i < activeLandmarkIndices.length; i++) {
-                    weightsFromActiveLandmarksToT[i] = lms.getFromWeight(activeLandmarkIndices[i], towerNodeNextToT);
-                    weightsFromTToActiveLandmarks[i] = lms.getToWeight(activeLandmarkIndices[i], towerNodeNextToT);
+                    weightsFromActiveLandmarksToT[i] = lms.getFromWeight(activeLandmarkIndices[i], towerNodeNextToT, weightShift);
+                    weightsFromTToActiveLandmarks[i] = lms.getToWeight(activeLandmarkIndices[i], towerNodeNextToT, weightShift);
                 }
             } else {
                 // note: fallback==true means forever true!
@@ -137,7 +142,7 @@ public class LMApproximator implements WeightApproximator {
             maxWeightInt = Math.max(maxWeightInt, resultInt);
         }
         // Round down, we need to be an underestimator.
-        return (maxWeightInt - 1) * factor;
+        return (maxWeightInt - weightStep) * factor;
     }
 
     private int approximateForLandmark(int i, int v) {
@@ -171,8 +176,8 @@ public class LMApproximator implements WeightApproximator {
         //
         // ...and we can get the right-hand sides of III) and IV) by multiplying those of II) and I) by -1.
 
-        int rhs1Int = lms.getToWeight(activeLandmarkIndices[i], v) - weightsFromTToActiveLandmarks[i];
-        int rhs2Int = weightsFromActiveLandmarksToT[i] - lms.getFromWeight(activeLandmarkIndices[i], v);
+        int rhs1Int = lms.getToWeight(activeLandmarkIndices[i], v, weightShift) - weightsFromTToActiveLandmarks[i];
+        int rhs2Int = weightsFromActiveLandmarksToT[i] - lms.getFromWeight(activeLandmarkIndices[i], v, weightShift);
 
         if (reverse) {
             rhs1Int *= -1;
@@ -186,15 +191,17 @@ public class LMApproximator implements WeightApproximator {
         this.fallBackApproximation.setTo(t);
         this.beelineApproximation.setTo(t);
         findClosestRealNode(t);
+        weightShift = lms.getWeightShift(towerNodeNextToT);
+        weightStep = 1 << weightShift;
     }
 
     private void findClosestRealNode(int t) {
         Dijkstra dijkstra = new Dijkstra(graph, lmWeighting, TraversalMode.NODE_BASED) {
             @Override
             protected boolean finished() {
-                towerNodeNextToT = currEdge.adjNode;
-                weightFromTToTowerNode = currEdge.weight;
-                return currEdge.adjNode < maxBaseNodes;
+                towerNodeNextToT = getCurrNode();
+                weightFromTToTowerNode = getCurrWeight();
+                return towerNodeNextToT < maxBaseNodes;
             }
 
             // We only expect a very short search
@@ -213,7 +220,7 @@ public class LMApproximator implements WeightApproximator {
 
     @Override
     public double getSlack() {
-        return lms.getFactor();
+        return weightStep * lms.getFactor();
     }
 
     @Override
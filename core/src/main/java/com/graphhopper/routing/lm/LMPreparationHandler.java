@@ -56,6 +56,8 @@ public class LMPreparationHandler {
     private final List<LMProfile> lmProfiles = new ArrayList<>();
     private final Map<String, Double> maximumWeights = new HashMap<>();
     private int minNodes = -1;
+    private int weightBits = 16;
+    private int maxStaleChanges = 0;
     private final List<String> lmSuggestionsLocations = new ArrayList<>(5);
     private int preparationThreads;
     private boolean logDetails = false;
@@ -77,6 +79,8 @@ public class LMPreparationHandler {
         landmarkCount = ghConfig.getInt(Parameters.Landmark.COUNT, landmarkCount);
         logDetails = ghConfig.getBool(Landmark.PREPARE + "log_details", false);
         minNodes = ghConfig.getInt(Landmark.PREPARE + "min_network_size", -1);
+        weightBits = ghConfig.getInt(Landmark.PREPARE + "weight_bits", weightBits);
+        maxStaleChanges = ghConfig.getInt(Landmark.PREPARE + "max_stale_changes", maxStaleChanges);
 
         for (String loc : ghConfig.getString(Landmark.PREPARE + "suggestions_location", "").split(",")) {
             if (!loc.trim().isEmpty())
@@ -139,12 +143,36 @@ public class LMPreparationHandler {
         return lmProfiles;
     }
 
+    /**
+     * @return the number of OSM change files that can be applied to the graph before stale landmarks need to be
+     * prepared again, see {@link LandmarkStorage#setStale}
+     */
+    public int getMaxStaleChanges() {
+        return maxStaleChanges;
+    }
+
+    public LMPreparationHandler setMaxStaleChanges(int maxStaleChanges) {
+        this.maxStaleChanges = maxStaleChanges;
+        return this;
+    }
+
     /**
      * Loads the landmark data for all given configs if available.
      *
      * @return the loaded landmark storages
      */
     public List<LandmarkStorage> load(List<LMConfig> lmConfigs, BaseGraph baseGraph, EncodedValueLookup encodedValueLookup) {
+        return load(lmConfigs, baseGraph, encodedValueLookup, Collections.emptySet());
+    }
+
+    /**
+     * Loads the landmark data for all given configs if available.
+     *
+     * @param staleNames the names of the configs whose landmarks were prepared before OSM changes were applied to the
+     *                   graph, see {@link LandmarkStorage#setStale}
+     * @return the loaded landmark storages
+     */
+    public List<LandmarkStorage> load(List<LMConfig> lmConfigs, BaseGraph baseGraph, EncodedValueLookup encodedValueLookup, Set<String> staleNames) {
         List<LandmarkStorage> loaded = Collections.synchronizedList(new ArrayList<>());
         Stream<Runnable> loadingRunnables = lmConfigs.stream()
                 .map(lmConfig -> () -> {
@@ -152,7 +180,8 @@ public class LMPreparationHandler {
                     //       is load the landmark data and these parameters are only needed to calculate the landmarks.
                     //       we should also work towards a separation of the storage and preparation related code in
                     //       landmark storage
-                    LandmarkStorage lms = new LandmarkStorage(baseGraph, encodedValueLookup, baseGraph.getDirectory(), lmConfig, landmarkCount);
+                    LandmarkStorage lms = new LandmarkStorage(baseGraph, encodedValueLookup, baseGraph.getDirectory(), lmConfig, landmarkCount)
+                            .setStale(staleNames.contains(lmConfig.getName()));
                     if (lms.loadExisting())
                         loaded.add(lms);
                     else {
@@ -226,6 +255,7 @@ public class LMPreparationHandler {
                     lmConfig, landmarkCount).
                     setLandmarkSuggestions(lmSuggestions).
                     setMaximumWeight(maximumWeight).
+                    setWeightBits(weightBits).
                     setLogDetails(logDetails);
             if (minNodes > 1)
                 prepareLandmarks.setMinimumNodes(minNodes);
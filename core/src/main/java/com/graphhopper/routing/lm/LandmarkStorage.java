@@ -77,6 +77,10 @@ public class LandmarkStorage {
     private final int FROM_OFFSET;
     private final int TO_OFFSET;
     private final DataAccess landmarkWeightDA;
+    // the bits per stored weight, with less than 16 bits the weights are compressed after the preparation
+    private int weightBits = 16;
+    // only for compressed weights: how many bits the weights of every subnetwork were shifted to the right
+    private int[] weightShifts;
     // every subnetwork has its own landmark mapping but the count of landmarks is always the same
     private final List<int[]> landmarkIDs;
     private double factor = -1;
@@ -89,6 +93,9 @@ public class LandmarkStorage {
     private Weighting lmSelectionWeighting;
     private final TraversalMode traversalMode;
     private boolean initialized;
+    private boolean stale;
+    // the number of nodes the landmarks were prepared for
+    private int baseNodes;
     private int minimumNodes;
     private final SubnetworkStorage subnetworkStorage;
     private List<LandmarkSuggestion> landmarkSuggestions = Collections.emptyList();
@@ -104,6 +111,7 @@ public class LandmarkStorage {
         this.encodedValueLookup = encodedValueLookup;
         this.na = graph.getNodeAccess();
         this.minimumNodes = Math.min(graph.getNodes() / 2, 500_000);
+        this.baseNodes = graph.getNodes();
         this.lmConfig = lmConfig;
         this.weighting = lmConfig.getWeighting();
         if (weighting.hasTurnCosts()) {
@@ -162,6 +170,46 @@ public class LandmarkStorage {
         return this;
     }
 
+    /**
+     * Stores every weight with the given number of bits instead of 16 bits. The weights are still calculated with 16
+     * bits, but afterwards the weights of every subnetwork are shifted to the right until the largest weight of this
+     * subnetwork fits. This reduces the memory of the weights to 75% (12 bits) or 50% (8 bits), but the approximation
+     * gets less precise for large subnetworks.
+     *
+     * @param weightBits 8, 12 or 16
+     */
+    public LandmarkStorage setWeightBits(int weightBits) {
+        if (weightBits != 8 && weightBits != 12 && weightBits != 16)
+            throw new IllegalArgumentException("weight bits must be 8, 12 or 16, but was " + weightBits);
+        if (isInitialized())
+            throw new IllegalStateException("Cannot change the weight bits after the landmarks were created or loaded");
+        this.weightBits = weightBits;
+        return this;
+    }
+
+    public int getWeightBits() {
+        return weightBits;
+    }
+
+    /**
+     * Marks the landmarks as prepared before OSM changes were applied to the graph, which can add nodes and edges and
+     * change the weights of edges. Then the landmark data can be loaded although the graph has more nodes: the added
+     * nodes are treated like virtual nodes, i.e. their approximation is zero, and for nodes that are in different
+     * subnetworks of the landmark data, which might be connected now, the approximation falls back to the beeline.
+     * The approximation is still a lower bound if the weights only increased, e.g. because ways were removed, but it
+     * can overestimate the weight of paths via added or faster edges.
+     */
+    public LandmarkStorage setStale(boolean stale) {
+        if (isInitialized())
+            throw new IllegalStateException("Cannot mark the landmarks as stale after they were created or loaded");
+        this.stale = stale;
+        return this;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
     /**
      * By default do not log many details.
      */
@@ -321,6 +369,10 @@ public class LandmarkStorage {
         }
 
         int subnetworkCount = landmarkIDs.size();
+        if (weightBits < 16) {
+            compressWeights(subnetworks, subnetworkCount);
+            maxBytes = (long) graph.getNodes() * LM_ROW_LENGTH;
+        }
         // store all landmark node IDs and one int for the factor itself.
         this.landmarkWeightDA.ensureCapacity(maxBytes /* landmark weights */ + (long) subnetworkCount * landmarks /* landmark mapping per subnetwork */ + 4);
 
@@ -332,6 +384,15 @@ public class LandmarkStorage {
                 bytePos += 4L;
             }
         }
+        if (weightBits < 16) {
+            landmarkWeightDA.ensureCapacity(bytePos + subnetworkCount * 4L);
+            for (int weightShift : weightShifts) {
+                landmarkWeightDA.setInt(bytePos, weightShift);
+                bytePos += 4L;
+            }
+            // the compressed weights need less space than the weights that were calculated
+            landmarkWeightDA.trimTo(bytePos);
+        }
 
         landmarkWeightDA.setHeader(0 * 4, graph.getNodes());
         landmarkWeightDA.setHeader(1 * 4, landmarks);
@@ -339,6 +400,7 @@ public class LandmarkStorage {
         if (factor * DOUBLE_MLTPL > Integer.MAX_VALUE)
             throw new UnsupportedOperationException("landmark weight factor cannot be bigger than Integer.MAX_VALUE " + factor * DOUBLE_MLTPL);
         landmarkWeightDA.setHeader(3 * 4, (int) Math.round(factor * DOUBLE_MLTPL));
+        landmarkWeightDA.setHeader(4 * 4, weightBits);
 
         // serialize fast byte[] into DataAccess
         subnetworkStorage.create(graph.getNodes());
@@ -351,6 +413,59 @@ public class LandmarkStorage {
         initialized = true;
     }
 
+    /**
+     * Replaces the 16 bit weights with weightBits bits in place. For every subnetwork the weights are shifted to the
+     * right by the smallest number of bits so that the largest finite weight of this subnetwork still fits, i.e.
+     * the quantization step is 2^shift. The nodes of the small subnetworks without landmarks share the shift of the
+     * subnetwork 0.
+     */
+    private void compressWeights(byte[] subnetworks, int subnetworkCount) {
+        final int infinity = (1 << weightBits) - 1;
+        int[] maxWeights = new int[subnetworkCount];
+        for (int node = 0; node < subnetworks.length; node++) {
+            int subnetwork = Math.max(UNCLEAR_SUBNETWORK, subnetworks[node]);
+            for (int i = 0; i < landmarks * 2; i++) {
+                int weight = landmarkWeightDA.getShort((long) node * LM_ROW_LENGTH + i * 2L) & 0x0000FFFF;
+                if (weight != SHORT_INFINITY)
+                    maxWeights[subnetwork] = Math.max(maxWeights[subnetwork], weight);
+            }
+        }
+        weightShifts = new int[subnetworkCount];
+        for (int subnetwork = 0; subnetwork < subnetworkCount; subnetwork++) {
+            while (maxWeights[subnetwork] >>> weightShifts[subnetwork] >= infinity)
+                weightShifts[subnetwork]++;
+        }
+
+        // the compressed rows are shorter, so writing the compressed row of a node never overwrites a row of a later node
+        final int rowLength = landmarks * weightBits / 4;
+        byte[] row = new byte[rowLength];
+        for (int node = 0; node < subnetworks.length; node++) {
+            int shift = weightShifts[Math.max(UNCLEAR_SUBNETWORK, subnetworks[node])];
+            for (int lmIdx = 0; lmIdx < landmarks; lmIdx++) {
+                long pointer = (long) node * LM_ROW_LENGTH + lmIdx * 4L;
+                int from = compressWeight(landmarkWeightDA.getShort(pointer + FROM_OFFSET) & 0x0000FFFF, shift, infinity);
+                int to = compressWeight(landmarkWeightDA.getShort(pointer + TO_OFFSET) & 0x0000FFFF, shift, infinity);
+                if (weightBits == 8) {
+                    row[lmIdx * 2] = (byte) from;
+                    row[lmIdx * 2 + 1] = (byte) to;
+                } else {
+                    int bits = from | to << 12;
+                    row[lmIdx * 3] = (byte) bits;
+                    row[lmIdx * 3 + 1] = (byte) (bits >>> 8);
+                    row[lmIdx * 3 + 2] = (byte) (bits >>> 16);
+                }
+            }
+            landmarkWeightDA.setBytes((long) node * rowLength, row, rowLength);
+        }
+        LM_ROW_LENGTH = rowLength;
+        if (logDetails)
+            LOGGER.info("Compressed landmark weights to " + weightBits + " bits, shifts per subnetwork: " + Arrays.toString(weightShifts));
+    }
+
+    private static int compressWeight(int weight, int shift, int infinity) {
+        return weight == SHORT_INFINITY ? infinity : Math.min(weight >>> shift, infinity - 1);
+    }
+
     /**
      * This method returns the maximum weight for the graph starting from the landmarks
      */
@@ -523,6 +638,16 @@ public class LandmarkStorage {
      * a node ID but the internal index of the landmark array.
      */
     int getFromWeight(int landmarkIndex, int node) {
+        return getFromWeight(landmarkIndex, node, getWeightShift(node));
+    }
+
+    /**
+     * Like {@link #getFromWeight(int, int)}, but with the weight shift of the subnetwork of the node, see
+     * {@link #getWeightShift}. This avoids the lookup of the subnetwork for every weight.
+     */
+    int getFromWeight(int landmarkIndex, int node, int weightShift) {
+        if (weightShifts != null)
+            return getCompressedWeight(landmarkIndex, node, false, weightShift);
         int res = (int) landmarkWeightDA.getShort((long) node * LM_ROW_LENGTH + landmarkIndex * 4L + FROM_OFFSET)
                 & 0x0000FFFF;
         if (res == SHORT_INFINITY)
@@ -540,6 +665,15 @@ public class LandmarkStorage {
      * @return the weight from the specified node to the landmark (specified *as index*)
      */
     int getToWeight(int landmarkIndex, int node) {
+        return getToWeight(landmarkIndex, node, getWeightShift(node));
+    }
+
+    /**
+     * @see #getFromWeight(int, int, int)
+     */
+    int getToWeight(int landmarkIndex, int node, int weightShift) {
+        if (weightShifts != null)
+            return getCompressedWeight(landmarkIndex, node, true, weightShift);
         int res = (int) landmarkWeightDA.getShort((long) node * LM_ROW_LENGTH + landmarkIndex * 4 + TO_OFFSET)
                 & 0x0000FFFF;
         if (res == SHORT_INFINITY)
@@ -548,6 +682,41 @@ public class LandmarkStorage {
         return res;
     }
 
+    private int getCompressedWeight(int landmarkIndex, int node, boolean to, int weightShift) {
+        long pointer = (long) node * LM_ROW_LENGTH;
+        int res;
+        if (weightBits == 8) {
+            res = landmarkWeightDA.getByte(pointer + landmarkIndex * 2L + (to ? 1 : 0)) & 0xFF;
+        } else {
+            pointer += landmarkIndex * 3L;
+            int bits = (landmarkWeightDA.getShort(pointer) & 0x0000FFFF) | (landmarkWeightDA.getByte(pointer + 2) & 0xFF) << 16;
+            res = to ? bits >>> 12 : bits & 0xFFF;
+        }
+        if (res == (1 << weightBits) - 1)
+            return SHORT_MAX;
+        return res << weightShift;
+    }
+
+    /**
+     * @return the shift of the compressed weights of the subnetwork of the given node, or 0 without compressed weights.
+     * The weights of all nodes of a query can be read with the shift of the target node, because the landmark
+     * weights of nodes in other subnetworks refer to other landmarks and are not meaningful anyway.
+     */
+    int getWeightShift(int node) {
+        if (weightShifts == null)
+            return 0;
+        return weightShifts[Math.max(UNCLEAR_SUBNETWORK, subnetworkStorage.getSubnetwork(node))];
+    }
+
+    /**
+     * @return the quantization step of the weights of the subnetwork of the given node, i.e. a weight returned by
+     * {@link #getFromWeight} or {@link #getToWeight} can be smaller than the real weight by less than this step.
+     * Without compressed weights the step is 1.
+     */
+    int getWeightStep(int node) {
+        return 1 << getWeightShift(node);
+    }
+
     /**
      * @return false if the value capacity was reached and instead of the real value the SHORT_MAX was stored.
      */
@@ -580,15 +749,19 @@ public class LandmarkStorage {
         if (subnetworkFrom <= UNCLEAR_SUBNETWORK || subnetworkTo <= UNCLEAR_SUBNETWORK)
             return false;
         if (subnetworkFrom != subnetworkTo) {
+            if (stale)
+                // the subnetworks might be connected by edges that were added after the preparation
+                return false;
             throw new ConnectionNotFoundException("Connection between locations not found. Different subnetworks " + subnetworkFrom
                     + " vs. " + subnetworkTo, new HashMap<>());
         }
 
         // See the similar formula in LMApproximator.approximateForLandmark
+        int weightShift = weightShifts == null ? 0 : weightShifts[subnetworkTo];
         List<Map.Entry<Integer, Integer>> list = new ArrayList<>(landmarks);
         for (int lmIndex = 0; lmIndex < landmarks; lmIndex++) {
-            int fromWeight = getFromWeight(lmIndex, toNode) - getFromWeight(lmIndex, fromNode);
-            int toWeight = getToWeight(lmIndex, fromNode) - getToWeight(lmIndex, toNode);
+            int fromWeight = getFromWeight(lmIndex, toNode, weightShift) - getFromWeight(lmIndex, fromNode, weightShift);
+            int toWeight = getToWeight(lmIndex, fromNode, weightShift) - getToWeight(lmIndex, toNode, weightShift);
 
             list.add(new MapEntry<>(reverse
                     ? Math.max(-fromWeight, -toWeight)
@@ -684,12 +857,16 @@ public class LandmarkStorage {
                 throw new IllegalStateException("landmark weights loaded but not the subnetworks!?");
 
             int nodes = landmarkWeightDA.getHeader(0 * 4);
-            if (nodes != graph.getNodes())
+            if (stale ? nodes > graph.getNodes() : nodes != graph.getNodes())
                 throw new IllegalArgumentException("Cannot load landmark data as written for different graph storage with " + nodes + " nodes, not " + graph.getNodes());
+            baseNodes = nodes;
             landmarks = landmarkWeightDA.getHeader(1 * 4);
             int subnetworks = landmarkWeightDA.getHeader(2 * 4);
             factor = landmarkWeightDA.getHeader(3 * 4) / DOUBLE_MLTPL;
-            LM_ROW_LENGTH = landmarks * 4;
+            // the weight bits are not stored in landmark files created before the weights could be compressed
+            int storedWeightBits = landmarkWeightDA.getHeader(4 * 4);
+            weightBits = storedWeightBits == 0 ? 16 : storedWeightBits;
+            LM_ROW_LENGTH = landmarks * weightBits / 4;
             long maxBytes = LM_ROW_LENGTH * nodes;
             long bytePos = maxBytes;
 
@@ -702,6 +879,13 @@ public class LandmarkStorage {
                 }
                 landmarkIDs.add(tmpLandmarks);
             }
+            if (weightBits < 16) {
+                weightShifts = new int[subnetworks];
+                for (int j = 0; j < subnetworks; j++) {
+                    weightShifts[j] = landmarkWeightDA.getInt(bytePos);
+                    bytePos += 4;
+                }
+            }
 
             initialized = true;
             return true;
@@ -727,8 +911,12 @@ public class LandmarkStorage {
         return landmarkWeightDA.getCapacity() + subnetworkStorage.getCapacity();
     }
 
+    /**
+     * @return the number of nodes of the graph the landmarks were prepared for, it is smaller than the number of nodes
+     * of the graph if the landmarks are stale and nodes were added afterwards
+     */
     int getBaseNodes() {
-        return graph.getNodes();
+        return baseNodes;
     }
 
     private LandmarkExplorer findLandmarks(int[] landmarkNodeIdsToReturn, int startNode, EdgeFilter accessFilter, String info) {
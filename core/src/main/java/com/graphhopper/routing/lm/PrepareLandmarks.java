@@ -74,6 +74,14 @@ public class PrepareLandmarks {
         return this;
     }
 
+    /**
+     * @see LandmarkStorage#setWeightBits(int)
+     */
+    public PrepareLandmarks setWeightBits(int weightBits) {
+        lms.setWeightBits(weightBits);
+        return this;
+    }
+
     /**
      * @see LandmarkStorage#setLMSelectionWeighting(Weighting)
      */
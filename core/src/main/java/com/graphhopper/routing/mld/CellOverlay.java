@@ -0,0 +1,229 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.mld;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.coll.MinHeapWithUpdate;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The weighting-dependent part of the overlay routing: for every cell of a {@link CellPartition} this class stores the
+ * weights of the shortest paths between all pairs of boundary nodes of the cell that do not leave the cell. Creating
+ * an overlay ('customization') only requires a Dijkstra search within a single cell per boundary node and is fast
+ * enough to be done at query time, e.g. for a custom model that was not seen before, see {@link CellOverlayCache}.
+ * <p>
+ * The weights are stored as float which is exact as long as the weight of a path within a cell is below 2^24, because
+ * edge weights are whole numbers.
+ */
+public class CellOverlay {
+    private static final Logger logger = LoggerFactory.getLogger(CellOverlay.class);
+    private final BaseGraph graph;
+    private final CellPartition partition;
+    private final Weighting weighting;
+    // cliques[cell][i * k + j] is the weight from the i-th to the j-th of the k boundary nodes of the cell
+    private final float[][] cliques;
+
+    private CellOverlay(BaseGraph graph, CellPartition partition, Weighting weighting) {
+        if (weighting.hasTurnCosts())
+            throw new IllegalArgumentException("The overlay routing does not support turn costs, weighting: " + weighting);
+        this.graph = graph;
+        this.partition = partition;
+        this.weighting = weighting;
+        this.cliques = new float[partition.getCells()][];
+    }
+
+    /**
+     * Calculates the overlay for the specified weighting using the specified number of threads.
+     *
+     * @param weighting the weighting for the base graph, i.e. without the QueryGraph wrapper
+     */
+    public static CellOverlay customize(BaseGraph graph, CellPartition partition, Weighting weighting, int threads) {
+        return customize(graph, partition, weighting, threads, Long.MAX_VALUE);
+    }
+
+    /**
+     * Like {@link #customize(BaseGraph, CellPartition, Weighting, int)}, but gives up once the specified time is over.
+     *
+     * @throws IllegalArgumentException if the customization took longer than timeoutMillis
+     */
+    public static CellOverlay customize(BaseGraph graph, CellPartition partition, Weighting weighting, int threads, long timeoutMillis) {
+        StopWatch sw = StopWatch.started();
+        long finishTimeMillis = timeoutMillis == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + timeoutMillis;
+        CellOverlay overlay = new CellOverlay(graph, partition, weighting);
+        ThreadLocal<CellSearch> searches = ThreadLocal.withInitial(overlay::createSearch);
+        AtomicBoolean timedOut = new AtomicBoolean();
+        Stream<Runnable> runnables = IntStream.range(0, partition.getCells()).mapToObj(cell -> () -> {
+            // the remaining cells are skipped once the time is over
+            if (timedOut.get() || finishTimeMillis < Long.MAX_VALUE && System.currentTimeMillis() >= finishTimeMillis)
+                timedOut.set(true);
+            else
+                overlay.customizeCell(searches.get(), cell);
+        });
+        GHUtility.runConcurrently(runnables, threads);
+        if (timedOut.get())
+            throw new IllegalArgumentException("Creating the overlay for " + weighting + " took longer than " + timeoutMillis
+                    + "ms, try again later or disable the overlay routing with " + Parameters.MLD.DISABLE + "=true");
+        logger.info("customized overlay for " + weighting + " and " + partition.getCells() + " cells, took: " + sw.stop().getSeconds() + "s");
+        return overlay;
+    }
+
+    private CellSearch createSearch() {
+        return new CellSearch(partition.getMaxCellSize());
+    }
+
+    private void customizeCell(CellSearch search, int cell) {
+        int k = partition.getBoundaryCount(cell);
+        int start = partition.getBoundaryStart(cell);
+        float[] clique = new float[k * k];
+        for (int i = 0; i < k; i++) {
+            search.run(cell, partition.getBoundaryNode(start + i), -1);
+            for (int j = 0; j < k; j++)
+                clique[i * k + j] = search.getWeight(partition.getBoundaryNode(start + j));
+        }
+        cliques[cell] = clique;
+    }
+
+    public CellPartition getPartition() {
+        return partition;
+    }
+
+    public Weighting getWeighting() {
+        return weighting;
+    }
+
+    /**
+     * @return the weight of the shortest path from the i-th to the j-th boundary node of the specified cell or
+     * infinity if there is no such path within the cell
+     */
+    public float getWeight(int cell, int i, int j) {
+        return cliques[cell][i * partition.getBoundaryCount(cell) + j];
+    }
+
+    /**
+     * Finds the edges of the shortest path between the specified boundary nodes of the same cell and adds them in
+     * travel order to the specified list.
+     */
+    public void unpack(int from, int to, IntArrayList edges) {
+        int cell = partition.getCell(from);
+        if (partition.getCell(to) != cell)
+            throw new IllegalArgumentException("nodes " + from + " and " + to + " are not in the same cell");
+        CellSearch search = new CellSearch(partition.getCellSize(cell));
+        search.run(cell, from, to);
+        if (Float.isInfinite(search.getWeight(to)))
+            throw new IllegalStateException("Cannot unpack overlay edge " + from + "->" + to + " in cell " + cell);
+        int first = edges.size();
+        for (int node = to; node != from; ) {
+            int edge = search.getParentEdge(node);
+            edges.add(edge);
+            node = graph.getOtherNode(edge, node);
+        }
+        // reverse the edges we just added
+        for (int i = first, j = edges.size() - 1; i < j; i++, j--) {
+            int tmp = edges.get(i);
+            edges.set(i, edges.get(j));
+            edges.set(j, tmp);
+        }
+    }
+
+    public long getCapacity() {
+        long bytes = 0;
+        for (float[] clique : cliques)
+            bytes += 4L * clique.length;
+        return bytes;
+    }
+
+    /**
+     * A Dijkstra search that does not leave the cell of its start node. The arrays are indexed by the position of
+     * the node within its cell and can be reused for all cells.
+     */
+    private class CellSearch {
+        private final float[] weights;
+        private final int[] parentEdges;
+        private final MinHeapWithUpdate heap;
+        private final EdgeExplorer explorer;
+
+        CellSearch(int maxCellSize) {
+            weights = new float[maxCellSize];
+            parentEdges = new int[maxCellSize];
+            heap = new MinHeapWithUpdate(maxCellSize);
+            explorer = graph.createEdgeExplorer();
+        }
+
+        /**
+         * @param to the search stops when this node is reached, use -1 to explore the whole cell
+         */
+        void run(int cell, int from, int to) {
+            int size = partition.getCellSize(cell);
+            Arrays.fill(weights, 0, size, Float.POSITIVE_INFINITY);
+            heap.clear();
+            int fromLocal = partition.getLocalIndex(from);
+            weights[fromLocal] = 0;
+            parentEdges[fromLocal] = EdgeIterator.NO_EDGE;
+            heap.push(fromLocal, 0);
+            while (!heap.isEmpty()) {
+                float weight = heap.peekValue();
+                int node = partition.getCellNode(cell, heap.poll());
+                if (node == to)
+                    return;
+                EdgeIterator iter = explorer.setBaseNode(node);
+                while (iter.next()) {
+                    int adj = iter.getAdjNode();
+                    if (partition.getCell(adj) != cell)
+                        continue;
+                    double edgeWeight = weighting.calcEdgeWeight(iter, false);
+                    if (Double.isInfinite(edgeWeight))
+                        continue;
+                    float newWeight = (float) (weight + edgeWeight);
+                    int adjLocal = partition.getLocalIndex(adj);
+                    if (newWeight < weights[adjLocal]) {
+                        if (heap.contains(adjLocal))
+                            heap.update(adjLocal, newWeight);
+                        else if (Float.isInfinite(weights[adjLocal]))
+                            heap.push(adjLocal, newWeight);
+                        else
+                            // only possible due to rounding, the node was polled already
+                            continue;
+                        weights[adjLocal] = newWeight;
+                        parentEdges[adjLocal] = iter.getEdge();
+                    }
+                }
+            }
+        }
+
+        float getWeight(int node) {
+            return weights[partition.getLocalIndex(node)];
+        }
+
+        int getParentEdge(int node) {
+            return parentEdges[partition.getLocalIndex(node)];
+        }
+    }
+}
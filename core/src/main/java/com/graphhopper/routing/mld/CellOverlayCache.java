@@ -0,0 +1,136 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.mld;
+
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.CustomModel;
+import com.graphhopper.util.Parameters;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the most recently used {@link CellOverlay}s, one per profile and custom model. An overlay that is not in the
+ * cache is customized by the first request that needs it, concurrent requests for the same overlay wait for this
+ * request instead of customizing it again. The number of overlays that are customized at the same time and the time
+ * a request may spend on waiting for and doing the customization are bounded, because every customization uses
+ * several threads.
+ */
+public class CellOverlayCache {
+    private final BaseGraph graph;
+    private final CellPartition partition;
+    private final int threads;
+    private final Semaphore customizations;
+    private final long customizationTimeoutMillis;
+    private final Map<String, CompletableFuture<CellOverlay>> overlays;
+
+    public CellOverlayCache(BaseGraph graph, CellPartition partition, int maxSize, int threads) {
+        this(graph, partition, maxSize, threads, 1, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxCustomizations          the maximum number of overlays that are customized at the same time
+     * @param customizationTimeoutMillis the maximum time a request waits for and spends on customizing an overlay
+     */
+    public CellOverlayCache(BaseGraph graph, CellPartition partition, int maxSize, int threads, int maxCustomizations,
+                            long customizationTimeoutMillis) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("maxSize must be at least 1 but was " + maxSize);
+        if (maxCustomizations < 1)
+            throw new IllegalArgumentException("maxCustomizations must be at least 1 but was " + maxCustomizations);
+        this.graph = graph;
+        this.partition = partition;
+        this.threads = threads;
+        this.customizations = new Semaphore(maxCustomizations);
+        this.customizationTimeoutMillis = customizationTimeoutMillis;
+        this.overlays = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<CellOverlay>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public CellPartition getPartition() {
+        return partition;
+    }
+
+    /**
+     * @param weighting the weighting for the specified profile and custom model, it is only used if the overlay
+     *                  needs to be customized
+     */
+    public CellOverlay get(String profile, CustomModel customModel, Weighting weighting) {
+        String key = customModel == null ? profile : profile + "|" + customModel;
+        CompletableFuture<CellOverlay> future;
+        boolean customize = false;
+        synchronized (overlays) {
+            future = overlays.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                overlays.put(key, future);
+                customize = true;
+            }
+        }
+        if (customize) {
+            try {
+                future.complete(customize(weighting));
+            } catch (RuntimeException ex) {
+                synchronized (overlays) {
+                    overlays.remove(key);
+                }
+                future.completeExceptionally(ex);
+                throw ex;
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+        }
+    }
+
+    private CellOverlay customize(Weighting weighting) {
+        long start = System.currentTimeMillis();
+        try {
+            if (!customizations.tryAcquire(customizationTimeoutMillis, TimeUnit.MILLISECONDS))
+                throw new IllegalArgumentException("Too many overlays are created at the same time, try again later or "
+                        + "disable the overlay routing with " + Parameters.MLD.DISABLE + "=true");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to create the overlay for " + weighting, ex);
+        }
+        try {
+            long remaining = customizationTimeoutMillis == Long.MAX_VALUE ? Long.MAX_VALUE
+                    : Math.max(0, customizationTimeoutMillis - (System.currentTimeMillis() - start));
+            return CellOverlay.customize(graph, partition, weighting, threads, remaining);
+        } finally {
+            customizations.release();
+        }
+    }
+
+    public int size() {
+        synchronized (overlays) {
+            return overlays.size();
+        }
+    }
+}
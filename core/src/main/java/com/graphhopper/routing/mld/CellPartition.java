@@ -0,0 +1,193 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.mld;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+/**
+ * Stores the cell of every node of the base graph and whether the node is a boundary node, i.e. a node that is
+ * adjacent to a node of another cell. The partition does not depend on a weighting and is created once after the
+ * import (see {@link InertialPartitioner}), the weighting-dependent part is the {@link CellOverlay}.
+ * <p>
+ * Boundary nodes are numbered consecutively per cell, so the boundary nodes of cell c have the indices
+ * [getBoundaryStart(c), getBoundaryStart(c+1)[.
+ */
+public class CellPartition {
+    private static final int CELL = 0, BOUNDARY = 4, BYTES_PER_NODE = 8;
+    private final DataAccess da;
+    private int nodes;
+    private int cells;
+    private int maxCellSize;
+    // derived from the DataAccess in initFromStorage
+    private int[] boundaryNodes;
+    private int[] boundaryStart;
+    private int[] cellNodes;
+    private int[] cellStart;
+    private int[] localIndex;
+
+    public CellPartition(Directory dir) {
+        this.da = dir.create("mld_partition");
+    }
+
+    public CellPartition create(int nodes) {
+        this.nodes = nodes;
+        da.create((long) nodes * BYTES_PER_NODE);
+        return this;
+    }
+
+    public boolean loadExisting() {
+        if (!da.loadExisting())
+            return false;
+        nodes = da.getHeader(0);
+        cells = da.getHeader(4);
+        maxCellSize = da.getHeader(8);
+        initFromStorage();
+        return true;
+    }
+
+    /**
+     * Called from the partitioner when all cells and boundary indices are set.
+     */
+    void finish(int cells, int maxCellSize) {
+        this.cells = cells;
+        this.maxCellSize = maxCellSize;
+        da.setHeader(0, nodes);
+        da.setHeader(4, cells);
+        da.setHeader(8, maxCellSize);
+        initFromStorage();
+    }
+
+    private void initFromStorage() {
+        boundaryStart = new int[cells + 1];
+        int boundaryCount = 0;
+        for (int node = 0; node < nodes; node++) {
+            int idx = getBoundaryIndex(node);
+            if (idx >= 0) {
+                boundaryStart[getCell(node) + 1]++;
+                boundaryCount++;
+            }
+        }
+        for (int c = 0; c < cells; c++)
+            boundaryStart[c + 1] += boundaryStart[c];
+        boundaryNodes = new int[boundaryCount];
+        for (int node = 0; node < nodes; node++) {
+            int idx = getBoundaryIndex(node);
+            if (idx >= 0)
+                boundaryNodes[idx] = node;
+        }
+
+        cellStart = new int[cells + 1];
+        for (int node = 0; node < nodes; node++)
+            cellStart[getCell(node) + 1]++;
+        for (int c = 0; c < cells; c++)
+            cellStart[c + 1] += cellStart[c];
+        cellNodes = new int[nodes];
+        localIndex = new int[nodes];
+        int[] next = new int[cells];
+        for (int node = 0; node < nodes; node++) {
+            int cell = getCell(node);
+            localIndex[node] = next[cell];
+            cellNodes[cellStart[cell] + next[cell]++] = node;
+        }
+    }
+
+    void setCell(int node, int cell) {
+        da.setInt((long) node * BYTES_PER_NODE + CELL, cell);
+    }
+
+    public int getCell(int node) {
+        return da.getInt((long) node * BYTES_PER_NODE + CELL);
+    }
+
+    void setBoundaryIndex(int node, int boundaryIndex) {
+        da.setInt((long) node * BYTES_PER_NODE + BOUNDARY, boundaryIndex);
+    }
+
+    /**
+     * @return the index of the specified node in the list of boundary nodes or -1 if it is not a boundary node
+     */
+    public int getBoundaryIndex(int node) {
+        return da.getInt((long) node * BYTES_PER_NODE + BOUNDARY);
+    }
+
+    public int getBoundaryNode(int boundaryIndex) {
+        return boundaryNodes[boundaryIndex];
+    }
+
+    public int getBoundaryStart(int cell) {
+        return boundaryStart[cell];
+    }
+
+    public int getBoundaryCount(int cell) {
+        return boundaryStart[cell + 1] - boundaryStart[cell];
+    }
+
+    public int getBoundaryNodes() {
+        return boundaryNodes.length;
+    }
+
+    /**
+     * @return the number of nodes of the specified cell
+     */
+    public int getCellSize(int cell) {
+        return cellStart[cell + 1] - cellStart[cell];
+    }
+
+    /**
+     * @return the i-th node of the specified cell
+     */
+    public int getCellNode(int cell, int i) {
+        return cellNodes[cellStart[cell] + i];
+    }
+
+    /**
+     * @return the position of the specified node within the nodes of its cell, see {@link #getCellNode}
+     */
+    public int getLocalIndex(int node) {
+        return localIndex[node];
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public int getCells() {
+        return cells;
+    }
+
+    public int getMaxCellSize() {
+        return maxCellSize;
+    }
+
+    public void flush() {
+        da.flush();
+    }
+
+    public void close() {
+        da.close();
+    }
+
+    public boolean isClosed() {
+        return da.isClosed();
+    }
+
+    public long getCapacity() {
+        return da.getCapacity();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.mld;
+
+import com.carrotsearch.hppc.sorting.IndirectSort;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Splits the nodes of a graph into cells with at most maxCellSize nodes using recursive bisection. Every bisection
+ * sorts the nodes of the current set along four directions (west-east, south-north and the two diagonals) and picks
+ * the split position in the middle half of one of these orders that cuts the fewest edges. This is a simplified
+ * version of inertial flow: the geometric orders are the same but the cut is not improved with a max-flow step, so
+ * the cells have somewhat more boundary nodes than with a full graph partitioner, which only affects the speed and
+ * not the correctness of the overlay routing.
+ */
+public class InertialPartitioner {
+    private static final Logger logger = LoggerFactory.getLogger(InertialPartitioner.class);
+    private static final int DIRECTIONS = 4;
+    private final BaseGraph graph;
+    private final CellPartition partition;
+    private final int maxCellSize;
+
+    public InertialPartitioner(BaseGraph graph, CellPartition partition, int maxCellSize) {
+        if (maxCellSize < 2)
+            throw new IllegalArgumentException("maxCellSize must be at least 2 but was " + maxCellSize);
+        if (partition.getNodes() != graph.getNodes())
+            throw new IllegalArgumentException("partition was created for " + partition.getNodes() + " nodes, but graph has " + graph.getNodes());
+        this.graph = graph;
+        this.partition = partition;
+        this.maxCellSize = maxCellSize;
+    }
+
+    public void partition() {
+        StopWatch sw = StopWatch.started();
+        int nodes = graph.getNodes();
+        NodeAccess na = graph.getNodeAccess();
+        double[] x = new double[nodes];
+        double[] y = new double[nodes];
+        for (int node = 0; node < nodes; node++) {
+            double lat = na.getLat(node);
+            x[node] = na.getLon(node) * Math.cos(Math.toRadians(lat));
+            y[node] = lat;
+        }
+
+        // the nodes of every cell will be stored consecutively in this array
+        int[] order = new int[nodes];
+        for (int i = 0; i < nodes; i++)
+            order[i] = i;
+        int[] rank = new int[nodes];
+        Arrays.fill(rank, -1);
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+
+        int cells = 0;
+        int maxSize = 0;
+        Deque<int[]> stack = new ArrayDeque<>();
+        stack.push(new int[]{0, nodes});
+        while (!stack.isEmpty()) {
+            int[] range = stack.pop();
+            int start = range[0], size = range[1];
+            if (size <= maxCellSize) {
+                for (int i = start; i < start + size; i++)
+                    partition.setCell(order[i], cells);
+                cells++;
+                maxSize = Math.max(maxSize, size);
+                continue;
+            }
+            int split = bisect(order, start, size, x, y, rank, explorer);
+            // push the right part first, so the cells are numbered in the order of the array
+            stack.push(new int[]{start + split, size - split});
+            stack.push(new int[]{start, split});
+        }
+
+        // boundary nodes are numbered in the order of their cells, which is the order of the array
+        int boundaryNodes = 0;
+        for (int node : order) {
+            if (isBoundary(node, explorer))
+                partition.setBoundaryIndex(node, boundaryNodes++);
+            else
+                partition.setBoundaryIndex(node, -1);
+        }
+        partition.finish(cells, maxSize);
+        logger.info("created cell partition with " + cells + " cells, max cell size: " + maxSize
+                + ", boundary nodes: " + boundaryNodes + " of " + nodes + ", took: " + sw.stop().getSeconds() + "s");
+    }
+
+    private boolean isBoundary(int node, EdgeExplorer explorer) {
+        int cell = partition.getCell(node);
+        EdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next()) {
+            if (partition.getCell(iter.getAdjNode()) != cell)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reorders order[start, start+size[ such that the first part of the returned size forms one side of the cut.
+     */
+    private int bisect(int[] order, int start, int size, double[] x, double[] y, int[] rank, EdgeExplorer explorer) {
+        int[] bestOrder = null;
+        int bestSplit = size / 2;
+        long bestCut = Long.MAX_VALUE;
+        int[] cutDiff = new int[size + 1];
+        for (int dir = 0; dir < DIRECTIONS; dir++) {
+            final int d = dir;
+            int[] sorted = IndirectSort.mergesort(start, size, (a, b) -> Double.compare(key(d, order[a], x, y), key(d, order[b], x, y)));
+            for (int i = 0; i < size; i++)
+                rank[order[sorted[i]]] = i;
+
+            // an edge between the ranks r1 < r2 is cut by all split positions in ]r1, r2]
+            Arrays.fill(cutDiff, 0);
+            for (int i = 0; i < size; i++) {
+                int node = order[sorted[i]];
+                EdgeIterator iter = explorer.setBaseNode(node);
+                while (iter.next()) {
+                    int adjRank = rank[iter.getAdjNode()];
+                    if (adjRank > i) {
+                        cutDiff[i + 1]++;
+                        cutDiff[adjRank + 1]--;
+                    }
+                }
+            }
+            long cut = 0;
+            int from = size / 4, to = size - size / 4;
+            for (int split = 1; split <= to; split++) {
+                cut += cutDiff[split];
+                if (split < from)
+                    continue;
+                if (cut < bestCut || cut == bestCut && Math.abs(split - size / 2) < Math.abs(bestSplit - size / 2)) {
+                    bestCut = cut;
+                    bestSplit = split;
+                    bestOrder = sorted;
+                }
+            }
+            for (int i = 0; i < size; i++)
+                rank[order[sorted[i]]] = -1;
+        }
+
+        int[] tmp = new int[size];
+        for (int i = 0; i < size; i++)
+            tmp[i] = order[bestOrder[i]];
+        System.arraycopy(tmp, 0, order, start, size);
+        return bestSplit;
+    }
+
+    private static double key(int dir, int node, double[] x, double[] y) {
+        switch (dir) {
+            case 0:
+                return x[node];
+            case 1:
+                return y[node];
+            case 2:
+                return x[node] + y[node];
+            default:
+                return x[node] - y[node];
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.mld;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntObjectMap;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.routing.AbstractRoutingAlgorithm;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.SPTEntry;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+
+import java.util.PriorityQueue;
+
+/**
+ * Bidirectional Dijkstra on the overlay graph of a {@link CellOverlay}. The cells that contain the start or end node
+ * (or a base node adjacent to a virtual node of the QueryGraph) are searched like in a normal Dijkstra. All other
+ * cells are 'closed': they are entered only via their boundary nodes and crossed using the precomputed shortest paths
+ * between the boundary nodes, which are unpacked into edges of the base graph when the path is extracted.
+ */
+public class MLDBidirection extends AbstractRoutingAlgorithm {
+    // marks an SPTEntry that was reached via a shortest path within a closed cell
+    private static final int OVERLAY_EDGE = -3;
+    private final CellOverlay overlay;
+    private final CellPartition partition;
+    private final int baseNodes;
+    private final IntHashSet openCells = new IntHashSet();
+    private final IntObjectMap<SPTEntry> bestWeightMapFrom;
+    private final IntObjectMap<SPTEntry> bestWeightMapTo;
+    private final PriorityQueue<SPTEntry> pqOpenSetFrom;
+    private final PriorityQueue<SPTEntry> pqOpenSetTo;
+    private SPTEntry bestFwdEntry;
+    private SPTEntry bestBwdEntry;
+    private double bestWeight = Double.MAX_VALUE;
+    private int visitedNodes;
+
+    /**
+     * @param graph     the graph to route on, usually a QueryGraph on top of the graph of the overlay
+     * @param weighting the weighting of the overlay, wrapped for the QueryGraph if necessary
+     */
+    public MLDBidirection(Graph graph, Weighting weighting, CellOverlay overlay) {
+        super(graph, weighting, TraversalMode.NODE_BASED);
+        this.overlay = overlay;
+        this.partition = overlay.getPartition();
+        this.baseNodes = partition.getNodes();
+        if (graph.getBaseGraph().getNodes() != baseNodes)
+            throw new IllegalArgumentException("The partition was created for " + baseNodes + " nodes, but the graph has " + graph.getBaseGraph().getNodes());
+        int size = Math.min(Math.max(200, graph.getNodes() / 10), 150_000);
+        bestWeightMapFrom = new GHIntObjectHashMap<>(size);
+        bestWeightMapTo = new GHIntObjectHashMap<>(size);
+        pqOpenSetFrom = new PriorityQueue<>(size);
+        pqOpenSetTo = new PriorityQueue<>(size);
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        checkAlreadyRun();
+        setupFinishTime();
+        openCell(from);
+        openCell(to);
+        // the base nodes next to the virtual nodes have to be searched with all their edges
+        EdgeIterator iter;
+        for (int node = baseNodes; node < graph.getNodes(); node++) {
+            iter = edgeExplorer.setBaseNode(node);
+            while (iter.next())
+                openCell(iter.getAdjNode());
+        }
+
+        SPTEntry fromEntry = new SPTEntry(from, 0);
+        SPTEntry toEntry = new SPTEntry(to, 0);
+        bestWeightMapFrom.put(from, fromEntry);
+        bestWeightMapTo.put(to, toEntry);
+        pqOpenSetFrom.add(fromEntry);
+        pqOpenSetTo.add(toEntry);
+        if (from == to) {
+            bestFwdEntry = fromEntry;
+            bestBwdEntry = toEntry;
+            bestWeight = 0;
+        }
+        while (!finished() && !isMaxVisitedNodesExceeded() && !isTimeoutExceeded()) {
+            if (pqOpenSetFrom.peek().weight <= pqOpenSetTo.peek().weight)
+                fillEdges(pqOpenSetFrom, bestWeightMapFrom, bestWeightMapTo, false);
+            else
+                fillEdges(pqOpenSetTo, bestWeightMapTo, bestWeightMapFrom, true);
+        }
+        return extractPath();
+    }
+
+    private void openCell(int node) {
+        if (node < baseNodes)
+            openCells.add(partition.getCell(node));
+    }
+
+    private boolean isOpen(int node) {
+        return node >= baseNodes || openCells.contains(partition.getCell(node));
+    }
+
+    private boolean finished() {
+        removeDeleted(pqOpenSetFrom);
+        removeDeleted(pqOpenSetTo);
+        if (pqOpenSetFrom.isEmpty() || pqOpenSetTo.isEmpty())
+            return true;
+        return pqOpenSetFrom.peek().weight + pqOpenSetTo.peek().weight >= bestWeight;
+    }
+
+    private static void removeDeleted(PriorityQueue<SPTEntry> queue) {
+        while (!queue.isEmpty() && queue.peek().isDeleted())
+            queue.poll();
+    }
+
+    private void fillEdges(PriorityQueue<SPTEntry> queue, IntObjectMap<SPTEntry> bestWeightMap,
+                           IntObjectMap<SPTEntry> bestWeightMapOther, boolean reverse) {
+        SPTEntry entry = queue.poll();
+        visitedNodes++;
+        int node = entry.adjNode;
+        boolean open = isOpen(node);
+        if (!open && partition.getBoundaryIndex(node) < 0)
+            throw new IllegalStateException("The overlay search reached node " + node + " which is neither in an open cell nor a boundary node");
+
+        EdgeIterator iter = edgeExplorer.setBaseNode(node);
+        while (iter.next()) {
+            int adj = iter.getAdjNode();
+            // within a closed cell we use the overlay edges instead
+            if (!open && adj < baseNodes && partition.getCell(adj) == partition.getCell(node))
+                continue;
+            if (!accept(iter, entry.edge))
+                continue;
+            double weight = weighting.calcEdgeWeight(iter, reverse);
+            if (Double.isInfinite(weight))
+                continue;
+            relax(entry, iter.getEdge(), adj, entry.weight + weight, queue, bestWeightMap, bestWeightMapOther, reverse);
+        }
+
+        if (!open) {
+            int cell = partition.getCell(node);
+            int start = partition.getBoundaryStart(cell);
+            int k = partition.getBoundaryCount(cell);
+            int local = partition.getBoundaryIndex(node) - start;
+            for (int i = 0; i < k; i++) {
+                if (i == local)
+                    continue;
+                float weight = reverse ? overlay.getWeight(cell, i, local) : overlay.getWeight(cell, local, i);
+                if (Float.isInfinite(weight))
+                    continue;
+                relax(entry, OVERLAY_EDGE, partition.getBoundaryNode(start + i), entry.weight + weight, queue, bestWeightMap, bestWeightMapOther, reverse);
+            }
+        }
+    }
+
+    private void relax(SPTEntry parent, int edge, int adj, double weight, PriorityQueue<SPTEntry> queue,
+                       IntObjectMap<SPTEntry> bestWeightMap, IntObjectMap<SPTEntry> bestWeightMapOther, boolean reverse) {
+        SPTEntry entry = bestWeightMap.get(adj);
+        if (entry != null && entry.weight <= weight)
+            return;
+        if (entry != null)
+            entry.setDeleted();
+        entry = new SPTEntry(edge, adj, weight, parent);
+        bestWeightMap.put(adj, entry);
+        queue.add(entry);
+
+        SPTEntry other = bestWeightMapOther.get(adj);
+        if (other != null && weight + other.weight < bestWeight) {
+            bestWeight = weight + other.weight;
+            bestFwdEntry = reverse ? other : entry;
+            bestBwdEntry = reverse ? entry : other;
+        }
+    }
+
+    private Path extractPath() {
+        Path path = createEmptyPath();
+        if (bestFwdEntry == null || isMaxVisitedNodesExceeded() || isTimeoutExceeded())
+            return path;
+
+        // collect the nodes and edges of the forward tree in reverse order, then add the backward tree
+        IntArrayList edges = new IntArrayList();
+        SPTEntry entry = bestFwdEntry;
+        while (entry.parent != null) {
+            int first = edges.size();
+            addEdges(entry.parent.adjNode, entry.adjNode, entry.edge, edges);
+            // the edges are added in travel order, but we collect the forward tree backwards
+            reverse(edges, first, edges.size() - 1);
+            entry = entry.parent;
+        }
+        reverse(edges, 0, edges.size() - 1);
+        int fromNode = entry.adjNode;
+        entry = bestBwdEntry;
+        while (entry.parent != null) {
+            addEdges(entry.adjNode, entry.parent.adjNode, entry.edge, edges);
+            entry = entry.parent;
+        }
+
+        path.setFromNode(fromNode);
+        path.setEndNode(entry.adjNode);
+        int node = fromNode;
+        for (int i = 0; i < edges.size(); i++) {
+            int edge = edges.get(i);
+            int adjNode = graph.getOtherNode(edge, node);
+            EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, adjNode);
+            path.addDistance_mm(edgeState.getDistance_mm());
+            path.addTime(GHUtility.calcMillisWithTurnMillis(weighting, edgeState, false, EdgeIterator.NO_EDGE));
+            path.addEdge(edge);
+            node = adjNode;
+        }
+        path.setWeight(bestWeight);
+        path.setFound(true);
+        return path;
+    }
+
+    private void addEdges(int from, int to, int edge, IntArrayList edges) {
+        if (edge == OVERLAY_EDGE)
+            overlay.unpack(from, to, edges);
+        else
+            edges.add(edge);
+    }
+
+    private static void reverse(IntArrayList list, int from, int to) {
+        for (int i = from, j = to; i < j; i++, j--) {
+            int tmp = list.get(i);
+            list.set(i, list.get(j));
+            list.set(j, tmp);
+        }
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.mld;
+
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.Helper;
+
+import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
+
+public class MLDRoutingAlgorithmFactory implements RoutingAlgorithmFactory {
+    private final CellOverlay overlay;
+
+    public MLDRoutingAlgorithmFactory(CellOverlay overlay) {
+        this.overlay = overlay;
+    }
+
+    @Override
+    public RoutingAlgorithm createAlgo(Graph g, Weighting w, AlgorithmOptions opts) {
+        if (opts.getTraversalMode().isEdgeBased())
+            throw new IllegalArgumentException("The overlay routing does not support edge-based traversal");
+        String algoStr = opts.getAlgorithm();
+        if (!Helper.isEmpty(algoStr) && !DIJKSTRA_BI.equalsIgnoreCase(algoStr))
+            throw new IllegalArgumentException("The overlay routing only supports algorithm=" + DIJKSTRA_BI + ", but got: " + algoStr);
+        MLDBidirection algo = new MLDBidirection(g, g.wrapWeighting(w), overlay);
+        algo.setMaxVisitedNodes(opts.getMaxVisitedNodes());
+        algo.setTimeoutMillis(opts.getTimeoutMillis());
+        return algo;
+    }
+}
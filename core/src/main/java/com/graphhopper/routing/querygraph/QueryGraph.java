@@ -21,7 +21,6 @@ import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntObjectMap;
 import com.carrotsearch.hppc.cursors.IntCursor;
 import com.carrotsearch.hppc.procedures.IntObjectProcedure;
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.weighting.QueryGraphWeighting;
@@ -46,6 +45,10 @@ import java.util.*;
  * to each adjacent nodes via 2 virtual edges with opposite base node / adjacent node encoding.
  * However, the edge explorer returned by {@link #createEdgeExplorer()} only returns two
  * virtual edges per virtual node (the ones with correct base node).
+ * <p>
+ * A query graph created via {@link #acquire} reuses the objects of the query graph of an earlier query, and the
+ * caller owns it until {@link #release} is called, e.g. the Router releases it after the response was built. The
+ * query graphs returned by the <code>create</code> methods are simply garbage collected.
  *
  * @author Peter Karich
  */
@@ -62,6 +65,9 @@ public class QueryGraph implements Graph {
     private final Set<VirtualEdgeIteratorState> unfavoredEdges = new LinkedHashSet<>(5);
     private final IntObjectMap<List<EdgeIteratorState>> virtualEdgesAtRealNodes;
     private final List<List<EdgeIteratorState>> virtualEdgesAtVirtualNodes;
+    private final boolean pooled;
+    // the same weighting is usually wrapped for every leg of a route, for the path details and for CH
+    private final Map<Weighting, QueryGraphWeighting> wrappedWeightings = new IdentityHashMap<>(4);
 
     public static QueryGraph create(BaseGraph graph, Snap snap) {
         return QueryGraph.create(graph, Collections.singletonList(snap));
@@ -72,15 +78,24 @@ public class QueryGraph implements Graph {
     }
 
     public static QueryGraph create(BaseGraph graph, List<Snap> snaps) {
-        return new QueryGraph(graph, snaps);
+        return new QueryGraph(graph, snaps, new QueryOverlay(snaps.size(), graph.getNodeAccess().is3D()), false);
+    }
+
+    /**
+     * Like {@link #create(BaseGraph, List)}, but reuses the overlay of a query graph that was released already. The
+     * returned query graph must be released via {@link #release} when it is not used anymore.
+     */
+    public static QueryGraph acquire(BaseGraph graph, List<Snap> snaps) {
+        return new QueryGraph(graph, snaps, QueryOverlay.acquire(snaps.size(), graph.getNodeAccess().is3D()), true);
     }
 
-    private QueryGraph(BaseGraph graph, List<Snap> snaps) {
+    private QueryGraph(BaseGraph graph, List<Snap> snaps, QueryOverlay overlay, boolean pooled) {
         baseGraph = graph;
         baseNodes = graph.getNodes();
         baseEdges = graph.getEdges();
+        this.pooled = pooled;
 
-        queryOverlay = QueryOverlayBuilder.build(graph, snaps);
+        queryOverlay = QueryOverlayBuilder.build(graph, snaps, overlay);
         nodeAccess = new ExtendedNodeAccess(graph.getNodeAccess(), queryOverlay.getVirtualNodes(), baseNodes);
         turnCostStorage = baseGraph.getTurnCostStorage();
 
@@ -91,6 +106,18 @@ public class QueryGraph implements Graph {
         virtualEdgesAtVirtualNodes = buildVirtualEdgesAtVirtualNodes();
     }
 
+    /**
+     * Makes the overlay of a query graph created via {@link #acquire} available for the next query. Neither this query
+     * graph nor its virtual edges must be used anymore afterwards. Does nothing for the other query graphs.
+     */
+    public void release() {
+        if (!pooled)
+            return;
+        clearUnfavoredStatus();
+        wrappedWeightings.clear();
+        queryOverlay.release();
+    }
+
     public QueryOverlay getQueryOverlay() {
         return queryOverlay;
     }
@@ -229,12 +256,12 @@ public class QueryGraph implements Graph {
     }
 
     private IntObjectMap<List<EdgeIteratorState>> buildVirtualEdgesAtRealNodes(final EdgeExplorer mainExplorer) {
-        final IntObjectMap<List<EdgeIteratorState>> virtualEdgesAtRealNodes =
-                new GHIntObjectHashMap<>(queryOverlay.getEdgeChangesAtRealNodes().size());
+        final IntObjectMap<List<EdgeIteratorState>> virtualEdgesAtRealNodes = queryOverlay.getEdgesAtRealNodes();
         queryOverlay.getEdgeChangesAtRealNodes().forEach(new IntObjectProcedure<QueryOverlay.EdgeChanges>() {
             @Override
             public void apply(int node, QueryOverlay.EdgeChanges edgeChanges) {
-                List<EdgeIteratorState> virtualEdges = new ArrayList<>(edgeChanges.getAdditionalEdges());
+                List<EdgeIteratorState> virtualEdges = queryOverlay.createEdgeList();
+                virtualEdges.addAll(edgeChanges.getAdditionalEdges());
                 EdgeIterator mainIter = mainExplorer.setBaseNode(node);
                 while (mainIter.next()) {
                     if (!edgeChanges.getRemovedEdges().contains(mainIter.getEdge())) {
@@ -248,12 +275,11 @@ public class QueryGraph implements Graph {
     }
 
     private List<List<EdgeIteratorState>> buildVirtualEdgesAtVirtualNodes() {
-        final List<List<EdgeIteratorState>> virtualEdgesAtVirtualNodes = new ArrayList<>();
+        final List<List<EdgeIteratorState>> virtualEdgesAtVirtualNodes = queryOverlay.getEdgesAtVirtualNodes();
         for (int i = 0; i < queryOverlay.getVirtualNodes().size(); i++) {
-            List<EdgeIteratorState> virtualEdges = Arrays.<EdgeIteratorState>asList(
-                    queryOverlay.getVirtualEdge(i * 4 + SNAP_BASE),
-                    queryOverlay.getVirtualEdge(i * 4 + SNAP_ADJ)
-            );
+            List<EdgeIteratorState> virtualEdges = queryOverlay.createEdgeList();
+            virtualEdges.add(queryOverlay.getVirtualEdge(i * 4 + SNAP_BASE));
+            virtualEdges.add(queryOverlay.getVirtualEdge(i * 4 + SNAP_ADJ));
             virtualEdgesAtVirtualNodes.add(virtualEdges);
         }
         return virtualEdgesAtVirtualNodes;
@@ -278,6 +304,13 @@ public class QueryGraph implements Graph {
     public Weighting wrapWeighting(Weighting weighting) {
         if (weighting instanceof QueryGraphWeighting)
             return weighting;
+        // the adjusted weights depend on the unfavored status of the virtual edges, so we only reuse them without it
+        if (!unfavoredEdges.isEmpty())
+            return createQueryGraphWeighting(weighting);
+        return wrappedWeightings.computeIfAbsent(weighting, this::createQueryGraphWeighting);
+    }
+
+    private QueryGraphWeighting createQueryGraphWeighting(Weighting weighting) {
         QueryOverlay.WeightsAndTimes result = QueryOverlay.calcAdjustedVirtualWeightsAndTimes(queryOverlay, baseGraph, weighting);
         return new QueryGraphWeighting(baseGraph, weighting, queryOverlay.getClosestEdges(), result.weights(), result.times());
     }
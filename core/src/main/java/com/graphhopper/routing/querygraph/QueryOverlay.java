@@ -23,18 +23,32 @@ import com.carrotsearch.hppc.cursors.DoubleCursor;
 import com.carrotsearch.hppc.cursors.IntObjectCursor;
 import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.search.KVStorage;
 import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.IntsRef;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PointList;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * This class holds the data that is necessary to add additional nodes and edges to an existing graph, as it is needed
  * when we want to start/end a route at a location that is in between the actual nodes of the graph (virtual nodes+edges).
+ * <p>
+ * An overlay can be reused for the next query: {@link #clear} keeps the virtual edge states, the edge changes and the
+ * edge lists of the nodes and hands them out again when the next overlay is built. {@link #acquire} returns an overlay
+ * released by an earlier query (or a new one) from a pool that is shared by all threads, see {@link QueryGraph#acquire}.
  */
 class QueryOverlay {
+    // enough for the queries running on every core
+    static final int MAX_POOLED = 2 * Runtime.getRuntime().availableProcessors();
+    // do not keep the overlays of queries with many points, e.g. a long round trip or via route
+    static final int MAX_POOLED_EDGE_STATES = 4 * 500;
+    private static final AtomicReferenceArray<QueryOverlay> POOL = new AtomicReferenceArray<>(MAX_POOLED);
+
     // stores the coordinates of the additional/virtual nodes
     private final PointList virtualNodes;
     // stores the closest edge id for each virtual node
@@ -43,12 +57,119 @@ class QueryOverlay {
     private final List<VirtualEdgeIteratorState> virtualEdges;
     // stores the changes that need to be done to the real nodes
     private final IntObjectMap<EdgeChanges> edgeChangesAtRealNodes;
+    // stores the edges of the real nodes that are modified compared to the base graph and of the virtual nodes, see
+    // QueryGraph#createEdgeExplorer
+    private final IntObjectMap<List<EdgeIteratorState>> edgesAtRealNodes;
+    private final List<List<EdgeIteratorState>> edgesAtVirtualNodes;
+
+    // the objects created for earlier queries, they are reused after clear was called
+    private final List<VirtualEdgeIteratorState> edgeStates = new ArrayList<>();
+    private int usedEdgeStates;
+    private final List<EdgeChanges> edgeChanges = new ArrayList<>();
+    private int usedEdgeChanges;
+    private final List<List<EdgeIteratorState>> edgeLists = new ArrayList<>();
+    private int usedEdgeLists;
+    private boolean released;
 
     QueryOverlay(int numVirtualNodes, boolean is3D) {
         this.virtualNodes = new PointList(numVirtualNodes, is3D);
         this.virtualEdges = new ArrayList<>(numVirtualNodes * 2);
         this.closestEdges = new IntArrayList(numVirtualNodes);
         edgeChangesAtRealNodes = new GHIntObjectHashMap<>(numVirtualNodes * 3);
+        edgesAtRealNodes = new GHIntObjectHashMap<>(numVirtualNodes * 3);
+        edgesAtVirtualNodes = new ArrayList<>(numVirtualNodes);
+    }
+
+    /**
+     * @param numVirtualNodes the expected number of virtual nodes, only used if no released overlay is available
+     */
+    static QueryOverlay acquire(int numVirtualNodes, boolean is3D) {
+        int start = (int) (Thread.currentThread().threadId() % MAX_POOLED);
+        for (int i = 0; i < MAX_POOLED; i++) {
+            int index = (start + i) % MAX_POOLED;
+            if (POOL.get(index) != null) {
+                QueryOverlay overlay = POOL.getAndSet(index, null);
+                // the graphs of one process usually have the same dimension, otherwise the overlay is dropped
+                if (overlay != null && overlay.virtualNodes.is3D() == is3D) {
+                    overlay.released = false;
+                    return overlay;
+                }
+            }
+        }
+        return new QueryOverlay(numVirtualNodes, is3D);
+    }
+
+    /**
+     * Clears this overlay and makes it available for the next query. Neither this overlay nor the virtual edge states
+     * it created must be used anymore afterwards.
+     */
+    void release() {
+        if (released)
+            return;
+        released = true;
+        clear();
+        if (edgeStates.size() > MAX_POOLED_EDGE_STATES)
+            return;
+        int start = (int) (Thread.currentThread().threadId() % MAX_POOLED);
+        for (int i = 0; i < MAX_POOLED; i++) {
+            int index = (start + i) % MAX_POOLED;
+            if (POOL.compareAndSet(index, null, this))
+                return;
+        }
+    }
+
+    void clear() {
+        virtualNodes.clear();
+        closestEdges.clear();
+        virtualEdges.clear();
+        edgeChangesAtRealNodes.clear();
+        edgesAtRealNodes.clear();
+        edgesAtVirtualNodes.clear();
+        usedEdgeStates = 0;
+        usedEdgeChanges = 0;
+        usedEdgeLists = 0;
+    }
+
+    static int getPooled() {
+        int pooled = 0;
+        for (int i = 0; i < MAX_POOLED; i++)
+            if (POOL.get(i) != null)
+                pooled++;
+        return pooled;
+    }
+
+    /**
+     * Returns a virtual edge state that is initialized with the given values, see {@link VirtualEdgeIteratorState#init}.
+     * The state is not added to the virtual edges of this overlay.
+     */
+    VirtualEdgeIteratorState createVirtualEdge(int originalEdgeKey, int edgeKey, int baseNode, int adjNode, double distance,
+                                               IntsRef edgeFlags, Map<String, KVStorage.KValue> keyValues,
+                                               PointList points, boolean reversePoints, boolean reverse) {
+        if (usedEdgeStates == edgeStates.size())
+            edgeStates.add(new VirtualEdgeIteratorState(virtualNodes.is3D()));
+        VirtualEdgeIteratorState edge = edgeStates.get(usedEdgeStates++);
+        edge.init(originalEdgeKey, edgeKey, baseNode, adjNode, distance, edgeFlags, keyValues, points, reversePoints, reverse);
+        return edge;
+    }
+
+    EdgeChanges createEdgeChanges() {
+        if (usedEdgeChanges == edgeChanges.size())
+            edgeChanges.add(new EdgeChanges(2, 2));
+        EdgeChanges changes = edgeChanges.get(usedEdgeChanges++);
+        changes.additionalEdges.clear();
+        changes.removedEdges.clear();
+        return changes;
+    }
+
+    /**
+     * @return an empty list for the edges of a node, see {@link #getEdgesAtRealNodes} and {@link #getEdgesAtVirtualNodes}
+     */
+    List<EdgeIteratorState> createEdgeList() {
+        if (usedEdgeLists == edgeLists.size())
+            edgeLists.add(new ArrayList<>(4));
+        List<EdgeIteratorState> edges = edgeLists.get(usedEdgeLists++);
+        edges.clear();
+        return edges;
     }
 
     int getNumVirtualEdges() {
@@ -71,6 +192,14 @@ class QueryOverlay {
         return edgeChangesAtRealNodes;
     }
 
+    IntObjectMap<List<EdgeIteratorState>> getEdgesAtRealNodes() {
+        return edgesAtRealNodes;
+    }
+
+    List<List<EdgeIteratorState>> getEdgesAtVirtualNodes() {
+        return edgesAtVirtualNodes;
+    }
+
     PointList getVirtualNodes() {
         return virtualNodes;
     }
@@ -41,23 +41,35 @@ class QueryOverlayBuilder {
 
     private final List<VirtualEdgeIteratorState> virtualEdgesFwdForSnap = new ArrayList<>();
     private final List<VirtualEdgeIteratorState> virtualEdgesBwdForSnap = new ArrayList<>();
+    // the points of the virtual edges are copied from this list, see createEdges
+    private final PointList basePoints;
 
     public static QueryOverlay build(Graph graph, List<Snap> snaps) {
         return build(graph.getNodes(), graph.getEdges(), graph.getNodeAccess().is3D(), snaps);
     }
 
     public static QueryOverlay build(int firstVirtualNodeId, int firstVirtualEdgeId, boolean is3D, List<Snap> snaps) {
-        return new QueryOverlayBuilder(firstVirtualNodeId, firstVirtualEdgeId, is3D).build(snaps);
+        return new QueryOverlayBuilder(firstVirtualNodeId, firstVirtualEdgeId, is3D).build(snaps, new QueryOverlay(snaps.size(), is3D));
+    }
+
+    /**
+     * Builds the overlay into the given empty overlay, e.g. one that was returned by {@link QueryOverlay#acquire}
+     */
+    static QueryOverlay build(Graph graph, List<Snap> snaps, QueryOverlay queryOverlay) {
+        if (queryOverlay.getNumVirtualEdges() > 0)
+            throw new IllegalArgumentException("query overlay needs to be empty");
+        return new QueryOverlayBuilder(graph.getNodes(), graph.getEdges(), graph.getNodeAccess().is3D()).build(snaps, queryOverlay);
     }
 
     private QueryOverlayBuilder(int firstVirtualNodeId, int firstVirtualEdgeId, boolean is3D) {
         this.firstVirtualNodeId = firstVirtualNodeId;
         this.firstVirtualEdgeId = firstVirtualEdgeId;
         this.is3D = is3D;
+        this.basePoints = new PointList(10, is3D);
     }
 
-    private QueryOverlay build(List<Snap> resList) {
-        queryOverlay = new QueryOverlay(resList.size(), is3D);
+    private QueryOverlay build(List<Snap> resList, QueryOverlay queryOverlay) {
+        this.queryOverlay = queryOverlay;
         buildVirtualEdges(resList);
         buildEdgeChangesAtRealNodes();
         return queryOverlay;
@@ -240,7 +252,7 @@ class QueryOverlayBuilder {
                              PointList fullPL, EdgeIteratorState closestEdge,
                              int prevNodeId, int nodeId) {
         int max = wayIndex + 1;
-        PointList basePoints = new PointList(max - prevWayIndex + 1, is3D);
+        basePoints.clear();
         basePoints.add(prevSnapped.lat, prevSnapped.lon, prevSnapped.ele);
         for (int i = prevWayIndex; i < max; i++) {
             basePoints.add(fullPL, i);
@@ -251,17 +263,17 @@ class QueryOverlayBuilder {
         // basePoints must have at least the size of 2 to make sure fetchWayGeometry(FetchMode.ALL) returns at least 2
         assert basePoints.size() >= 2 : "basePoints must have at least two points";
 
-        PointList baseReversePoints = basePoints.clone(true);
         double baseDistance = DistancePlaneProjection.DIST_PLANE.calcDistance(basePoints);
         int virtEdgeId = firstVirtualEdgeId + queryOverlay.getNumVirtualEdges() / 2;
 
         boolean reverse = closestEdge.get(EdgeIteratorState.REVERSE_STATE);
-        // edges between base and snapped point
+        // edges between base and snapped point, both copy the flags and the points
         Map<String, KVStorage.KValue> keyValues = closestEdge.getKeyValues();
-        VirtualEdgeIteratorState baseEdge = new VirtualEdgeIteratorState(origEdgeKey, GHUtility.createEdgeKey(virtEdgeId, false),
-                prevNodeId, nodeId, baseDistance, closestEdge.getFlags(), keyValues, basePoints, reverse);
-        VirtualEdgeIteratorState baseReverseEdge = new VirtualEdgeIteratorState(origRevEdgeKey, GHUtility.createEdgeKey(virtEdgeId, true),
-                nodeId, prevNodeId, baseDistance, IntsRef.deepCopyOf(closestEdge.getFlags()), keyValues, baseReversePoints, !reverse);
+        IntsRef flags = closestEdge.getFlags();
+        VirtualEdgeIteratorState baseEdge = queryOverlay.createVirtualEdge(origEdgeKey, GHUtility.createEdgeKey(virtEdgeId, false),
+                prevNodeId, nodeId, baseDistance, flags, keyValues, basePoints, false, reverse);
+        VirtualEdgeIteratorState baseReverseEdge = queryOverlay.createVirtualEdge(origRevEdgeKey, GHUtility.createEdgeKey(virtEdgeId, true),
+                nodeId, prevNodeId, baseDistance, flags, keyValues, basePoints, true, !reverse);
 
         baseEdge.setReverseEdge(baseReverseEdge);
         baseReverseEdge.setReverseEdge(baseEdge);
@@ -273,6 +285,6 @@ class QueryOverlayBuilder {
     }
 
     private void buildEdgeChangesAtRealNodes() {
-        EdgeChangeBuilder.build(queryOverlay.getClosestEdges(), queryOverlay.getVirtualEdges(), firstVirtualNodeId, queryOverlay.getEdgeChangesAtRealNodes());
+        EdgeChangeBuilder.build(queryOverlay, firstVirtualNodeId);
     }
 }
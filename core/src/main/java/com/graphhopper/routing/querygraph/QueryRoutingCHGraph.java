@@ -50,6 +50,7 @@ public class QueryRoutingCHGraph implements RoutingCHGraph {
     private final IntObjectMap<List<RoutingCHEdgeIteratorState>> virtualOutEdgesAtRealNodes;
     private final IntObjectMap<List<RoutingCHEdgeIteratorState>> virtualInEdgesAtRealNodes;
     private final List<List<RoutingCHEdgeIteratorState>> virtualEdgesAtVirtualNodes;
+    private final VirtualCHEdgeIteratorState[] virtualCHEdgeStates;
 
     public QueryRoutingCHGraph(RoutingCHGraph routingCHGraph, QueryGraph queryGraph) {
         this.routingCHGraph = routingCHGraph;
@@ -57,6 +58,7 @@ public class QueryRoutingCHGraph implements RoutingCHGraph {
         this.queryOverlay = queryGraph.getQueryOverlay();
         this.queryGraph = queryGraph;
         this.queryGraphWeighting = queryGraph.wrapWeighting(weighting);
+        virtualCHEdgeStates = new VirtualCHEdgeIteratorState[queryOverlay.getNumVirtualEdges()];
         virtualOutEdgesAtRealNodes = buildVirtualEdgesAtRealNodes(routingCHGraph.createOutEdgeExplorer());
         virtualInEdgesAtRealNodes = buildVirtualEdgesAtRealNodes(routingCHGraph.createInEdgeExplorer());
         virtualEdgesAtVirtualNodes = buildVirtualEdgesAtVirtualNodes();
@@ -114,9 +116,7 @@ public class QueryRoutingCHGraph implements RoutingCHGraph {
     public RoutingCHEdgeIteratorState getEdgeIteratorState(int chEdge, int adjNode) {
         if (!isVirtualEdge(chEdge))
             return routingCHGraph.getEdgeIteratorState(chEdge, adjNode);
-        // todo: possible optimization - instead of building a new virtual edge object use the ones we already
-        // built for virtualEdgesAtReal/VirtualNodes
-        return buildVirtualCHEdgeState(getVirtualEdgeState(chEdge, adjNode));
+        return getVirtualCHEdgeState(getVirtualEdgePosition(chEdge, adjNode));
     }
 
     @Override
@@ -126,6 +126,22 @@ public class QueryRoutingCHGraph implements RoutingCHGraph {
         return routingCHGraph.getLevel(node);
     }
 
+    @Override
+    public boolean hasShortcutAggregates() {
+        return routingCHGraph.hasShortcutAggregates();
+    }
+
+    @Override
+    public long getShortcutDistance_mm(int chEdge) {
+        // shortcuts are never virtual, so they keep their IDs
+        return routingCHGraph.getShortcutDistance_mm(chEdge);
+    }
+
+    @Override
+    public long getShortcutTime(int chEdge, int to) {
+        return routingCHGraph.getShortcutTime(chEdge, to);
+    }
+
     @Override
     public double getTurnWeight(int inEdge, int viaNode, int outEdge) {
         if (!routingCHGraph.hasTurnCosts())
@@ -162,19 +178,35 @@ public class QueryRoutingCHGraph implements RoutingCHGraph {
         virtualOutEdgesAtRealNodes.clear();
     }
 
-    private VirtualEdgeIteratorState getVirtualEdgeState(int virtualEdgeId, int adjNode) {
+    /**
+     * @return the position of the virtual edge state with the given adjacent node in the query overlay
+     */
+    private int getVirtualEdgePosition(int virtualEdgeId, int adjNode) {
         assert isVirtualEdge(virtualEdgeId);
         int internalVirtualEdgeId = getInternalVirtualEdgeId(virtualEdgeId);
         VirtualEdgeIteratorState virtualEdge = queryOverlay.getVirtualEdge(internalVirtualEdgeId);
         if (virtualEdge.getAdjNode() == adjNode || adjNode == Integer.MIN_VALUE)
-            return virtualEdge;
+            return internalVirtualEdgeId;
 
         internalVirtualEdgeId = QueryGraph.getPosOfReverseEdge(internalVirtualEdgeId);
         virtualEdge = queryOverlay.getVirtualEdge(internalVirtualEdgeId);
         if (virtualEdge.getAdjNode() != adjNode)
             throw new IllegalArgumentException("The virtual edge with ID " + virtualEdgeId + " does not touch node " + adjNode);
 
-        return virtualEdge;
+        return internalVirtualEdgeId;
+    }
+
+    /**
+     * The virtual CH edge states are immutable, so we build them only once per virtual edge state of the query overlay
+     * and hand out the same objects for the explorers and {@link #getEdgeIteratorState}.
+     */
+    private VirtualCHEdgeIteratorState getVirtualCHEdgeState(int position) {
+        VirtualCHEdgeIteratorState chEdgeState = virtualCHEdgeStates[position];
+        if (chEdgeState == null) {
+            chEdgeState = buildVirtualCHEdgeState(queryOverlay.getVirtualEdge(position));
+            virtualCHEdgeStates[position] = chEdgeState;
+        }
+        return chEdgeState;
     }
 
     private IntObjectMap<List<RoutingCHEdgeIteratorState>> buildVirtualEdgesAtRealNodes(final RoutingCHEdgeExplorer explorer) {
@@ -186,11 +218,8 @@ public class QueryRoutingCHGraph implements RoutingCHGraph {
                 List<RoutingCHEdgeIteratorState> virtualEdges = new ArrayList<>();
                 for (VirtualEdgeIteratorState v : edgeChanges.getAdditionalEdges()) {
                     assert v.getBaseNode() == node;
-                    int edge = v.getEdge();
-                    if (queryGraph.isVirtualEdge(edge)) {
-                        edge = shiftVirtualEdgeIDForCH(edge);
-                    }
-                    virtualEdges.add(buildVirtualCHEdgeState(v, edge));
+                    // the additional edges are always virtual
+                    virtualEdges.add(getVirtualCHEdgeState(getVirtualEdgePosition(shiftVirtualEdgeIDForCH(v.getEdge()), v.getAdjNode())));
                 }
                 RoutingCHEdgeIterator iter = explorer.setBaseNode(node);
                 while (iter.next()) {
@@ -216,8 +245,8 @@ public class QueryRoutingCHGraph implements RoutingCHGraph {
         final List<List<RoutingCHEdgeIteratorState>> virtualEdgesAtVirtualNodes = new ArrayList<>(virtualNodes);
         for (int i = 0; i < virtualNodes; i++) {
             List<RoutingCHEdgeIteratorState> virtualEdges = List.of(
-                    buildVirtualCHEdgeState(queryOverlay.getVirtualEdges().get(i * 4 + SNAP_BASE)),
-                    buildVirtualCHEdgeState(queryOverlay.getVirtualEdges().get(i * 4 + SNAP_ADJ))
+                    getVirtualCHEdgeState(i * 4 + SNAP_BASE),
+                    getVirtualCHEdgeState(i * 4 + SNAP_ADJ)
             );
             virtualEdgesAtVirtualNodes.add(virtualEdges);
         }
@@ -37,19 +37,21 @@ import static com.graphhopper.util.Parameters.Details.STREET_NAME;
  * even gets removed.
  */
 public class VirtualEdgeIteratorState implements EdgeIteratorState {
-    private final PointList pointList;
-    private final int edgeKey;
-    private final int baseNode;
-    private final int adjNode;
-    private final int originalEdgeKey;
+    private PointList pointList;
+    private int edgeKey;
+    private int baseNode;
+    private int adjNode;
+    private int originalEdgeKey;
     private long distance_mm;
     private IntsRef edgeFlags;
+    // the flags that were copied by init and can be overwritten when this state is reused
+    private IntsRef ownFlags;
     private EdgeIntAccess edgeIntAccess;
     private Map<String, KVStorage.KValue> keyValues;
     // true if edge should be avoided as start/stop
     private boolean unfavored;
     private EdgeIteratorState reverseEdge;
-    private final boolean reverse;
+    private boolean reverse;
 
     public VirtualEdgeIteratorState(int originalEdgeKey, int edgeKey, int baseNode, int adjNode, double distance,
                                     IntsRef edgeFlags, Map<String, KVStorage.KValue> keyValues, PointList pointList, boolean reverse) {
@@ -65,6 +67,45 @@ public class VirtualEdgeIteratorState implements EdgeIteratorState {
         this.reverse = reverse;
     }
 
+    /**
+     * Creates an empty state that is initialized via {@link #init}, see {@link QueryOverlay#createVirtualEdge}
+     */
+    VirtualEdgeIteratorState(boolean is3D) {
+        this.pointList = new PointList(5, is3D);
+    }
+
+    /**
+     * Initializes this state like the public constructor, but copies the flags and the points (in reverse order if
+     * reversePoints is true) into the objects of this state, so it can be reused for the next query.
+     */
+    void init(int originalEdgeKey, int edgeKey, int baseNode, int adjNode, double distance, IntsRef edgeFlags,
+              Map<String, KVStorage.KValue> keyValues, PointList points, boolean reversePoints, boolean reverse) {
+        this.originalEdgeKey = originalEdgeKey;
+        this.edgeKey = edgeKey;
+        this.baseNode = baseNode;
+        this.adjNode = adjNode;
+        setDistance(distance);
+        if (ownFlags == null || ownFlags.length != edgeFlags.length)
+            ownFlags = IntsRef.deepCopyOf(edgeFlags);
+        else
+            System.arraycopy(edgeFlags.ints, edgeFlags.offset, ownFlags.ints, ownFlags.offset, edgeFlags.length);
+        if (this.edgeFlags != ownFlags) {
+            this.edgeFlags = ownFlags;
+            this.edgeIntAccess = new IntsRefEdgeIntAccess(ownFlags);
+        }
+        this.keyValues = keyValues;
+        pointList.clear();
+        if (reversePoints)
+            for (int i = points.size() - 1; i >= 0; i--)
+                pointList.add(points, i);
+        else
+            for (int i = 0; i < points.size(); i++)
+                pointList.add(points, i);
+        this.reverse = reverse;
+        this.unfavored = false;
+        this.reverseEdge = null;
+    }
+
     /**
      * This method returns the original (not virtual!) edge key. I.e. also the direction is
      * already correctly encoded.
@@ -113,7 +113,21 @@ public class MaxSpeedCalculator {
     }
 
     public void createDataAccessForParser(Directory directory) {
-        this.dataAccess = directory.create("max_speed_storage_tmp").create(1000);
+        initParser(directory.create("max_speed_storage_tmp").create(1000));
+    }
+
+    /**
+     * Loads the max speeds that were stored by the parser during an earlier import, see {@link #flush()}.
+     */
+    public void loadDataAccessForParser(Directory directory) {
+        DataAccess dataAccess = directory.create("max_speed_storage_tmp");
+        if (!dataAccess.loadExisting())
+            throw new IllegalStateException("Cannot load the max speeds of the parser from " + directory.getLocation());
+        initParser(dataAccess);
+    }
+
+    private void initParser(DataAccess dataAccess) {
+        this.dataAccess = dataAccess;
         this.internalMaxSpeedStorage = createMaxSpeedStorage(this.dataAccess);
         this.ruralMaxSpeedEnc = new DecimalEncodedValueImpl("tmp_rural", 7, 0, 2, false, false, true);
         this.urbanMaxSpeedEnc = new DecimalEncodedValueImpl("tmp_urban", 7, 0, 2, false, false, true);
@@ -171,6 +185,10 @@ public class MaxSpeedCalculator {
         LoggerFactory.getLogger(getClass()).info("max_speed_calculator took: " + sw.stop().getSeconds());
     }
 
+    public void flush() {
+        dataAccess.flush();
+    }
+
     public void close() {
         dataAccess.close();
     }
@@ -87,6 +87,9 @@ public class QueryGraphWeighting implements Weighting {
                 return 0;
             }
         }
+        if (!isVirtualEdge(inEdge) && !isVirtualEdge(outEdge))
+            // the common case when routing on the query graph, no need to allocate a result
+            return weighting.calcTurnWeight(inEdge, viaNode, outEdge);
         return getMinWeightAndOriginalEdges(inEdge, viaNode, outEdge).minTurnWeight;
     }
 
@@ -154,6 +157,8 @@ public class QueryGraphWeighting implements Weighting {
         if (isVirtualNode(viaNode))
             // see calcTurnWeight
             return 0;
+        else if (!isVirtualEdge(inEdge) && !isVirtualEdge(outEdge))
+            return weighting.calcTurnMillis(inEdge, viaNode, outEdge);
         else {
             // we want the turn time given by the actual weighting for the edges with minimum weight
             // (the same ones that would be selected when routing)
@@ -0,0 +1,113 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Constants;
+import com.graphhopper.util.GHUtility;
+
+import static com.graphhopper.util.EdgeIterator.NO_EDGE;
+
+/**
+ * A read-only compressed sparse row representation of the adjacency lists of a frozen {@link BaseGraph}. In
+ * {@link BaseGraphNodesAndEdges} the edges of a node form a linked list, so iterating them jumps to a different part of
+ * the edges for every edge. Here the edge keys of every node are stored next to each other, in the same order as in the
+ * linked list, and the offsets tell where the edge keys of a node start. The edge key is odd if the node is the node B
+ * of the edge.
+ */
+class AdjacencyIndex {
+    private final DataAccess da;
+    private int nodes;
+    private int edges;
+    // the nodes + 1 offsets are stored first, then the edge keys
+    private long keysPointer;
+
+    AdjacencyIndex(Directory dir) {
+        da = dir.create("adjacency", dir.getDefaultType("adjacency", true));
+    }
+
+    void build(BaseGraphNodesAndEdges store) {
+        if (store.getEdges() > Integer.MAX_VALUE / 2)
+            throw new IllegalStateException("Too many edges for the adjacency index: " + store.getEdges());
+        nodes = store.getNodes();
+        edges = store.getEdges();
+        keysPointer = (long) (nodes + 1) * 4;
+        long bytes = keysPointer + (long) edges * 2 * 4;
+        da.create(bytes);
+        da.ensureCapacity(bytes);
+        int offset = 0;
+        for (int node = 0; node < nodes; node++) {
+            da.setInt((long) node * 4, offset);
+            int edge = store.getEdgeRef(store.toNodePointer(node));
+            while (edge != NO_EDGE) {
+                long edgePointer = store.toEdgePointer(edge);
+                boolean isNodeA = store.getNodeA(edgePointer) == node;
+                da.setInt(keysPointer + (long) offset * 4, GHUtility.createEdgeKey(edge, !isNodeA));
+                offset++;
+                edge = isNodeA ? store.getLinkA(edgePointer) : store.getLinkB(edgePointer);
+            }
+        }
+        da.setInt((long) nodes * 4, offset);
+        if (offset != 2 * edges)
+            throw new IllegalStateException("Expected " + 2 * edges + " edge keys in the adjacency lists, but found " + offset);
+    }
+
+    /**
+     * @return false if there is no stored index or if it was built for a graph with different node or edge counts
+     */
+    boolean loadExisting(BaseGraphNodesAndEdges store) {
+        if (!da.loadExisting())
+            return false;
+        GHUtility.checkDAVersion(da.getName(), Constants.VERSION_ADJACENCY, da.getHeader(0));
+        nodes = da.getHeader(4);
+        edges = da.getHeader(8);
+        keysPointer = (long) (nodes + 1) * 4;
+        return nodes == store.getNodes() && edges == store.getEdges();
+    }
+
+    void flush() {
+        da.setHeader(0, Constants.VERSION_ADJACENCY);
+        da.setHeader(4, nodes);
+        da.setHeader(8, edges);
+        da.flush();
+    }
+
+    void close() {
+        da.close();
+    }
+
+    boolean isClosed() {
+        return da.isClosed();
+    }
+
+    long getCapacity() {
+        return da.getCapacity();
+    }
+
+    /**
+     * @return the index of the first edge key of the given node. The edge keys of the node end where the ones of the
+     * next node start.
+     */
+    int getOffset(int node) {
+        assert node >= 0 && node <= nodes : "node " + node + " not in bounds [0, " + nodes + "]";
+        return da.getInt((long) node * 4);
+    }
+
+    int getEdgeKey(int index) {
+        return da.getInt(keysPointer + (long) index * 4);
+    }
+}
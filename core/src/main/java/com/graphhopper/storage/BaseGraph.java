@@ -25,12 +25,18 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.search.KVStorage;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.function.IntConsumer;
 import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
 
 import static com.graphhopper.util.Helper.nf;
 import static com.graphhopper.util.Parameters.Details.STREET_NAME;
@@ -47,6 +53,7 @@ import static com.graphhopper.util.Parameters.Details.STREET_NAME;
  * loadExisting, (4) usage, (5) flush, (6) close
  */
 public class BaseGraph implements Graph, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BaseGraph.class);
     /**
      * Maximum distance per edge in meters (~2147 km).
      */
@@ -64,6 +71,10 @@ public class BaseGraph implements Graph, Closeable {
     // length | nodeA | nextNode | ... | nodeB
     private final DataAccess wayGeometry;
     private final Directory dir;
+    private final boolean withAdjacencyIndex;
+    private final boolean withTurnCostIndex;
+    // only exists for a frozen graph if enabled
+    private AdjacencyIndex adjacencyIndex;
     private boolean initialized = false;
     private long minGeoRef;
     private long maxGeoRef;
@@ -72,7 +83,21 @@ public class BaseGraph implements Graph, Closeable {
     }
 
     public BaseGraph(Directory dir, DataAccess wayGeometry, boolean withElevation, boolean withTurnCosts, int bytesForFlags) {
+        this(dir, wayGeometry, withElevation, withTurnCosts, bytesForFlags, false, false);
+    }
+
+    /**
+     * @param withAdjacencyIndex true if the edges of the nodes should be stored next to each other when the graph is
+     *                           frozen, see {@link AdjacencyIndex}. The edge explorers created afterwards iterate over
+     *                           this index instead of the linked lists of the edges.
+     * @param withTurnCostIndex  true if the turn cost entries should be sorted per via node when the graph is frozen,
+     *                           see {@link TurnCostIndex}. Has no effect if turn costs are not supported.
+     */
+    public BaseGraph(Directory dir, DataAccess wayGeometry, boolean withElevation, boolean withTurnCosts, int bytesForFlags,
+                     boolean withAdjacencyIndex, boolean withTurnCostIndex) {
         this.dir = dir;
+        this.withAdjacencyIndex = withAdjacencyIndex;
+        this.withTurnCostIndex = withTurnCostIndex;
         this.bitUtil = BitUtil.LITTLE;
         this.wayGeometry = wayGeometry;
         this.edgeKVStorage = new KVStorage(dir, true);
@@ -176,6 +201,41 @@ public class BaseGraph implements Graph, Closeable {
         if (isFrozen())
             throw new IllegalStateException("base graph already frozen");
         store.setFrozen(true);
+        if (withAdjacencyIndex) {
+            StopWatch sw = StopWatch.started();
+            adjacencyIndex = new AdjacencyIndex(dir);
+            adjacencyIndex.build(store);
+            LOGGER.info("built adjacency index for {} nodes, took: {}s", nf(getNodes()), sw.stop().getSeconds());
+        }
+        if (withTurnCostIndex && supportsTurnCosts()) {
+            StopWatch sw = StopWatch.started();
+            TurnCostIndex turnCostIndex = new TurnCostIndex(dir);
+            turnCostIndex.build(turnCostStorage);
+            turnCostStorage.setTurnCostIndex(turnCostIndex);
+            LOGGER.info("built turn cost index for {} entries, took: {}s", nf(turnCostStorage.getTurnCostsCount()), sw.stop().getSeconds());
+        }
+    }
+
+    /**
+     * Allows to add edges to a frozen graph again, e.g. to apply OSM changes. The adjacency and turn cost indices are
+     * removed and they are built again when the graph is frozen the next time.
+     */
+    public synchronized void unfreeze() {
+        if (!isFrozen())
+            throw new IllegalStateException("base graph is not frozen");
+        store.setFrozen(false);
+        if (adjacencyIndex != null) {
+            adjacencyIndex = null;
+            dir.remove("adjacency");
+        }
+        if (turnCostStorage != null && turnCostStorage.hasTurnCostIndex()) {
+            turnCostStorage.setTurnCostIndex(null);
+            dir.remove("turn_costs_index");
+        }
+    }
+
+    public boolean hasAdjacencyIndex() {
+        return adjacencyIndex != null;
     }
 
     public synchronized boolean isFrozen() {
@@ -232,6 +292,8 @@ public class BaseGraph implements Graph, Closeable {
         if (supportsTurnCosts()) {
             turnCostStorage.flush();
         }
+        if (adjacencyIndex != null)
+            adjacencyIndex.flush();
     }
 
     @Override
@@ -244,11 +306,14 @@ public class BaseGraph implements Graph, Closeable {
         if (supportsTurnCosts()) {
             turnCostStorage.close();
         }
+        if (adjacencyIndex != null && !adjacencyIndex.isClosed())
+            adjacencyIndex.close();
     }
 
     public long getCapacity() {
         return store.getCapacity() + edgeKVStorage.getCapacity()
-                + wayGeometry.getCapacity() + (supportsTurnCosts() ? turnCostStorage.getCapacity() : 0);
+                + wayGeometry.getCapacity() + (supportsTurnCosts() ? turnCostStorage.getCapacity() : 0)
+                + (adjacencyIndex != null ? adjacencyIndex.getCapacity() : 0);
     }
 
     long getMaxGeoRef() {
@@ -256,25 +321,66 @@ public class BaseGraph implements Graph, Closeable {
     }
 
     public boolean loadExisting() {
-        checkNotInitialized();
-
-        if (!store.loadExisting())
-            return false;
-
-        if (!wayGeometry.loadExisting())
-            return false;
+        return loadExisting(1);
+    }
 
-        if (!edgeKVStorage.loadExisting())
-            return false;
+    /**
+     * Like {@link #loadExisting()}, but the nodes and edges, the way geometries, the key values and the turn costs are
+     * read from their files concurrently using the given number of threads. The segments of a single file are still
+     * read one after the other, so the largest file determines the loading time.
+     */
+    public boolean loadExisting(int threads) {
+        checkNotInitialized();
 
-        if (supportsTurnCosts() && !turnCostStorage.loadExisting())
-            return false;
+        List<BooleanSupplier> loaders = new ArrayList<>(List.of(store::loadExisting, wayGeometry::loadExisting, edgeKVStorage::loadExisting));
+        if (supportsTurnCosts())
+            loaders.add(turnCostStorage::loadExisting);
+        if (threads <= 1) {
+            for (BooleanSupplier loader : loaders)
+                if (!loader.getAsBoolean())
+                    return false;
+        } else {
+            boolean[] loaded = new boolean[loaders.size()];
+            GHUtility.runConcurrently(IntStream.range(0, loaders.size()).mapToObj(i -> () -> loaded[i] = loaders.get(i).getAsBoolean()), threads);
+            for (boolean l : loaded)
+                if (!l)
+                    return false;
+        }
 
         setInitialized();
         loadWayGeometryHeader();
+        if (withAdjacencyIndex && isFrozen())
+            loadOrBuildAdjacencyIndex();
+        if (withTurnCostIndex && supportsTurnCosts() && isFrozen())
+            loadOrBuildTurnCostIndex();
         return true;
     }
 
+    private void loadOrBuildTurnCostIndex() {
+        TurnCostIndex index = new TurnCostIndex(dir);
+        if (!index.loadExisting(turnCostStorage)) {
+            dir.remove("turn_costs_index");
+            index = new TurnCostIndex(dir);
+            StopWatch sw = StopWatch.started();
+            index.build(turnCostStorage);
+            LOGGER.info("built turn cost index for {} entries, took: {}s", nf(turnCostStorage.getTurnCostsCount()), sw.stop().getSeconds());
+        }
+        turnCostStorage.setTurnCostIndex(index);
+    }
+
+    private void loadOrBuildAdjacencyIndex() {
+        AdjacencyIndex index = new AdjacencyIndex(dir);
+        if (!index.loadExisting(store)) {
+            // the index was not stored or it belongs to a different graph
+            dir.remove("adjacency");
+            index = new AdjacencyIndex(dir);
+            StopWatch sw = StopWatch.started();
+            index.build(store);
+            LOGGER.info("built adjacency index for {} nodes, took: {}s", nf(getNodes()), sw.stop().getSeconds());
+        }
+        adjacencyIndex = index;
+    }
+
     /**
      * This method copies the properties of one {@link EdgeIteratorState} to another.
      *
@@ -400,6 +506,20 @@ public class BaseGraph implements Graph, Closeable {
             turnCostStorage.sortNodes();
     }
 
+    /**
+     * Has the same effect as {@link #sortEdges} followed by {@link #relabelNodes}, but uses the given number of threads
+     * and a temporary copy of the nodes and edges, see {@link BaseGraphNodesAndEdges#sortNodesAndEdges}.
+     */
+    public void sortNodesAndEdges(int[] newNodesByOldNodes, int[] newEdgesByOldEdges, int threads) {
+        if (isFrozen())
+            throw new IllegalStateException("Cannot sort nodes and edges if graph is already frozen");
+        store.sortNodesAndEdges(dir, newNodesByOldNodes, newEdgesByOldEdges, threads);
+        if (supportsTurnCosts()) {
+            turnCostStorage.sortEdges(edge -> newEdgesByOldEdges[edge]);
+            turnCostStorage.sortNodes();
+        }
+    }
+
     @Override
     public EdgeIteratorState getEdgeIteratorState(int edgeId, int adjNode) {
         EdgeIteratorStateImpl edge = new EdgeIteratorStateImpl(this);
@@ -695,6 +815,8 @@ public class BaseGraph implements Graph, Closeable {
         // graph is actually written to disc is a separate decision made by the caller (via flush).
         private boolean fileBacked = false;
         private long bytes = 100;
+        private boolean withAdjacencyIndex = false;
+        private boolean withTurnCostIndex = false;
 
         public Builder(EncodingManager em) {
             this(em.getBytesForFlags());
@@ -738,9 +860,19 @@ public class BaseGraph implements Graph, Closeable {
             return this;
         }
 
+        public Builder withAdjacencyIndex(boolean withAdjacencyIndex) {
+            this.withAdjacencyIndex = withAdjacencyIndex;
+            return this;
+        }
+
+        public Builder withTurnCostIndex(boolean withTurnCostIndex) {
+            this.withTurnCostIndex = withTurnCostIndex;
+            return this;
+        }
+
         public BaseGraph build() {
             DataAccess wayGeometry = directory.create("geometry", fileBacked ? DAType.FOREIGN_MMAP : directory.getDefaultType());
-            return new BaseGraph(directory, wayGeometry, withElevation, withTurnCosts, bytesForFlags);
+            return new BaseGraph(directory, wayGeometry, withElevation, withTurnCosts, bytesForFlags, withAdjacencyIndex, withTurnCostIndex);
         }
 
         public BaseGraph create() {
@@ -752,18 +884,30 @@ public class BaseGraph implements Graph, Closeable {
 
     protected static class EdgeIteratorImpl extends EdgeIteratorStateImpl implements EdgeExplorer, EdgeIterator {
         final EdgeFilter filter;
+        // null if the graph did not have an adjacency index when this iterator was created
+        private final AdjacencyIndex adjacencyIndex;
         int nextEdgeId;
+        // the position of the next edge key in the adjacency index and the end of the edge keys of the base node
+        private int nextIndex;
+        private int endIndex;
 
         public EdgeIteratorImpl(BaseGraph baseGraph, EdgeFilter filter) {
             super(baseGraph);
             if (filter == null)
                 throw new IllegalArgumentException("Instead null filter use EdgeFilter.ALL_EDGES");
             this.filter = filter;
+            this.adjacencyIndex = baseGraph.adjacencyIndex;
         }
 
         @Override
         public EdgeIterator setBaseNode(int baseNode) {
-            nextEdgeId = edgeId = store.getEdgeRef(store.toNodePointer(baseNode));
+            if (adjacencyIndex == null) {
+                nextEdgeId = edgeId = store.getEdgeRef(store.toNodePointer(baseNode));
+            } else {
+                nextIndex = adjacencyIndex.getOffset(baseNode);
+                endIndex = adjacencyIndex.getOffset(baseNode + 1);
+                nextEdgeId = edgeId = nextIndex < endIndex ? GHUtility.getEdgeFromEdgeKey(adjacencyIndex.getEdgeKey(nextIndex)) : NO_EDGE;
+            }
             this.baseNode = baseNode;
             return this;
         }
@@ -779,6 +923,15 @@ public class BaseGraph implements Graph, Closeable {
         }
 
         void goToNext() {
+            if (adjacencyIndex != null) {
+                reverse = (adjacencyIndex.getEdgeKey(nextIndex) & 1) == 1;
+                edgePointer = store.toEdgePointer(nextEdgeId);
+                edgeId = nextEdgeId;
+                adjNode = reverse ? store.getNodeA(edgePointer) : store.getNodeB(edgePointer);
+                nextIndex++;
+                nextEdgeId = nextIndex < endIndex ? GHUtility.getEdgeFromEdgeKey(adjacencyIndex.getEdgeKey(nextIndex)) : NO_EDGE;
+                return;
+            }
             edgePointer = store.toEdgePointer(nextEdgeId);
             edgeId = nextEdgeId;
             int nodeA = store.getNodeA(edgePointer);
@@ -25,6 +25,7 @@ import com.graphhopper.util.shapes.BBox;
 
 import java.util.Locale;
 import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
 
 import static com.graphhopper.util.EdgeIterator.NO_EDGE;
 import static com.graphhopper.util.Helper.nf;
@@ -40,6 +41,7 @@ class BaseGraphNodesAndEdges implements EdgeIntAccess {
     // downstream, we would either have to lower the limit again, deal with unsigned arithmetic
     // everywhere, or increase the precision from 1mm to, say, 10mm
     static final long MAX_DIST_MM = Integer.MAX_VALUE;
+    private static final int SORT_CHUNK_SIZE = 1 << 16;
 
     // nodes
     private final DataAccess nodes;
@@ -329,6 +331,102 @@ class BaseGraphNodesAndEdges implements EdgeIntAccess {
         }
     }
 
+    /**
+     * Does the same as {@link #sortEdges} followed by {@link #relabelNodes}, but instead of following the cycles of the
+     * permutations, which jumps around in memory, the nodes and edges are written in their new order into temporary
+     * DataAccess objects and then copied back. Both steps write sequentially and are split into chunks that are
+     * processed concurrently. This needs space for a copy of the nodes and edges.
+     */
+    public void sortNodesAndEdges(Directory dir, int[] newNodesByOldNodes, int[] newEdgesByOldEdges, int threads) {
+        if (newNodesByOldNodes.length != nodeCount)
+            throw new IllegalArgumentException("Expected new node ids for " + nodeCount + " nodes, but got: " + newNodesByOldNodes.length);
+        if (newEdgesByOldEdges.length != edgeCount)
+            throw new IllegalArgumentException("Expected new edge ids for " + edgeCount + " edges, but got: " + newEdgesByOldEdges.length);
+        int[] oldNodesByNewNodes = invert(newNodesByOldNodes, threads);
+        int[] oldEdgesByNewEdges = invert(newEdgesByOldEdges, threads);
+
+        DataAccess sortedEdges = createSortingDA(dir, "edges_sorting", dir.getDefaultType("edges", false), (long) edgeCount * edgeEntryBytes);
+        forEachChunk(edgeCount, threads, (from, to) -> {
+            byte[] buffer = new byte[edgeEntryBytes];
+            for (int newEdge = from; newEdge < to; newEdge++) {
+                long pointer = (long) newEdge * edgeEntryBytes;
+                copyEntry(edges, toEdgePointer(oldEdgesByNewEdges[newEdge]), sortedEdges, pointer, buffer);
+                sortedEdges.setInt(pointer + E_NODEA, newNodesByOldNodes[sortedEdges.getInt(pointer + E_NODEA)]);
+                sortedEdges.setInt(pointer + E_NODEB, newNodesByOldNodes[sortedEdges.getInt(pointer + E_NODEB)]);
+                int linkA = sortedEdges.getInt(pointer + E_LINKA);
+                sortedEdges.setInt(pointer + E_LINKA, linkA == NO_EDGE ? NO_EDGE : newEdgesByOldEdges[linkA]);
+                int linkB = sortedEdges.getInt(pointer + E_LINKB);
+                sortedEdges.setInt(pointer + E_LINKB, linkB == NO_EDGE ? NO_EDGE : newEdgesByOldEdges[linkB]);
+            }
+        });
+        copyBack(sortedEdges, edges, edgeEntryBytes, edgeCount, threads);
+        dir.remove("edges_sorting");
+
+        DataAccess sortedNodes = createSortingDA(dir, "nodes_sorting", dir.getDefaultType("nodes", true), (long) nodeCount * nodeEntryBytes);
+        forEachChunk(nodeCount, threads, (from, to) -> {
+            byte[] buffer = new byte[nodeEntryBytes];
+            for (int newNode = from; newNode < to; newNode++) {
+                long pointer = (long) newNode * nodeEntryBytes;
+                copyEntry(nodes, toNodePointer(oldNodesByNewNodes[newNode]), sortedNodes, pointer, buffer);
+                int edgeRef = sortedNodes.getInt(pointer + N_EDGE_REF);
+                sortedNodes.setInt(pointer + N_EDGE_REF, edgeRef == NO_EDGE ? NO_EDGE : newEdgesByOldEdges[edgeRef]);
+            }
+        });
+        copyBack(sortedNodes, nodes, nodeEntryBytes, nodeCount, threads);
+        dir.remove("nodes_sorting");
+    }
+
+    private static DataAccess createSortingDA(Directory dir, String name, DAType type, long bytes) {
+        DataAccess da = dir.create(name, type);
+        da.create(bytes);
+        da.ensureCapacity(bytes);
+        return da;
+    }
+
+    private static void copyBack(DataAccess source, DataAccess target, int entryBytes, int count, int threads) {
+        forEachChunk(count, threads, (from, to) -> {
+            byte[] buffer = new byte[entryBytes];
+            for (int i = from; i < to; i++) {
+                long pointer = (long) i * entryBytes;
+                copyEntry(source, pointer, target, pointer, buffer);
+            }
+        });
+    }
+
+    private static void copyEntry(DataAccess source, long sourcePointer, DataAccess target, long targetPointer, byte[] buffer) {
+        if (buffer.length % 4 == 0) {
+            // the nodes are usually stored in a RAM_INT DataAccess that does not support byte based access
+            for (int i = 0; i < buffer.length; i += 4)
+                target.setInt(targetPointer + i, source.getInt(sourcePointer + i));
+        } else {
+            source.getBytes(sourcePointer, buffer, buffer.length);
+            target.setBytes(targetPointer, buffer, buffer.length);
+        }
+    }
+
+    private static int[] invert(int[] permutation, int threads) {
+        int[] inverse = new int[permutation.length];
+        forEachChunk(permutation.length, threads, (from, to) -> {
+            for (int i = from; i < to; i++)
+                inverse[permutation[i]] = i;
+        });
+        return inverse;
+    }
+
+    private interface RangeConsumer {
+        void accept(int from, int to);
+    }
+
+    /**
+     * The chunks write to disjoint ranges of the DataAccess objects, which are large enough already, so no
+     * synchronization is needed.
+     */
+    private static void forEachChunk(int count, int threads, RangeConsumer consumer) {
+        int chunks = (count + SORT_CHUNK_SIZE - 1) / SORT_CHUNK_SIZE;
+        GHUtility.runConcurrently(IntStream.range(0, chunks).mapToObj(chunk -> () ->
+                consumer.accept(chunk * SORT_CHUNK_SIZE, Math.min(count, (chunk + 1) * SORT_CHUNK_SIZE))), threads);
+    }
+
     public void ensureNodeCapacity(int node) {
         if (node < nodeCount)
             return;
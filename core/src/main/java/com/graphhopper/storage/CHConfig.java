@@ -17,6 +17,7 @@ public class CHConfig {
     private final String chGraphName;
     private final Weighting weighting;
     private final boolean edgeBased;
+    private boolean storeAggregates;
 
     public static CHConfig nodeBased(String chGraphName, Weighting weighting) {
         return new CHConfig(chGraphName, weighting, false);
@@ -41,6 +42,21 @@ public class CHConfig {
         return edgeBased;
     }
 
+    /**
+     * Specifies whether the distance and time of the shortcuts shall be stored. This is only supported for node-based
+     * CH and allows calculating the distance and time of a route without unpacking its shortcuts.
+     */
+    public CHConfig setStoreAggregates(boolean storeAggregates) {
+        if (storeAggregates && edgeBased)
+            throw new IllegalArgumentException("Storing shortcut aggregates is only supported for node-based CH: " + chGraphName);
+        this.storeAggregates = storeAggregates;
+        return this;
+    }
+
+    public boolean isStoreAggregates() {
+        return storeAggregates;
+    }
+
     public TraversalMode getTraversalMode() {
         return edgeBased ? TraversalMode.EDGE_BASED : TraversalMode.NODE_BASED;
     }
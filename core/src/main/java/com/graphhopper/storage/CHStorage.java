@@ -36,7 +36,8 @@ import static com.graphhopper.util.Helper.nf;
  * and gives read/write access to the different shortcut and node fields.
  * <p>
  * This can be seen as an extension to a base graph: We assign a CH level to each node and add additional edges to
- * the graph ('shortcuts'). The shortcuts need to be ordered in a certain way, but this is not enforced here.
+ * the graph ('shortcuts'). The shortcuts need to be ordered in a certain way, but this is not enforced here. After the
+ * preparation the shortcuts can be grouped by node instead of the contraction order, see {@link #sortShortcutsByNode}.
  *
  * @see CHStorageBuilder to build a valid storage that can be used for routing
  */
@@ -47,12 +48,20 @@ public class CHStorage {
     // the maximum double weight we can store. if this is exceeded the shortcut will gain infinite weight, potentially yielding connection-not-found errors
     private static final double MAX_WEIGHT = MAX_STORED_INTEGER_WEIGHT;
 
+    private final Directory dir;
+    private final String name;
+
     // shortcuts
     private final DataAccess shortcuts;
     private final int S_NODEA, S_NODEB, S_WEIGHT, S_SKIP_EDGE1, S_SKIP_EDGE2, S_ORIG_KEY_FIRST, S_ORIG_KEY_LAST;
     private int shortcutEntryBytes;
     private int shortcutCount = 0;
 
+    // optional, the distance and time of the original edges of every shortcut
+    private final DataAccess aggregates;
+    private static final int A_DISTANCE = 0, A_MILLIS_AB = 8, A_MILLIS_BA = 12, AGGREGATE_BYTES = 16;
+    private boolean hasAggregates;
+
     // nodes
     private final DataAccess nodesCH;
     private final int N_LEVEL, N_LAST_SC;
@@ -94,9 +103,12 @@ public class CHStorage {
     }
 
     public CHStorage(Directory dir, String name, boolean edgeBased) {
+        this.dir = dir;
+        this.name = name;
         this.edgeBased = edgeBased;
         this.nodesCH = dir.create("nodes_ch_" + name, dir.getDefaultType("nodes_ch_" + name, true));
         this.shortcuts = dir.create("shortcuts_" + name, dir.getDefaultType("shortcuts_" + name, true));
+        this.aggregates = dir.create("shortcut_aggregates_" + name, dir.getDefaultType("shortcut_aggregates_" + name, true));
         // shortcuts are stored consecutively using this layout (the last two entries only exist for edge-based):
         // NODEA | NODEB | WEIGHT | SKIP_EDGE1 | SKIP_EDGE2 | S_ORIG_FIRST | S_ORIG_LAST
         S_NODEA = 0;
@@ -153,6 +165,12 @@ public class CHStorage {
         shortcuts.setHeader(16, numShortcutsOverMaxWeight);
         shortcuts.setHeader(20, edgeBased ? 1 : 0);
         shortcuts.flush();
+
+        if (hasAggregates) {
+            aggregates.setHeader(0, Constants.VERSION_SHORTCUT);
+            aggregates.setHeader(4, shortcutCount);
+            aggregates.flush();
+        }
     }
 
     public boolean loadExisting() {
@@ -174,12 +192,21 @@ public class CHStorage {
         numShortcutsOverMaxWeight = shortcuts.getHeader(16);
         edgeBased = shortcuts.getHeader(20) == 1;
 
+        // the aggregates are optional and can also be added to an existing storage later
+        if (aggregates.loadExisting()) {
+            GHUtility.checkDAVersion(aggregates.getName(), Constants.VERSION_SHORTCUT, aggregates.getHeader(0));
+            if (aggregates.getHeader(4) != shortcutCount)
+                throw new IllegalStateException("Shortcut aggregates were stored for " + aggregates.getHeader(4)
+                        + " shortcuts, but there are " + shortcutCount + " shortcuts");
+            hasAggregates = true;
+        }
         return true;
     }
 
     public void close() {
         nodesCH.close();
         shortcuts.close();
+        aggregates.close();
     }
 
     /**
@@ -332,6 +359,120 @@ public class CHStorage {
         return shortcuts.getInt(shortcutPointer + S_ORIG_KEY_LAST);
     }
 
+    /**
+     * Reorders the shortcuts such that the shortcuts of the nodes follow each other in the order of the node ids
+     * instead of the contraction order. Since the base graph is sorted along a Hilbert curve the shortcuts of nearby
+     * nodes end up close to each other, which saves cache misses, because a query mostly explores the nodes around the
+     * start and the destination. The shortcuts of every node keep their relative order and the skipped edges are
+     * updated. The shortcuts are written sequentially into a temporary DataAccess and then copied back.
+     * <p>
+     * This can only be done once all shortcuts were added and before the aggregates are created.
+     *
+     * @param baseEdges the number of edges of the base graph, i.e. the edge id of the first shortcut
+     */
+    public void sortShortcutsByNode(int baseEdges) {
+        if (hasAggregates)
+            throw new IllegalStateException("Shortcuts must be sorted before the aggregates are created");
+        // counting sort by node A: first count the shortcuts of every node, then determine where they start
+        int[] nextShortcuts = new int[nodeCount];
+        for (int shortcut = 0; shortcut < shortcutCount; shortcut++)
+            nextShortcuts[getNodeA(toShortcutPointer(shortcut))]++;
+        for (int node = 0, start = 0; node < nodeCount; node++) {
+            int count = nextShortcuts[node];
+            nextShortcuts[node] = start;
+            start += count;
+        }
+        int[] oldShortcutsByNewShortcuts = new int[shortcutCount];
+        int[] newShortcutsByOldShortcuts = new int[shortcutCount];
+        for (int shortcut = 0; shortcut < shortcutCount; shortcut++) {
+            int newShortcut = nextShortcuts[getNodeA(toShortcutPointer(shortcut))]++;
+            oldShortcutsByNewShortcuts[newShortcut] = shortcut;
+            newShortcutsByOldShortcuts[shortcut] = newShortcut;
+        }
+
+        String sortedName = "shortcuts_sorting_" + name;
+        DataAccess sorted = dir.create(sortedName, dir.getDefaultType("shortcuts_" + name, true));
+        long bytes = (long) shortcutCount * shortcutEntryBytes;
+        sorted.create(bytes);
+        sorted.ensureCapacity(bytes);
+        for (int newShortcut = 0; newShortcut < shortcutCount; newShortcut++) {
+            long oldPointer = toShortcutPointer(oldShortcutsByNewShortcuts[newShortcut]);
+            long pointer = (long) newShortcut * shortcutEntryBytes;
+            for (int i = 0; i < shortcutEntryBytes; i += 4)
+                sorted.setInt(pointer + i, shortcuts.getInt(oldPointer + i));
+            int skip1 = sorted.getInt(pointer + S_SKIP_EDGE1);
+            int skip2 = sorted.getInt(pointer + S_SKIP_EDGE2);
+            sorted.setInt(pointer + S_SKIP_EDGE1, skip1 < baseEdges ? skip1 : baseEdges + newShortcutsByOldShortcuts[skip1 - baseEdges]);
+            sorted.setInt(pointer + S_SKIP_EDGE2, skip2 < baseEdges ? skip2 : baseEdges + newShortcutsByOldShortcuts[skip2 - baseEdges]);
+        }
+        for (long pointer = 0; pointer < bytes; pointer += 4)
+            shortcuts.setInt(pointer, sorted.getInt(pointer));
+        dir.remove(sortedName);
+
+        // the shortcuts of a node now end where the shortcuts of the next node start
+        for (int node = 0; node < nodeCount; node++) {
+            long nodePointer = toNodePointer(node);
+            if (getLastShortcut(nodePointer) >= 0)
+                setLastShortcut(nodePointer, nextShortcuts[node] - 1);
+        }
+    }
+
+    /**
+     * Allocates the space for the distance and time of all shortcuts. This needs to be called after all shortcuts
+     * were added and before using {@link #setAggregates}.
+     */
+    public void createAggregates() {
+        if (edgeBased)
+            throw new IllegalArgumentException("Shortcut aggregates are only supported for node-based CH");
+        if (hasAggregates)
+            throw new IllegalStateException("Shortcut aggregates can only be created once");
+        aggregates.create((long) shortcutCount * AGGREGATE_BYTES);
+        hasAggregates = true;
+    }
+
+    /**
+     * @return true if the distance and time of the shortcuts are available, so they do not have to be unpacked
+     */
+    public boolean hasAggregates() {
+        return hasAggregates;
+    }
+
+    /**
+     * @param millisAB the time it takes to travel along the shortcut from node A to node B or -1 if not accessible
+     * @param millisBA the time it takes to travel along the shortcut from node B to node A or -1 if not accessible
+     */
+    public void setAggregates(int shortcut, long distance_mm, long millisAB, long millisBA) {
+        if (millisAB > Integer.MAX_VALUE || millisBA > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("shortcut time too large: " + millisAB + ", " + millisBA);
+        long pointer = toAggregatePointer(shortcut);
+        aggregates.setInt(pointer + A_DISTANCE, (int) distance_mm);
+        aggregates.setInt(pointer + A_DISTANCE + 4, (int) (distance_mm >>> 32));
+        aggregates.setInt(pointer + A_MILLIS_AB, (int) millisAB);
+        aggregates.setInt(pointer + A_MILLIS_BA, (int) millisBA);
+    }
+
+    /**
+     * @return the distance in millimeter of all original edges of the given shortcut
+     */
+    public long getDistance_mm(int shortcut) {
+        long pointer = toAggregatePointer(shortcut);
+        return ((long) aggregates.getInt(pointer + A_DISTANCE + 4) << 32) | (aggregates.getInt(pointer + A_DISTANCE) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the time in milliseconds it takes to travel along the given shortcut from node A to node B (aToB=true)
+     * or vice versa
+     */
+    public long getMillis(int shortcut, boolean aToB) {
+        return aggregates.getInt(toAggregatePointer(shortcut) + (aToB ? A_MILLIS_AB : A_MILLIS_BA));
+    }
+
+    private long toAggregatePointer(int shortcut) {
+        assert hasAggregates : "shortcut aggregates are not available";
+        assert shortcut < shortcutCount : "shortcut " + shortcut + " not in bounds [0, " + shortcutCount + "[";
+        return (long) shortcut * AGGREGATE_BYTES;
+    }
+
     public NodeOrderingProvider getNodeOrderingProvider() {
         int numNodes = getNodes();
         final int[] nodeOrdering = new int[numNodes];
@@ -387,7 +528,7 @@ public class CHStorage {
     }
 
     public long getCapacity() {
-        return nodesCH.getCapacity() + shortcuts.getCapacity();
+        return nodesCH.getCapacity() + shortcuts.getCapacity() + (hasAggregates ? aggregates.getCapacity() : 0);
     }
 
     public int getMB() {
@@ -412,7 +553,8 @@ public class CHStorage {
 
     public String toDetailsString() {
         return "shortcuts:" + nf(shortcutCount) + " (" + nf(shortcuts.getCapacity() / Helper.MB) + "MB)" +
-                ", nodesCH:" + nf(nodeCount) + " (" + nf(nodesCH.getCapacity() / Helper.MB) + "MB)";
+                ", nodesCH:" + nf(nodeCount) + " (" + nf(nodesCH.getCapacity() / Helper.MB) + "MB)" +
+                (hasAggregates ? ", aggregates (" + nf(aggregates.getCapacity() / Helper.MB) + "MB)" : "");
     }
 
     public boolean isClosed() {
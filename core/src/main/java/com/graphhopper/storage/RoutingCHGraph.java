@@ -43,6 +43,24 @@ public interface RoutingCHGraph {
 
     int getLevel(int node);
 
+    /**
+     * @return true if the distance and time of all shortcuts were stored during the preparation, so the distance and
+     * time of a path can be calculated without unpacking its shortcuts
+     */
+    boolean hasShortcutAggregates();
+
+    /**
+     * @return the distance of all original edges of the given shortcut in millimeter, only available if
+     * {@link #hasShortcutAggregates()} is true
+     */
+    long getShortcutDistance_mm(int chEdge);
+
+    /**
+     * @return the time in milliseconds it takes to travel along the given shortcut towards the node 'to', only
+     * available if {@link #hasShortcutAggregates()} is true
+     */
+    long getShortcutTime(int chEdge, int to);
+
     double getTurnWeight(int inEdge, int viaNode, int outEdge);
 
     /**
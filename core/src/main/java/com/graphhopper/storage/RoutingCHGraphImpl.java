@@ -77,6 +77,22 @@ public class RoutingCHGraphImpl implements RoutingCHGraph {
         return chStorage.getLevel(chStorage.toNodePointer(node));
     }
 
+    @Override
+    public boolean hasShortcutAggregates() {
+        return chStorage.hasAggregates();
+    }
+
+    @Override
+    public long getShortcutDistance_mm(int chEdge) {
+        return chStorage.getDistance_mm(chEdge - baseGraph.getEdges());
+    }
+
+    @Override
+    public long getShortcutTime(int chEdge, int to) {
+        int shortcut = chEdge - baseGraph.getEdges();
+        return chStorage.getMillis(shortcut, chStorage.getNodeB(chStorage.toShortcutPointer(shortcut)) == to);
+    }
+
     @Override
     public Graph getBaseGraph() {
         return baseGraph;
@@ -0,0 +1,91 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Constants;
+import com.graphhopper.util.GHUtility;
+
+import static com.graphhopper.storage.TurnCostStorage.NO_TURN_ENTRY;
+
+/**
+ * A read-only index for the turn cost entries of a frozen {@link BaseGraph}. In {@link TurnCostStorage} the entries
+ * of a via node form a linked list that has to be walked for every lookup. Before the index is built the entries of
+ * every via node are moved next to each other and sorted by (fromEdge, toEdge) within the {@link TurnCostStorage},
+ * see {@link TurnCostStorage#sortEntriesByEdges}. So the first entry of the linked list of a via node (which is stored
+ * in the {@link NodeAccess}) is the start of a sorted group, and an entry and its flags are found with a binary search
+ * in this group. The index only stores the number of entries of every group at the position of its first entry.
+ */
+class TurnCostIndex {
+    private final DataAccess da;
+    private int turnCostsCount;
+
+    TurnCostIndex(Directory dir) {
+        da = dir.create("turn_costs_index", dir.getDefaultType("turn_costs_index", true));
+    }
+
+    void build(TurnCostStorage turnCostStorage) {
+        turnCostStorage.sortEntriesByEdges();
+        turnCostsCount = turnCostStorage.getTurnCostsCount();
+        da.create((long) turnCostsCount * 4);
+        // the entries of a group are linked to the next entry, except for the last one
+        int groupStart = 0;
+        for (int index = 0; index < turnCostsCount; index++) {
+            if (turnCostStorage.getNext(index) == NO_TURN_ENTRY) {
+                da.setInt((long) groupStart * 4, index - groupStart + 1);
+                groupStart = index + 1;
+            }
+        }
+    }
+
+    /**
+     * @return false if there is no stored index or if it was built for different turn cost entries
+     */
+    boolean loadExisting(TurnCostStorage turnCostStorage) {
+        if (!da.loadExisting())
+            return false;
+        GHUtility.checkDAVersion(da.getName(), Constants.VERSION_TURN_COST_INDEX, da.getHeader(0));
+        turnCostsCount = da.getHeader(4);
+        return turnCostsCount == turnCostStorage.getTurnCostsCount() && turnCostStorage.isSortedByEdges();
+    }
+
+    void flush() {
+        da.setHeader(0, Constants.VERSION_TURN_COST_INDEX);
+        da.setHeader(4, turnCostsCount);
+        da.flush();
+    }
+
+    void close() {
+        da.close();
+    }
+
+    boolean isClosed() {
+        return da.isClosed();
+    }
+
+    long getCapacity() {
+        return da.getCapacity();
+    }
+
+    /**
+     * @param first the first entry of the linked list of the via node
+     * @return the number of entries of the via node, which are stored from the first entry on
+     */
+    int getEntries(int first) {
+        return da.getInt((long) first * 4);
+    }
+}
@@ -18,6 +18,7 @@
 package com.graphhopper.storage;
 
 import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.sorting.IndirectSort;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.DecimalEncodedValue;
 import com.graphhopper.routing.ev.EdgeIntAccess;
@@ -49,6 +50,8 @@ public class TurnCostStorage {
     private final DataAccess turnCosts;
     private final EdgeIntAccess edgeIntAccess = createEdgeIntAccess();
     private int turnCostsCount;
+    // only exists for a frozen graph if enabled, see BaseGraph
+    private TurnCostIndex turnCostIndex;
 
     public TurnCostStorage(BaseGraph baseGraph, DataAccess turnCosts) {
         this.baseGraph = baseGraph;
@@ -65,14 +68,30 @@ public class TurnCostStorage {
         turnCosts.setHeader(4, BYTES_PER_ENTRY);
         turnCosts.setHeader(2 * 4, turnCostsCount);
         turnCosts.flush();
+        if (turnCostIndex != null)
+            turnCostIndex.flush();
     }
 
     public void close() {
         turnCosts.close();
+        if (turnCostIndex != null && !turnCostIndex.isClosed())
+            turnCostIndex.close();
     }
 
     public long getCapacity() {
-        return turnCosts.getCapacity();
+        return turnCosts.getCapacity() + (turnCostIndex != null ? turnCostIndex.getCapacity() : 0);
+    }
+
+    /**
+     * Uses the given index instead of the linked lists to find the turn cost entries. No entries can be added
+     * afterwards, but the values of the existing entries can still be changed.
+     */
+    void setTurnCostIndex(TurnCostIndex turnCostIndex) {
+        this.turnCostIndex = turnCostIndex;
+    }
+
+    public boolean hasTurnCostIndex() {
+        return turnCostIndex != null;
     }
 
     public boolean loadExisting() {
@@ -107,6 +126,9 @@ public class TurnCostStorage {
     private int findOrCreateTurnCostEntry(int fromEdge, int viaNode, int toEdge) {
         int index = findIndex(fromEdge, viaNode, toEdge);
         if (index < 0) {
+            if (turnCostIndex != null)
+                throw new IllegalStateException("Cannot add turn cost entries once the turn cost index was built, at ("
+                        + fromEdge + ", " + viaNode + ", " + toEdge + ")");
             // create a new entry
             index = turnCostsCount;
             ensureTurnCostIndex(index);
@@ -161,6 +183,8 @@ public class TurnCostStorage {
 
         final int maxEntries = 1000;
         int index = baseGraph.getNodeAccess().getTurnCostIndex(viaNode);
+        if (turnCostIndex != null)
+            return index == NO_TURN_ENTRY ? -1 : findSortedIndex(index, turnCostIndex.getEntries(index), fromEdge, toEdge);
         for (int i = 0; i < maxEntries; ++i) {
             if (index == NO_TURN_ENTRY) return -1;
             long pointer = toPointer(index);
@@ -171,6 +195,28 @@ public class TurnCostStorage {
         throw new IllegalStateException("Turn cost list for node: " + viaNode + " is longer than expected, max: " + maxEntries);
     }
 
+    /**
+     * Finds the entry with a binary search in the given entries, which must be sorted by (fromEdge, toEdge)
+     */
+    private int findSortedIndex(int first, int entries, int fromEdge, int toEdge) {
+        int low = first;
+        int high = first + entries - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long pointer = toPointer(mid);
+            int cmp = Integer.compare(turnCosts.getInt(pointer + TC_FROM), fromEdge);
+            if (cmp == 0)
+                cmp = Integer.compare(turnCosts.getInt(pointer + TC_TO), toEdge);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
     public void sortEdges(IntUnaryOperator getNewEdgeForOldEdge) {
         for (int i = 0; i < turnCostsCount; i++) {
             long pointer = toPointer(i);
@@ -179,6 +225,18 @@ public class TurnCostStorage {
         }
     }
 
+    int getFromEdge(int index) {
+        return turnCosts.getInt(toPointer(index) + TC_FROM);
+    }
+
+    int getToEdge(int index) {
+        return turnCosts.getInt(toPointer(index) + TC_TO);
+    }
+
+    int getNext(int index) {
+        return turnCosts.getInt(toPointer(index) + TC_NEXT);
+    }
+
     private long toPointer(int index) {
         return (long) index * BYTES_PER_ENTRY;
     }
@@ -257,6 +315,74 @@ public class TurnCostStorage {
             throw new IllegalStateException("Turn cost count changed unexpectedly: " + turnCostsCountBefore + " -> " + turnCostsCount);
     }
 
+    /**
+     * Moves the entries of every via node next to each other, in the order of the via nodes, and sorts them by
+     * (fromEdge, toEdge), see {@link TurnCostIndex}. The linked lists stay valid, i.e. every entry links to the next
+     * entry of its via node. Nothing is changed if the entries are sorted already.
+     */
+    void sortEntriesByEdges() {
+        if (isSortedByEdges())
+            return;
+        // the entries are written in a different order, so we need a copy of all of them
+        int[] tcFroms = new int[turnCostsCount];
+        int[] tcTos = new int[turnCostsCount];
+        int[] tcFlags = new int[turnCostsCount];
+        int[] tcNexts = new int[turnCostsCount];
+        for (int i = 0; i < turnCostsCount; i++) {
+            long pointer = toPointer(i);
+            tcFroms[i] = turnCosts.getInt(pointer + TC_FROM);
+            tcTos[i] = turnCosts.getInt(pointer + TC_TO);
+            tcFlags[i] = turnCosts.getInt(pointer + TC_FLAGS);
+            tcNexts[i] = turnCosts.getInt(pointer + TC_NEXT);
+        }
+        IntArrayList entries = new IntArrayList();
+        int count = 0;
+        for (int node = 0; node < baseGraph.getNodes(); node++) {
+            int first = baseGraph.getNodeAccess().getTurnCostIndex(node);
+            if (first == NO_TURN_ENTRY)
+                continue;
+            entries.clear();
+            for (int index = first; index != NO_TURN_ENTRY; index = tcNexts[index])
+                entries.add(index);
+            int[] order = IndirectSort.mergesort(0, entries.size(), (a, b) -> {
+                int cmp = Integer.compare(tcFroms[entries.get(a)], tcFroms[entries.get(b)]);
+                return cmp != 0 ? cmp : Integer.compare(tcTos[entries.get(a)], tcTos[entries.get(b)]);
+            });
+            baseGraph.getNodeAccess().setTurnCostIndex(node, count);
+            for (int i = 0; i < order.length; i++, count++) {
+                int index = entries.get(order[i]);
+                long pointer = toPointer(count);
+                turnCosts.setInt(pointer + TC_FROM, tcFroms[index]);
+                turnCosts.setInt(pointer + TC_TO, tcTos[index]);
+                turnCosts.setInt(pointer + TC_FLAGS, tcFlags[index]);
+                turnCosts.setInt(pointer + TC_NEXT, i == order.length - 1 ? NO_TURN_ENTRY : count + 1);
+            }
+        }
+        if (count != turnCostsCount)
+            throw new IllegalStateException("Expected " + turnCostsCount + " turn cost entries in the linked lists, but found " + count);
+    }
+
+    /**
+     * @return true if the entries of every via node are stored next to each other and sorted by (fromEdge, toEdge)
+     */
+    boolean isSortedByEdges() {
+        for (int i = 0; i < turnCostsCount; i++) {
+            long pointer = toPointer(i);
+            int next = turnCosts.getInt(pointer + TC_NEXT);
+            if (next == NO_TURN_ENTRY)
+                continue;
+            if (next != i + 1)
+                return false;
+            long nextPointer = toPointer(next);
+            int cmp = Integer.compare(turnCosts.getInt(pointer + TC_FROM), turnCosts.getInt(nextPointer + TC_FROM));
+            if (cmp == 0)
+                cmp = Integer.compare(turnCosts.getInt(pointer + TC_TO), turnCosts.getInt(nextPointer + TC_TO));
+            if (cmp >= 0)
+                return false;
+        }
+        return true;
+    }
+
     public interface Iterator {
         int getFromEdge();
 
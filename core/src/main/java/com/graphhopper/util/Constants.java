@@ -68,6 +68,9 @@ public class Constants {
     public static final int VERSION_TURN_COSTS = 0;
     public static final int VERSION_LOCATION_IDX = 5;
     public static final int VERSION_KV_STORAGE = 2;
+    public static final int VERSION_ADJACENCY = 0;
+    public static final int VERSION_TURN_COST_INDEX = 1;
+    public static final int VERSION_OSM_NODES = 0;
     /**
      * The version without the snapshot string
      */
@@ -25,12 +25,16 @@ import com.graphhopper.reader.dem.SRTMProvider;
 import com.graphhopper.reader.dem.SkadiProvider;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.routing.ev.*;
+import com.graphhopper.routing.lm.LMConfig;
+import com.graphhopper.routing.lm.PrepareLandmarks;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.parsers.OSMRoadEnvironmentParser;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.IntsRef;
+import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
@@ -41,6 +45,7 @@ import com.graphhopper.util.details.PathDetail;
 import com.graphhopper.util.exceptions.ConnectionNotFoundException;
 import com.graphhopper.util.exceptions.MaximumNodesExceededException;
 import com.graphhopper.util.exceptions.PointDistanceExceededException;
+import com.graphhopper.util.exceptions.ProfileNotReadyException;
 import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 import com.graphhopper.util.shapes.GHPoint3D;
@@ -55,6 +60,8 @@ import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -2427,6 +2434,139 @@ public class GraphHopperTest {
         assertEquals(1, counter.get());
     }
 
+    @Test
+    public void testResumeImportAfterFailedPreparation() {
+        GraphHopper failingHopper = new GraphHopper() {
+            @Override
+            protected void loadOrPrepareCH(boolean closeEarly) {
+                throw new IllegalStateException("CH preparation failed");
+            }
+        };
+        configureResumableImport(failingHopper);
+        IllegalStateException e = assertThrows(IllegalStateException.class, failingHopper::importOrLoad);
+        assertEquals("CH preparation failed", e.getMessage());
+        failingHopper.close();
+
+        final AtomicInteger baseGraphStages = new AtomicInteger(0);
+        GraphHopper hopper = new GraphHopper() {
+            @Override
+            protected void importOSM() {
+                baseGraphStages.incrementAndGet();
+                super.importOSM();
+            }
+
+            @Override
+            protected void cleanUp() {
+                baseGraphStages.incrementAndGet();
+                super.cleanUp();
+            }
+        };
+        configureResumableImport(hopper);
+        hopper.importOrLoad();
+        // the base graph and the landmarks were loaded, only the CH preparation was run again
+        assertEquals(0, baseGraphStages.get());
+        assertEquals("preparation", hopper.getProperties().get("graph.import.stage"));
+        assertEquals(Set.of("car_lm"), hopper.getLandmarks().keySet());
+        assertEquals(Set.of("car_ch"), hopper.getCHGraphs().keySet());
+        GHResponse rsp = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("car_ch"));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        assertEquals(3587.6, rsp.getBest().getDistance(), .1);
+        hopper.close();
+
+        // the next run finds the completed import and loads it
+        hopper = new GraphHopper();
+        configureResumableImport(hopper);
+        assertTrue(hopper.load());
+        hopper.close();
+    }
+
+    @Test
+    public void testNoResumeAfterFailedStageWithMMap() {
+        GraphHopperConfig config = new GraphHopperConfig().
+                putObject("graph.location", GH_LOCATION).
+                putObject("datareader.file", MONACO).
+                putObject("graph.encoded_values", "car_access, car_average_speed").
+                putObject("graph.dataaccess.default_type", "MMAP").
+                putObject("prepare.min_network_size", 0).
+                setProfiles(List.of(TestProfiles.accessAndSpeed("car", "car")));
+        GraphHopper failingHopper = new GraphHopper() {
+            @Override
+            protected void cleanUp() {
+                super.cleanUp();
+                throw new IllegalStateException("subnetwork removal failed");
+            }
+        }.init(config);
+        assertThrows(IllegalStateException.class, failingHopper::importOrLoad);
+        failingHopper.close();
+
+        // the memory mapped files might already contain a part of the failed stage, so we cannot resume
+        final AtomicInteger osmImports = new AtomicInteger(0);
+        GraphHopper hopper = new GraphHopper() {
+            @Override
+            protected void importOSM() {
+                osmImports.incrementAndGet();
+                super.importOSM();
+            }
+        }.init(config);
+        hopper.importOrLoad();
+        assertEquals(1, osmImports.get());
+        assertEquals("preparation", hopper.getProperties().get("graph.import.stage"));
+        assertEquals("", hopper.getProperties().get("graph.import.stage_in_progress"));
+        hopper.close();
+    }
+
+    @Test
+    public void testResumeImportAfterFailedLMPreparationWithMMap() {
+        GraphHopperConfig config = new GraphHopperConfig().
+                putObject("graph.location", GH_LOCATION).
+                putObject("datareader.file", MONACO).
+                putObject("graph.encoded_values", "car_access, car_average_speed").
+                putObject("graph.dataaccess.default_type", "MMAP").
+                putObject("prepare.min_network_size", 0).
+                setProfiles(List.of(TestProfiles.accessAndSpeed("car", "car"))).
+                setLMProfiles(List.of(new LMProfile("car")));
+        GraphHopper failingHopper = new GraphHopper() {
+            @Override
+            protected List<PrepareLandmarks> prepareLM(boolean closeEarly, List<LMConfig> configsToPrepare) {
+                super.prepareLM(closeEarly, configsToPrepare);
+                throw new IllegalStateException("LM preparation failed");
+            }
+        }.init(config);
+        IllegalStateException e = assertThrows(IllegalStateException.class, failingHopper::importOrLoad);
+        assertEquals("LM preparation failed", e.getMessage());
+        failingHopper.close();
+
+        // the preparation stage does not change the base graph, so the import is resumed without reading the OSM file
+        final AtomicInteger osmImports = new AtomicInteger(0);
+        GraphHopper hopper = new GraphHopper() {
+            @Override
+            protected void importOSM() {
+                osmImports.incrementAndGet();
+                super.importOSM();
+            }
+        }.init(config);
+        hopper.importOrLoad();
+        assertEquals(0, osmImports.get());
+        assertEquals("preparation", hopper.getProperties().get("graph.import.stage"));
+        assertEquals("", hopper.getProperties().get("graph.import.stage_in_progress"));
+        assertEquals(Set.of("car"), hopper.getLandmarks().keySet());
+        GHResponse rsp = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("car"));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        assertEquals(3587.6, rsp.getBest().getDistance(), .1);
+        hopper.close();
+    }
+
+    private static void configureResumableImport(GraphHopper hopper) {
+        hopper.setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(TestProfiles.accessAndSpeed("car_lm", "car"), TestProfiles.accessAndSpeed("car_ch", "car")).
+                setMinNetworkSize(0).
+                setFileBacked(true);
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car_lm"));
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car_ch"));
+    }
+
     @Test
     public void issue2306_1() {
         final String profile = "profile";
@@ -2769,6 +2909,119 @@ public class GraphHopperTest {
         }
     }
 
+    @Test
+    void testFileChecksums() throws IOException {
+        {
+            GraphHopper hopper = new GraphHopper()
+                    .setEncodedValuesString("car_access, car_average_speed")
+                    .setProfiles(TestProfiles.accessAndSpeed("car"))
+                    .setFileChecksums(true)
+                    .setGraphHopperLocation(GH_LOCATION)
+                    .setOSMFile(MONACO);
+            hopper.importOrLoad();
+            hopper.close();
+        }
+        {
+            GraphHopper hopper = new GraphHopper()
+                    .setProfiles(TestProfiles.accessAndSpeed("car"))
+                    .setFileChecksums(true)
+                    .setLoadThreads(2)
+                    .setGraphHopperLocation(GH_LOCATION);
+            assertTrue(hopper.load());
+            GHResponse rsp = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("car"));
+            assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+            hopper.close();
+        }
+        // flip a byte after the header
+        try (RandomAccessFile file = new RandomAccessFile(GH_LOCATION + "/edges", "rw")) {
+            file.seek(200);
+            int value = file.read();
+            file.seek(200);
+            file.write(~value);
+        }
+        {
+            GraphHopper hopper = new GraphHopper()
+                    .setProfiles(TestProfiles.accessAndSpeed("car"))
+                    .setFileChecksums(true)
+                    .setGraphHopperLocation(GH_LOCATION);
+            IllegalStateException e = assertThrows(IllegalStateException.class, hopper::load);
+            assertTrue(e.getMessage().contains("[edges]"), e.getMessage());
+            hopper.close();
+        }
+    }
+
+    @Test
+    void testLoadLMInBackground() throws InterruptedException {
+        {
+            GraphHopper hopper = new GraphHopper()
+                    .setEncodedValuesString("car_access, car_average_speed")
+                    .setProfiles(TestProfiles.accessAndSpeed("car_ch", "car"), TestProfiles.accessAndSpeed("car_lm", "car"))
+                    .setGraphHopperLocation(GH_LOCATION)
+                    .setOSMFile(MONACO);
+            hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car_ch"));
+            hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car_lm"));
+            hopper.importOrLoad();
+            assertEquals(Map.of("car_ch", GraphHopper.ProfileState.READY, "car_lm", GraphHopper.ProfileState.READY), hopper.getProfileStates());
+            hopper.close();
+        }
+        GraphHopper hopper = new GraphHopper()
+                .setProfiles(TestProfiles.accessAndSpeed("car_ch", "car"), TestProfiles.accessAndSpeed("car_lm", "car"))
+                .setLoadLMInBackground(true)
+                .setLoadThreads(2)
+                .setGraphHopperLocation(GH_LOCATION);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car_ch"));
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car_lm"));
+        assertTrue(hopper.load());
+        // the CH profile can be used right away
+        assertEquals(GraphHopper.ProfileState.READY, hopper.getProfileStates().get("car_ch"));
+        GHResponse rsp = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("car_ch"));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+
+        for (int i = 0; i < 100 && hopper.getProfileStates().get("car_lm") == GraphHopper.ProfileState.LOADING; i++)
+            Thread.sleep(100);
+        assertEquals(GraphHopper.ProfileState.READY, hopper.getProfileStates().get("car_lm"));
+        assertTrue(hopper.getLandmarks().containsKey("car_lm"));
+        GHResponse lmRsp = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("car_lm"));
+        assertFalse(lmRsp.hasErrors(), lmRsp.getErrors().toString());
+        assertEquals(rsp.getBest().getDistance(), lmRsp.getBest().getDistance(), 1.e-3);
+        hopper.close();
+    }
+
+    @Test
+    void testLoadLMInBackgroundDoesNotPrepare() throws InterruptedException {
+        {
+            GraphHopper hopper = new GraphHopper()
+                    .setEncodedValuesString("car_access, car_average_speed")
+                    .setProfiles(TestProfiles.accessAndSpeed("car_lm", "car"))
+                    .setGraphHopperLocation(GH_LOCATION)
+                    .setOSMFile(MONACO);
+            hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car_lm"));
+            hopper.importOrLoad();
+            hopper.close();
+        }
+        File landmarksFile = new File(GH_LOCATION, "landmarks_car_lm");
+        assertTrue(landmarksFile.delete());
+        GraphHopper hopper = new GraphHopper()
+                .setProfiles(TestProfiles.accessAndSpeed("car_lm", "car"))
+                .setLoadLMInBackground(true)
+                .setGraphHopperLocation(GH_LOCATION);
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car_lm"));
+        assertTrue(hopper.load());
+        for (int i = 0; i < 100 && hopper.getProfileStates().get("car_lm") == GraphHopper.ProfileState.LOADING; i++)
+            Thread.sleep(100);
+        // the missing landmarks are not prepared while the requests are served
+        assertEquals(GraphHopper.ProfileState.FAILED, hopper.getProfileStates().get("car_lm"));
+        assertFalse(landmarksFile.exists());
+        GHResponse rsp = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("car_lm"));
+        assertTrue(rsp.hasErrors());
+        ProfileNotReadyException e = assertInstanceOf(ProfileNotReadyException.class, rsp.getErrors().get(0));
+        assertFalse(e.isRetryable());
+        // without landmarks the profile can still be used
+        rsp = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("car_lm").putHint(Landmark.DISABLE, true));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        hopper.close();
+    }
+
     @ParameterizedTest()
     @ValueSource(booleans = {true, false})
     void legDistanceWithDuplicateEndpoint(boolean simplifyResponse) {
@@ -2830,4 +3083,42 @@ public class GraphHopperTest {
         assertEquals(0.0, (double) p.get(1).getValue(), 1.e-3);
     }
 
+    @Test
+    public void testSortGraphAlongHilbertCurveConcurrently() {
+        BaseGraph graph = new BaseGraph.Builder(4).create();
+        Random rnd = new Random(42);
+        NodeAccess na = graph.getNodeAccess();
+        for (int node = 0; node < 1000; node++)
+            na.setNode(node, 43 + rnd.nextDouble(), 7 + rnd.nextDouble());
+        for (int i = 0; i < 3000; i++) {
+            int nodeA = i < 999 ? i : rnd.nextInt(1000);
+            int nodeB = i < 999 ? i + 1 : (nodeA + 1 + rnd.nextInt(999)) % 1000;
+            graph.edge(nodeA, nodeB).setDistance(i);
+        }
+        Map<Long, Set<String>> edgesBefore = getEdgesByDistance(graph);
+
+        GraphHopper.sortGraphAlongHilbertCurve(graph, 3);
+        assertEquals(edgesBefore, getEdgesByDistance(graph));
+        for (int node = 1; node < graph.getNodes(); node++)
+            assertTrue(GraphHopper.latLonToHilbertIndex(na.getLat(node - 1), na.getLon(node - 1), 16)
+                    <= GraphHopper.latLonToHilbertIndex(na.getLat(node), na.getLon(node), 16));
+        AllEdgesIterator iter = graph.getAllEdges();
+        int prevFirstNode = 0;
+        while (iter.next()) {
+            int firstNode = Math.min(iter.getBaseNode(), iter.getAdjNode());
+            assertTrue(prevFirstNode <= firstNode);
+            prevFirstNode = firstNode;
+        }
+    }
+
+    private static Map<Long, Set<String>> getEdgesByDistance(BaseGraph graph) {
+        Map<Long, Set<String>> edges = new HashMap<>();
+        AllEdgesIterator iter = graph.getAllEdges();
+        NodeAccess na = graph.getNodeAccess();
+        while (iter.next())
+            edges.put(Math.round(iter.getDistance()), Set.of(
+                    na.getLat(iter.getBaseNode()) + "," + na.getLon(iter.getBaseNode()),
+                    na.getLat(iter.getAdjNode()) + "," + na.getLon(iter.getAdjNode())));
+        return edges;
+    }
 }
@@ -352,6 +352,65 @@ public class ShortestPathTreeTest {
         );
     }
 
+    @Test
+    public void testReleaseSettledLabels() {
+        for (TraversalMode traversalMode : new TraversalMode[]{TraversalMode.NODE_BASED, TraversalMode.EDGE_BASED}) {
+            Weighting weighting = createWeighting(new TimeBasedUTurnCost(80000));
+            List<ShortestPathTree.IsoLabel> expected = new ArrayList<>();
+            ShortestPathTree instance = new ShortestPathTree(graph, weighting, false, traversalMode);
+            instance.setTimeLimit(Double.MAX_VALUE);
+            instance.search(0, expected::add);
+
+            List<ShortestPathTree.IsoLabel> result = new ArrayList<>();
+            instance = new ShortestPathTree(graph, weighting, false, traversalMode);
+            instance.setTimeLimit(Double.MAX_VALUE);
+            instance.setReleaseSettledLabels(true);
+            instance.search(0, result::add);
+
+            assertEquals(expected.size(), result.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).toString(), result.get(i).toString());
+                if (expected.get(i).parent == null) {
+                    assertNull(result.get(i).parent);
+                } else {
+                    assertEquals(expected.get(i).parent.toString(), result.get(i).parent.toString());
+                    // only the direct parent is kept
+                    assertNull(result.get(i).parent.parent);
+                }
+            }
+            assertThrows(IllegalStateException.class, instance::getIsochroneEdges);
+        }
+    }
+
+    @Test
+    public void testReleasedLabelsLeaveQueueByZ() {
+        // the longer edges are faster, so the labels are settled in the reverse order of their distance
+        BaseGraph star = new BaseGraph.Builder(encodingManager).create();
+        int[] speeds = {10, 30, 60, 100, 150};
+        for (int i = 1; i <= speeds.length; i++)
+            GHUtility.setSpeed(speeds[i - 1], true, false, accessEnc, speedEnc, star.edge(0, i).setDistance(100 * i));
+
+        for (boolean release : new boolean[]{false, true}) {
+            ShortestPathTree instance = new ShortestPathTree(star, createWeighting(), false, TraversalMode.NODE_BASED);
+            instance.setDistanceLimit(1000);
+            instance.setReleaseSettledLabels(release);
+            List<Integer> nodes = new ArrayList<>();
+            List<Integer> queueSizes = new ArrayList<>();
+            instance.search(0, label -> {
+                nodes.add(label.node);
+                queueSizes.add(instance.getQueueByZSize());
+            });
+            assertEquals(List.of(0, 5, 4, 3, 2, 1), nodes);
+            if (release)
+                // only the labels that are not settled yet are in the queue
+                assertEquals(List.of(1, 5, 4, 3, 2, 1), queueSizes);
+            else
+                // the settled labels stay in the queue until they reach its head
+                assertEquals(List.of(1, 5, 5, 5, 5, 5), queueSizes);
+        }
+        star.close();
+    }
+
     @Test
     public void testSearchByDistance() {
         List<ShortestPathTree.IsoLabel> result = new ArrayList<>();
@@ -0,0 +1,108 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ElevationTileCacheTest {
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        List<Integer> released = new ArrayList<>();
+        ElevationTileCache<Integer, int[]> cache = new ElevationTileCache<>(tile -> tile.length, tile -> released.add(tile[0]));
+        cache.setMaxBytes(25);
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals(1, cache.read(1, key -> load(key, loads), tile -> tile[0]));
+        assertEquals(2, cache.read(2, key -> load(key, loads), tile -> tile[0]));
+        // use 1 again, so 2 is the least recently used tile
+        assertEquals(1, cache.read(1, key -> load(key, loads), tile -> tile[0]));
+        assertEquals(2, loads.get());
+        assertEquals(20, cache.getBytes());
+
+        assertEquals(3, cache.read(3, key -> load(key, loads), tile -> tile[0]));
+        assertEquals(List.of(2), released);
+        assertEquals(2, cache.size());
+        assertEquals(20, cache.getBytes());
+
+        assertEquals(2, cache.read(2, key -> load(key, loads), tile -> tile[0]));
+        assertEquals(4, loads.get());
+        assertEquals(List.of(2, 1), released);
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+        assertEquals(4, released.size());
+    }
+
+    @Test
+    public void keepTileWhileReading() {
+        List<Integer> released = new ArrayList<>();
+        ElevationTileCache<Integer, int[]> cache = new ElevationTileCache<>(tile -> tile.length, tile -> released.add(tile[0]));
+        cache.setMaxBytes(15);
+        AtomicInteger loads = new AtomicInteger();
+        double ele = cache.read(1, key -> load(key, loads), tile -> {
+            // evicts tile 1 while we still read from it
+            cache.read(2, key -> load(key, loads), other -> other[0]);
+            assertTrue(released.isEmpty());
+            // tile 1 is not loaded again and evicts tile 2
+            assertEquals(1, cache.read(1, key -> load(key, loads), other -> other[0]));
+            assertEquals(List.of(2), released);
+            return tile[0];
+        });
+        assertEquals(1, ele);
+        assertEquals(2, loads.get());
+        assertEquals(List.of(2), released);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void loadOnceFromManyThreads() throws Exception {
+        ElevationTileCache<Integer, int[]> cache = new ElevationTileCache<>(tile -> tile.length, tile -> {
+        });
+        cache.setMaxBytes(50);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Double>> results = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int key = i % 3;
+            results.add(executor.submit(() -> cache.read(key, k -> load(k, loads), tile -> tile[0])));
+        }
+        for (int i = 0; i < results.size(); i++)
+            assertEquals(i % 3, results.get(i).get());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(3, loads.get());
+    }
+
+    private static int[] load(int key, AtomicInteger loads) {
+        loads.incrementAndGet();
+        int[] tile = new int[10];
+        tile[0] = key;
+        return tile;
+    }
+}
@@ -21,6 +21,7 @@ import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperTest;
+import com.graphhopper.config.LMProfile;
 import com.graphhopper.config.Profile;
 import com.graphhopper.reader.ReaderElement;
 import com.graphhopper.reader.ReaderRelation;
@@ -148,6 +149,136 @@ public class OSMReaderTest {
         return index.findClosest(lat, lon, EdgeFilter.ALL_EDGES).getClosestNode();
     }
 
+    @Test
+    public void testApplyChanges() {
+        GraphHopper hopper = createHopperForChanges();
+        hopper.importOrLoad();
+        hopper.close();
+
+        hopper = createHopperForChanges();
+        // way 10 is split into two edges at the junction with way 11
+        assertEquals(3, hopper.applyOSMChanges(getClass().getResource("test-osm-changes.osc").getFile()));
+
+        hopper = createHopperForChanges();
+        hopper.importOrLoad();
+        assertEquals("preparation", hopper.getProperties().get("graph.import.stage"));
+        BaseGraph graph = hopper.getBaseGraph();
+        BooleanEncodedValue accessEnc = hopper.getEncodingManager().getBooleanEncodedValue(VehicleAccess.key("car"));
+        int n10 = AbstractGraphStorageTester.getIdOf(graph, 51.2492152);
+        int n20 = AbstractGraphStorageTester.getIdOf(graph, 52);
+        int n30 = AbstractGraphStorageTester.getIdOf(graph, 51.2);
+        int n50 = AbstractGraphStorageTester.getIdOf(graph, 49);
+
+        // the modified way is a oneway with a new name now, but its geometry did not change
+        EdgeIteratorState edge = GHUtility.getEdge(graph, n20, n50);
+        assertTrue(edge.get(accessEnc));
+        assertFalse(edge.getReverse(accessEnc));
+        assertEquals("new street", edge.getName());
+        AbstractGraphStorageTester.assertPList(Helper.createPointList(51.25, 9.43), edge.fetchWayGeometry(FetchMode.PILLAR_ONLY));
+
+        // the deleted way is blocked
+        for (EdgeIteratorState e : List.of(GHUtility.getEdge(graph, n10, n20), GHUtility.getEdge(graph, n20, n30))) {
+            assertFalse(e.get(accessEnc));
+            assertFalse(e.getReverse(accessEnc));
+            assertEquals(10, e.get(hopper.getEncodingManager().getIntEncodedValue(OSMWayID.KEY)));
+        }
+        // the created way cannot be added to the graph
+        assertEquals(3, graph.getEdges());
+        hopper.close();
+    }
+
+    @Test
+    public void testApplyChangesWithStoredOSMNodes() {
+        GraphHopper hopper = createHopperForChanges();
+        hopper.getReaderConfig().setStoreOSMNodes(true);
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car")).setMaxStaleChanges(1);
+        hopper.importOrLoad();
+        hopper.close();
+
+        hopper = createHopperForChanges();
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car")).setMaxStaleChanges(1);
+        // the tower node 10 moved and the created way 12 splits the edge of way 11 at its pillar node 40
+        assertEquals(1 + 3, hopper.applyOSMChanges(getClass().getResource("test-osm-changes-created.osc").getFile()));
+        assertEquals("1", hopper.getProperties().get("graph.profiles.lm.car.stale_changes"));
+
+        hopper = createHopperForChanges();
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car")).setMaxStaleChanges(1);
+        hopper.importOrLoad();
+        // the landmarks were not prepared again
+        assertTrue(hopper.getLandmarks().get("car").isStale());
+        BaseGraph graph = hopper.getBaseGraph();
+        BooleanEncodedValue accessEnc = hopper.getEncodingManager().getBooleanEncodedValue(VehicleAccess.key("car"));
+        IntEncodedValue osmWayIdEnc = hopper.getEncodingManager().getIntEncodedValue(OSMWayID.KEY);
+        assertEquals(5, graph.getNodes());
+        assertEquals(6, graph.getEdges());
+        int n10 = AbstractGraphStorageTester.getIdOf(graph, 51.3);
+        int n20 = AbstractGraphStorageTester.getIdOf(graph, 52);
+        int n30 = AbstractGraphStorageTester.getIdOf(graph, 51.2);
+        int n40 = AbstractGraphStorageTester.getIdOf(graph, 51.25);
+        int n50 = AbstractGraphStorageTester.getIdOf(graph, 49);
+
+        EdgeIteratorState edge = GHUtility.getEdge(graph, n10, n20);
+        assertEquals(DistanceCalcEarth.DIST_EARTH.calcDist(51.3, 9.4317166, 52, 9), edge.getDistance(), 0.01);
+        // the old edge of way 11 is blocked and its two parts get its flags
+        edge = GHUtility.getEdge(graph, n20, n50);
+        assertFalse(edge.get(accessEnc));
+        assertEquals(0, edge.get(osmWayIdEnc));
+        for (EdgeIteratorState e : List.of(GHUtility.getEdge(graph, n20, n40), GHUtility.getEdge(graph, n40, n50))) {
+            assertTrue(e.get(accessEnc));
+            assertEquals(11, e.get(osmWayIdEnc));
+            assertEquals(0, e.fetchWayGeometry(FetchMode.PILLAR_ONLY).size());
+        }
+        edge = GHUtility.getEdge(graph, n40, n30);
+        assertTrue(edge.get(accessEnc));
+        assertTrue(edge.getReverse(accessEnc));
+        assertEquals(12, edge.get(osmWayIdEnc));
+        AbstractGraphStorageTester.assertPList(Helper.createPointList(51.1, 9.6), edge.fetchWayGeometry(FetchMode.PILLAR_ONLY));
+        hopper.close();
+
+        hopper = createHopperForChanges();
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car")).setMaxStaleChanges(1);
+        // the node 40 was removed from way 11, so both of its edges are blocked and the way is added again
+        assertEquals(2 + 1, hopper.applyOSMChanges(getClass().getResource("test-osm-changes-geometry.osc").getFile()));
+        assertEquals("2", hopper.getProperties().get("graph.profiles.lm.car.stale_changes"));
+
+        hopper = createHopperForChanges();
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car")).setMaxStaleChanges(1);
+        hopper.importOrLoad();
+        // too many changes, the landmarks were prepared again
+        assertFalse(hopper.getLandmarks().get("car").isStale());
+        assertEquals("", hopper.getProperties().get("graph.profiles.lm.car.stale_changes"));
+        graph = hopper.getBaseGraph();
+        assertEquals(7, graph.getEdges());
+        n20 = AbstractGraphStorageTester.getIdOf(graph, 52);
+        n40 = AbstractGraphStorageTester.getIdOf(graph, 51.25);
+        n50 = AbstractGraphStorageTester.getIdOf(graph, 49);
+        for (EdgeIteratorState e : List.of(GHUtility.getEdge(graph, n20, n40), GHUtility.getEdge(graph, n40, n50))) {
+            assertFalse(e.get(accessEnc));
+            assertEquals(0, e.get(osmWayIdEnc));
+        }
+        int accessible = 0;
+        EdgeIterator iter = graph.createEdgeExplorer().setBaseNode(n20);
+        while (iter.next()) {
+            if (iter.getAdjNode() == n50 && iter.get(accessEnc)) {
+                assertEquals(11, iter.get(osmWayIdEnc));
+                assertEquals(0, iter.fetchWayGeometry(FetchMode.PILLAR_ONLY).size());
+                accessible++;
+            }
+        }
+        assertEquals(1, accessible);
+        hopper.close();
+    }
+
+    private GraphHopper createHopperForChanges() {
+        return new GraphHopper().
+                setGraphHopperLocation(dir).
+                setOSMFile(getClass().getResource(file1).getFile()).
+                setEncodedValuesString("car_access, car_average_speed, osm_way_id").
+                setProfiles(TestProfiles.accessAndSpeed("car")).
+                setMinNetworkSize(0).
+                setFileBacked(true);
+    }
+
     @Test
     public void testOneWay() {
         GraphHopper hopper = new GraphHopperFacade(file2)
@@ -703,6 +834,29 @@ public class OSMReaderTest {
                 edge.fetchWayGeometry(FetchMode.ALL));
     }
 
+    @Test
+    public void testReadEleFromDataProviderSortedLookup() {
+        GraphHopper hopper = new GraphHopperFacade("test-osm5.xml");
+        ElevationProvider provider = new SRTMProvider(GraphHopperTest.DIR);
+        hopper.setElevationProvider(provider);
+        // use small batches and several threads to make sure the results do not depend on them
+        hopper.getReaderConfig().setElevationLookupBatchSize(2).setElevationLookupThreads(2);
+        hopper.importOrLoad();
+
+        Graph graph = hopper.getBaseGraph();
+        int n10 = AbstractGraphStorageTester.getIdOf(graph, 49.501);
+        int n30 = AbstractGraphStorageTester.getIdOf(graph, 49.5011);
+        int n50 = AbstractGraphStorageTester.getIdOf(graph, 49.5001);
+
+        EdgeIteratorState edge = GHUtility.getEdge(graph, n50, n30);
+        assertEquals(Helper.createPointList3D(49.5001, 11.501, 426, 49.5002, 11.5015, 441, 49.5011, 11.502, 410.0),
+                edge.fetchWayGeometry(FetchMode.ALL));
+
+        edge = GHUtility.getEdge(graph, n10, n50);
+        assertEquals(Helper.createPointList3D(49.501, 11.5001, 383.0, 49.5001, 11.501, 426.0),
+                edge.fetchWayGeometry(FetchMode.ALL));
+    }
+
     /**
      * Tests the combination of different turn cost flags by different encoders.
      */
@@ -0,0 +1,94 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchCollectionsTest {
+
+    @Test
+    public void reuseReleasedCollections() {
+        SearchCollections<SPTEntry> first = SearchCollections.acquire(10);
+        SearchCollections<SPTEntry> second = SearchCollections.acquire(10);
+        assertNotSame(first, second);
+        SPTEntry entry = new SPTEntry(3, 1.5);
+        first.getMap().put(3, entry);
+        first.getQueue().add(entry);
+        first.release();
+        // releasing twice must not hand out the same collections to two searches
+        first.release();
+
+        SearchCollections<SPTEntry> third = SearchCollections.acquire(10);
+        assertSame(first, third);
+        assertTrue(third.getMap().isEmpty());
+        assertTrue(third.getQueue().isEmpty());
+        assertNotSame(first, SearchCollections.acquire(10));
+        second.release();
+        third.release();
+    }
+
+    @Test
+    public void shareCollectionsBetweenThreads() throws InterruptedException {
+        // virtual threads are never reused, so the collections must be available to other threads
+        SearchCollections<SPTEntry> collections = SearchCollections.acquire(10);
+        collections.release();
+        AtomicReference<SearchCollections<SPTEntry>> other = new AtomicReference<>();
+        Thread thread = Thread.ofVirtual().start(() -> other.set(SearchCollections.acquire(10)));
+        thread.join();
+        assertSame(collections, other.get());
+        assertNotSame(collections, SearchCollections.acquire(10));
+    }
+
+    @Test
+    public void poolIsBounded() {
+        List<SearchCollections<SPTEntry>> list = new ArrayList<>();
+        for (int i = 0; i < SearchCollections.MAX_POOLED + 10; i++)
+            list.add(SearchCollections.acquire(10));
+        list.forEach(SearchCollections::release);
+        assertEquals(SearchCollections.MAX_POOLED, SearchCollections.getPooled());
+
+        // large collections are limited by their memory
+        for (int i = 0; i < 40; i++)
+            new SearchCollections<SPTEntry>(150_000).release();
+        assertTrue(SearchCollections.getPooled() <= SearchCollections.MAX_POOLED);
+        assertTrue(SearchCollections.getPooledBytes() <= SearchCollections.MAX_POOLED_BYTES);
+        assertTrue(SearchCollections.getPooledBytes() > 0);
+    }
+
+    @Test
+    public void releasedCollectionsAreEmpty() {
+        SearchCollections<SPTEntry> collections = SearchCollections.acquire(10);
+        for (int i = 0; i < 1000; i++) {
+            SPTEntry entry = new SPTEntry(i, i);
+            collections.getMap().put(i, entry);
+            collections.getQueue().add(entry);
+        }
+        collections.release();
+        SearchCollections<SPTEntry> reused = SearchCollections.acquire(10);
+        assertSame(collections, reused);
+        assertEquals(0, reused.getMap().size());
+        assertNull(reused.getQueue().poll());
+        reused.release();
+    }
+}
@@ -0,0 +1,126 @@
+package com.graphhopper.routing;
+
+import com.graphhopper.util.EdgeIterator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.graphhopper.routing.SearchState.NO_KEY;
+import static com.graphhopper.routing.SearchState.NO_SLOT;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchStateTest {
+
+    @Test
+    public void pollInOrderOfValues() {
+        SearchState state = new SearchState(4);
+        int root = state.add(NO_KEY, EdgeIterator.NO_EDGE, 0, 0, NO_SLOT, 0);
+        assertEquals(root, state.poll());
+        int a = state.add(1, 10, 1, 5, root, 5);
+        int b = state.add(2, 11, 2, 3, root, 3);
+        int c = state.add(3, 12, 3, 4, root, 7);
+        assertEquals(NO_SLOT, state.find(0));
+        assertEquals(a, state.find(1));
+        assertEquals(c, state.find(3));
+
+        // decrease the value of an entry in the queue
+        state.update(c, 13, 1, b, 1);
+        assertEquals(c, state.poll());
+        assertEquals(13, state.getEdge(c));
+        assertEquals(b, state.getParent(c));
+        assertEquals(b, state.poll());
+        // an entry that was polled already is pushed again
+        state.update(b, 14, 2, root, 2);
+        assertEquals(b, state.poll());
+        assertEquals(a, state.poll());
+        assertTrue(state.isEmpty());
+    }
+
+    @Test
+    public void createEntries() {
+        SearchState state = new SearchState(4);
+        int root = state.add(NO_KEY, EdgeIterator.NO_EDGE, 0, 0, NO_SLOT, 0);
+        int a = state.add(1, 10, 1, 2.5, root, 2.5);
+        int b = state.add(2, 11, 2, 4, a, 4);
+        SPTEntry entry = state.createEntry(b);
+        assertEquals(11, entry.edge);
+        assertEquals(2, entry.adjNode);
+        assertEquals(4, entry.weight);
+        assertEquals(10, entry.parent.edge);
+        assertEquals(2.5, entry.parent.weight);
+        assertEquals(0, entry.parent.parent.adjNode);
+        assertEquals(EdgeIterator.NO_EDGE, entry.parent.parent.edge);
+        assertNull(entry.parent.parent.parent);
+        assertNull(state.createEntry(NO_SLOT));
+    }
+
+    @Test
+    public void growAndClear() {
+        SearchState state = new SearchState(4);
+        for (int search = 0; search < 3; search++) {
+            for (int i = 0; i < 10_000; i++)
+                assertEquals(i, state.add(i * 3, i, i, 10_000 - i, NO_SLOT, 10_000 - i));
+            for (int i = 0; i < 10_000; i++)
+                assertEquals(i, state.find(i * 3));
+            assertEquals(NO_SLOT, state.find(1));
+            for (int i = 0; i < 10_000; i++)
+                assertEquals(10_000 - 1 - i, state.poll());
+            assertTrue(state.isEmpty());
+
+            state.clear();
+            assertEquals(NO_SLOT, state.find(0));
+            assertEquals(NO_SLOT, state.find(3));
+            assertTrue(state.isEmpty());
+        }
+    }
+
+    @Test
+    public void reuseReleasedState() throws InterruptedException {
+        // other tests might have released states already
+        while (SearchState.getPooled() > 0)
+            SearchState.acquire(10);
+        SearchState first = SearchState.acquire(10);
+        SearchState second = SearchState.acquire(10);
+        assertNotSame(first, second);
+        first.add(3, 1, 3, 1.5, NO_SLOT, 1.5);
+        first.release();
+        // releasing twice must not hand out the same state to two searches
+        first.release();
+
+        SearchState third = SearchState.acquire(10);
+        assertSame(first, third);
+        assertEquals(NO_SLOT, third.find(3));
+        assertTrue(third.isEmpty());
+        assertNotSame(first, SearchState.acquire(10));
+        second.release();
+        third.release();
+
+        // virtual threads are never reused, so the state must be available to other threads
+        AtomicReference<SearchState> other = new AtomicReference<>();
+        Thread thread = Thread.ofVirtual().start(() -> other.set(SearchState.acquire(10)));
+        thread.join();
+        assertTrue(other.get() == second || other.get() == third);
+    }
+
+    @Test
+    public void poolIsBounded() {
+        List<SearchState> list = new ArrayList<>();
+        for (int i = 0; i < SearchState.MAX_POOLED + 10; i++)
+            list.add(SearchState.acquire(10));
+        list.forEach(SearchState::release);
+        assertEquals(SearchState.MAX_POOLED, SearchState.getPooled());
+        for (int i = 0; i < SearchState.MAX_POOLED; i++)
+            SearchState.acquire(10);
+        assertEquals(0, SearchState.getPooled());
+
+        // large states are not pooled
+        SearchState large = new SearchState(10);
+        for (int i = 0; i < 500_000; i++)
+            large.add(i, i, i, i, NO_SLOT, i);
+        assertTrue(large.getEstimatedBytes() > SearchState.MAX_POOLED_BYTES);
+        large.release();
+        assertEquals(0, SearchState.getPooled());
+    }
+}
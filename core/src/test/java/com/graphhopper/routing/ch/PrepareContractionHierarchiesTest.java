@@ -568,6 +568,81 @@ public class PrepareContractionHierarchiesTest {
         }
     }
 
+    @Test
+    public void testShortcutAggregates() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        RandomGraph.start().seed(seed).nodes(200).curviness(0.1).fill(g, speedEnc);
+        CHConfig config = CHConfig.nodeBased("c", weighting).setStoreAggregates(true);
+        PrepareContractionHierarchies.Result result = createPrepareContractionHierarchies(g, config).doWork();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(g, result.getCHStorage(), result.getCHConfig());
+        assertTrue(chGraph.hasShortcutAggregates());
+        CHRoutingAlgorithmFactory factory = new CHRoutingAlgorithmFactory(chGraph);
+        for (int i = 0; i < 100; i++) {
+            int from = rnd.nextInt(g.getNodes());
+            int to = rnd.nextInt(g.getNodes());
+            Path path = factory.createAlgo(new PMap()).calcPath(from, to);
+            Path fastPath = factory.createAlgo(new PMap().putObject(Parameters.CH.DISTANCE_AND_TIME_ONLY, true)).calcPath(from, to);
+            String msg = "seed: " + seed + ", " + from + "->" + to;
+            assertEquals(path.isFound(), fastPath.isFound(), msg);
+            assertEquals(path.getWeight(), fastPath.getWeight(), msg);
+            assertEquals(path.getDistance(), fastPath.getDistance(), 1.e-6, msg);
+            assertEquals(path.getTime(), fastPath.getTime(), msg);
+            assertEquals(0, fastPath.getEdgeCount(), msg);
+        }
+    }
+
+    @Test
+    public void testShortcutAggregatesAddedLater() {
+        RandomGraph.start().seed(42).nodes(200).curviness(0.1).fill(g, speedEnc);
+        PrepareContractionHierarchies.Result result = createPrepareContractionHierarchies(g, CHConfig.nodeBased("c", weighting)).doWork();
+        CHStorage store = result.getCHStorage();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(g, store, result.getCHConfig());
+        assertFalse(chGraph.hasShortcutAggregates());
+        // without stored aggregates the values are calculated on demand
+        ShortcutAggregator onDemand = new ShortcutAggregator(chGraph);
+        new ShortcutAggregator(chGraph).storeAggregates(store);
+        assertTrue(chGraph.hasShortcutAggregates());
+        for (int shortcut = 0; shortcut < store.getShortcuts(); shortcut++) {
+            long pointer = store.toShortcutPointer(shortcut);
+            int chEdge = g.getEdges() + shortcut;
+            assertEquals(onDemand.getDistance_mm(chEdge), store.getDistance_mm(shortcut));
+            if (store.getFwdAccess(pointer))
+                assertEquals(onDemand.getMillis(chEdge, store.getNodeA(pointer), store.getNodeB(pointer)), store.getMillis(shortcut, true));
+            if (store.getBwdAccess(pointer))
+                assertEquals(onDemand.getMillis(chEdge, store.getNodeB(pointer), store.getNodeA(pointer)), store.getMillis(shortcut, false));
+        }
+    }
+
+    @Test
+    public void testSortShortcuts() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        RandomGraph.start().seed(seed).nodes(200).curviness(0.1).fill(g, speedEnc);
+        CHConfig config = CHConfig.nodeBased("c", weighting).setStoreAggregates(true);
+        PrepareContractionHierarchies.Result result = createPrepareContractionHierarchies(g, config)
+                .setParams(new PMap().putObject(CHParameters.SORT_SHORTCUTS, true)).doWork();
+        CHStorage store = result.getCHStorage();
+        assertTrue(store.getShortcuts() > 0);
+        for (int shortcut = 1; shortcut < store.getShortcuts(); shortcut++)
+            assertTrue(store.getNodeA(store.toShortcutPointer(shortcut - 1)) <= store.getNodeA(store.toShortcutPointer(shortcut)));
+
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(g, store, result.getCHConfig());
+        CHRoutingAlgorithmFactory factory = new CHRoutingAlgorithmFactory(chGraph);
+        for (int i = 0; i < 100; i++) {
+            int from = rnd.nextInt(g.getNodes());
+            int to = rnd.nextInt(g.getNodes());
+            Path expected = new Dijkstra(g, weighting, TraversalMode.NODE_BASED).calcPath(from, to);
+            Path path = factory.createAlgo(new PMap()).calcPath(from, to);
+            Path fastPath = factory.createAlgo(new PMap().putObject(Parameters.CH.DISTANCE_AND_TIME_ONLY, true)).calcPath(from, to);
+            String msg = "seed: " + seed + ", " + from + "->" + to;
+            assertEquals(expected.isFound(), path.isFound(), msg);
+            assertEquals(expected.getWeight(), path.getWeight(), 1.e-1, msg);
+            assertEquals(path.getDistance(), fastPath.getDistance(), 1.e-6, msg);
+            assertEquals(path.getTime(), fastPath.getTime(), msg);
+        }
+    }
+
     private void checkPath(BaseGraph g, CHConfig c, int expShortcuts, double expDistance, IntIndexedContainer expNodes, int[] nodeOrdering) {
         PrepareContractionHierarchies prepare = createPrepareContractionHierarchies(g, c);
         useNodeOrdering(prepare, nodeOrdering);
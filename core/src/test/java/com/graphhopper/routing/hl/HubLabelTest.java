@@ -0,0 +1,144 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.hl;
+
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.ch.ShortcutAggregator;
+import com.graphhopper.routing.ch.ShortcutUnpacker;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.*;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.RandomGraph;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HubLabelTest {
+
+    private final DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+    private final BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).build()).create();
+    private final Weighting weighting = new SpeedWeighting(speedEnc);
+
+    private RoutingCHGraph prepareCH() {
+        graph.freeze();
+        CHConfig chConfig = CHConfig.nodeBased("p", weighting);
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        return RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+    }
+
+    @Test
+    public void aggregatedShortcuts() {
+        RandomGraph.start().seed(123).nodes(200).curviness(0.1).fill(graph, speedEnc);
+        RoutingCHGraph chGraph = prepareCH();
+        ShortcutAggregator aggregator = new ShortcutAggregator(chGraph);
+        RoutingCHEdgeExplorer explorer = chGraph.createOutEdgeExplorer();
+        long[] sums = new long[2];
+        ShortcutUnpacker unpacker = new ShortcutUnpacker(chGraph, (edge, reverse, prevOrNextEdgeId) -> {
+            sums[0] += edge.getDistance_mm();
+            sums[1] += weighting.calcEdgeMillis(edge, reverse);
+        }, false);
+        int shortcuts = 0;
+        for (int node = 0; node < chGraph.getNodes(); node++) {
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                if (!iter.isShortcut() || Double.isInfinite(iter.getWeight(false)))
+                    continue;
+                shortcuts++;
+                sums[0] = sums[1] = 0;
+                unpacker.visitOriginalEdgesFwd(iter.getEdge(), iter.getAdjNode(), false, EdgeIterator.NO_EDGE);
+                assertEquals(sums[0], aggregator.getDistance_mm(iter.getEdge()), "shortcut " + iter.getEdge());
+                assertEquals(sums[1], aggregator.getMillis(iter.getEdge(), node, iter.getAdjNode()), "shortcut " + iter.getEdge());
+            }
+        }
+        assertTrue(shortcuts > 0);
+    }
+
+    @Test
+    public void sameNode() {
+        RandomGraph.start().seed(42).nodes(20).fill(graph, speedEnc);
+        HubLabelStorage storage = new HubLabelStorage(graph.getDirectory(), "p").create(graph.getNodes());
+        new HubLabelBuilder(prepareCH(), storage).build();
+        HubLabelQuery query = new HubLabelQuery(storage);
+        assertTrue(query.calc(7, 7));
+        assertEquals(0, query.getWeight());
+        assertEquals(0, query.getDistance());
+        assertEquals(0, query.getTime());
+    }
+
+    @Test
+    public void loadExisting() {
+        RandomGraph.start().seed(42).nodes(20).fill(graph, speedEnc);
+        RoutingCHGraph chGraph = prepareCH();
+        String location = "./target/tmp-hub-labels";
+        Helper.removeDir(new File(location));
+        HubLabelStorage storage = new HubLabelStorage(new GHDirectory(location, DAType.RAM_STORE), "p").create(graph.getNodes());
+        new HubLabelBuilder(chGraph, storage).build();
+        long entries = storage.getEntries();
+        storage.flush();
+        storage.close();
+
+        storage = new HubLabelStorage(new GHDirectory(location, DAType.RAM_STORE), "p");
+        assertTrue(storage.loadExisting(graph.getNodes()));
+        assertEquals(entries, storage.getEntries());
+        storage.close();
+
+        // the labels belong to a different graph, so they have to be built again
+        Directory dir = new GHDirectory(location, DAType.RAM_STORE);
+        storage = new HubLabelStorage(dir, "p");
+        assertFalse(storage.loadExisting(graph.getNodes() + 1));
+        storage.remove();
+        storage = new HubLabelStorage(dir, "p");
+        assertFalse(storage.loadExisting(graph.getNodes()));
+        storage.close();
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void randomGraph() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        RandomGraph.start().seed(seed).nodes(300).curviness(0.1).speedZero(0.05).fill(graph, speedEnc);
+        HubLabelStorage storage = new HubLabelStorage(graph.getDirectory(), "p").create(graph.getNodes());
+        new HubLabelBuilder(prepareCH(), storage).build();
+        assertTrue(storage.getEntries() >= 2L * graph.getNodes());
+        HubLabelQuery query = new HubLabelQuery(storage);
+        for (int i = 0; i < 500; i++) {
+            int from = rnd.nextInt(graph.getNodes());
+            int to = rnd.nextInt(graph.getNodes());
+            Path path = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(from, to);
+            assertEquals(path.isFound(), query.calc(from, to), "seed: " + seed + ", " + from + "->" + to);
+            if (!path.isFound())
+                continue;
+            assertEquals(path.getWeight(), query.getWeight(), 1.e-3, "seed: " + seed + ", " + from + "->" + to);
+            // there can be multiple shortest paths with different distances and times, so we only check them roughly
+            assertTrue(query.getDistance() > 0 || from == to, "seed: " + seed + ", " + from + "->" + to);
+            assertTrue(query.getTime() >= 0, "seed: " + seed + ", " + from + "->" + to);
+        }
+    }
+}
@@ -28,10 +28,12 @@ import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.weighting.SpeedWeighting;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.*;
+import com.graphhopper.util.Helper;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -238,4 +240,36 @@ public class LandmarkStorageTest {
         storage.createLandmarks();
         assertEquals(3, storage.getSubnetworksWithLandmarks());
     }
+
+    @Test
+    public void testLoadStale() {
+        // 0-1-2-3
+        graph.edge(0, 1).setDistance(10.1).set(speedEnc, 60, 60);
+        graph.edge(1, 2).setDistance(10.2).set(speedEnc, 60, 60);
+        graph.edge(2, 3).setDistance(10.3).set(speedEnc, 60, 60);
+        Weighting weighting = new SpeedWeighting(speedEnc);
+        subnetworkRemoval(weighting, 0);
+
+        String location = "./target/tmp-lm-stale";
+        Helper.removeDir(new File(location));
+        LandmarkStorage storage = new LandmarkStorage(graph, encodingManager, new GHDirectory(location, DAType.RAM_STORE), new LMConfig("car", weighting), 2);
+        storage.setMinimumNodes(2);
+        storage.createLandmarks();
+        storage.flush();
+        storage.close();
+
+        // a node was added after the landmarks were prepared, e.g. by an OSM change
+        graph.edge(3, 4).setDistance(10.4).set(speedEnc, 60, 60);
+        LandmarkStorage loaded = new LandmarkStorage(graph, encodingManager, new GHDirectory(location, DAType.RAM_STORE), new LMConfig("car", weighting), 2);
+        assertThrows(IllegalArgumentException.class, loaded::loadExisting);
+        loaded.close();
+
+        LandmarkStorage stale = new LandmarkStorage(graph, encodingManager, new GHDirectory(location, DAType.RAM_STORE), new LMConfig("car", weighting), 2).setStale(true);
+        assertTrue(stale.loadExisting());
+        assertEquals(4, stale.getBaseNodes());
+        assertEquals(5, graph.getNodes());
+        assertThrows(IllegalStateException.class, () -> stale.setStale(false));
+        stale.close();
+        Helper.removeDir(new File(location));
+    }
 }
@@ -36,6 +36,8 @@ import com.graphhopper.util.PMap;
 import com.graphhopper.util.Parameters;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -178,6 +180,77 @@ public class PrepareLandmarksTest {
         assertEquals(expectedAlgo.getVisitedNodes() - 136, qGraphOneDirAlgo.getVisitedNodes());
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = {8, 12})
+    public void testCompressedWeights(int weightBits) {
+        Random rand = new Random(0);
+        int width = 15, height = 15;
+        for (int hIndex = 0; hIndex < height; hIndex++) {
+            for (int wIndex = 0; wIndex < width; wIndex++) {
+                int node = wIndex + hIndex * width;
+                double speed = 20 + rand.nextDouble() * 30;
+                if (wIndex + 1 < width)
+                    graph.edge(node, node + 1).set(speedEnc, speed);
+                if (hIndex + 1 < height)
+                    graph.edge(node, node + width).set(speedEnc, speed);
+                updateDistancesFor(graph, node, -hIndex / 50.0, wIndex / 50.0);
+            }
+        }
+        Weighting weighting = new SpeedWeighting(speedEnc);
+        LMConfig lmConfig = new LMConfig("car", weighting);
+        PrepareLandmarks prepare = new PrepareLandmarks(new GHDirectory("", DAType.RAM), graph, encodingManager, lmConfig, 4);
+        prepare.setMinimumNodes(2);
+        prepare.doWork();
+        LandmarkStorage lms = prepare.getLandmarkStorage();
+
+        String fileStr = "./target/tmp-lm-compressed";
+        Helper.removeDir(new File(fileStr));
+        PrepareLandmarks compressedPrepare = new PrepareLandmarks(new GHDirectory(fileStr, DAType.RAM_STORE), graph, encodingManager, lmConfig, 4);
+        compressedPrepare.setMinimumNodes(2);
+        compressedPrepare.setWeightBits(weightBits);
+        compressedPrepare.doWork();
+        compressedPrepare.flush();
+        compressedPrepare.close();
+        compressedPrepare = new PrepareLandmarks(new GHDirectory(fileStr, DAType.RAM_STORE), graph, encodingManager, lmConfig, 4);
+        assertTrue(compressedPrepare.loadExisting());
+        LandmarkStorage compressedLms = compressedPrepare.getLandmarkStorage();
+        assertEquals(weightBits, compressedLms.getWeightBits());
+        assertEquals(Arrays.toString(lms.getLandmarks(1)), Arrays.toString(compressedLms.getLandmarks(1)));
+
+        // the compressed weights are rounded down to a multiple of the weight step
+        for (int node = 0; node < graph.getNodes(); node++) {
+            int step = compressedLms.getWeightStep(node);
+            assertTrue(step > 1);
+            int shift = compressedLms.getWeightShift(node);
+            assertEquals(step, 1 << shift);
+            for (int lmIdx = 0; lmIdx < 4; lmIdx++) {
+                int fromWeight = lms.getFromWeight(lmIdx, node);
+                assertTrue(compressedLms.getFromWeight(lmIdx, node) <= fromWeight);
+                assertTrue(compressedLms.getFromWeight(lmIdx, node) > fromWeight - step);
+                int toWeight = lms.getToWeight(lmIdx, node);
+                assertTrue(compressedLms.getToWeight(lmIdx, node) <= toWeight);
+                assertTrue(compressedLms.getToWeight(lmIdx, node) > toWeight - step);
+                assertEquals(compressedLms.getFromWeight(lmIdx, node), compressedLms.getFromWeight(lmIdx, node, shift));
+                assertEquals(compressedLms.getToWeight(lmIdx, node), compressedLms.getToWeight(lmIdx, node, shift));
+            }
+        }
+
+        // the approximation is still a lower bound, so the routes are still optimal
+        PMap hints = new PMap().putObject(Parameters.Landmark.ACTIVE_COUNT, 2);
+        for (int i = 0; i < 50; i++) {
+            int from = rand.nextInt(graph.getNodes());
+            int to = rand.nextInt(graph.getNodes());
+            Path expectedPath = new AStar(graph, weighting, tm).calcPath(from, to);
+            for (String algo : Arrays.asList(ASTAR, ASTAR_BI)) {
+                RoutingAlgorithm algoWithLandmarks = new LMRoutingAlgorithmFactory(compressedLms).createAlgo(graph, weighting,
+                        new AlgorithmOptions().setAlgorithm(algo).setTraversalMode(tm).setHints(hints));
+                assertEquals(expectedPath.getWeight(), algoWithLandmarks.calcPath(from, to).getWeight(), 1.e-6);
+            }
+        }
+        compressedPrepare.close();
+        Helper.removeDir(new File(fileStr));
+    }
+
     @Test
     public void testStoreAndLoad() {
         graph.edge(0, 1).setDistance(80_000).set(speedEnc, 60);
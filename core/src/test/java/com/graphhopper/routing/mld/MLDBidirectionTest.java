@@ -0,0 +1,143 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.mld;
+
+import com.carrotsearch.hppc.IntIndexedContainer;
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.RandomGraph;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.graphhopper.util.GHUtility.createRandomSnaps;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MLDBidirectionTest {
+
+    private final DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+    private final BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).build()).create();
+
+    @Test
+    public void partition() {
+        RandomGraph.start().seed(42).nodes(300).curviness(0).fill(graph, speedEnc);
+        CellPartition partition = new CellPartition(graph.getDirectory()).create(graph.getNodes());
+        new InertialPartitioner(graph, partition, 25).partition();
+        assertTrue(partition.getCells() >= 300 / 25);
+        assertTrue(partition.getMaxCellSize() <= 25);
+
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        int cellNodes = 0;
+        for (int cell = 0; cell < partition.getCells(); cell++) {
+            cellNodes += partition.getCellSize(cell);
+            for (int i = 0; i < partition.getCellSize(cell); i++) {
+                int node = partition.getCellNode(cell, i);
+                assertEquals(cell, partition.getCell(node));
+                assertEquals(i, partition.getLocalIndex(node));
+            }
+            for (int i = 0; i < partition.getBoundaryCount(cell); i++)
+                assertEquals(cell, partition.getCell(partition.getBoundaryNode(partition.getBoundaryStart(cell) + i)));
+        }
+        assertEquals(graph.getNodes(), cellNodes);
+
+        for (int node = 0; node < graph.getNodes(); node++) {
+            boolean boundary = false;
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next())
+                boundary |= partition.getCell(iter.getAdjNode()) != partition.getCell(node);
+            assertEquals(boundary, partition.getBoundaryIndex(node) >= 0, "node " + node);
+        }
+    }
+
+    @Test
+    public void sameNode() {
+        RandomGraph.start().seed(1).nodes(50).curviness(0).fill(graph, speedEnc);
+        CellOverlay overlay = createOverlay(10);
+        Path path = new MLDBidirection(graph, overlay.getWeighting(), overlay).calcPath(5, 5);
+        assertTrue(path.isFound());
+        assertEquals(0, path.getWeight());
+        assertEquals(0, path.getEdgeCount());
+    }
+
+    @Test
+    public void random() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        RandomGraph.start().seed(seed).nodes(400).curviness(0).speedZero(0.1).fill(graph, speedEnc);
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, graph.getDirectory());
+        locationIndex.prepareIndex();
+        CellOverlay overlay = createOverlay(30);
+
+        for (int j = 0; j < 10; j++) {
+            List<Snap> snaps = createRandomSnaps(graph.getBounds(), locationIndex, rnd, 10, false, EdgeFilter.ALL_EDGES);
+            QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+            Weighting weighting = queryGraph.wrapWeighting(overlay.getWeighting());
+            for (int i = 0; i < 50; i++) {
+                int from = rnd.nextInt(queryGraph.getNodes());
+                int to = rnd.nextInt(queryGraph.getNodes());
+                Path refPath = new Dijkstra(queryGraph, weighting, TraversalMode.NODE_BASED).calcPath(from, to);
+                Path path = new MLDBidirection(queryGraph, weighting, overlay).calcPath(from, to);
+                String msg = "seed: " + seed + ", " + from + "->" + to;
+                assertEquals(refPath.isFound(), path.isFound(), msg);
+                if (!refPath.isFound())
+                    continue;
+                assertEquals(refPath.getWeight(), path.getWeight(), 1.e-3, msg);
+                IntIndexedContainer nodes = path.calcNodes();
+                assertEquals(from, nodes.get(0), msg);
+                assertEquals(to, nodes.get(nodes.size() - 1), msg);
+                assertEquals(path.getEdgeCount() + 1, nodes.size(), msg);
+            }
+        }
+    }
+
+    @Test
+    public void customizationTimeout() {
+        RandomGraph.start().seed(42).nodes(300).curviness(0).fill(graph, speedEnc);
+        graph.freeze();
+        CellPartition partition = new CellPartition(graph.getDirectory()).create(graph.getNodes());
+        new InertialPartitioner(graph, partition, 25).partition();
+        SpeedWeighting weighting = new SpeedWeighting(speedEnc);
+        assertThrows(IllegalArgumentException.class, () -> CellOverlay.customize(graph, partition, weighting, 2, 0));
+
+        CellOverlayCache cache = new CellOverlayCache(graph, partition, 2, 2, 1, 0);
+        assertThrows(IllegalArgumentException.class, () -> cache.get("profile", null, weighting));
+        // the failed overlay is not cached
+        assertEquals(0, cache.size());
+    }
+
+    private CellOverlay createOverlay(int cellSize) {
+        graph.freeze();
+        CellPartition partition = new CellPartition(graph.getDirectory()).create(graph.getNodes());
+        new InertialPartitioner(graph, partition, cellSize).partition();
+        return CellOverlay.customize(graph, partition, new SpeedWeighting(speedEnc), 2);
+    }
+}
@@ -647,6 +647,71 @@ public class QueryGraphTest {
         assertEquals(new LinkedHashSet<>(), queryGraph.getUnfavoredVirtualEdges());
     }
 
+    @Test
+    public void testWrapWeightingIsReused() {
+        EdgeIteratorState edge = g.edge(0, 1).setDistance(0).set(speedEnc, 60, 60);
+        updateDistancesFor(g, 0, 0, 0);
+        updateDistancesFor(g, 1, 0, 2);
+        Weighting weighting = new SpeedWeighting(speedEnc);
+
+        QueryGraph queryGraph = QueryGraph.create(g, fakeEdgeSnap(edge, 0, 1, 0));
+        Weighting wrapped = queryGraph.wrapWeighting(weighting);
+        assertSame(wrapped, queryGraph.wrapWeighting(weighting));
+        assertSame(wrapped, queryGraph.wrapWeighting(wrapped));
+        assertNotSame(wrapped, queryGraph.wrapWeighting(new SpeedWeighting(speedEnc)));
+
+        // the adjusted weights depend on the unfavored edges, so they are not reused in this case
+        queryGraph.unfavorVirtualEdges(IntArrayList.from(1));
+        assertNotSame(wrapped, queryGraph.wrapWeighting(weighting));
+        queryGraph.clearUnfavoredStatus();
+        assertSame(wrapped, queryGraph.wrapWeighting(weighting));
+    }
+
+    @Test
+    public void testAcquireReusesReleasedOverlay() {
+        EdgeIteratorState edge = g.edge(0, 1).setDistance(0).set(speedEnc, 60, 60)
+                .setWayGeometry(Helper.createPointList(0.5, 1));
+        updateDistancesFor(g, 0, 0, 0);
+        updateDistancesFor(g, 1, 0, 2);
+        // other tests might have released overlays already
+        while (QueryOverlay.getPooled() > 0)
+            QueryOverlay.acquire(2, false);
+
+        QueryGraph queryGraph = QueryGraph.acquire(g, Arrays.asList(fakeEdgeSnap(edge, 0.6, 0.5, 0), fakeEdgeSnap(edge, 0.1, 1.8, 1)));
+        String virtualEdges = describeVirtualEdges(queryGraph);
+        VirtualEdgeIteratorState virtualEdge = queryGraph.getVirtualEdges().get(0);
+        queryGraph.unfavorVirtualEdges(IntArrayList.from(virtualEdge.getEdge()));
+        queryGraph.release();
+        // releasing twice must not hand out the same overlay to two queries
+        queryGraph.release();
+        assertEquals(1, QueryOverlay.getPooled());
+
+        QueryGraph reused = QueryGraph.acquire(g, Arrays.asList(fakeEdgeSnap(edge, 0.6, 0.5, 0), fakeEdgeSnap(edge, 0.1, 1.8, 1)));
+        assertSame(queryGraph.getQueryOverlay(), reused.getQueryOverlay());
+        assertSame(virtualEdge, reused.getVirtualEdges().get(0));
+        assertFalse(isAvoidEdge(virtualEdge));
+        assertEquals(virtualEdges, describeVirtualEdges(reused));
+        // the same as a query graph that is created without the pool
+        QueryGraph created = QueryGraph.create(g, Arrays.asList(fakeEdgeSnap(edge, 0.6, 0.5, 0), fakeEdgeSnap(edge, 0.1, 1.8, 1)));
+        assertEquals(describeVirtualEdges(created), describeVirtualEdges(reused));
+        EdgeExplorer explorer = reused.createEdgeExplorer();
+        for (int node = 0; node < reused.getNodes(); node++)
+            assertEquals(GHUtility.getNeighbors(created.createEdgeExplorer().setBaseNode(node)),
+                    GHUtility.getNeighbors(explorer.setBaseNode(node)), "node " + node);
+
+        // query graphs that were not acquired are not pooled
+        created.release();
+        reused.release();
+        assertEquals(1, QueryOverlay.getPooled());
+    }
+
+    private String describeVirtualEdges(QueryGraph queryGraph) {
+        return queryGraph.getVirtualEdges().stream()
+                .map(e -> e + " " + e.getEdgeKey() + " " + e.getOriginalEdgeKey() + " " + e.getDistance() + " "
+                        + e.get(speedEnc) + " " + e.getReverse(speedEnc) + " " + e.fetchWayGeometry(FetchMode.ALL))
+                .collect(Collectors.joining(", "));
+    }
+
     @Test
     public void testInternalAPIOriginalEdgeKey() {
         initGraph(g);
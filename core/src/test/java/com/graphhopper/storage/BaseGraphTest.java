@@ -27,8 +27,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import static com.graphhopper.util.EdgeIteratorState.REVERSE_STATE;
 import static com.graphhopper.util.FetchMode.*;
@@ -446,4 +449,111 @@ public class BaseGraphTest extends AbstractGraphStorageTester {
         });
         assertTrue(e.getMessage().contains("Too many pillar nodes"));
     }
+
+    @Test
+    public void testSortNodesAndEdges() {
+        // sorting via a copy must give the same graph as sorting in place
+        BaseGraph inPlace = createGraphForSorting();
+        BaseGraph copied = createGraphForSorting();
+        Random rnd = new Random(42);
+        IntArrayList newNodesByOldNodes = ArrayUtil.permutation(inPlace.getNodes(), rnd);
+        IntArrayList newEdgesByOldEdges = ArrayUtil.permutation(inPlace.getEdges(), rnd);
+        inPlace.sortEdges(newEdgesByOldEdges::get);
+        inPlace.relabelNodes(newNodesByOldNodes::get);
+        copied.sortNodesAndEdges(newNodesByOldNodes.toArray(), newEdgesByOldEdges.toArray(), 3);
+
+        assertEquals(inPlace.getNodes(), copied.getNodes());
+        assertEquals(inPlace.getEdges(), copied.getEdges());
+        EdgeExplorer inPlaceExplorer = inPlace.createEdgeExplorer();
+        EdgeExplorer copiedExplorer = copied.createEdgeExplorer();
+        for (int node = 0; node < inPlace.getNodes(); node++) {
+            assertEquals(inPlace.getNodeAccess().getLat(node), copied.getNodeAccess().getLat(node));
+            assertEquals(inPlace.getNodeAccess().getLon(node), copied.getNodeAccess().getLon(node));
+            assertEquals(inPlace.getNodeAccess().getEle(node), copied.getNodeAccess().getEle(node));
+            EdgeIterator expected = inPlaceExplorer.setBaseNode(node);
+            EdgeIterator iter = copiedExplorer.setBaseNode(node);
+            while (expected.next()) {
+                assertTrue(iter.next());
+                assertEquals(expected.getEdge(), iter.getEdge());
+                assertEquals(expected.getAdjNode(), iter.getAdjNode());
+                assertEquals(expected.getDistance(), iter.getDistance());
+                assertEquals(expected.get(carAccessEnc), iter.get(carAccessEnc));
+                assertEquals(expected.getReverse(carAccessEnc), iter.getReverse(carAccessEnc));
+                assertEquals(expected.getName(), iter.getName());
+                assertEquals(expected.fetchWayGeometry(ALL), iter.fetchWayGeometry(ALL));
+            }
+            assertFalse(iter.next());
+        }
+        // the temporary copies were removed
+        assertDoesNotThrow(() -> copied.getDirectory().create("edges_sorting"));
+        assertDoesNotThrow(() -> copied.getDirectory().create("nodes_sorting"));
+    }
+
+    @Test
+    public void testAdjacencyIndex() {
+        graph = new BaseGraph.Builder(encodingManager).setDir(new GHDirectory(defaultGraphLoc, DAType.RAM_STORE))
+                .set3D(true).withAdjacencyIndex(true).create();
+        Random rnd = new Random(123);
+        for (int i = 0; i < 300; i++) {
+            int nodeA = i < 99 ? i : rnd.nextInt(100);
+            int nodeB = i < 99 ? i + 1 : (nodeA + 1 + rnd.nextInt(99)) % 100;
+            graph.edge(nodeA, nodeB).setDistance(rnd.nextInt(10_000) / 10.0).set(carAccessEnc, true, rnd.nextBoolean());
+        }
+        // a node without edges
+        graph.getNodeAccess().setNode(100, 50, 10, 0);
+        // explorers created before the graph is frozen use the linked lists of the edges
+        EdgeExplorer listExplorer = graph.createEdgeExplorer();
+        EdgeExplorer listOutExplorer = graph.createEdgeExplorer(carOutFilter);
+        assertFalse(graph.hasAdjacencyIndex());
+        graph.freeze();
+        assertTrue(graph.hasAdjacencyIndex());
+        List<String> expected = getAdjacency(graph, listExplorer);
+        List<String> expectedOut = getAdjacency(graph, listOutExplorer);
+        assertEquals(600, expected.stream().mapToInt(s -> s.isEmpty() ? 0 : s.split(";").length).sum());
+        assertEquals(expected, getAdjacency(graph, graph.createEdgeExplorer()));
+        assertEquals(expectedOut, getAdjacency(graph, graph.createEdgeExplorer(carOutFilter)));
+
+        graph.flush();
+        graph.close();
+        graph = new BaseGraph.Builder(encodingManager).setDir(new GHDirectory(defaultGraphLoc, DAType.RAM_STORE))
+                .set3D(true).withAdjacencyIndex(true).build();
+        assertTrue(graph.loadExisting());
+        assertTrue(graph.hasAdjacencyIndex());
+        assertEquals(expected, getAdjacency(graph, graph.createEdgeExplorer()));
+        assertEquals(expectedOut, getAdjacency(graph, graph.createEdgeExplorer(carOutFilter)));
+    }
+
+    private static List<String> getAdjacency(BaseGraph graph, EdgeExplorer explorer) {
+        List<String> result = new ArrayList<>();
+        for (int node = 0; node < graph.getNodes(); node++) {
+            StringBuilder sb = new StringBuilder();
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                assertEquals(node, iter.getBaseNode());
+                sb.append(iter.getEdge()).append("-").append(iter.getAdjNode()).append("-").append(iter.getEdgeKey())
+                        .append("-").append(iter.getDistance()).append(";");
+            }
+            result.add(sb.toString());
+        }
+        return result;
+    }
+
+    private BaseGraph createGraphForSorting() {
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).set3D(true).create();
+        Random rnd = new Random(123);
+        NodeAccess na = graph.getNodeAccess();
+        for (int node = 0; node < 100; node++)
+            na.setNode(node, 50 + rnd.nextDouble(), 10 + rnd.nextDouble(), rnd.nextInt(100));
+        for (int i = 0; i < 300; i++) {
+            // start with a path through all nodes, because the in-place sorting expects every node to have an edge
+            int nodeA = i < 99 ? i : rnd.nextInt(100);
+            int nodeB = i < 99 ? i + 1 : (nodeA + 1 + rnd.nextInt(99)) % 100;
+            EdgeIteratorState edge = graph.edge(nodeA, nodeB).setDistance(rnd.nextInt(10_000) / 10.0)
+                    .set(carAccessEnc, true, rnd.nextBoolean());
+            edge.setKeyValues(Map.of(STREET_NAME, new KValue("street " + i)));
+            if (i % 3 == 0)
+                edge.setWayGeometry(Helper.createPointList3D(50 + rnd.nextDouble(), 10 + rnd.nextDouble(), 5));
+        }
+        return graph;
+    }
 }
@@ -55,6 +55,35 @@ class CHStorageTest {
         }
     }
 
+    @Test
+    void createAndLoadAggregates(@TempDir Path path) {
+        {
+            GHDirectory dir = new GHDirectory(path.toAbsolutePath().toString(), DAType.RAM_INT);
+            CHStorage chStorage = new CHStorage(dir, "car", false);
+            chStorage.create(5, 3);
+            chStorage.shortcutNodeBased(0, 1, PrepareEncoder.getScDirMask(), 10, 3, 5);
+            chStorage.shortcutNodeBased(1, 2, PrepareEncoder.getScFwdDir(), 11, 4, 6);
+            assertFalse(chStorage.hasAggregates());
+            chStorage.createAggregates();
+            chStorage.setAggregates(0, 5_000_000_000L, 1200, 1300);
+            chStorage.setAggregates(1, 4000, 60, -1);
+            chStorage.flush();
+            chStorage.close();
+        }
+        {
+            GHDirectory dir = new GHDirectory(path.toAbsolutePath().toString(), DAType.RAM_INT);
+            CHStorage chStorage = new CHStorage(dir, "car", false);
+            assertTrue(chStorage.loadExisting());
+            assertTrue(chStorage.hasAggregates());
+            assertEquals(5_000_000_000L, chStorage.getDistance_mm(0));
+            assertEquals(1200, chStorage.getMillis(0, true));
+            assertEquals(1300, chStorage.getMillis(0, false));
+            assertEquals(4000, chStorage.getDistance_mm(1));
+            assertEquals(60, chStorage.getMillis(1, true));
+            assertEquals(-1, chStorage.getMillis(1, false));
+        }
+    }
+
     @Test
     public void testBigWeight() {
         CHStorage g = new CHStorage(new GHDirectory("", DAType.RAM), "abc", false);
@@ -18,21 +18,19 @@
 
 package com.graphhopper.storage;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GHUtility;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.IntStream;
 
 import static com.graphhopper.util.GHUtility.getEdge;
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class TurnCostStorageTest {
 
@@ -175,6 +173,97 @@ public class TurnCostStorageTest {
         assertEquals(0, turnCostStorage.get(carEnc, edge32, 2, edge20));
     }
 
+    @Test
+    public void testTurnCostIndex() {
+        BaseGraph g = new BaseGraph.Builder(manager).withTurnCosts(true).withTurnCostIndex(true).create();
+        Random rnd = new Random(123);
+        for (int i = 0; i < 200; i++) {
+            int from = rnd.nextInt(50);
+            g.edge(from, (from + 1 + rnd.nextInt(49)) % 50).setDistance(100);
+        }
+        TurnCostStorage turnCostStorage = g.getTurnCostStorage();
+        for (int node = 0; node < g.getNodes(); node++) {
+            IntArrayList edges = getEdges(g, node);
+            for (int i = 0; i < edges.size(); i++)
+                for (int j = 0; j < edges.size(); j++)
+                    // no u-turn costs, so we can check below that no entries can be added
+                    if (i != j && rnd.nextBoolean())
+                        turnCostStorage.set(carTurnCostEnc, edges.get(i), node, edges.get(j), 1 + rnd.nextInt(2));
+        }
+        List<String> expected = getTurnCosts(g);
+
+        g.freeze();
+        assertTrue(turnCostStorage.hasTurnCostIndex());
+        assertEquals(expected, getTurnCosts(g));
+
+        // the values of the existing entries can still be changed, but no entries can be added
+        TurnCostStorage.Iterator iter = turnCostStorage.getAllTurnCosts();
+        assertTrue(iter.next());
+        turnCostStorage.set(carTurnCostEnc, iter.getFromEdge(), iter.getViaNode(), iter.getToEdge(), Double.POSITIVE_INFINITY);
+        assertEquals(Double.POSITIVE_INFINITY, turnCostStorage.get(carTurnCostEnc, iter.getFromEdge(), iter.getViaNode(), iter.getToEdge()));
+        int via = g.getEdgeIteratorState(0, Integer.MIN_VALUE).getBaseNode();
+        assertThrows(IllegalStateException.class, () -> turnCostStorage.set(carTurnCostEnc, 0, via, 0, 1));
+    }
+
+    @Test
+    public void testTurnCostIndexKeepsLinkedLists() {
+        BaseGraph g = new BaseGraph.Builder(manager).withTurnCosts(true).withTurnCostIndex(true).create();
+        Random rnd = new Random(456);
+        for (int i = 0; i < 100; i++) {
+            int from = rnd.nextInt(30);
+            g.edge(from, (from + 1 + rnd.nextInt(29)) % 30).setDistance(100);
+        }
+        TurnCostStorage turnCostStorage = g.getTurnCostStorage();
+        int[] counts = new int[g.getNodes()];
+        for (int node = 0; node < g.getNodes(); node++) {
+            IntArrayList edges = getEdges(g, node);
+            for (int i = 0; i < edges.size(); i++)
+                for (int j = 0; j < edges.size(); j++)
+                    if (rnd.nextBoolean())
+                        turnCostStorage.set(carTurnCostEnc, edges.get(i), node, edges.get(j), 1 + rnd.nextInt(2));
+            counts[node] = turnCostStorage.getTurnCostsCount(node);
+        }
+        List<String> expected = getTurnCosts(g);
+        assertFalse(turnCostStorage.isSortedByEdges());
+
+        // the entries are sorted in place and the linked lists are still valid
+        g.freeze();
+        assertTrue(turnCostStorage.isSortedByEdges());
+        for (int node = 0; node < g.getNodes(); node++)
+            assertEquals(counts[node], turnCostStorage.getTurnCostsCount(node));
+        g.unfreeze();
+        assertFalse(turnCostStorage.hasTurnCostIndex());
+        assertEquals(expected, getTurnCosts(g));
+
+        // entries can be added again and the index is built again
+        int edge = g.edge(0, 1).setDistance(100).getEdge();
+        turnCostStorage.set(carTurnCostEnc, edge, 1, edge, 3);
+        g.freeze();
+        assertTrue(turnCostStorage.isSortedByEdges());
+        assertEquals(3, turnCostStorage.get(carTurnCostEnc, edge, 1, edge));
+        assertEquals(counts[1] + 1, turnCostStorage.getTurnCostsCount(1));
+    }
+
+    private List<String> getTurnCosts(BaseGraph g) {
+        List<String> result = new ArrayList<>();
+        for (int node = 0; node < g.getNodes(); node++) {
+            IntArrayList edges = getEdges(g, node);
+            for (int i = 0; i < edges.size(); i++)
+                for (int j = 0; j < edges.size(); j++)
+                    result.add(node + ": " + edges.get(i) + " -> " + edges.get(j) + " = "
+                            + g.getTurnCostStorage().get(carTurnCostEnc, edges.get(i), node, edges.get(j)));
+        }
+        return result;
+    }
+
+    private static IntArrayList getEdges(BaseGraph g, int node) {
+        IntArrayList edges = new IntArrayList();
+        EdgeIterator iter = g.createEdgeExplorer().setBaseNode(node);
+        while (iter.next())
+            edges.add(iter.getEdge());
+        return edges;
+    }
+
     @Test
     public void testIterateEmptyStore() {
         BaseGraph g = new BaseGraph.Builder(manager).withTurnCosts(true).create();
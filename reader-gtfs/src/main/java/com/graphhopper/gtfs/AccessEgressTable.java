@@ -0,0 +1,276 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.IntLongHashMap;
+import com.carrotsearch.hppc.cursors.IntIntCursor;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Walk times between the street nodes and the stations (the pt nodes connected to the street network) which are
+ * within a bounded walk time, so a router that only needs the access and egress stations and their walk times
+ * does not have to explore the street network for every request. The times are calculated with the calcEdgeMillis
+ * of the weighting used for the import, i.e. they have to be scaled like in {@link GraphExplorer} for other walk
+ * speeds than 5 km/h.
+ * <p>
+ * For every street node the entries are stored consecutively as (station node, millis) int pairs, separately for
+ * access (street node to station) and egress (station to street node).
+ */
+public class AccessEgressTable {
+    private static final int VERSION = 1;
+
+    private final DataAccess accessOffsets;
+    private final DataAccess accessEntries;
+    private final DataAccess egressOffsets;
+    private final DataAccess egressEntries;
+    private int nodes;
+    private int accessEntryCount;
+    private int egressEntryCount;
+    private int maxWalkMillis;
+
+    public AccessEgressTable(Directory dir) {
+        accessOffsets = create(dir, "access_offsets");
+        accessEntries = create(dir, "access_entries");
+        egressOffsets = create(dir, "egress_offsets");
+        egressEntries = create(dir, "egress_entries");
+    }
+
+    private static DataAccess create(Directory dir, String name) {
+        return dir.create(name, dir.getDefaultType(name, true), -1);
+    }
+
+    /**
+     * Runs two one-to-many searches per station, one backward for access and one forward for egress, in parallel.
+     *
+     * @param ptToStreet the street node of every station, see {@link GtfsStorage#getPtToStreet()}
+     */
+    public AccessEgressTable create(BaseGraph graph, Weighting weighting, IntIntHashMap ptToStreet, int maxWalkMillis) {
+        if (nodes > 0)
+            throw new IllegalStateException("AccessEgressTable can only be created once");
+        this.nodes = graph.getNodes();
+        this.maxWalkMillis = maxWalkMillis;
+        IntArrayList stations = new IntArrayList();
+        for (IntIntCursor c : ptToStreet)
+            stations.add(c.key);
+        int[] sortedStations = stations.toArray();
+        Arrays.sort(sortedStations);
+        accessEntryCount = fill(graph, weighting, ptToStreet, sortedStations, true, accessOffsets, accessEntries);
+        egressEntryCount = fill(graph, weighting, ptToStreet, sortedStations, false, egressOffsets, egressEntries);
+        return this;
+    }
+
+    private int fill(BaseGraph graph, Weighting weighting, IntIntHashMap ptToStreet, int[] stations, boolean access, DataAccess offsets, DataAccess entries) {
+        // access means walking from the street node to the station, so we search backward from the station
+        int[][] reached = new int[stations.length][];
+        IntStream.range(0, stations.length).parallel().forEach(i ->
+                reached[i] = explore(graph, weighting, ptToStreet.get(stations[i]), access));
+        int[] counts = new int[nodes + 1];
+        long total = 0;
+        for (int[] r : reached) {
+            for (int j = 0; j < r.length; j += 2)
+                counts[r[j] + 1]++;
+            total += r.length / 2;
+        }
+        if (total >= Integer.MAX_VALUE)
+            throw new IllegalStateException("Too many access/egress entries: " + total + ", reduce the walk time");
+        for (int node = 0; node < nodes; node++)
+            counts[node + 1] += counts[node];
+        offsets.create((nodes + 1L) * 4);
+        for (int node = 0; node <= nodes; node++)
+            offsets.setInt((long) node * 4, counts[node]);
+        entries.create(Math.max(8, total * 8));
+        // counts is now used as the write cursor of every node, the stations are processed in order, so the
+        // entries of a node are sorted by station
+        for (int i = 0; i < stations.length; i++) {
+            int[] r = reached[i];
+            for (int j = 0; j < r.length; j += 2) {
+                long pointer = (long) counts[r[j]]++ * 8;
+                entries.setInt(pointer, stations[i]);
+                entries.setInt(pointer + 4, r[j + 1]);
+            }
+            reached[i] = null;
+        }
+        return (int) total;
+    }
+
+    /**
+     * @return the reached street nodes and the walk times as (node, millis) pairs
+     */
+    private int[] explore(BaseGraph graph, Weighting weighting, int from, boolean reverse) {
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        IntLongHashMap best = new IntLongHashMap();
+        IntArrayList result = new IntArrayList();
+        // millis in the upper and node in the lower 32 bits, so the queue is sorted by time
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        best.put(from, 0);
+        queue.add((long) from);
+        while (!queue.isEmpty()) {
+            long entry = queue.poll();
+            int node = (int) entry;
+            long millis = entry >>> 32;
+            if (millis > best.get(node))
+                continue;
+            result.add(node, (int) millis);
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                if (!Double.isFinite(weighting.calcEdgeWeight(iter, reverse)))
+                    continue;
+                long edgeMillis = weighting.calcEdgeMillis(iter, reverse);
+                if (edgeMillis == Long.MAX_VALUE)
+                    continue;
+                long nextMillis = millis + edgeMillis;
+                if (nextMillis > maxWalkMillis)
+                    continue;
+                int adjNode = iter.getAdjNode();
+                if (nextMillis < best.getOrDefault(adjNode, Long.MAX_VALUE)) {
+                    best.put(adjNode, nextMillis);
+                    queue.add(nextMillis << 32 | adjNode);
+                }
+            }
+        }
+        return result.toArray();
+    }
+
+    public boolean loadExisting() {
+        if (!accessOffsets.loadExisting() || !accessEntries.loadExisting() || !egressOffsets.loadExisting() || !egressEntries.loadExisting())
+            return false;
+        GHUtility.checkDAVersion(accessOffsets.getName(), VERSION, accessOffsets.getHeader(0));
+        nodes = accessOffsets.getHeader(4);
+        accessEntryCount = accessOffsets.getHeader(8);
+        egressEntryCount = accessOffsets.getHeader(12);
+        maxWalkMillis = accessOffsets.getHeader(16);
+        return true;
+    }
+
+    public void flush() {
+        accessOffsets.setHeader(0, VERSION);
+        accessOffsets.setHeader(4, nodes);
+        accessOffsets.setHeader(8, accessEntryCount);
+        accessOffsets.setHeader(12, egressEntryCount);
+        accessOffsets.setHeader(16, maxWalkMillis);
+        accessOffsets.flush();
+        accessEntries.flush();
+        egressOffsets.flush();
+        egressEntries.flush();
+    }
+
+    public void close() {
+        accessOffsets.close();
+        accessEntries.close();
+        egressOffsets.close();
+        egressEntries.close();
+    }
+
+    public long getCapacity() {
+        return accessOffsets.getCapacity() + accessEntries.getCapacity() + egressOffsets.getCapacity() + egressEntries.getCapacity();
+    }
+
+    public String toDetailsString() {
+        return "access entries: " + Helper.nf(accessEntryCount) + ", egress entries: " + Helper.nf(egressEntryCount)
+                + ", max walk time: " + maxWalkMillis / 1000 + "s, " + Helper.nf(getCapacity() / Helper.MB) + "MB";
+    }
+
+    /**
+     * @return the walk time limit in milliseconds used to create this table
+     */
+    public int getMaxWalkMillis() {
+        return maxWalkMillis;
+    }
+
+    /**
+     * @return true if the node is a node of the street network this table was created for, i.e. not a virtual node
+     */
+    public boolean contains(int streetNode) {
+        return streetNode >= 0 && streetNode < nodes;
+    }
+
+    /**
+     * @param egress true to get the entries for walking from the stations to the street node, false for walking
+     *               from the street node to the stations
+     * @return the index of the first entry of the street node
+     */
+    public int getFirstEntry(int streetNode, boolean egress) {
+        return (egress ? egressOffsets : accessOffsets).getInt((long) streetNode * 4);
+    }
+
+    public int getEndEntry(int streetNode, boolean egress) {
+        return (egress ? egressOffsets : accessOffsets).getInt((streetNode + 1L) * 4);
+    }
+
+    /**
+     * @return the pt node of the station of the entry, see {@link GtfsStorage#getStationNodes()}
+     */
+    public int getStationNode(int entry, boolean egress) {
+        return (egress ? egressEntries : accessEntries).getInt((long) entry * 8);
+    }
+
+    public int getMillis(int entry, boolean egress) {
+        return (egress ? egressEntries : accessEntries).getInt((long) entry * 8 + 4);
+    }
+
+    /**
+     * Looks up the stations in reach of a street node, which may also be a virtual node of a {@link com.graphhopper.routing.querygraph.QueryGraph}.
+     * For a virtual node we continue from the real nodes of the snapped edge.
+     *
+     * @param graph     the graph the street node belongs to
+     * @param weighting the weighting used to walk from a virtual node to the real nodes
+     * @return the walk time in milliseconds at the specified walk speed for every station node within maxMillis
+     */
+    public IntLongHashMap findStations(Graph graph, Weighting weighting, int streetNode, boolean egress, double walkSpeedKmH, long maxMillis) {
+        IntLongHashMap millisByStation = new IntLongHashMap();
+        if (contains(streetNode)) {
+            addStations(streetNode, 0, egress, walkSpeedKmH, maxMillis, millisByStation);
+        } else {
+            EdgeIterator iter = graph.createEdgeExplorer().setBaseNode(streetNode);
+            while (iter.next()) {
+                if (!contains(iter.getAdjNode()) || !Double.isFinite(weighting.calcEdgeWeight(iter, egress)))
+                    continue;
+                long millis = (long) (weighting.calcEdgeMillis(iter.detach(false), egress) * (5.0 / walkSpeedKmH));
+                addStations(iter.getAdjNode(), millis, egress, walkSpeedKmH, maxMillis, millisByStation);
+            }
+        }
+        return millisByStation;
+    }
+
+    private void addStations(int streetNode, long millis, boolean egress, double walkSpeedKmH, long maxMillis, IntLongHashMap millisByStation) {
+        int end = getEndEntry(streetNode, egress);
+        for (int entry = getFirstEntry(streetNode, egress); entry < end; entry++) {
+            long stationMillis = millis + (long) (getMillis(entry, egress) * (5.0 / walkSpeedKmH));
+            if (stationMillis > maxMillis)
+                continue;
+            int station = getStationNode(entry, egress);
+            if (stationMillis < millisByStation.getOrDefault(station, Long.MAX_VALUE))
+                millisByStation.put(station, stationMillis);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.routing.ev.Subnetwork;
 import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.index.InMemConstructionIndex;
 import com.graphhopper.storage.index.IndexStructureInfo;
@@ -43,6 +44,9 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public class GraphHopperGtfs extends GraphHopper {
@@ -75,15 +79,17 @@ public class GraphHopperGtfs extends GraphHopper {
         if (getGtfsStorage().loadExisting()) {
             ptGraph.loadExisting();
             stopIndex.loadExisting();
+            if (gtfsStorage.loadAccessEgressTable())
+                LOGGER.info("Loaded access/egress table, {}", gtfsStorage.getAccessEgressTable().toDetailsString());
             if (ghConfig.getBool("gtfs.trip_based", false)) {
                 for (String trafficDayString : ghConfig.getString("gtfs.schedule_day", null).split(",")) {
                     LocalDate trafficDay = LocalDate.parse(trafficDayString);
                     LOGGER.info("Loading trip-based transfers for pt router. Schedule day: {}", trafficDay);
-                    gtfsStorage.tripTransfers.getTripTransfers().put(trafficDay, gtfsStorage.deserializeTripTransfersMap("trip_transfers_" + trafficDayString));
+                    gtfsStorage.loadTripTransfers(trafficDay);
                 }
                 for (Map.Entry<String, GTFSFeed> entry : this.gtfsStorage.getGtfsFeeds().entrySet()) {
                     for (Stop stop : entry.getValue().stops.values()) {
-                        gtfsStorage.tripTransfers.getPatternBoardings(new GtfsStorage.FeedIdWithStopId(entry.getKey(), stop.stop_id));
+                        gtfsStorage.getTrips().getPatternBoardings(new GtfsStorage.FeedIdWithStopId(entry.getKey(), stop.stop_id));
                     }
                 }
             }
@@ -96,40 +102,67 @@ public class GraphHopperGtfs extends GraphHopper {
             try {
                 int idx = 0;
                 List<String> gtfsFiles = ghConfig.has("gtfs.file") ? Arrays.asList(ghConfig.getString("gtfs.file", "").split(",")) : Collections.emptyList();
+                Map<String, File> gtfsFilesById = new LinkedHashMap<>();
                 for (String gtfsFile : gtfsFiles) {
-                    getGtfsStorage().loadGtfsFromZipFileOrDirectory("gtfs_" + idx++, new File(gtfsFile));
+                    gtfsFilesById.put("gtfs_" + idx++, new File(gtfsFile));
                 }
+                int threads = Math.max(1, ghConfig.getInt("gtfs.import_threads", Runtime.getRuntime().availableProcessors()));
+                getGtfsStorage().loadGtfsFromZipFilesOrDirectories(gtfsFilesById, threads);
                 getGtfsStorage().postInit();
                 Map<String, Transfers> allTransfers = new HashMap<>();
                 HashMap<String, GtfsReader> allReaders = new HashMap<>();
-                getGtfsStorage().getGtfsFeeds().forEach((id, gtfsFeed) -> {
-                    Transfers transfers = new Transfers(gtfsFeed);
-                    allTransfers.put(id, transfers);
-                    GtfsReader gtfsReader = new GtfsReader(id, ptGraph, ptGraph, getGtfsStorage(), getLocationIndex(), transfers, indexBuilder);
-                    // Stops must be connected to the networks of all the modes
-                    List<DefaultSnapFilter> snapFilters = getProfiles().stream().map(p ->
-                            new DefaultSnapFilter(createWeighting(p, new PMap()), getEncodingManager().getBooleanEncodedValue(Subnetwork.key(p.getName())))).collect(Collectors.toList());
-                    gtfsReader.connectStopsToStreetNetwork(e -> {
-                        for (DefaultSnapFilter snapFilter : snapFilters) {
-                            if (!snapFilter.accept(e))
-                                return false;
+                // Stops must be connected to the networks of all the modes
+                List<DefaultSnapFilter> snapFilters = getProfiles().stream().map(p ->
+                        new DefaultSnapFilter(createWeighting(p, new PMap()), getEncodingManager().getBooleanEncodedValue(Subnetwork.key(p.getName())))).collect(Collectors.toList());
+                EdgeFilter stopSnapFilter = e -> {
+                    for (DefaultSnapFilter snapFilter : snapFilters) {
+                        if (!snapFilter.accept(e))
+                            return false;
+                    }
+                    return true;
+                };
+                // The feeds are parsed and their stops are snapped in parallel, but they are written to the transit
+                // graph one after another in the order of gtfs.file, so the node and edge ids do not depend on the
+                // thread scheduling. We only parse a few feeds ahead of the one that is written, so we do not keep
+                // the stop times of all feeds in memory at the same time.
+                List<String> feedIds = new ArrayList<>(gtfsFilesById.keySet());
+                ExecutorService executor = Executors.newFixedThreadPool(threads);
+                try {
+                    List<Future<GtfsReader>> preparedReaders = new ArrayList<>();
+                    for (int i = 0; i < feedIds.size(); i++) {
+                        while (preparedReaders.size() < Math.min(feedIds.size(), i + threads)) {
+                            String id = feedIds.get(preparedReaders.size());
+                            preparedReaders.add(executor.submit(() -> {
+                                Transfers transfers = new Transfers(getGtfsStorage().getGtfsFeeds().get(id));
+                                GtfsReader gtfsReader = new GtfsReader(id, ptGraph, ptGraph, getGtfsStorage(), getLocationIndex(), transfers, indexBuilder);
+                                gtfsReader.prepare(stopSnapFilter);
+                                return gtfsReader;
+                            }));
                         }
-                        return true;
-                    });
-                    LOGGER.info("Building transit graph for feed {}", gtfsFeed.feedId);
-                    gtfsReader.buildPtNetwork();
-                    allReaders.put(id, gtfsReader);
-                });
+                        GtfsReader gtfsReader = preparedReaders.get(i).get();
+                        preparedReaders.set(i, null);
+                        String id = feedIds.get(i);
+                        gtfsReader.connectStopsToStreetNetwork(stopSnapFilter);
+                        LOGGER.info("Building transit graph for feed {}", getGtfsStorage().getGtfsFeeds().get(id).feedId);
+                        gtfsReader.buildPtNetwork();
+                        allTransfers.put(id, gtfsReader.getTransfers());
+                        allReaders.put(id, gtfsReader);
+                    }
+                } finally {
+                    executor.shutdownNow();
+                }
                 interpolateTransfers(allReaders, allTransfers);
+                int accessEgressWalkTimeSeconds = ghConfig.getInt("gtfs.access_egress_table_walk_time_seconds", 0);
+                if (accessEgressWalkTimeSeconds > 0) {
+                    LOGGER.info("Computing access/egress table for pt router. Max walk time: {}s", accessEgressWalkTimeSeconds);
+                    gtfsStorage.createAccessEgressTable(getBaseGraph(), createWeighting(getProfile("foot"), new PMap()), accessEgressWalkTimeSeconds * 1000);
+                }
                 if (ghConfig.getBool("gtfs.trip_based", false)) {
                     ArrayListMultimap<Integer, GtfsStorage.FeedIdWithStopId> stopsForStationNode = Multimaps.invertFrom(Multimaps.forMap(gtfsStorage.getStationNodes()), ArrayListMultimap.create());
                     for (String trafficDayString : ghConfig.getString("gtfs.schedule_day", null).split(",")) {
                         LocalDate trafficDay = LocalDate.parse(trafficDayString);
                         LOGGER.info("Computing trip-based transfers for pt router. Schedule day: {}", trafficDay);
-                        Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> tripTransfersMap = gtfsStorage.tripTransfers.getTripTransfers(trafficDay);
-                        gtfsStorage.tripTransfers.findAllTripTransfersInto(tripTransfersMap, trafficDay, allTransfers, stopsForStationNode);
-                        LOGGER.info("Writing. Schedule day: {}", trafficDay);
-                        gtfsStorage.serializeTripTransfersMap("trip_transfers_" + trafficDayString, tripTransfersMap);
+                        gtfsStorage.createTripTransfers(trafficDay, allTransfers, stopsForStationNode);
                     }
                 }
             } catch (Exception e) {
@@ -141,6 +174,8 @@ public class GraphHopperGtfs extends GraphHopper {
             stopIndex.flush();
         }
         gtfsStorage.setStopIndex(stopIndex);
+        if (ghConfig.getBool("gtfs.raptor", false))
+            gtfsStorage.getRaptorData();
     }
 
     private void interpolateTransfers(HashMap<String, GtfsReader> readers, Map<String, Transfers> allTransfers) {
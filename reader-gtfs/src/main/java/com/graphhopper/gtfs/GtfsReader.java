@@ -79,6 +79,9 @@ class GtfsReader {
     private GTFSFeed feed;
     private final Map<String, Map<GtfsStorage.PlatformDescriptor, NavigableMap<Integer, Integer>>> departureTimelinesByStop = new HashMap<>();
     private final Map<String, Map<GtfsStorage.PlatformDescriptor, NavigableMap<Integer, Integer>>> arrivalTimelinesByStop = new HashMap<>();
+    // computed by prepare
+    private Map<String, Snap> stopSnaps;
+    private List<List<TripWithStopTimes>> blocks;
 
     GtfsReader(String id, PtGraph ptGraph, PtGraphOut out, GtfsStorage gtfsStorage, LocationIndex streetNetworkIndex, Transfers transfers, InMemConstructionIndex indexBuilder) {
         this.id = id;
@@ -93,26 +96,46 @@ class GtfsReader {
         this.indexBuilder = indexBuilder;
     }
 
-    void connectStopsToStreetNetwork(EdgeFilter filter) {
+    /**
+     * Does the work of {@link #connectStopsToStreetNetwork} and {@link #buildPtNetwork} that does not write to the
+     * graph or to the storage: snapping the stops and reading the stop times and calendars of the trips. This can
+     * run in parallel for different feeds, the prepared data is consumed by the other two methods.
+     */
+    void prepare(EdgeFilter filter) {
+        stopSnaps = new LinkedHashMap<>();
         for (Stop stop : feed.stops.values()) {
             if (stop.location_type == 0) { // Only stops. Not interested in parent stations for now.
-                Snap locationSnap = streetNetworkIndex.findClosest(stop.stop_lat, stop.stop_lon, filter);
-                int stopNode;
-                if (locationSnap.isValid()) {
-                    stopNode = gtfsStorage.getStreetToPt().getOrDefault(locationSnap.getClosestNode(), -1);
-                    if (stopNode == -1) {
-                        stopNode = out.createNode();
-                        indexBuilder.addToAllTilesOnLine(stopNode, stop.stop_lat, stop.stop_lon, stop.stop_lat, stop.stop_lon);
-                        gtfsStorage.getPtToStreet().put(stopNode, locationSnap.getClosestNode());
-                        gtfsStorage.getStreetToPt().put(locationSnap.getClosestNode(), stopNode);
-                    }
-                } else {
+                stopSnaps.put(stop.stop_id, streetNetworkIndex.findClosest(stop.stop_lat, stop.stop_lon, filter));
+            }
+        }
+        blocks = readBlocks();
+    }
+
+    void connectStopsToStreetNetwork(EdgeFilter filter) {
+        if (stopSnaps == null)
+            prepare(filter);
+        stopSnaps.forEach((stopId, locationSnap) -> {
+            Stop stop = feed.stops.get(stopId);
+            int stopNode;
+            if (locationSnap.isValid()) {
+                stopNode = gtfsStorage.getStreetToPt().getOrDefault(locationSnap.getClosestNode(), -1);
+                if (stopNode == -1) {
                     stopNode = out.createNode();
                     indexBuilder.addToAllTilesOnLine(stopNode, stop.stop_lat, stop.stop_lon, stop.stop_lat, stop.stop_lon);
+                    gtfsStorage.getPtToStreet().put(stopNode, locationSnap.getClosestNode());
+                    gtfsStorage.getStreetToPt().put(locationSnap.getClosestNode(), stopNode);
                 }
-                gtfsStorage.getStationNodes().put(new GtfsStorage.FeedIdWithStopId(id, stop.stop_id), stopNode);
+            } else {
+                stopNode = out.createNode();
+                indexBuilder.addToAllTilesOnLine(stopNode, stop.stop_lat, stop.stop_lon, stop.stop_lat, stop.stop_lon);
             }
-        }
+            gtfsStorage.getStationNodes().put(new GtfsStorage.FeedIdWithStopId(id, stop.stop_id), stopNode);
+        });
+        stopSnaps = null;
+    }
+
+    Transfers getTransfers() {
+        return transfers;
     }
 
     void buildPtNetwork() {
@@ -121,7 +144,10 @@ class GtfsReader {
         insertGtfsTransfers();
     }
 
-    private void createTrips() {
+    /**
+     * @return the trips grouped by block, every block sorted by departure time
+     */
+    private List<List<TripWithStopTimes>> readBlocks() {
         HashMultimap<String, Trip> blockTrips = HashMultimap.create();
         for (Trip trip : feed.trips.values()) {
             if (trip.block_id != null) {
@@ -130,6 +156,7 @@ class GtfsReader {
                 blockTrips.put("non-block-trip" + trip.trip_id, trip);
             }
         }
+        List<List<TripWithStopTimes>> result = new ArrayList<>();
         blockTrips.asMap().values().forEach(unsortedTrips -> {
             List<TripWithStopTimes> trips = unsortedTrips.stream()
                     .map(trip -> {
@@ -149,6 +176,16 @@ class GtfsReader {
             if (trips.stream().map(trip -> feed.getFrequencies(trip.trip.trip_id)).distinct().count() != 1) {
                 throw new RuntimeException("Found a block with frequency-based trips. Not supported.");
             }
+            result.add(trips);
+        });
+        return result;
+    }
+
+    private void createTrips() {
+        List<List<TripWithStopTimes>> blocks = this.blocks != null ? this.blocks : readBlocks();
+        // the stop times are not needed anymore once the trips are in the graph
+        this.blocks = null;
+        for (List<TripWithStopTimes> trips : blocks) {
             ZoneId zoneId = ZoneId.of(feed.agency.get(feed.routes.get(trips.iterator().next().trip.route_id).agency_id).agency_timezone);
             Collection<Frequency> frequencies = feed.getFrequencies(trips.iterator().next().trip.trip_id);
             if (frequencies.isEmpty()) {
@@ -160,7 +197,7 @@ class GtfsReader {
                     }
                 }
             }
-        });
+        }
     }
 
     private void wireUpStops() {
@@ -30,9 +30,15 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SequenceWriter;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimaps;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.index.LineIntIndex;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.StopWatch;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 import org.slf4j.Logger;
@@ -44,6 +50,8 @@ import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 public class GtfsStorage {
 
@@ -53,7 +61,12 @@ public class GtfsStorage {
 
 	private LineIntIndex stopIndex;
 	private PtGraph ptGraph;
-	public Trips tripTransfers;
+	private Trips tripTransfers;
+	private ScheduleStorage schedule;
+	private RaptorData raptorData;
+	private final Map<LocalDate, TripTransfers> tripTransfersPerDay = new HashMap<>();
+	private AccessEgressTable accessEgressTable;
+	private ArrayListMultimap<Integer, FeedIdWithStopId> stopsForStationNode;
 
 	public void setStopIndex(LineIntIndex stopIndex) {
 		this.stopIndex = stopIndex;
@@ -71,6 +84,110 @@ public class GtfsStorage {
         this.ptGraph = ptGraph;
     }
 
+	/**
+	 * @return the trips grouped by pattern. They are created from the feeds on first use, which is expensive for
+	 * large feeds, so routers that only need the stop times should use {@link #getSchedule()}. When they are created
+	 * they are checked against the stored schedule.
+	 */
+	public synchronized Trips getTrips() {
+		if (tripTransfers == null) {
+			Trips trips = new Trips(this);
+			if (schedule != null)
+				checkSchedule(schedule, trips);
+			tripTransfers = trips;
+		}
+		return tripTransfers;
+	}
+
+	/**
+	 * The stored schedule refers to the trips via their index in Trips, so both have to contain the same trips in
+	 * the same order. This is not the case if the feeds were changed after the import.
+	 */
+	private static void checkSchedule(ScheduleStorage schedule, Trips trips) {
+		if (schedule.getTrips() != trips.trips.size())
+			throw new IllegalStateException("The stored schedule has " + schedule.getTrips() + " trips, but the feeds have " + trips.trips.size());
+		for (GTFSFeed.StopTimesForTripWithTripPatternKey trip : trips.trips) {
+			int t = trip.idx;
+			int stopTimeCount = (int) trip.stopTimes.stream().filter(Objects::nonNull).count();
+			if (!schedule.getString(schedule.getFeed(t)).equals(trip.feedId)
+					|| !schedule.getTripId(t).equals(trip.trip.trip_id)
+					|| schedule.getStopTimeCount(t) != stopTimeCount
+					|| schedule.getDepartureTime(schedule.getFirstStopTime(t)) != trip.getDepartureTime())
+				throw new IllegalStateException("The stored schedule does not match the feeds at trip " + t + ": expected "
+						+ trip.feedId + ":" + trip.trip.trip_id + " but the schedule has " + schedule.getString(schedule.getFeed(t)) + ":" + schedule.getTripId(t)
+						+ ". Remove the graph folder and import again.");
+		}
+	}
+
+	public ScheduleStorage getSchedule() {
+		return schedule;
+	}
+
+	/**
+	 * Computes the trip-based transfers for the specified traffic day and writes them to disk.
+	 */
+	public TripTransfers createTripTransfers(LocalDate trafficDay, Map<String, Transfers> transfers, ArrayListMultimap<Integer, FeedIdWithStopId> stopsForStationNode) {
+		StopWatch sw = StopWatch.started();
+		TripTransfers tripTransfers = new TripTransfers(dir, trafficDay).create(getTrips(), transfers, stopsForStationNode);
+		tripTransfers.flush();
+		LOGGER.info("Created trip transfers for {}, {}, took: {}s", trafficDay, tripTransfers.toDetailsString(), sw.stop().getSeconds());
+		tripTransfersPerDay.put(trafficDay, tripTransfers);
+		return tripTransfers;
+	}
+
+	public void loadTripTransfers(LocalDate trafficDay) {
+		TripTransfers tripTransfers = new TripTransfers(dir, trafficDay);
+		if (!tripTransfers.loadExisting())
+			throw new IllegalStateException("No trip transfers found for " + trafficDay + ", gtfs.schedule_day has to be the same as during import");
+		if (tripTransfers.getTrips() != getTrips().trips.size())
+			throw new IllegalStateException("The trip transfers for " + trafficDay + " have " + tripTransfers.getTrips() + " trips, but the feeds have " + getTrips().trips.size());
+		tripTransfersPerDay.put(trafficDay, tripTransfers);
+	}
+
+	/**
+	 * Computes the walk times between the street nodes and the stations up to the specified limit and writes them
+	 * to disk.
+	 */
+	public AccessEgressTable createAccessEgressTable(BaseGraph baseGraph, Weighting weighting, int maxWalkMillis) {
+		StopWatch sw = StopWatch.started();
+		accessEgressTable = new AccessEgressTable(dir).create(baseGraph, weighting, ptToStreet, maxWalkMillis);
+		accessEgressTable.flush();
+		LOGGER.info("Created access/egress table, {}, took: {}s", accessEgressTable.toDetailsString(), sw.stop().getSeconds());
+		return accessEgressTable;
+	}
+
+	public boolean loadAccessEgressTable() {
+		AccessEgressTable table = new AccessEgressTable(dir);
+		if (!table.loadExisting())
+			return false;
+		accessEgressTable = table;
+		return true;
+	}
+
+	/**
+	 * @return the precomputed access and egress walk times or null if they were not computed during import
+	 */
+	public AccessEgressTable getAccessEgressTable() {
+		return accessEgressTable;
+	}
+
+	/**
+	 * @return the trip-based transfers of the traffic day or null if they were not computed for this day
+	 */
+	public TripTransfers getTripTransfers(LocalDate trafficDay) {
+		return tripTransfersPerDay.get(trafficDay);
+	}
+
+	/**
+	 * @return the timetable arrays for the RAPTOR router. They are created at load time if gtfs.raptor is
+	 * enabled, otherwise they are created on first use.
+	 */
+	public synchronized RaptorData getRaptorData() {
+		if (raptorData == null)
+			raptorData = new RaptorData(this);
+		return raptorData;
+	}
+
 	public IntObjectHashMap<int[]> getSkippedEdgesForTransfer() {
 		return skippedEdgesForTransfer;
 	}
@@ -219,7 +336,17 @@ public class GtfsStorage {
 		} catch (IOException e) {
             throw new RuntimeException(e);
         }
+		schedule = new ScheduleStorage(dir);
+		boolean scheduleExists = schedule.loadExisting();
+		if (!scheduleExists) {
+			// graphs created before the schedule storage existed do not have it, so we create it from the feeds.
+			// the tables that could not be loaded are registered in the directory already and have to be removed first
+			schedule.remove(dir);
+			schedule = null;
+		}
         postInit();
+		if (!scheduleExists)
+			schedule.flush();
 		return true;
 	}
 
@@ -278,16 +405,35 @@ public class GtfsStorage {
 	}
 
 	void loadGtfsFromZipFileOrDirectory(String id, File zipFileOrDirectory) {
+		this.gtfsFeeds.put(id, loadFeed(id, zipFileOrDirectory));
+		this.gtfsFeedIds.add(id);
+	}
+
+	/**
+	 * Loads several feeds at the same time, every feed into its own database. The feeds are registered in the
+	 * iteration order of the map, independent of the order in which their loading finishes.
+	 */
+	void loadGtfsFromZipFilesOrDirectories(Map<String, File> zipFilesOrDirectories, int threads) {
+		Map<String, GTFSFeed> feeds = new ConcurrentHashMap<>();
+		Stream<Runnable> loadingRunnables = zipFilesOrDirectories.entrySet().stream()
+				.map(e -> () -> feeds.put(e.getKey(), loadFeed(e.getKey(), e.getValue())));
+		GHUtility.runConcurrently(loadingRunnables, threads);
+		for (String id : zipFilesOrDirectories.keySet()) {
+			this.gtfsFeeds.put(id, feeds.get(id));
+			this.gtfsFeedIds.add(id);
+		}
+	}
+
+	private GTFSFeed loadFeed(String id, File zipFileOrDirectory) {
 		File dbFile = new File(dir.getLocation() + "/" + id);
 		try {
 			Files.deleteIfExists(dbFile.toPath());
 			GTFSFeed feed = new GTFSFeed(dbFile);
 			feed.loadFromFileAndLogErrors(zipFileOrDirectory);
-			this.gtfsFeeds.put(id, feed);
+			return feed;
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
-		this.gtfsFeedIds.add(id);
 	}
 
 	// TODO: Refactor initialization
@@ -297,13 +443,22 @@ public class GtfsStorage {
 		LOGGER.info("Calendar range covered by all feeds: {} till {}", latestStartDate, earliestEndDate);
 		faresByFeed = new HashMap<>();
 		this.gtfsFeeds.forEach((feed_id, feed) -> faresByFeed.put(feed_id, feed.fares));
-		tripTransfers = new Trips(this);
+		if (schedule == null) {
+			StopWatch sw = StopWatch.started();
+			schedule = new ScheduleStorage(dir).create(getTrips());
+			LOGGER.info("Created schedule storage, {}, took: {}s", schedule.toDetailsString(), sw.stop().getSeconds());
+		}
 	}
 
 	public void close() {
 		if (!isClosed) {
 			isClosed = true;
 			data.close();
+			if (schedule != null)
+				schedule.close();
+			tripTransfersPerDay.values().forEach(TripTransfers::close);
+			if (accessEgressTable != null)
+				accessEgressTable.close();
 			for (GTFSFeed feed : gtfsFeeds.values()) {
 				feed.close();
 			}
@@ -330,7 +485,17 @@ public class GtfsStorage {
 		return stationNodes;
 	}
 
+	/**
+	 * @return the stops of every station node, i.e. the inverse of {@link #getStationNodes()}
+	 */
+	public synchronized ArrayListMultimap<Integer, FeedIdWithStopId> getStopsForStationNode() {
+		if (stopsForStationNode == null)
+			stopsForStationNode = Multimaps.invertFrom(Multimaps.forMap(stationNodes), ArrayListMultimap.create());
+		return stopsForStationNode;
+	}
+
 	public void flush() {
+		schedule.flush();
 		serialize("pt_to_street", ptToStreet);
 		serialize("street_to_pt", streetToPt);
 		serialize("skipped_edges_for_transfer", skippedEdgesForTransfer);
@@ -345,45 +510,6 @@ public class GtfsStorage {
 		}
 	}
 
-	public void serializeTripTransfersMap(String filename, Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> data) {
-		try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(dir.getLocation() + filename))))) {
-			oos.writeInt(data.size());
-			for (Map.Entry<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> entry : data.entrySet()) {
-				oos.writeInt(entry.getKey().tripIdx);
-				oos.writeInt(entry.getKey().stop_sequence);
-				oos.writeInt(entry.getValue().size());
-				for (Trips.TripAtStopTime tripAtStopTime : entry.getValue()) {
-					oos.writeInt(tripAtStopTime.tripIdx);
-					oos.writeInt(tripAtStopTime.stop_sequence);
-				}
-			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-	}
-
-	public Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> deserializeTripTransfersMap(String filename) {
-		try (FileInputStream in = new FileInputStream(dir.getLocation() + filename)) {
-			ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(in));
-			int size = ois.readInt();
-			Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> result = new TreeMap<>();
-			for (int i = 0; i < size; i++) {
-				Trips.TripAtStopTime origin = new Trips.TripAtStopTime(ois.readInt(), ois.readInt());
-				int nDestinations = ois.readInt();
-				List<Trips.TripAtStopTime> destinations = new ArrayList<>(nDestinations);
-				for (int j = 0; j < nDestinations; j++) {
-					int tripIdxTo = ois.readInt();
-					int stop_sequenceTo = ois.readInt();
-					destinations.add(new Trips.TripAtStopTime(tripIdxTo, stop_sequenceTo));
-				}
-				result.put(origin, destinations);
-			}
-			return result;
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-	}
-
 	public void serialize(String filename, IntObjectHashMap<int[]> data) {
 		try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(dir.getLocation() + filename))))) {
 			oos.writeInt(data.size());
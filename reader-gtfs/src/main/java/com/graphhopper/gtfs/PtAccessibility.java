@@ -0,0 +1,214 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntLongHashMap;
+import com.carrotsearch.hppc.cursors.IntLongCursor;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.config.Profile;
+import com.graphhopper.routing.DefaultWeightingFactory;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.PMap;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes the travel times by public transit from many origins to all stops, e.g. for accessibility studies. The
+ * origins are processed in parallel on the specified executor. Every worker reuses its {@link RaptorRouter} and
+ * {@link RaptorRouter.TravelTimes}, so the search arrays are only allocated once per worker and not once per origin.
+ * <p>
+ * The walk to the access stations is looked up in the {@link AccessEgressTable} if it was created during import,
+ * otherwise it is searched on the street network.
+ */
+public class PtAccessibility {
+
+    private final BaseGraph baseGraph;
+    private final LocationIndex locationIndex;
+    private final GtfsStorage gtfsStorage;
+    private final RaptorData raptorData;
+    private final Weighting accessWeighting;
+    private final DefaultSnapFilter accessSnapFilter;
+    private final Map<String, ZoneId> feedZoneIds = new ConcurrentHashMap<>();
+
+    private Instant earliestDepartureTime;
+    private Duration window = Duration.ZERO;
+    private int stepSeconds = 60;
+    private int maxTravelTimeSeconds = 3600;
+    private long maxWalkMillis = 20 * 60 * 1000;
+    private double walkSpeedKmH = 5.0;
+    private int blockedRouteTypes;
+    private int maxRounds = RaptorRouter.DEFAULT_MAX_ROUNDS;
+
+    public interface TravelTimesConsumer {
+        /**
+         * Called once per origin, possibly from several threads at the same time. The travel times are reused
+         * for the next origin of the calling worker after this method returns.
+         */
+        void accept(int origin, RaptorRouter.TravelTimes travelTimes);
+    }
+
+    public PtAccessibility(GraphHopperConfig config, BaseGraph baseGraph, EncodingManager encodingManager, LocationIndex locationIndex, GtfsStorage gtfsStorage) {
+        this.baseGraph = baseGraph;
+        this.locationIndex = locationIndex;
+        this.gtfsStorage = gtfsStorage;
+        this.raptorData = gtfsStorage.getRaptorData();
+        Profile accessProfile = config.getProfiles().stream().filter(p -> p.getName().equals("foot")).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("The accessibility computation requires the profile 'foot'"));
+        this.accessWeighting = new DefaultWeightingFactory(baseGraph, encodingManager).createWeighting(accessProfile, new PMap(), false);
+        this.accessSnapFilter = new DefaultSnapFilter(accessWeighting, encodingManager.getBooleanEncodedValue(Subnetwork.key(accessProfile.getName())));
+    }
+
+    public RaptorData getRaptorData() {
+        return raptorData;
+    }
+
+    public PtAccessibility setEarliestDepartureTime(Instant earliestDepartureTime) {
+        this.earliestDepartureTime = earliestDepartureTime;
+        return this;
+    }
+
+    /**
+     * @param window    the departure times are spread over [earliestDepartureTime, earliestDepartureTime + window]
+     * @param stepSeconds the time between two departure times within the window
+     */
+    public PtAccessibility setDepartureWindow(Duration window, int stepSeconds) {
+        if (stepSeconds < 1)
+            throw new IllegalArgumentException("The departure time step must be at least 1s, but was " + stepSeconds);
+        this.window = window;
+        this.stepSeconds = stepSeconds;
+        return this;
+    }
+
+    public PtAccessibility setMaxTravelTimeSeconds(int maxTravelTimeSeconds) {
+        this.maxTravelTimeSeconds = maxTravelTimeSeconds;
+        return this;
+    }
+
+    public PtAccessibility setMaxWalkMillis(long maxWalkMillis) {
+        this.maxWalkMillis = maxWalkMillis;
+        return this;
+    }
+
+    public PtAccessibility setWalkSpeedKmH(double walkSpeedKmH) {
+        this.walkSpeedKmH = walkSpeedKmH;
+        return this;
+    }
+
+    public PtAccessibility setBlockedRouteTypes(int blockedRouteTypes) {
+        this.blockedRouteTypes = blockedRouteTypes;
+        return this;
+    }
+
+    /**
+     * @return the number of departure times that are searched per origin
+     */
+    public int getDepartures() {
+        return (int) (Math.max(0, window.getSeconds()) / stepSeconds) + 1;
+    }
+
+    /**
+     * Calculates the travel times for all origins and passes them to the consumer. At most parallelism origins
+     * are processed at the same time, each by a task submitted to the executor, which means that a bounded
+     * executor limits the threads used by all calculations that share it. The order in which the origins are
+     * passed to the consumer is unspecified. The method returns when all origins are done.
+     */
+    public void calcTravelTimes(List<GHLocation> origins, TravelTimesConsumer consumer, ExecutorService executor, int parallelism) {
+        if (earliestDepartureTime == null)
+            throw new IllegalArgumentException("The earliest departure time must be set");
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1, but was " + parallelism);
+        AtomicInteger nextOrigin = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int i = 0; i < Math.min(parallelism, origins.size()); i++) {
+                workers.add(executor.submit(() -> {
+                    RaptorRouter router = new RaptorRouter(raptorData, maxRounds);
+                    RaptorRouter.TravelTimes result = new RaptorRouter.TravelTimes(raptorData.getStops());
+                    for (int origin = nextOrigin.getAndIncrement(); origin < origins.size(); origin = nextOrigin.getAndIncrement()) {
+                        router.calcTravelTimes(findAccessStations(origins.get(origin)), earliestDepartureTime, window, stepSeconds,
+                                maxTravelTimeSeconds, blockedRouteTypes, result);
+                        consumer.accept(origin, result);
+                    }
+                }));
+            }
+            for (Future<?> worker : workers)
+                worker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } finally {
+            // stop the other workers if one of them failed
+            nextOrigin.set(origins.size());
+            for (Future<?> worker : workers)
+                worker.cancel(true);
+        }
+    }
+
+    private List<TripBasedRouter.StopWithTimeDelta> findAccessStations(GHLocation origin) {
+        PtLocationSnapper.Result snapResult = new PtLocationSnapper(baseGraph, locationIndex, gtfsStorage)
+                .snapAll(Collections.singletonList(origin), Collections.singletonList(accessSnapFilter));
+        Label.NodeId startNode = snapResult.nodes.get(0);
+        long walkLimit = Math.min(maxWalkMillis, maxTravelTimeSeconds * 1000L);
+        List<TripBasedRouter.StopWithTimeDelta> stations = new ArrayList<>();
+        AccessEgressTable table = gtfsStorage.getAccessEgressTable();
+        if (startNode.streetNode < 0) {
+            // a station was requested, so we start there
+            for (GtfsStorage.FeedIdWithStopId stop : gtfsStorage.getStopsForStationNode().get(startNode.ptNode))
+                stations.add(stopWithTimeDelta(stop, 0));
+        } else if (table != null) {
+            IntLongHashMap millisByStation = table.findStations(snapResult.queryGraph, accessWeighting, startNode.streetNode, false, walkSpeedKmH, walkLimit);
+            for (IntLongCursor c : millisByStation)
+                for (GtfsStorage.FeedIdWithStopId stop : gtfsStorage.getStopsForStationNode().get(c.key))
+                    stations.add(stopWithTimeDelta(stop, c.value));
+        } else {
+            GraphExplorer graphExplorer = new GraphExplorer(snapResult.queryGraph, gtfsStorage.getPtGraph(), accessWeighting, gtfsStorage, RealtimeFeed.empty(), false, true, false, walkSpeedKmH, false, blockedRouteTypes);
+            MultiCriteriaLabelSetting stationRouter = new MultiCriteriaLabelSetting(graphExplorer, false, false, false, 0, new ArrayList<>());
+            stationRouter.setLimitStreetTime(walkLimit);
+            for (Label label : stationRouter.calcLabels(startNode, earliestDepartureTime)) {
+                if (label.edge != null && label.edge.getType() == GtfsStorage.EdgeType.ENTER_PT) {
+                    GtfsStorage.PlatformDescriptor platformDescriptor = label.edge.getPlatformDescriptor();
+                    stations.add(stopWithTimeDelta(new GtfsStorage.FeedIdWithStopId(platformDescriptor.feed_id, platformDescriptor.stop_id), label.currentTime - earliestDepartureTime.toEpochMilli()));
+                }
+            }
+        }
+        return stations;
+    }
+
+    private TripBasedRouter.StopWithTimeDelta stopWithTimeDelta(GtfsStorage.FeedIdWithStopId stopId, long timeDelta) {
+        ZoneId zoneId = feedZoneIds.computeIfAbsent(stopId.feedId, feedId -> ZoneId.of(gtfsStorage.getGtfsFeeds().get(feedId).agency.values().stream().findFirst().get().agency_timezone));
+        return new TripBasedRouter.StopWithTimeDelta(stopId, zoneId, timeDelta);
+    }
+}
@@ -18,6 +18,8 @@
 
 package com.graphhopper.gtfs;
 
+import com.carrotsearch.hppc.IntLongHashMap;
+import com.carrotsearch.hppc.cursors.IntLongCursor;
 import com.conveyal.gtfs.GTFSFeed;
 import com.conveyal.gtfs.model.Stop;
 import com.graphhopper.*;
@@ -32,6 +34,7 @@ import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.DistanceCalcEarth;
 import com.graphhopper.util.PMap;
 import com.graphhopper.util.StopWatch;
 import com.graphhopper.util.Translation;
@@ -69,6 +72,7 @@ public final class PtRouterTripBasedImpl implements PtRouter {
     private final WeightingFactory weightingFactory;
     private final Map<String, ZoneId> feedZoneIds = new ConcurrentHashMap<>(); // ad-hoc cache for timezone field of gtfs feed
     private final GraphHopper graphHopper;
+    private final boolean raptor;
 
     @Inject
     public PtRouterTripBasedImpl(GraphHopper graphHopper, GraphHopperConfig config, TranslationMap translationMap, BaseGraph baseGraph, EncodingManager encodingManager, LocationIndex locationIndex, GtfsStorage gtfsStorage, PathDetailsBuilderFactory pathDetailsBuilderFactory) {
@@ -82,6 +86,7 @@ public final class PtRouterTripBasedImpl implements PtRouter {
         this.gtfsStorage = gtfsStorage;
         this.ptGraph = gtfsStorage.getPtGraph();
         this.pathDetailsBuilderFactory = pathDetailsBuilderFactory;
+        this.raptor = config.getBool("gtfs.raptor", false);
     }
 
     @Override
@@ -127,6 +132,10 @@ public final class PtRouterTripBasedImpl implements PtRouter {
         private List<Label> egressStationLabels;
         private List<TripBasedRouter.StopWithTimeDelta> egressStations;
         private ResponsePath walkResponsePath;
+        private Label.NodeId startNode;
+        private Label.NodeId destNode;
+        // with the access/egress table, the street paths are only searched for the stations that are actually used
+        private final Map<TripBasedRouter.StopWithTimeDelta, Label> stationLabelsFromTable = new HashMap<>();
 
         RequestHandler(Request request) {
             maxVisitedNodesForRequest = request.getMaxVisitedNodes();
@@ -163,28 +172,35 @@ public final class PtRouterTripBasedImpl implements PtRouter {
             queryGraph = result.queryGraph;
             response.addDebugInfo("idLookup:" + stopWatch.stop().getSeconds() + "s");
 
-            Label.NodeId startNode = result.nodes.get(0);
-            Label.NodeId destNode = result.nodes.get(1);
+            startNode = result.nodes.get(0);
+            destNode = result.nodes.get(1);
 
             StopWatch stopWatch1 = new StopWatch().start();
 
-            accessStationLabels = access(startNode, destNode);
-            accessStations = accessStationLabels.stream()
-                    .map(l -> stopWithTimeDelta(l.edge.getPlatformDescriptor(), l.currentTime - initialTime.toEpochMilli()))
-                    .collect(Collectors.toList());
+            AccessEgressTable accessEgressTable = gtfsStorage.getAccessEgressTable();
+            if (accessEgressTable != null && canUseAccessEgressTable(accessEgressTable)) {
+                accessStations = stationsFromTable(accessEgressTable, startNode.streetNode, false);
+                egressStations = stationsFromTable(accessEgressTable, destNode.streetNode, true);
+                // the table does not contain the walk between the two points, so we only search it if it can be
+                // shorter than the walk time limit
+                double beelineDistance = DistanceCalcEarth.DIST_EARTH.calcDist(result.points.getLat(0), result.points.getLon(0), result.points.getLat(1), result.points.getLon(1));
+                if (beelineDistance / (walkSpeedKmH / 3.6) * 1000 <= limitStreetTime)
+                    walkDestLabel = walk(startNode, destNode, limitStreetTime);
+            } else {
+                accessStationLabels = access(startNode, destNode);
+                accessStations = accessStationLabels.stream()
+                        .map(l -> stopWithTimeDelta(l.edge.getPlatformDescriptor(), l.currentTime - initialTime.toEpochMilli()))
+                        .collect(Collectors.toList());
+                egressStationLabels = egress(startNode, destNode);
+                egressStations = egressStationLabels.stream()
+                        .map(l -> stopWithTimeDelta(l.edge.getPlatformDescriptor(), initialTime.toEpochMilli() - l.currentTime))
+                        .collect(Collectors.toList());
+            }
             for (TripBasedRouter.StopWithTimeDelta accessStation : accessStations) {
                 logger.debug("access {}", accessStation);
             }
-            egressStationLabels = egress(startNode, destNode);
-            egressStations = egressStationLabels.stream()
-                    .map(l -> stopWithTimeDelta(l.edge.getPlatformDescriptor(), initialTime.toEpochMilli() - l.currentTime))
-                    .collect(Collectors.toList());
             response.addDebugInfo("access/egress routing:" + stopWatch1.stop().getSeconds() + "s");
 
-            TripBasedRouter tripBasedRouter = new TripBasedRouter(gtfsStorage, gtfsStorage.tripTransfers);
-            List<TripBasedRouter.ResultLabel> routes;
-            routes = tripBasedRouter.routeNaiveProfileWithNaiveBetas(new TripBasedRouter.Parameters(accessStations, egressStations, initialTime, maxProfileDuration, trip -> (blockedRouteTypes & (1 << trip.routeType)) == 0, betaAccessTime, betaEgressTime, betaTransfers, transferPenaltiesByRouteType));
-
             tripFromLabel = new TripFromLabel(queryGraph, encodingManager, gtfsStorage, RealtimeFeed.empty(), pathDetailsBuilderFactory, walkSpeedKmH);
             if (walkDestLabel != null) {
                 List<Label.Transition> walkTransitions = Label.getTransitions(walkDestLabel, false);
@@ -194,8 +210,21 @@ public final class PtRouterTripBasedImpl implements PtRouter {
                 walkResponsePath.setRouteWeight(walkResponsePath.getTime() * betaAccessTime);
                 response.add(walkResponsePath);
             }
-            for (TripBasedRouter.ResultLabel route : routes) {
-                ResponsePath responsePath = extractResponse(route, result);
+            List<ResponsePath> transitPaths = new ArrayList<>();
+            StopWatch stopWatch2 = new StopWatch().start();
+            if (raptor) {
+                RaptorRouter raptorRouter = new RaptorRouter(gtfsStorage.getRaptorData());
+                for (RaptorRouter.Journey journey : raptorRouter.route(accessStations, egressStations, initialTime, maxProfileDuration, blockedRouteTypes))
+                    transitPaths.add(extractResponse(journey.lastSegment, journey.stopSequence, journey.egressStation, result));
+            } else {
+                TripBasedRouter tripBasedRouter = new TripBasedRouter(gtfsStorage, gtfsStorage.getTrips());
+                List<TripBasedRouter.ResultLabel> routes;
+                routes = tripBasedRouter.routeNaiveProfileWithNaiveBetas(new TripBasedRouter.Parameters(accessStations, egressStations, initialTime, maxProfileDuration, trip -> (blockedRouteTypes & (1 << trip.routeType)) == 0, betaAccessTime, betaEgressTime, betaTransfers, transferPenaltiesByRouteType));
+                for (TripBasedRouter.ResultLabel route : routes)
+                    transitPaths.add(extractResponse(route.enqueuedTripSegment, route.stopTime, route.destination, result));
+            }
+            response.addDebugInfo((raptor ? "raptor" : "trip-based") + " routing:" + stopWatch2.stop().getSeconds() + "s");
+            for (ResponsePath responsePath : transitPaths) {
                 if (walkResponsePath != null) {
                     Instant departureTime = responsePath.getLegs().get(0).getDepartureTime().toInstant();
                     Duration waitTimeBeforeDeparture = Duration.between(initialTime, departureTime);
@@ -235,6 +264,68 @@ public final class PtRouterTripBasedImpl implements PtRouter {
             return response;
         }
 
+        private boolean canUseAccessEgressTable(AccessEgressTable table) {
+            // the table is created with the foot profile, and only for locations on the street network. it only
+            // contains the stations up to its walk time limit (scaled to the requested walk speed), so requests
+            // that allow walking further (including those without limit_street_time) need the full search
+            return accessProfile.getName().equals("foot") && egressProfile.getName().equals("foot")
+                    && enter instanceof GHPointLocation && exit instanceof GHPointLocation
+                    && startNode.streetNode >= 0 && destNode.streetNode >= 0
+                    && limitStreetTime <= (long) (table.getMaxWalkMillis() * (5.0 / walkSpeedKmH));
+        }
+
+        private List<TripBasedRouter.StopWithTimeDelta> stationsFromTable(AccessEgressTable table, int streetNode, boolean egress) {
+            IntLongHashMap millisByStation = table.findStations(queryGraph, egress ? egressWeighting : accessWeighting, streetNode, egress, walkSpeedKmH, limitStreetTime);
+            List<TripBasedRouter.StopWithTimeDelta> stations = new ArrayList<>();
+            for (IntLongCursor c : millisByStation) {
+                visitedNodes++;
+                for (GtfsStorage.FeedIdWithStopId stop : gtfsStorage.getStopsForStationNode().get(c.key))
+                    stations.add(stopWithTimeDelta(stop, c.value));
+            }
+            return stations;
+        }
+
+        private Label walk(Label.NodeId startNode, Label.NodeId destNode, long maxWalkTime) {
+            final GraphExplorer accessEgressGraphExplorer = new GraphExplorer(queryGraph, ptGraph, accessWeighting, gtfsStorage, RealtimeFeed.empty(), false, true, false, walkSpeedKmH, false, blockedRouteTypes);
+            MultiCriteriaLabelSetting stationRouter = new MultiCriteriaLabelSetting(accessEgressGraphExplorer, false, false, false, 0, new ArrayList<>());
+            stationRouter.setBetaStreetTime(betaStreetTime);
+            stationRouter.setLimitStreetTime(maxWalkTime);
+            for (Label label : stationRouter.calcLabels(startNode, initialTime)) {
+                visitedNodes++;
+                if (label.node.equals(destNode))
+                    return label;
+            }
+            return null;
+        }
+
+        /**
+         * Searches the street path to a station found in the access/egress table. The search is limited to the
+         * walk time of the table, plus some slack for the rounding of the scaled edge times.
+         */
+        private Label stationLabelFromTable(TripBasedRouter.StopWithTimeDelta station, boolean egress) {
+            return stationLabelsFromTable.computeIfAbsent(station, s -> {
+                Label label = searchStationLabel(s, egress, s.timeDelta + Math.max(1000, s.timeDelta / 100));
+                return label != null ? label : searchStationLabel(s, egress, limitStreetTime);
+            });
+        }
+
+        private Label searchStationLabel(TripBasedRouter.StopWithTimeDelta station, boolean egress, long maxWalkTime) {
+            final GraphExplorer accessEgressGraphExplorer = new GraphExplorer(queryGraph, ptGraph, egress ? egressWeighting : accessWeighting, gtfsStorage, RealtimeFeed.empty(), egress, true, false, walkSpeedKmH, false, blockedRouteTypes);
+            MultiCriteriaLabelSetting stationRouter = new MultiCriteriaLabelSetting(accessEgressGraphExplorer, egress, false, false, 0, new ArrayList<>());
+            stationRouter.setBetaStreetTime(betaStreetTime);
+            stationRouter.setLimitStreetTime(maxWalkTime);
+            GtfsStorage.EdgeType edgeType = egress ? GtfsStorage.EdgeType.EXIT_PT : GtfsStorage.EdgeType.ENTER_PT;
+            for (Label label : stationRouter.calcLabels(egress ? destNode : startNode, initialTime)) {
+                visitedNodes++;
+                if (label.edge != null && label.edge.getType() == edgeType) {
+                    GtfsStorage.PlatformDescriptor platformDescriptor = label.edge.getPlatformDescriptor();
+                    if (platformDescriptor.feed_id.equals(station.stopId.feedId) && platformDescriptor.stop_id.equals(station.stopId.stopId))
+                        return label;
+                }
+            }
+            return null;
+        }
+
         private List<Label> access(Label.NodeId startNode, Label.NodeId destNode) {
             final GraphExplorer accessEgressGraphExplorer = new GraphExplorer(queryGraph, ptGraph, accessWeighting, gtfsStorage, RealtimeFeed.empty(), false, true, false, walkSpeedKmH, false, blockedRouteTypes);
             MultiCriteriaLabelSetting stationRouter = new MultiCriteriaLabelSetting(accessEgressGraphExplorer, false, false, false, 0, new ArrayList<>());
@@ -270,12 +361,11 @@ public final class PtRouterTripBasedImpl implements PtRouter {
             return stationLabels;
         }
 
-        private ResponsePath extractResponse(TripBasedRouter.ResultLabel route, PtLocationSnapper.Result snapResult) {
-            logger.debug("{}", route);
+        private ResponsePath extractResponse(TripBasedRouter.EnqueuedTripSegment lastSegment, int alightStopSequence, TripBasedRouter.StopWithTimeDelta destination, PtLocationSnapper.Result snapResult) {
             GeometryFactory geometryFactory = new GeometryFactory();
 
             List<TripBasedRouter.EnqueuedTripSegment> segments = new ArrayList<>();
-            TripBasedRouter.EnqueuedTripSegment enqueuedTripSegment = route.enqueuedTripSegment;
+            TripBasedRouter.EnqueuedTripSegment enqueuedTripSegment = lastSegment;
             while (enqueuedTripSegment != null) {
                 segments.add(enqueuedTripSegment);
                 enqueuedTripSegment = enqueuedTripSegment.parent;
@@ -284,7 +374,7 @@ public final class PtRouterTripBasedImpl implements PtRouter {
 
             long routeWeight = 0;
             List<Trip.Leg> legs = new ArrayList<>();
-            Optional<Trip.Leg> maybeAccessLeg = extractAccessLeg(route, snapResult);
+            Optional<Trip.Leg> maybeAccessLeg = extractAccessLeg(segments.get(0).accessStation, snapResult);
             logger.debug(" {}", maybeAccessLeg);
             if (maybeAccessLeg.isPresent()) {
                 Trip.Leg accessLeg = maybeAccessLeg.get();
@@ -300,7 +390,7 @@ public final class PtRouterTripBasedImpl implements PtRouter {
                 com.conveyal.gtfs.model.Trip trip = segment.tripPointer.trip;
                 int untilStopSequence;
                 if (i == segments.size() - 1)
-                    untilStopSequence = route.stopTime;
+                    untilStopSequence = alightStopSequence;
                 else
                     untilStopSequence = segments.get(i+1).transferOrigin.stop_sequence;
                 List<Trip.Stop> stops = segment.tripPointer.stopTimes.stream().filter(st -> st != null && st.stop_sequence >= segment.tripAtStopTime.stop_sequence && st.stop_sequence <= untilStopSequence)
@@ -329,7 +419,7 @@ public final class PtRouterTripBasedImpl implements PtRouter {
                 routeWeight += transferPenaltiesByRouteType.getOrDefault(segment.tripPointer.routeType, 0L);
                 previousBlockId = trip.block_id;
             }
-            Optional<Trip.Leg> maybeEgressLeg = extractEgressLeg(route, snapResult);
+            Optional<Trip.Leg> maybeEgressLeg = extractEgressLeg(destination, snapResult);
             if (maybeEgressLeg.isPresent()) {
                 Trip.Leg egressLeg = maybeEgressLeg.get();
                 legs.add(egressLeg);
@@ -349,8 +439,10 @@ public final class PtRouterTripBasedImpl implements PtRouter {
             return responsePath;
         }
 
-        private Optional<Trip.Leg> extractAccessLeg(TripBasedRouter.ResultLabel route, PtLocationSnapper.Result snapResult) {
-            Label accessLabel = accessStationLabels.get(accessStations.indexOf(route.getAccessStop()));
+        private Optional<Trip.Leg> extractAccessLeg(TripBasedRouter.StopWithTimeDelta accessStation, PtLocationSnapper.Result snapResult) {
+            Label accessLabel = accessStationLabels != null ? accessStationLabels.get(accessStations.indexOf(accessStation)) : stationLabelFromTable(accessStation, false);
+            if (accessLabel == null)
+                return Optional.empty();
             List<Label.Transition> accessTransitions = Label.getTransitions(accessLabel, false);
             List<List<Label.Transition>> accessPartitions = tripFromLabel.parsePathToPartitions(accessTransitions);
             List<Trip.Leg> accessPath = tripFromLabel.parsePartitionToLegs(accessPartitions.get(0), snapResult.queryGraph, encodingManager, accessWeighting, translation, requestedPathDetails);
@@ -361,8 +453,10 @@ public final class PtRouterTripBasedImpl implements PtRouter {
             }
         }
 
-        private Optional<Trip.Leg> extractEgressLeg(TripBasedRouter.ResultLabel route, PtLocationSnapper.Result snapResult) {
-            Label egressLabel = egressStationLabels.get(egressStations.indexOf(route.destination));
+        private Optional<Trip.Leg> extractEgressLeg(TripBasedRouter.StopWithTimeDelta egressStation, PtLocationSnapper.Result snapResult) {
+            Label egressLabel = egressStationLabels != null ? egressStationLabels.get(egressStations.indexOf(egressStation)) : stationLabelFromTable(egressStation, true);
+            if (egressLabel == null)
+                return Optional.empty();
             List<Label.Transition> egressTransitions = Label.getTransitions(egressLabel, true);
             List<List<Label.Transition>> egressPartitions = tripFromLabel.parsePathToPartitions(egressTransitions);
             if (egressPartitions.size() < 2) {
@@ -375,8 +469,12 @@ public final class PtRouterTripBasedImpl implements PtRouter {
     }
 
     private TripBasedRouter.StopWithTimeDelta stopWithTimeDelta(GtfsStorage.PlatformDescriptor platformDescriptor, long timeDelta) {
-        ZoneId zoneId = feedZoneIds.computeIfAbsent(platformDescriptor.feed_id, feedId -> ZoneId.of(gtfsStorage.getGtfsFeeds().get(feedId).agency.values().stream().findFirst().get().agency_timezone));
-        return new TripBasedRouter.StopWithTimeDelta(new GtfsStorage.FeedIdWithStopId(platformDescriptor.feed_id, platformDescriptor.stop_id), zoneId, timeDelta);
+        return stopWithTimeDelta(new GtfsStorage.FeedIdWithStopId(platformDescriptor.feed_id, platformDescriptor.stop_id), timeDelta);
+    }
+
+    private TripBasedRouter.StopWithTimeDelta stopWithTimeDelta(GtfsStorage.FeedIdWithStopId stopId, long timeDelta) {
+        ZoneId zoneId = feedZoneIds.computeIfAbsent(stopId.feedId, feedId -> ZoneId.of(gtfsStorage.getGtfsFeeds().get(feedId).agency.values().stream().findFirst().get().agency_timezone));
+        return new TripBasedRouter.StopWithTimeDelta(stopId, zoneId, timeDelta);
     }
 
 }
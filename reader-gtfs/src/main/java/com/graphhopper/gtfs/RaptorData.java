@@ -0,0 +1,374 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.carrotsearch.hppc.ObjectIntHashMap;
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.Transfer;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The timetable in the flat int array layout used by {@link RaptorRouter}. It is derived from the
+ * {@link ScheduleStorage} once at load time and is immutable afterwards, so it can be shared by all queries.
+ * <p>
+ * A RAPTOR pattern is a list of stops together with the trips serving them, sorted by departure. In contrast to
+ * {@link Trips.Pattern} the trips of a pattern never overtake each other, so the earliest trip that can be boarded
+ * at any position of the pattern can be found via binary search. Trips.Pattern instances with overtaking trips are
+ * split into several RAPTOR patterns.
+ * <p>
+ * All arrays that belong to a pattern, stop or trip are stored in compressed sparse row format: the entries of
+ * element i are found between offset[i] (inclusive) and offset[i + 1] (exclusive).
+ * <p>
+ * The times are seconds since midnight of the service day, so all feeds must use the same time zone.
+ */
+public class RaptorData {
+
+    private static final Logger logger = LoggerFactory.getLogger(RaptorData.class);
+    static final int NO_PICKUP = 1;
+    static final int NO_DROP_OFF = 2;
+
+    private final GtfsStorage gtfsStorage;
+    private final ScheduleStorage schedule;
+    final GtfsStorage.FeedIdWithStopId[] stops;
+    private final ObjectIntHashMap<GtfsStorage.FeedIdWithStopId> stopIndex;
+    private final ZoneId zoneId;
+
+    // the stops of every pattern and whether passengers can board and alight there
+    final int[] patternStopOffsets;
+    final int[] patternStops;
+    final int[] patternStopFlags;
+    // the trips of every pattern, sorted by departure. we store the index of the trip in Trips
+    final int[] patternTripOffsets;
+    final int[] tripIndices;
+    final int[] tripRouteTypes;
+    final int[] tripPatterns;
+    // the stop times of the trips of pattern p start at patternStopTimeOffsets[p], one block of
+    // getPatternStopCount(p) arrival and departure times for every trip of the pattern
+    final int[] patternStopTimeOffsets;
+    final int[] arrivals;
+    final int[] departures;
+    // the patterns serving every stop together with the position of the stop in the pattern
+    final int[] stopPatternOffsets;
+    final int[] stopPatterns;
+    final int[] stopPatternPositions;
+    // the footpaths from every stop with their walk time in seconds
+    final int[] transferOffsets;
+    final int[] transferTargets;
+    final int[] transferTimes;
+
+    // trips that are active on a service day, computed when a day is used for the first time. A query only uses the
+    // service days around its departure time, so only the recently used days are kept.
+    private static final int MAX_CACHED_DAYS = 32;
+    private final Map<LocalDate, BitSet> activeTripsPerDay = Collections.synchronizedMap(
+            new LinkedHashMap<>(MAX_CACHED_DAYS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<LocalDate, BitSet> eldest) {
+                    return size() > MAX_CACHED_DAYS;
+                }
+            });
+
+    public RaptorData(GtfsStorage gtfsStorage) {
+        StopWatch sw = StopWatch.started();
+        this.gtfsStorage = gtfsStorage;
+        this.schedule = gtfsStorage.getSchedule();
+        this.zoneId = findZoneId(gtfsStorage.getGtfsFeeds());
+        stopIndex = new ObjectIntHashMap<>();
+        List<GtfsStorage.FeedIdWithStopId> stopList = new ArrayList<>();
+
+        IntArrayList patternStopOffsetList = new IntArrayList();
+        IntArrayList patternStopList = new IntArrayList();
+        IntArrayList patternStopFlagList = new IntArrayList();
+        IntArrayList patternTripOffsetList = new IntArrayList();
+        IntArrayList tripIndexList = new IntArrayList();
+        IntArrayList tripRouteTypeList = new IntArrayList();
+        IntArrayList tripPatternList = new IntArrayList();
+        IntArrayList patternStopTimeOffsetList = new IntArrayList();
+        IntArrayList arrivalList = new IntArrayList();
+        IntArrayList departureList = new IntArrayList();
+        patternStopOffsetList.add(0);
+        patternTripOffsetList.add(0);
+        patternStopTimeOffsetList.add(0);
+
+        // the trips of a pattern are stored consecutively in the schedule
+        LongIntHashMap stopIndexByFeedAndStopId = new LongIntHashMap();
+        for (int patternStart = 0; patternStart < schedule.getTrips(); ) {
+            int patternEnd = patternStart + 1;
+            while (patternEnd < schedule.getTrips() && schedule.getPattern(patternEnd) == schedule.getPattern(patternStart))
+                patternEnd++;
+            for (IntArrayList nonOvertakingTrips : splitOvertakingTrips(schedule, patternStart, patternEnd)) {
+                int first = nonOvertakingTrips.get(0);
+                int feed = schedule.getFeed(first);
+                for (int st = schedule.getFirstStopTime(first), end = st + schedule.getStopTimeCount(first); st < end; st++) {
+                    long key = ((long) feed << 32) | schedule.getStop(st);
+                    int stop = stopIndexByFeedAndStopId.getOrDefault(key, -1);
+                    if (stop < 0) {
+                        stop = getOrCreateStop(new GtfsStorage.FeedIdWithStopId(schedule.getString(feed), schedule.getString(schedule.getStop(st))), stopList);
+                        stopIndexByFeedAndStopId.put(key, stop);
+                    }
+                    patternStopList.add(stop);
+                    patternStopFlagList.add((schedule.getPickupType(st) == 1 ? NO_PICKUP : 0) | (schedule.getDropOffType(st) == 1 ? NO_DROP_OFF : 0));
+                }
+                patternStopOffsetList.add(patternStopList.size());
+                for (int i = 0; i < nonOvertakingTrips.size(); i++) {
+                    int trip = nonOvertakingTrips.get(i);
+                    tripIndexList.add(trip);
+                    tripRouteTypeList.add(schedule.getRouteType(trip));
+                    tripPatternList.add(patternTripOffsetList.size() - 1);
+                    for (int st = schedule.getFirstStopTime(trip), end = st + schedule.getStopTimeCount(trip); st < end; st++) {
+                        arrivalList.add(schedule.getArrivalTime(st));
+                        departureList.add(schedule.getDepartureTime(st));
+                    }
+                }
+                patternTripOffsetList.add(tripIndexList.size());
+                patternStopTimeOffsetList.add(arrivalList.size());
+            }
+            patternStart = patternEnd;
+        }
+        stops = stopList.toArray(new GtfsStorage.FeedIdWithStopId[0]);
+        patternStopOffsets = patternStopOffsetList.toArray();
+        patternStops = patternStopList.toArray();
+        patternStopFlags = patternStopFlagList.toArray();
+        patternTripOffsets = patternTripOffsetList.toArray();
+        tripIndices = tripIndexList.toArray();
+        tripRouteTypes = tripRouteTypeList.toArray();
+        tripPatterns = tripPatternList.toArray();
+        patternStopTimeOffsets = patternStopTimeOffsetList.toArray();
+        arrivals = arrivalList.toArray();
+        departures = departureList.toArray();
+
+        // invert the pattern stops to find the patterns serving a stop
+        int patterns = getPatterns();
+        stopPatternOffsets = new int[stops.length + 1];
+        for (int stop : patternStops)
+            stopPatternOffsets[stop + 1]++;
+        for (int stop = 0; stop < stops.length; stop++)
+            stopPatternOffsets[stop + 1] += stopPatternOffsets[stop];
+        stopPatterns = new int[patternStops.length];
+        stopPatternPositions = new int[patternStops.length];
+        int[] fill = Arrays.copyOf(stopPatternOffsets, stops.length);
+        for (int pattern = 0; pattern < patterns; pattern++) {
+            for (int i = patternStopOffsets[pattern]; i < patternStopOffsets[pattern + 1]; i++) {
+                int pos = fill[patternStops[i]]++;
+                stopPatterns[pos] = pattern;
+                stopPatternPositions[pos] = i - patternStopOffsets[pattern];
+            }
+        }
+
+        // footpaths: between the stops of a station, the interpolated walking transfers and the unconditional
+        // stop-to-stop rules of transfers.txt. route specific rules cannot be expressed as a footpath and are ignored
+        Map<Integer, List<Integer>> stopsForStationNode = new HashMap<>();
+        for (int stop = 0; stop < stops.length; stop++) {
+            Integer stationNode = gtfsStorage.getStationNodes().get(stops[stop]);
+            if (stationNode != null)
+                stopsForStationNode.computeIfAbsent(stationNode, k -> new ArrayList<>()).add(stop);
+        }
+        List<Map<Integer, Integer>> footpaths = new ArrayList<>(stops.length);
+        for (int stop = 0; stop < stops.length; stop++) {
+            Map<Integer, Integer> footpathsFromStop = new LinkedHashMap<>();
+            Integer stationNode = gtfsStorage.getStationNodes().get(stops[stop]);
+            if (stationNode != null)
+                for (int otherStop : stopsForStationNode.get(stationNode))
+                    if (otherStop != stop)
+                        footpathsFromStop.put(otherStop, 0);
+            for (GtfsStorage.InterpolatedTransfer it : gtfsStorage.interpolatedTransfers.get(stops[stop])) {
+                if (stopIndex.containsKey(it.toPlatformDescriptor) && !it.toPlatformDescriptor.equals(stops[stop]))
+                    footpathsFromStop.merge(stopIndex.get(it.toPlatformDescriptor), it.streetTime, Math::min);
+            }
+            footpaths.add(footpathsFromStop);
+        }
+        for (Map.Entry<String, GTFSFeed> entry : gtfsStorage.getGtfsFeeds().entrySet()) {
+            for (Transfer transfer : entry.getValue().transfers.values()) {
+                if (transfer.transfer_type != 2 || transfer.from_route_id != null || transfer.to_route_id != null
+                        || transfer.from_trip_id != null || transfer.to_trip_id != null)
+                    continue;
+                GtfsStorage.FeedIdWithStopId from = new GtfsStorage.FeedIdWithStopId(entry.getKey(), transfer.from_stop_id);
+                GtfsStorage.FeedIdWithStopId to = new GtfsStorage.FeedIdWithStopId(entry.getKey(), transfer.to_stop_id);
+                if (from.equals(to) || !stopIndex.containsKey(from) || !stopIndex.containsKey(to))
+                    continue;
+                // the minimum transfer time of the rule replaces the interpolated walk time
+                footpaths.get(stopIndex.get(from)).put(stopIndex.get(to), transfer.min_transfer_time);
+            }
+        }
+        transferOffsets = new int[stops.length + 1];
+        IntArrayList transferTargetList = new IntArrayList();
+        IntArrayList transferTimeList = new IntArrayList();
+        for (int stop = 0; stop < stops.length; stop++) {
+            for (Map.Entry<Integer, Integer> footpath : footpaths.get(stop).entrySet()) {
+                transferTargetList.add(footpath.getKey());
+                transferTimeList.add(footpath.getValue());
+            }
+            transferOffsets[stop + 1] = transferTargetList.size();
+        }
+        transferTargets = transferTargetList.toArray();
+        transferTimes = transferTimeList.toArray();
+        logger.info("Created RAPTOR data, stops: {}, patterns: {}, trips: {}, stop times: {}, footpaths: {}, took: {}s, {}",
+                Helper.nf(stops.length), Helper.nf(patterns), Helper.nf(tripIndices.length), Helper.nf(arrivals.length),
+                Helper.nf(transferTargets.length), sw.stop().getSeconds(), Helper.getMemInfo());
+    }
+
+    /**
+     * Distributes the trips [from, to) of a pattern (sorted by departure at the first stop) to as few lists as
+     * possible such that no trip of a list arrives at or departs from any stop earlier than its predecessor.
+     */
+    private static List<IntArrayList> splitOvertakingTrips(ScheduleStorage schedule, int from, int to) {
+        List<IntArrayList> result = new ArrayList<>();
+        for (int trip = from; trip < to; trip++) {
+            IntArrayList target = null;
+            for (IntArrayList candidate : result) {
+                if (!overtakes(schedule, trip, candidate.get(candidate.size() - 1))) {
+                    target = candidate;
+                    break;
+                }
+            }
+            if (target == null) {
+                target = new IntArrayList();
+                result.add(target);
+            }
+            target.add(trip);
+        }
+        return result;
+    }
+
+    private static boolean overtakes(ScheduleStorage schedule, int trip, int previous) {
+        int st = schedule.getFirstStopTime(trip);
+        int previousSt = schedule.getFirstStopTime(previous);
+        for (int i = 0; i < schedule.getStopTimeCount(trip); i++) {
+            if (schedule.getArrivalTime(st + i) < schedule.getArrivalTime(previousSt + i)
+                    || schedule.getDepartureTime(st + i) < schedule.getDepartureTime(previousSt + i))
+                return true;
+        }
+        return false;
+    }
+
+    private int getOrCreateStop(GtfsStorage.FeedIdWithStopId stopId, List<GtfsStorage.FeedIdWithStopId> stopList) {
+        int index = stopIndex.getOrDefault(stopId, -1);
+        if (index < 0) {
+            index = stopList.size();
+            stopIndex.put(stopId, index);
+            stopList.add(stopId);
+        }
+        return index;
+    }
+
+    /**
+     * @return the index of the specified stop or -1 if the stop is not served by any trip
+     */
+    public int getStopIndex(GtfsStorage.FeedIdWithStopId stopId) {
+        return stopIndex.getOrDefault(stopId, -1);
+    }
+
+    public int getStops() {
+        return stops.length;
+    }
+
+    public GtfsStorage.FeedIdWithStopId getStop(int stop) {
+        return stops[stop];
+    }
+
+    public int getTrips() {
+        return tripIndices.length;
+    }
+
+    public int getPatterns() {
+        return patternStopOffsets.length - 1;
+    }
+
+    int getPatternStopCount(int pattern) {
+        return patternStopOffsets[pattern + 1] - patternStopOffsets[pattern];
+    }
+
+    /**
+     * @return the position of the arrival and departure time of the trip at the specified position of the pattern
+     * in the arrivals and departures arrays. The trip is the index within the trips of the pattern.
+     */
+    int getStopTimeIndex(int pattern, int tripOfPattern, int position) {
+        return patternStopTimeOffsets[pattern] + tripOfPattern * getPatternStopCount(pattern) + position;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the agencies of the feeds use different time zones. The times of all trips
+     *                                  are stored relative to the same service day, which is only possible for a
+     *                                  single time zone.
+     */
+    private static ZoneId findZoneId(Map<String, GTFSFeed> feeds) {
+        Map<ZoneId, String> feedsByZone = new TreeMap<>(Comparator.comparing(ZoneId::getId));
+        feeds.forEach((feedId, feed) -> feed.agency.values().forEach(agency -> feedsByZone.putIfAbsent(ZoneId.of(agency.agency_timezone), feedId)));
+        if (feedsByZone.size() > 1)
+            throw new IllegalArgumentException("The RAPTOR router (gtfs.raptor) requires that all GTFS feeds use the same time zone, but found "
+                    + feedsByZone.entrySet().stream().map(e -> e.getKey() + " (" + e.getValue() + ")").collect(Collectors.joining(", ")));
+        return feedsByZone.isEmpty() ? ZoneId.of("UTC") : feedsByZone.keySet().iterator().next();
+    }
+
+    /**
+     * @return the time zone of all feeds, the service days and times of the trips refer to it
+     */
+    public ZoneId getZoneId() {
+        return zoneId;
+    }
+
+    /**
+     * @return the trip with its stop times. The trips are only created from the feeds when this is called for the
+     * first time, so the RAPTOR data itself does not need them.
+     */
+    GTFSFeed.StopTimesForTripWithTripPatternKey getTrip(int raptorTrip) {
+        return gtfsStorage.getTrips().getTrip(tripIndices[raptorTrip]);
+    }
+
+    /**
+     * @return the stop_sequence of the stop time at the specified position of the pattern of the trip
+     */
+    int getStopSequence(int raptorTrip, int position) {
+        return schedule.getStopSequence(schedule.getFirstStopTime(tripIndices[raptorTrip]) + position);
+    }
+
+    /**
+     * @return the RAPTOR trips (not the trip indices of Trips) running on the specified service day
+     */
+    BitSet getActiveTrips(LocalDate serviceDay) {
+        BitSet result = activeTripsPerDay.get(serviceDay);
+        if (result != null)
+            return result;
+        // calculated without holding the lock of the map, two queries might calculate the same day at the same time
+        result = new BitSet(tripIndices.length);
+        IntIntHashMap activeByService = new IntIntHashMap();
+        for (int trip = 0; trip < tripIndices.length; trip++) {
+            int service = schedule.getService(tripIndices[trip]);
+            int active = activeByService.getOrDefault(service, -1);
+            if (active < 0) {
+                active = schedule.isActive(service, serviceDay) ? 1 : 0;
+                activeByService.put(service, active);
+            }
+            if (active == 1)
+                result.set(trip);
+        }
+        activeTripsPerDay.put(serviceDay, result);
+        return result;
+    }
+}
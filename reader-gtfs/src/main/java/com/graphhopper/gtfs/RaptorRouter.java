@@ -0,0 +1,545 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.conveyal.gtfs.GTFSFeed;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Round-based public transit router (RAPTOR, Delling et al.) working on the flat arrays of {@link RaptorData}.
+ * Round k scans the patterns serving the stops that were improved in round k-1 and relaxes the footpaths of the
+ * stops improved by a vehicle, so the arrival times of round k are the earliest arrivals with k trips. Profile
+ * queries are answered with range RAPTOR: the search is repeated for all departure times at the access stops within
+ * the profile, latest first, without resetting the arrival times in between. The result is the Pareto set of
+ * journeys regarding departure time, arrival time and number of trips.
+ * <p>
+ * All times are seconds since the start of the service day of the earliest departure time. Trips of the previous
+ * and the next service day are considered as well. The arrays are allocated once, so an instance can be reused for
+ * several queries, but it is not thread-safe.
+ */
+public class RaptorRouter {
+
+    public static final int DEFAULT_MAX_ROUNDS = 8;
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+    // we look for trips of the previous, the current and the next service day
+    private static final int DAYS = 3;
+
+    private final RaptorData data;
+    private final int maxRounds;
+    private final int stops;
+    // the following arrays are indexed by round * stops + stop
+    // the earliest arrival with at most round trips, only used for pruning
+    private final int[] bestArrivals;
+    // the earliest arrival found in this round, by vehicle or by foot
+    private final int[] arrivals;
+    // the earliest arrival by vehicle found in this round together with the trip, the day of the trip and the
+    // positions in the pattern where the trip was boarded (upper 16 bits) and left (lower 16 bits)
+    private final int[] transitArrivals;
+    private final int[] transitTrips;
+    private final int[] transitPositions;
+    // the stop from which we walked to this stop or -1 if we arrived by vehicle
+    private final int[] transferSources;
+    // the access station used to reach a stop in round 0
+    private final int[] accessStationOfStop;
+    private final int[] bestTargetArrivals;
+    private final int[] patternBoardPositions;
+    private final BitSet markedStops;
+    private final BitSet transitMarkedStops;
+    private final BitSet walkMarkedStops;
+    private final BitSet markedPatterns;
+
+    private final BitSet[] activeTrips = new BitSet[DAYS];
+    private int blockedRouteTypes;
+    private LocalDate serviceDay;
+    private ZoneId zoneId;
+    private List<TripBasedRouter.StopWithTimeDelta> accessStations;
+    private List<TripBasedRouter.StopWithTimeDelta> egressStations;
+    private int[] accessStops;
+    private int[] accessSeconds;
+    private int[] egressStops;
+    private int[] egressSeconds;
+    private List<Journey> result;
+
+    public RaptorRouter(RaptorData data) {
+        this(data, DEFAULT_MAX_ROUNDS);
+    }
+
+    public RaptorRouter(RaptorData data, int maxRounds) {
+        if (maxRounds < 1)
+            throw new IllegalArgumentException("maxRounds must be at least 1, but was " + maxRounds);
+        this.data = data;
+        this.maxRounds = maxRounds;
+        this.stops = data.getStops();
+        int size = (maxRounds + 1) * stops;
+        bestArrivals = new int[size];
+        arrivals = new int[size];
+        transitArrivals = new int[size];
+        transitTrips = new int[size];
+        transitPositions = new int[size];
+        transferSources = new int[size];
+        accessStationOfStop = new int[stops];
+        bestTargetArrivals = new int[maxRounds + 1];
+        patternBoardPositions = new int[data.getPatterns()];
+        markedStops = new BitSet(stops);
+        transitMarkedStops = new BitSet(stops);
+        walkMarkedStops = new BitSet(stops);
+        markedPatterns = new BitSet(data.getPatterns());
+    }
+
+    /**
+     * A journey found by the router. The trips are represented like the trips found by {@link TripBasedRouter} so
+     * the response can be created the same way.
+     */
+    public static class Journey {
+        public final TripBasedRouter.StopWithTimeDelta accessStation;
+        public final TripBasedRouter.StopWithTimeDelta egressStation;
+        public final TripBasedRouter.EnqueuedTripSegment lastSegment;
+        // the stop_sequence where the last trip is left
+        public final int stopSequence;
+        public final Instant departureTime;
+        public final Instant arrivalTime;
+        public final int trips;
+
+        Journey(TripBasedRouter.StopWithTimeDelta accessStation, TripBasedRouter.StopWithTimeDelta egressStation, TripBasedRouter.EnqueuedTripSegment lastSegment,
+                int stopSequence, Instant departureTime, Instant arrivalTime, int trips) {
+            this.accessStation = accessStation;
+            this.egressStation = egressStation;
+            this.lastSegment = lastSegment;
+            this.stopSequence = stopSequence;
+            this.departureTime = departureTime;
+            this.arrivalTime = arrivalTime;
+            this.trips = trips;
+        }
+
+        @Override
+        public String toString() {
+            return "Journey{" + departureTime + " -> " + arrivalTime + ", trips: " + trips + '}';
+        }
+    }
+
+    /**
+     * Finds the Pareto-optimal journeys regarding departure time, arrival time and number of trips that depart
+     * within [earliestDepartureTime, earliestDepartureTime + profileLength]. Use a profileLength of zero for an
+     * earliest arrival query. The time deltas of the access and egress stations are the walking times to the
+     * station and from the station to the destination in milliseconds.
+     *
+     * @param blockedRouteTypes bit mask of route types whose trips must not be used, see {@link Request#getBlockedRouteTypes()}
+     */
+    public List<Journey> route(List<TripBasedRouter.StopWithTimeDelta> accessStations, List<TripBasedRouter.StopWithTimeDelta> egressStations,
+                               Instant earliestDepartureTime, Duration profileLength, int blockedRouteTypes) {
+        result = new ArrayList<>();
+        if (accessStations.isEmpty() || egressStations.isEmpty())
+            return result;
+        init(accessStations, egressStations, earliestDepartureTime, blockedRouteTypes);
+        int earliestDeparture = toSeconds(earliestDepartureTime);
+        int[] departureTimes = profileLength.isZero() || profileLength.isNegative()
+                ? new int[]{earliestDeparture}
+                : collectDepartureTimes(earliestDeparture, earliestDeparture + (int) profileLength.getSeconds());
+        // range RAPTOR: the arrival times found for later departures are valid upper bounds for earlier departures
+        for (int i = departureTimes.length - 1; i >= 0; i--)
+            runIteration(departureTimes[i]);
+        return result;
+    }
+
+    /**
+     * The travel times from one origin to all stops, see {@link #calcTravelTimes}. Instances can be reused for
+     * several origins.
+     */
+    public static class TravelTimes {
+        // indexed by the stop index of RaptorData, in seconds, -1 if the stop was not reached
+        private final int[] minTravelTimes;
+        private final long[] sumTravelTimes;
+        private final int[] reachedDepartures;
+        private int departures;
+
+        public TravelTimes(int stops) {
+            minTravelTimes = new int[stops];
+            sumTravelTimes = new long[stops];
+            reachedDepartures = new int[stops];
+        }
+
+        void clear() {
+            Arrays.fill(minTravelTimes, -1);
+            Arrays.fill(sumTravelTimes, 0);
+            Arrays.fill(reachedDepartures, 0);
+            departures = 0;
+        }
+
+        public int getStops() {
+            return minTravelTimes.length;
+        }
+
+        /**
+         * @return the number of departure times that were searched
+         */
+        public int getDepartures() {
+            return departures;
+        }
+
+        /**
+         * @return the shortest travel time in seconds over all departure times or -1 if the stop was not reached
+         */
+        public int getMinTravelTime(int stop) {
+            return minTravelTimes[stop];
+        }
+
+        /**
+         * @return the average travel time in seconds over the departure times for which the stop was reached
+         */
+        public int getAvgTravelTime(int stop) {
+            return reachedDepartures[stop] == 0 ? -1 : (int) (sumTravelTimes[stop] / reachedDepartures[stop]);
+        }
+
+        /**
+         * @return the number of departure times for which the stop was reached within the travel time limit
+         */
+        public int getReachedDepartures(int stop) {
+            return reachedDepartures[stop];
+        }
+    }
+
+    /**
+     * One-to-all range query: computes the travel times from the access stations to all stops for a departure
+     * every stepSeconds within [earliestDepartureTime, earliestDepartureTime + window]. The departure times are
+     * processed from the latest to the earliest, so the arrivals found for later departures are reused as upper
+     * bounds like in {@link #route}.
+     *
+     * @param maxTravelTimeSeconds stops which are reached later are ignored, this also prunes the search
+     */
+    public void calcTravelTimes(List<TripBasedRouter.StopWithTimeDelta> accessStations, Instant earliestDepartureTime, Duration window, int stepSeconds,
+                                int maxTravelTimeSeconds, int blockedRouteTypes, TravelTimes travelTimes) {
+        if (stepSeconds < 1)
+            throw new IllegalArgumentException("stepSeconds must be at least 1, but was " + stepSeconds);
+        if (travelTimes.getStops() != stops)
+            throw new IllegalArgumentException("TravelTimes was created for " + travelTimes.getStops() + " stops, but there are " + stops);
+        travelTimes.clear();
+        result = new ArrayList<>();
+        if (accessStations.isEmpty())
+            return;
+        init(accessStations, Collections.emptyList(), earliestDepartureTime, blockedRouteTypes);
+        int earliestDeparture = toSeconds(earliestDepartureTime);
+        int latestDeparture = earliestDeparture + (int) Math.max(0, window.getSeconds());
+        int lastRoundOffset = maxRounds * stops;
+        for (int departureTime = latestDeparture - (latestDeparture - earliestDeparture) % stepSeconds; departureTime >= earliestDeparture; departureTime -= stepSeconds) {
+            // there are no egress stations, so the travel time limit is used as the target pruning bound
+            Arrays.fill(bestTargetArrivals, (int) Math.min(UNREACHED, (long) departureTime + maxTravelTimeSeconds + 1));
+            runIteration(departureTime);
+            travelTimes.departures++;
+            for (int stop = 0; stop < stops; stop++) {
+                int arrival = bestArrivals[lastRoundOffset + stop];
+                if (arrival == UNREACHED)
+                    continue;
+                int travelTime = arrival - departureTime;
+                if (travelTime > maxTravelTimeSeconds)
+                    continue;
+                if (travelTimes.minTravelTimes[stop] < 0 || travelTime < travelTimes.minTravelTimes[stop])
+                    travelTimes.minTravelTimes[stop] = travelTime;
+                travelTimes.sumTravelTimes[stop] += travelTime;
+                travelTimes.reachedDepartures[stop]++;
+            }
+        }
+    }
+
+    private void init(List<TripBasedRouter.StopWithTimeDelta> accessStations, List<TripBasedRouter.StopWithTimeDelta> egressStations,
+                      Instant earliestDepartureTime, int blockedRouteTypes) {
+        this.accessStations = accessStations;
+        this.egressStations = egressStations;
+        this.blockedRouteTypes = blockedRouteTypes;
+        // all feeds use the same time zone, see RaptorData
+        zoneId = data.getZoneId();
+        serviceDay = earliestDepartureTime.atZone(zoneId).toLocalDate();
+        for (int day = 0; day < DAYS; day++)
+            activeTrips[day] = data.getActiveTrips(serviceDay.plusDays(day - 1));
+        accessStops = new int[accessStations.size()];
+        accessSeconds = new int[accessStations.size()];
+        for (int i = 0; i < accessStations.size(); i++) {
+            accessStops[i] = data.getStopIndex(accessStations.get(i).stopId);
+            accessSeconds[i] = (int) Math.ceil(accessStations.get(i).timeDelta / 1000.0);
+        }
+        egressStops = new int[egressStations.size()];
+        egressSeconds = new int[egressStations.size()];
+        for (int i = 0; i < egressStations.size(); i++) {
+            egressStops[i] = data.getStopIndex(egressStations.get(i).stopId);
+            egressSeconds[i] = (int) Math.ceil(egressStations.get(i).timeDelta / 1000.0);
+        }
+        Arrays.fill(bestArrivals, UNREACHED);
+        Arrays.fill(arrivals, UNREACHED);
+        Arrays.fill(transitArrivals, UNREACHED);
+        Arrays.fill(bestTargetArrivals, UNREACHED);
+        Arrays.fill(patternBoardPositions, Integer.MAX_VALUE);
+        markedStops.clear();
+        markedPatterns.clear();
+    }
+
+    private int toSeconds(Instant instant) {
+        return (int) Duration.between(serviceDay.atStartOfDay(zoneId), instant.atZone(zoneId)).getSeconds();
+    }
+
+    private Instant toInstant(int seconds) {
+        return serviceDay.atStartOfDay(zoneId).plusSeconds(seconds).toInstant();
+    }
+
+    /**
+     * @return the sorted and distinct times in [from, to] at which we have to leave to catch a trip at one of the
+     * access stations
+     */
+    private int[] collectDepartureTimes(int from, int to) {
+        IntArrayList times = new IntArrayList();
+        times.add(from);
+        for (int a = 0; a < accessStops.length; a++) {
+            int stop = accessStops[a];
+            if (stop < 0)
+                continue;
+            for (int i = data.stopPatternOffsets[stop]; i < data.stopPatternOffsets[stop + 1]; i++) {
+                int pattern = data.stopPatterns[i];
+                int position = data.stopPatternPositions[i];
+                if ((data.patternStopFlags[data.patternStopOffsets[pattern] + position] & RaptorData.NO_PICKUP) != 0)
+                    continue;
+                int firstTrip = data.patternTripOffsets[pattern];
+                for (int trip = firstTrip; trip < data.patternTripOffsets[pattern + 1]; trip++) {
+                    if (isBlocked(trip))
+                        continue;
+                    int departure = data.departures[data.getStopTimeIndex(pattern, trip - firstTrip, position)];
+                    for (int day = 0; day < DAYS; day++) {
+                        int time = departure + dayOffset(day) - accessSeconds[a];
+                        if (time >= from && time <= to && activeTrips[day].get(trip))
+                            times.add(time);
+                    }
+                }
+            }
+        }
+        int[] sorted = times.toArray();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++)
+            if (size == 0 || sorted[size - 1] != sorted[i])
+                sorted[size++] = sorted[i];
+        return Arrays.copyOf(sorted, size);
+    }
+
+    private void runIteration(int departureTime) {
+        for (int a = 0; a < accessStops.length; a++) {
+            int stop = accessStops[a];
+            if (stop < 0)
+                continue;
+            int time = departureTime + accessSeconds[a];
+            if (time < arrivals[stop]) {
+                arrivals[stop] = time;
+                accessStationOfStop[stop] = a;
+                improve(0, stop, time);
+                markedStops.set(stop);
+            }
+        }
+        for (int round = 1; round <= maxRounds && !markedStops.isEmpty(); round++) {
+            collectPatterns();
+            transitMarkedStops.clear();
+            for (int pattern = markedPatterns.nextSetBit(0); pattern >= 0; pattern = markedPatterns.nextSetBit(pattern + 1))
+                scanPattern(round, pattern);
+            markedPatterns.clear();
+            relaxFootpaths(round);
+            markedStops.clear();
+            markedStops.or(transitMarkedStops);
+            markedStops.or(walkMarkedStops);
+            checkTarget(round, departureTime);
+        }
+        markedStops.clear();
+    }
+
+    private void collectPatterns() {
+        for (int stop = markedStops.nextSetBit(0); stop >= 0; stop = markedStops.nextSetBit(stop + 1)) {
+            for (int i = data.stopPatternOffsets[stop]; i < data.stopPatternOffsets[stop + 1]; i++) {
+                int pattern = data.stopPatterns[i];
+                patternBoardPositions[pattern] = Math.min(patternBoardPositions[pattern], data.stopPatternPositions[i]);
+                markedPatterns.set(pattern);
+            }
+        }
+    }
+
+    private void scanPattern(int round, int pattern) {
+        int firstPosition = patternBoardPositions[pattern];
+        patternBoardPositions[pattern] = Integer.MAX_VALUE;
+        int stopOffset = data.patternStopOffsets[pattern];
+        int stopCount = data.getPatternStopCount(pattern);
+        int firstTrip = data.patternTripOffsets[pattern];
+        int tripCount = data.patternTripOffsets[pattern + 1] - firstTrip;
+        int prevRoundOffset = (round - 1) * stops;
+        int roundOffset = round * stops;
+        // the trip (index within the pattern) we are currently on, or -1
+        int trip = -1;
+        int day = 0;
+        int boardPosition = 0;
+        for (int position = firstPosition; position < stopCount; position++) {
+            int stop = data.patternStops[stopOffset + position];
+            int flags = data.patternStopFlags[stopOffset + position];
+            if (trip >= 0 && (flags & RaptorData.NO_DROP_OFF) == 0) {
+                int arrival = data.arrivals[data.getStopTimeIndex(pattern, trip, position)] + dayOffset(day);
+                int index = roundOffset + stop;
+                if (arrival < bestArrivals[index] && arrival < bestTargetArrivals[round]) {
+                    transitArrivals[index] = arrival;
+                    transitTrips[index] = (firstTrip + trip) * DAYS + day;
+                    transitPositions[index] = boardPosition << 16 | position;
+                    arrivals[index] = arrival;
+                    transferSources[index] = -1;
+                    improve(round, stop, arrival);
+                    transitMarkedStops.set(stop);
+                }
+            }
+            int prevArrival = arrivals[prevRoundOffset + stop];
+            if (prevArrival == UNREACHED || (flags & RaptorData.NO_PICKUP) != 0)
+                continue;
+            int currentDeparture = trip < 0 ? UNREACHED : data.departures[data.getStopTimeIndex(pattern, trip, position)] + dayOffset(day);
+            if (prevArrival > currentDeparture)
+                continue;
+            // we can catch the current trip here, but maybe there is an earlier one
+            for (int d = 0; d < DAYS; d++) {
+                int candidate = findEarliestTrip(pattern, firstTrip, tripCount, stopCount, position, prevArrival - dayOffset(d), d);
+                if (candidate < 0)
+                    continue;
+                int departure = data.departures[data.getStopTimeIndex(pattern, candidate, position)] + dayOffset(d);
+                if (departure < currentDeparture) {
+                    trip = candidate;
+                    day = d;
+                    boardPosition = position;
+                    currentDeparture = departure;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the first trip of the pattern that runs on the specified day, is not blocked and departs at the
+     * specified position not before the specified time, or -1 if there is none
+     */
+    private int findEarliestTrip(int pattern, int firstTrip, int tripCount, int stopCount, int position, int time, int day) {
+        int offset = data.patternStopTimeOffsets[pattern] + position;
+        int low = 0;
+        int high = tripCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (data.departures[offset + mid * stopCount] < time)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        for (int trip = low; trip < tripCount; trip++) {
+            if (activeTrips[day].get(firstTrip + trip) && !isBlocked(firstTrip + trip))
+                return trip;
+        }
+        return -1;
+    }
+
+    private void relaxFootpaths(int round) {
+        walkMarkedStops.clear();
+        int roundOffset = round * stops;
+        for (int stop = transitMarkedStops.nextSetBit(0); stop >= 0; stop = transitMarkedStops.nextSetBit(stop + 1)) {
+            int transitArrival = transitArrivals[roundOffset + stop];
+            for (int i = data.transferOffsets[stop]; i < data.transferOffsets[stop + 1]; i++) {
+                int target = data.transferTargets[i];
+                int arrival = transitArrival + data.transferTimes[i];
+                int index = roundOffset + target;
+                if (arrival < bestArrivals[index] && arrival < bestTargetArrivals[round]) {
+                    arrivals[index] = arrival;
+                    transferSources[index] = stop;
+                    improve(round, target, arrival);
+                    walkMarkedStops.set(target);
+                }
+            }
+        }
+    }
+
+    private void improve(int round, int stop, int arrival) {
+        for (int r = round; r <= maxRounds; r++) {
+            int index = r * stops + stop;
+            if (arrival >= bestArrivals[index])
+                break;
+            bestArrivals[index] = arrival;
+        }
+    }
+
+    private void checkTarget(int round, int departureTime) {
+        int bestEgress = -1;
+        int bestArrival = bestTargetArrivals[round];
+        for (int e = 0; e < egressStops.length; e++) {
+            int stop = egressStops[e];
+            if (stop < 0 || !markedStops.get(stop))
+                continue;
+            int arrival = arrivals[round * stops + stop] + egressSeconds[e];
+            if (arrival < bestArrival) {
+                bestArrival = arrival;
+                bestEgress = e;
+            }
+        }
+        if (bestEgress < 0)
+            return;
+        for (int r = round; r <= maxRounds; r++)
+            bestTargetArrivals[r] = Math.min(bestTargetArrivals[r], bestArrival);
+        result.add(extractJourney(round, bestEgress, departureTime, bestArrival));
+    }
+
+    private Journey extractJourney(int round, int egress, int departureTime, int arrivalTime) {
+        // collect the trips from the last to the first one
+        IntArrayList legs = new IntArrayList();
+        int stop = egressStops[egress];
+        for (int r = round; r > 0; r--) {
+            int index = r * stops + stop;
+            if (transferSources[index] >= 0) {
+                stop = transferSources[index];
+                index = r * stops + stop;
+            }
+            legs.add(transitTrips[index], transitPositions[index]);
+            int trip = transitTrips[index] / DAYS;
+            int boardPosition = transitPositions[index] >>> 16;
+            int pattern = data.tripPatterns[trip];
+            stop = data.patternStops[data.patternStopOffsets[pattern] + boardPosition];
+        }
+        TripBasedRouter.StopWithTimeDelta accessStation = accessStations.get(accessStationOfStop[stop]);
+        TripBasedRouter.EnqueuedTripSegment segment = null;
+        Trips.TripAtStopTime alighting = null;
+        for (int i = legs.size() - 2; i >= 0; i -= 2) {
+            int trip = legs.get(i) / DAYS;
+            int day = legs.get(i) % DAYS;
+            int boardPosition = legs.get(i + 1) >>> 16;
+            int alightPosition = legs.get(i + 1) & 0xFFFF;
+            GTFSFeed.StopTimesForTripWithTripPatternKey tripPointer = data.getTrip(trip);
+            Trips.TripAtStopTime boarding = new Trips.TripAtStopTime(tripPointer.idx, data.getStopSequence(trip, boardPosition));
+            TripBasedRouter.EnqueuedTripSegment parent = segment;
+            segment = new TripBasedRouter.EnqueuedTripSegment(tripPointer, boarding, Integer.MAX_VALUE, serviceDay.plusDays(day - 1), alighting, parent, accessStation);
+            if (parent != null)
+                segment.nRealTransfers = parent.nRealTransfers + 1;
+            alighting = new Trips.TripAtStopTime(tripPointer.idx, data.getStopSequence(trip, alightPosition));
+        }
+        return new Journey(accessStation, egressStations.get(egress), segment, alighting.stop_sequence,
+                toInstant(departureTime), toInstant(arrivalTime), round);
+    }
+
+    private boolean isBlocked(int trip) {
+        return (blockedRouteTypes & (1 << data.tripRouteTypes[trip])) != 0;
+    }
+
+    private static int dayOffset(int day) {
+        return (day - 1) * SECONDS_PER_DAY;
+    }
+}
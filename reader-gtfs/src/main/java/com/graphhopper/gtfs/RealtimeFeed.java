@@ -21,6 +21,7 @@ package com.graphhopper.gtfs;
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntHashSet;
 import com.carrotsearch.hppc.IntLongHashMap;
+import com.carrotsearch.hppc.cursors.IntLongCursor;
 import com.conveyal.gtfs.GTFSFeed;
 import com.conveyal.gtfs.model.Frequency;
 import com.conveyal.gtfs.model.StopTime;
@@ -47,34 +48,113 @@ import static java.time.temporal.ChronoUnit.DAYS;
 
 public class RealtimeFeed {
     private static final Logger logger = LoggerFactory.getLogger(RealtimeFeed.class);
+    private static final RealtimeFeed EMPTY = new RealtimeFeed(Collections.emptyMap(), new IntHashSet(), new IntLongHashMap(), new IntLongHashMap(), Collections.emptyList(), Collections.emptyMap(), Collections.emptyList());
     private final IntHashSet blockedEdges;
     private final IntLongHashMap delaysForBoardEdges;
     private final IntLongHashMap delaysForAlightEdges;
+    private final List<PtGraph.PtEdge> additionalEdges;
+    // everything the overlay graph (additionalEdges and delaysForBoardEdges) depends on, if it did not change the
+    // overlay graph can be reused by the next snapshot
+    private final List<Object> overlayInputs;
     private final TreeSet<PtGraph.PtEdge> additionalEdgesByBaseNode;
     private final TreeSet<PtGraph.PtEdge> additionalEdgesByAdjNode;
+    // the effects of the trip updates for scheduled trips, which only depend on the static graph, so they can be
+    // reused by the next snapshot if the trip update did not change
+    private final Map<String, ScheduledTripUpdate> scheduledTripUpdates;
+    private final Map<String, List<GtfsRealtime.TripUpdate>> tripUpdatesByTripId;
     public final Map<String, GtfsRealtime.FeedMessage> feedMessages;
 
     private RealtimeFeed(Map<String, GtfsRealtime.FeedMessage> feedMessages, IntHashSet blockedEdges,
-                         IntLongHashMap delaysForBoardEdges, IntLongHashMap delaysForAlightEdges, List<PtGraph.PtEdge> additionalEdges) {
+                         IntLongHashMap delaysForBoardEdges, IntLongHashMap delaysForAlightEdges, List<PtGraph.PtEdge> additionalEdges,
+                         Map<String, ScheduledTripUpdate> scheduledTripUpdates, List<Object> overlayInputs) {
         this.feedMessages = feedMessages;
         this.blockedEdges = blockedEdges;
         this.delaysForBoardEdges = delaysForBoardEdges;
         this.delaysForAlightEdges = delaysForAlightEdges;
+        this.additionalEdges = additionalEdges;
+        this.overlayInputs = overlayInputs;
         this.additionalEdgesByBaseNode = new TreeSet<>(Comparator.comparingInt(PtGraph.PtEdge::getBaseNode).thenComparingInt(PtGraph.PtEdge::getId));
         this.additionalEdgesByBaseNode.addAll(additionalEdges);
         this.additionalEdgesByAdjNode = new TreeSet<>(Comparator.comparingInt(PtGraph.PtEdge::getAdjNode).thenComparingInt(PtGraph.PtEdge::getId));
         this.additionalEdgesByAdjNode.addAll(additionalEdges);
+        this.scheduledTripUpdates = scheduledTripUpdates;
+        this.tripUpdatesByTripId = new LinkedHashMap<>();
+        feedMessages.values().forEach(feedMessage -> feedMessage.getEntityList().stream()
+                .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
+                .map(GtfsRealtime.FeedEntity::getTripUpdate)
+                .forEach(tu -> tripUpdatesByTripId.computeIfAbsent(tu.getTrip().getTripId(), k -> new ArrayList<>()).add(tu)));
     }
 
     public static RealtimeFeed empty() {
-        return new RealtimeFeed(Collections.emptyMap(), new IntHashSet(), new IntLongHashMap(), new IntLongHashMap(), Collections.emptyList());
+        return EMPTY;
     }
 
     public static RealtimeFeed fromProtobuf(GtfsStorage staticGtfs, Map<String, Transfers> transfers, Map<String, GtfsRealtime.FeedMessage> feedMessages) {
-        final IntHashSet blockedEdges = new IntHashSet();
+        return empty().update(staticGtfs, transfers, feedMessages);
+    }
+
+    /**
+     * Creates a new snapshot from the given feed messages. This snapshot itself is never modified, so it can be used
+     * by running requests while the next one is created and then be replaced atomically.
+     * <p>
+     * Only the differences to this snapshot are applied: trip updates for scheduled trips which are contained in
+     * this snapshot with the same trip descriptor and stop time updates are not recomputed, and the blocked edges
+     * and alighting delays are only changed for the trips whose update was added, changed or removed. The overlay
+     * graph with the delayed departures and the added trips is wired into shared timelines, so it is recreated, but
+     * only if one of the trip updates it depends on changed.
+     */
+    public RealtimeFeed update(GtfsStorage staticGtfs, Map<String, Transfers> transfers, Map<String, GtfsRealtime.FeedMessage> feedMessages) {
+        if (!feedMessages.isEmpty() && feedMessages.equals(this.feedMessages))
+            return this;
+        final Map<String, ScheduledTripUpdate> scheduledTripUpdates = new LinkedHashMap<>();
+        final List<Object> overlayInputs = new ArrayList<>();
+        final int[] recomputed = new int[1];
+        feedMessages.forEach((feedKey, feedMessage) -> {
+            GTFSFeed feed = staticGtfs.getGtfsFeeds().get(feedKey);
+            ZoneId timezone = ZoneId.of(feed.agency.values().stream().findFirst().get().agency_timezone);
+            Instant timestamp = Instant.ofEpochSecond(feedMessage.getHeader().getTimestamp());
+            overlayInputs.add(feedKey);
+            overlayInputs.add(timestamp.atZone(timezone).toLocalDate());
+            feedMessage.getEntityList().stream()
+                    .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
+                    .map(GtfsRealtime.FeedEntity::getTripUpdate)
+                    .filter(tripUpdate -> tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED)
+                    .forEach(tripUpdate -> {
+                        String key = feedKey + ":" + tripUpdate.getTrip().getTripId() + ":" + tripUpdate.getTrip().getStartTime();
+                        ScheduledTripUpdate scheduledTripUpdate = this.scheduledTripUpdates.get(key);
+                        if (scheduledTripUpdate == null || !scheduledTripUpdate.hasSameEffect(tripUpdate)) {
+                            scheduledTripUpdate = computeScheduledTripUpdate(staticGtfs, feedKey, tripUpdate, feed);
+                            recomputed[0]++;
+                        }
+                        scheduledTripUpdates.put(key, scheduledTripUpdate);
+                        // unchanged trip updates are the same instances as in this snapshot, so they compare equal
+                        if (scheduledTripUpdate.hasDelayedDepartures())
+                            overlayInputs.add(scheduledTripUpdate);
+                    });
+            feedMessage.getEntityList().stream()
+                    .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
+                    .map(GtfsRealtime.FeedEntity::getTripUpdate)
+                    .filter(tripUpdate -> tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED)
+                    .forEach(tripUpdate -> overlayInputs.add(tripUpdate.toBuilder().clearTimestamp().clearVehicle().build()));
+        });
+
+        final IntHashSet blockedEdges = new IntHashSet(this.blockedEdges);
+        final IntLongHashMap delaysForAlightEdges = new IntLongHashMap(this.delaysForAlightEdges);
+        this.scheduledTripUpdates.forEach((key, previous) -> {
+            if (scheduledTripUpdates.get(key) != previous)
+                previous.remove(blockedEdges, delaysForAlightEdges);
+        });
+        scheduledTripUpdates.forEach((key, current) -> {
+            if (this.scheduledTripUpdates.get(key) != current)
+                current.add(blockedEdges, delaysForAlightEdges);
+        });
+        logger.debug("Recomputed {} of {} scheduled trip updates", recomputed[0], scheduledTripUpdates.size());
+
+        if (overlayInputs.equals(this.overlayInputs))
+            return new RealtimeFeed(feedMessages, blockedEdges, this.delaysForBoardEdges, delaysForAlightEdges, this.additionalEdges, scheduledTripUpdates, this.overlayInputs);
+
         final IntLongHashMap delaysForBoardEdges = new IntLongHashMap();
-        final IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
-        final LinkedList<PtGraph.PtEdge> additionalEdges = new LinkedList<>();
+        final List<PtGraph.PtEdge> additionalEdges = new ArrayList<>();
         final GtfsReader.PtGraphOut overlayGraph = new GtfsReader.PtGraphOut() {
             int nextEdge = staticGtfs.getPtGraph().getEdgeCount();
             int nextNode = staticGtfs.getPtGraph().getNodeCount();
@@ -114,11 +194,10 @@ public class RealtimeFeed {
             BitSet validOnDay = new BitSet();
             LocalDate startDate = feed.getStartDate();
             validOnDay.set((int) DAYS.between(startDate, dateToChange));
-            feedMessage.getEntityList().stream()
-                    .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
-                    .map(GtfsRealtime.FeedEntity::getTripUpdate)
-                    .filter(tripUpdate -> tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED)
-                    .forEach(tripUpdate -> maybeUpdateScheduledTrip(staticGtfs, feedKey, tripUpdate, feed, blockedEdges, delaysForAlightEdges, ptGraphNodesAndEdges, gtfsReader, timezone, validOnDay, delaysForBoardEdges));
+            scheduledTripUpdates.forEach((key, scheduledTripUpdate) -> {
+                if (key.startsWith(feedKey + ":"))
+                    scheduledTripUpdate.addDelayedBoardEdges(delaysForBoardEdges, gtfsReader, timezone, validOnDay);
+            });
             feedMessage.getEntityList().stream()
                     .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
                     .map(GtfsRealtime.FeedEntity::getTripUpdate)
@@ -126,18 +205,22 @@ public class RealtimeFeed {
                     .forEach(tripUpdate -> maybeAddExtraTrip(staticGtfs, feedKey, tripUpdate, timezone, validOnDay, gtfsReader));
             gtfsReader.wireUpAdditionalDeparturesAndArrivals(timezone);
         });
-
-        return new RealtimeFeed(feedMessages, blockedEdges, delaysForBoardEdges, delaysForAlightEdges, additionalEdges);
+        return new RealtimeFeed(feedMessages, blockedEdges, delaysForBoardEdges, delaysForAlightEdges, additionalEdges, scheduledTripUpdates, overlayInputs);
     }
 
-    private static void maybeUpdateScheduledTrip(GtfsStorage staticGtfs, String feedKey, GtfsRealtime.TripUpdate tripUpdate, GTFSFeed feed, IntHashSet blockedEdges, IntLongHashMap delaysForAlightEdges, PtGraph ptGraphNodesAndEdges, GtfsReader gtfsReader, ZoneId timezone, BitSet validOnDay, IntLongHashMap delaysForBoardEdges) {
+    private static ScheduledTripUpdate computeScheduledTripUpdate(GtfsStorage staticGtfs, String feedKey, GtfsRealtime.TripUpdate tripUpdate, GTFSFeed feed) {
+        PtGraph ptGraphNodesAndEdges = staticGtfs.getPtGraph();
         Collection<Frequency> frequencies = feed.getFrequencies(tripUpdate.getTrip().getTripId());
         int timeOffset = (tripUpdate.getTrip().hasStartTime() && !frequencies.isEmpty()) ? LocalTime.parse(tripUpdate.getTrip().getStartTime()).toSecondOfDay() : 0;
         final int[] boardEdges = findBoardEdgesForTrip(staticGtfs, feedKey, feed, tripUpdate.getTrip());
         final int[] leaveEdges = findAlightEdgesForTrip(staticGtfs, feedKey, feed, tripUpdate.getTrip());
+        final IntArrayList blockedEdges = new IntArrayList();
+        final IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
+        final IntArrayList delayedDepartures = new IntArrayList();
         if (boardEdges == null || leaveEdges == null) {
+            // remember the empty result, so that we do not search the trip again as long as the update does not change
             logger.warn("Trip not found: {}", tripUpdate.getTrip());
-            return;
+            return new ScheduledTripUpdate(tripUpdate, blockedEdges.toArray(), delaysForAlightEdges, delayedDepartures.toArray());
         }
         tripUpdate.getStopTimeUpdateList().stream()
                 .filter(stopTimeUpdate -> stopTimeUpdate.getScheduleRelationship() == SKIPPED)
@@ -159,10 +242,61 @@ public class RealtimeFeed {
             if (departureDelay > 0) {
                 int boardEdge = boardEdges[stopTime.stop_sequence];
                 int departureNode = ptGraphNodesAndEdges.edge(boardEdge).getAdjNode();
-                int delayedBoardEdge = gtfsReader.addDelayedBoardEdge(timezone, tripUpdate.getTrip(), stopTime.stop_sequence, stopTime.departure_time + timeOffset, departureNode, validOnDay);
-                delaysForBoardEdges.put(delayedBoardEdge, departureDelay * 1000);
+                delayedDepartures.add(stopTime.stop_sequence, stopTime.departure_time + timeOffset, departureNode, departureDelay);
             }
         });
+        return new ScheduledTripUpdate(tripUpdate, blockedEdges.toArray(), delaysForAlightEdges, delayedDepartures.toArray());
+    }
+
+    /**
+     * The effect of a trip update for a scheduled trip on the static graph. The delayed board edges have to be
+     * created for every snapshot as they are wired into the timelines of the overlay graph, so only the
+     * departures are stored here: four ints per departure (stop_sequence, departure time, departure node, delay).
+     */
+    private static class ScheduledTripUpdate {
+        private final GtfsRealtime.TripUpdate tripUpdate;
+        private final int[] blockedEdges;
+        private final IntLongHashMap delaysForAlightEdges;
+        private final int[] delayedDepartures;
+
+        ScheduledTripUpdate(GtfsRealtime.TripUpdate tripUpdate, int[] blockedEdges, IntLongHashMap delaysForAlightEdges, int[] delayedDepartures) {
+            this.tripUpdate = tripUpdate;
+            this.blockedEdges = blockedEdges;
+            this.delaysForAlightEdges = delaysForAlightEdges;
+            this.delayedDepartures = delayedDepartures;
+        }
+
+        boolean hasSameEffect(GtfsRealtime.TripUpdate other) {
+            // the timestamp and the vehicle of a trip update are irrelevant for us and may change with every fetch
+            return tripUpdate.getTrip().equals(other.getTrip()) && tripUpdate.getStopTimeUpdateList().equals(other.getStopTimeUpdateList());
+        }
+
+        boolean hasDelayedDepartures() {
+            return delayedDepartures.length > 0;
+        }
+
+        /**
+         * Adds the blocked edges and alighting delays. The edges belong to the trip, so they are not shared with
+         * other trip updates.
+         */
+        void add(IntHashSet blockedEdges, IntLongHashMap delaysForAlightEdges) {
+            blockedEdges.addAll(this.blockedEdges);
+            delaysForAlightEdges.putAll(this.delaysForAlightEdges);
+        }
+
+        void remove(IntHashSet blockedEdges, IntLongHashMap delaysForAlightEdges) {
+            for (int edge : this.blockedEdges)
+                blockedEdges.remove(edge);
+            for (IntLongCursor c : this.delaysForAlightEdges)
+                delaysForAlightEdges.remove(c.key);
+        }
+
+        void addDelayedBoardEdges(IntLongHashMap delaysForBoardEdges, GtfsReader gtfsReader, ZoneId timezone, BitSet validOnDay) {
+            for (int i = 0; i < delayedDepartures.length; i += 4) {
+                int delayedBoardEdge = gtfsReader.addDelayedBoardEdge(timezone, tripUpdate.getTrip(), delayedDepartures[i], delayedDepartures[i + 1], delayedDepartures[i + 2], validOnDay);
+                delaysForBoardEdges.put(delayedBoardEdge, delayedDepartures[i + 3] * 1000);
+            }
+        }
     }
 
     private static void maybeAddExtraTrip(GtfsStorage staticGtfs, String feedKey, GtfsRealtime.TripUpdate tripUpdate, ZoneId timezone, BitSet validOnDay, GtfsReader gtfsReader) {
@@ -338,11 +472,12 @@ public class RealtimeFeed {
             if (!isThisRealtimeUpdateAboutThisLineRun(boardTime)) {
                 return Optional.empty();
             } else {
-                return feedMessages.values().stream().flatMap(feedMessage -> feedMessage.getEntityList().stream()
-                        .filter(e -> e.hasTripUpdate())
-                        .map(e -> e.getTripUpdate())
+                Stream<GtfsRealtime.TripUpdate> candidates = trip.hasTripId()
+                        ? tripUpdatesByTripId.getOrDefault(trip.getTripId(), Collections.emptyList()).stream()
+                        : tripUpdatesByTripId.values().stream().flatMap(Collection::stream);
+                return candidates
                         .filter(tu -> isDescribedBy(trip, tu.getTrip()))
-                        .map(tu -> toTripWithStopTimes(staticFeed, tu)))
+                        .map(tu -> toTripWithStopTimes(staticFeed, tu))
                         .findFirst();
             }
         } catch (RuntimeException e) {
@@ -0,0 +1,363 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.CalendarDate;
+import com.conveyal.gtfs.model.Service;
+import com.conveyal.gtfs.model.StopTime;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Columnar storage of the trips, stop times, patterns and calendars of all feeds. Every table is a DataAccess with
+ * fixed size int columns and all strings are stored once in a string pool, so the schedule is available right after
+ * the files are memory mapped, without deserializing any objects. The trips are stored in the order of
+ * {@link Trips}, i.e. the index of a trip is the same in both.
+ */
+public class ScheduleStorage {
+    private static final int VERSION = 1;
+    // trips
+    private static final int T_FEED = 0, T_TRIP_ID = 4, T_ROUTE_ID = 8, T_ROUTE_TYPE = 12, T_SERVICE = 16,
+            T_PATTERN = 20, T_FIRST_STOP_TIME = 24, TRIP_BYTES = 28;
+    // stop times, the pickup and drop off types are stored in the lower and upper half of S_FLAGS
+    private static final int S_STOP_ID = 0, S_STOP_SEQUENCE = 4, S_ARRIVAL = 8, S_DEPARTURE = 12, S_FLAGS = 16,
+            STOP_TIME_BYTES = 20;
+    // services, the dates are in the GTFS format yyyymmdd and there is no calendar if the start date is -1
+    private static final int C_START_DATE = 0, C_END_DATE = 4, C_WEEKDAYS = 8, C_FIRST_EXCEPTION = 12,
+            SERVICE_BYTES = 16;
+    // exceptions (calendar_dates) are stored as epoch day << 1 | added and sorted by date for every service
+
+    private final DataAccess tripTable;
+    private final DataAccess stopTimeTable;
+    private final DataAccess serviceTable;
+    private final DataAccess exceptionTable;
+    private final DataAccess stringOffsets;
+    private final DataAccess strings;
+    private int trips;
+    private long stopTimes;
+    private int services;
+    private int exceptions;
+    private int stringCount;
+    private long stringBytes;
+
+    public ScheduleStorage(Directory dir) {
+        tripTable = create(dir, "schedule_trips");
+        stopTimeTable = create(dir, "schedule_stop_times");
+        serviceTable = create(dir, "schedule_services");
+        exceptionTable = create(dir, "schedule_service_exceptions");
+        stringOffsets = create(dir, "schedule_string_offsets");
+        strings = create(dir, "schedule_strings");
+    }
+
+    private static DataAccess create(Directory dir, String name) {
+        return dir.create(name, dir.getDefaultType(name, true), -1);
+    }
+
+    /**
+     * Writes the trips of the specified Trips instance including their stop times and calendars.
+     */
+    public ScheduleStorage create(Trips tripsToStore) {
+        if (trips > 0)
+            throw new IllegalStateException("ScheduleStorage can only be created once");
+        tripTable.create(1024);
+        stopTimeTable.create(1024);
+        serviceTable.create(1024);
+        exceptionTable.create(1024);
+        stringOffsets.create(1024);
+        strings.create(1024);
+
+        Map<String, Integer> stringIndex = new HashMap<>();
+        Map<Service, Integer> serviceIndex = new IdentityHashMap<>();
+        Map<Trips.Pattern, Integer> patternIndex = new IdentityHashMap<>();
+        for (GTFSFeed.StopTimesForTripWithTripPatternKey trip : tripsToStore.trips) {
+            if (trip.idx != trips)
+                throw new IllegalStateException("Trips must be sorted by their index, expected " + trips + " but got " + trip.idx);
+            long pointer = (long) trips * TRIP_BYTES;
+            tripTable.ensureCapacity(pointer + TRIP_BYTES);
+            tripTable.setInt(pointer + T_FEED, addString(trip.feedId, stringIndex));
+            tripTable.setInt(pointer + T_TRIP_ID, addString(trip.trip.trip_id, stringIndex));
+            tripTable.setInt(pointer + T_ROUTE_ID, addString(trip.trip.route_id, stringIndex));
+            tripTable.setInt(pointer + T_ROUTE_TYPE, trip.routeType);
+            Integer service = serviceIndex.get(trip.service);
+            if (service == null) {
+                service = addService(trip.service);
+                serviceIndex.put(trip.service, service);
+            }
+            tripTable.setInt(pointer + T_SERVICE, service);
+            tripTable.setInt(pointer + T_PATTERN, patternIndex.computeIfAbsent(trip.pattern, p -> patternIndex.size()));
+            tripTable.setInt(pointer + T_FIRST_STOP_TIME, (int) stopTimes);
+            for (StopTime stopTime : trip.stopTimes) {
+                if (stopTime == null)
+                    continue;
+                long stPointer = stopTimes * STOP_TIME_BYTES;
+                stopTimeTable.ensureCapacity(stPointer + STOP_TIME_BYTES);
+                stopTimeTable.setInt(stPointer + S_STOP_ID, addString(stopTime.stop_id, stringIndex));
+                stopTimeTable.setInt(stPointer + S_STOP_SEQUENCE, stopTime.stop_sequence);
+                stopTimeTable.setInt(stPointer + S_ARRIVAL, stopTime.arrival_time);
+                stopTimeTable.setInt(stPointer + S_DEPARTURE, stopTime.departure_time);
+                stopTimeTable.setInt(stPointer + S_FLAGS, (stopTime.pickup_type & 0xFFFF) | stopTime.drop_off_type << 16);
+                stopTimes++;
+                if (stopTimes > Integer.MAX_VALUE)
+                    throw new IllegalStateException("Too many stop times: " + stopTimes);
+            }
+            trips++;
+        }
+        return this;
+    }
+
+    private int addString(String string, Map<String, Integer> stringIndex) {
+        Integer index = stringIndex.get(string);
+        if (index != null)
+            return index;
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        strings.ensureCapacity(stringBytes + bytes.length);
+        strings.setBytes(stringBytes, bytes, bytes.length);
+        stringOffsets.ensureCapacity((stringCount + 2L) * 4);
+        stringOffsets.setInt((long) stringCount * 4, (int) stringBytes);
+        stringBytes += bytes.length;
+        stringOffsets.setInt((stringCount + 1L) * 4, (int) stringBytes);
+        stringIndex.put(string, stringCount);
+        return stringCount++;
+    }
+
+    private int addService(Service service) {
+        long pointer = (long) services * SERVICE_BYTES;
+        serviceTable.ensureCapacity(pointer + SERVICE_BYTES);
+        if (service.calendar == null) {
+            serviceTable.setInt(pointer + C_START_DATE, -1);
+            serviceTable.setInt(pointer + C_END_DATE, -1);
+            serviceTable.setInt(pointer + C_WEEKDAYS, 0);
+        } else {
+            serviceTable.setInt(pointer + C_START_DATE, service.calendar.start_date);
+            serviceTable.setInt(pointer + C_END_DATE, service.calendar.end_date);
+            int[] days = {service.calendar.monday, service.calendar.tuesday, service.calendar.wednesday,
+                    service.calendar.thursday, service.calendar.friday, service.calendar.saturday, service.calendar.sunday};
+            int weekdays = 0;
+            for (int i = 0; i < days.length; i++)
+                if (days[i] == 1)
+                    weekdays |= 1 << i;
+            serviceTable.setInt(pointer + C_WEEKDAYS, weekdays);
+        }
+        serviceTable.setInt(pointer + C_FIRST_EXCEPTION, exceptions);
+        List<CalendarDate> calendarDates = new ArrayList<>(service.calendar_dates.values());
+        calendarDates.sort(Comparator.comparing(cd -> cd.date));
+        for (CalendarDate calendarDate : calendarDates) {
+            exceptionTable.ensureCapacity((exceptions + 1L) * 4);
+            exceptionTable.setInt((long) exceptions * 4, (int) calendarDate.date.toEpochDay() << 1 | (calendarDate.exception_type == 1 ? 1 : 0));
+            exceptions++;
+        }
+        return services++;
+    }
+
+    public boolean loadExisting() {
+        if (!tripTable.loadExisting() || !stopTimeTable.loadExisting() || !serviceTable.loadExisting()
+                || !exceptionTable.loadExisting() || !stringOffsets.loadExisting() || !strings.loadExisting())
+            return false;
+        GHUtility.checkDAVersion(tripTable.getName(), VERSION, tripTable.getHeader(0));
+        trips = tripTable.getHeader(4);
+        stopTimes = tripTable.getHeader(8);
+        services = tripTable.getHeader(12);
+        exceptions = tripTable.getHeader(16);
+        stringCount = tripTable.getHeader(20);
+        stringBytes = tripTable.getHeader(24);
+        checkCounts();
+        return true;
+    }
+
+    /**
+     * Checks the stored counts against the sizes of the tables, which is cheap and does not require the feeds
+     */
+    private void checkCounts() {
+        if (tripTable.getCapacity() < (long) trips * TRIP_BYTES
+                || stopTimeTable.getCapacity() < stopTimes * STOP_TIME_BYTES
+                || serviceTable.getCapacity() < (long) services * SERVICE_BYTES
+                || exceptionTable.getCapacity() < (long) exceptions * 4
+                || stringOffsets.getCapacity() < (stringCount + 1L) * 4
+                || strings.getCapacity() < stringBytes
+                || trips > 0 && (getFirstStopTime(0) != 0 || getFirstStopTime(trips - 1) > stopTimes)
+                || stringCount > 0 && stringOffsets.getInt((long) stringCount * 4) != stringBytes)
+            throw new IllegalStateException("The schedule storage is incomplete, " + toDetailsString()
+                    + ". Remove the graph folder and import again.");
+    }
+
+    /**
+     * Removes the tables from the directory, e.g. if {@link #loadExisting()} failed and the schedule has to be created
+     * with a new ScheduleStorage.
+     */
+    public void remove(Directory dir) {
+        for (DataAccess da : List.of(tripTable, stopTimeTable, serviceTable, exceptionTable, stringOffsets, strings))
+            dir.remove(da.getName());
+    }
+
+    public void flush() {
+        tripTable.setHeader(0, VERSION);
+        tripTable.setHeader(4, trips);
+        tripTable.setHeader(8, (int) stopTimes);
+        tripTable.setHeader(12, services);
+        tripTable.setHeader(16, exceptions);
+        tripTable.setHeader(20, stringCount);
+        tripTable.setHeader(24, (int) stringBytes);
+        tripTable.flush();
+        stopTimeTable.flush();
+        serviceTable.flush();
+        exceptionTable.flush();
+        stringOffsets.flush();
+        strings.flush();
+    }
+
+    public void close() {
+        tripTable.close();
+        stopTimeTable.close();
+        serviceTable.close();
+        exceptionTable.close();
+        stringOffsets.close();
+        strings.close();
+    }
+
+    public long getCapacity() {
+        return tripTable.getCapacity() + stopTimeTable.getCapacity() + serviceTable.getCapacity()
+                + exceptionTable.getCapacity() + stringOffsets.getCapacity() + strings.getCapacity();
+    }
+
+    public String toDetailsString() {
+        return "trips: " + Helper.nf(trips) + ", stop times: " + Helper.nf(stopTimes) + ", services: " + Helper.nf(services)
+                + ", strings: " + Helper.nf(stringCount) + ", " + Helper.nf(getCapacity() / Helper.MB) + "MB";
+    }
+
+    public int getTrips() {
+        return trips;
+    }
+
+    public String getString(int index) {
+        int from = stringOffsets.getInt((long) index * 4);
+        int to = stringOffsets.getInt((index + 1L) * 4);
+        byte[] bytes = new byte[to - from];
+        strings.getBytes(from, bytes, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the index of the feed id of the trip in the string pool, see {@link #getString}
+     */
+    public int getFeed(int trip) {
+        return tripTable.getInt((long) trip * TRIP_BYTES + T_FEED);
+    }
+
+    public String getTripId(int trip) {
+        return getString(tripTable.getInt((long) trip * TRIP_BYTES + T_TRIP_ID));
+    }
+
+    public String getRouteId(int trip) {
+        return getString(tripTable.getInt((long) trip * TRIP_BYTES + T_ROUTE_ID));
+    }
+
+    public int getRouteType(int trip) {
+        return tripTable.getInt((long) trip * TRIP_BYTES + T_ROUTE_TYPE);
+    }
+
+    public int getService(int trip) {
+        return tripTable.getInt((long) trip * TRIP_BYTES + T_SERVICE);
+    }
+
+    /**
+     * @return the index of the {@link Trips.Pattern} of the trip. The trips of a pattern are stored consecutively
+     * and sorted by departure.
+     */
+    public int getPattern(int trip) {
+        return tripTable.getInt((long) trip * TRIP_BYTES + T_PATTERN);
+    }
+
+    /**
+     * @return the index of the first stop time of the trip. The stop times of a trip are stored consecutively and
+     * sorted by stop_sequence.
+     */
+    public int getFirstStopTime(int trip) {
+        return tripTable.getInt((long) trip * TRIP_BYTES + T_FIRST_STOP_TIME);
+    }
+
+    public int getStopTimeCount(int trip) {
+        int end = trip + 1 < trips ? getFirstStopTime(trip + 1) : (int) stopTimes;
+        return end - getFirstStopTime(trip);
+    }
+
+    /**
+     * @return the index of the stop id of the stop time in the string pool, see {@link #getString}
+     */
+    public int getStop(int stopTime) {
+        return stopTimeTable.getInt((long) stopTime * STOP_TIME_BYTES + S_STOP_ID);
+    }
+
+    public int getStopSequence(int stopTime) {
+        return stopTimeTable.getInt((long) stopTime * STOP_TIME_BYTES + S_STOP_SEQUENCE);
+    }
+
+    public int getArrivalTime(int stopTime) {
+        return stopTimeTable.getInt((long) stopTime * STOP_TIME_BYTES + S_ARRIVAL);
+    }
+
+    public int getDepartureTime(int stopTime) {
+        return stopTimeTable.getInt((long) stopTime * STOP_TIME_BYTES + S_DEPARTURE);
+    }
+
+    public int getPickupType(int stopTime) {
+        return stopTimeTable.getInt((long) stopTime * STOP_TIME_BYTES + S_FLAGS) & 0xFFFF;
+    }
+
+    public int getDropOffType(int stopTime) {
+        return stopTimeTable.getInt((long) stopTime * STOP_TIME_BYTES + S_FLAGS) >>> 16;
+    }
+
+    /**
+     * Same as {@link Service#activeOn(LocalDate)}
+     */
+    public boolean isActive(int service, LocalDate date) {
+        long pointer = (long) service * SERVICE_BYTES;
+        int firstException = serviceTable.getInt(pointer + C_FIRST_EXCEPTION);
+        int endException = service + 1 < services ? serviceTable.getInt(pointer + SERVICE_BYTES + C_FIRST_EXCEPTION) : exceptions;
+        int epochDay = (int) date.toEpochDay();
+        int low = firstException, high = endException - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int exception = exceptionTable.getInt((long) mid * 4);
+            int day = exception >> 1;
+            if (day < epochDay)
+                low = mid + 1;
+            else if (day > epochDay)
+                high = mid - 1;
+            else
+                return (exception & 1) == 1;
+        }
+        int startDate = serviceTable.getInt(pointer + C_START_DATE);
+        if (startDate < 0)
+            return false;
+        int gtfsDate = date.getYear() * 10000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+        if (gtfsDate < startDate || gtfsDate > serviceTable.getInt(pointer + C_END_DATE))
+            return false;
+        DayOfWeek dayOfWeek = date.getDayOfWeek();
+        return (serviceTable.getInt(pointer + C_WEEKDAYS) & (1 << (dayOfWeek.getValue() - 1))) != 0;
+    }
+}
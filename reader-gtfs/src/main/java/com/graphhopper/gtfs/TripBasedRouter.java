@@ -185,9 +185,11 @@ public class TripBasedRouter {
                     break;
                 Trips.TripAtStopTime transferOrigin = new Trips.TripAtStopTime(enqueuedTripSegment.tripPointer.idx, stopTime.stop_sequence);
                 logger.debug("  {}", print(transferOrigin, tripTransfers, ARRIVAL));
-                Collection<Trips.TripAtStopTime> transferDestinations = gtfsStorage.tripTransfers.getTripTransfers(enqueuedTripSegment.serviceDay).get(transferOrigin);
-                if (transferDestinations == null) continue; // currently if we didn't build the service day.
-                for (Trips.TripAtStopTime transferDestination : transferDestinations) {
+                TripTransfers transfersOfDay = gtfsStorage.getTripTransfers(enqueuedTripSegment.serviceDay);
+                if (transfersOfDay == null) continue; // currently if we didn't build the service day.
+                int endTransfer = transfersOfDay.getEndTransfer(transferOrigin.tripIdx, transferOrigin.stop_sequence);
+                for (int transfer = transfersOfDay.getFirstTransfer(transferOrigin.tripIdx, transferOrigin.stop_sequence); transfer < endTransfer; transfer++) {
+                    Trips.TripAtStopTime transferDestination = new Trips.TripAtStopTime(transfersOfDay.getDestinationTrip(transfer), transfersOfDay.getDestinationStopSequence(transfer));
                     GTFSFeed.StopTimesForTripWithTripPatternKey destinationTripPointer = tripTransfers.getTrip(transferDestination.tripIdx);
                     GTFSFeed destinationFeed = gtfsStorage.getGtfsFeeds().get(destinationTripPointer.feedId);
                     ZoneId destinationZoneId = ZoneId.of(destinationFeed.agency.values().stream().findFirst().get().agency_timezone);
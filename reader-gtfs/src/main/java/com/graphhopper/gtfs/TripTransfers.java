@@ -0,0 +1,201 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.conveyal.gtfs.GTFSFeed;
+import com.google.common.collect.ArrayListMultimap;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * The trip-to-trip transfers of the trip-based router for one traffic day. They are stored in compressed sparse row
+ * format: every trip has one slot per stop_sequence (including the padding of {@link Trips}), every slot points to
+ * its first transfer and every transfer is stored as a pair of ints (trip index, stop_sequence) of the boarding.
+ * The transfers of a slot are consecutive, so the router can iterate them directly from the memory mapped file.
+ */
+public class TripTransfers {
+    private static final int VERSION = 1;
+    // number of trips whose transfers are computed in parallel before they are written
+    private static final int BATCH_SIZE = 10_000;
+
+    private final LocalDate trafficDay;
+    // trips + 1 ints, the first slot of every trip
+    private final DataAccess tripSlots;
+    // slots + 1 ints, the first transfer of every slot
+    private final DataAccess slotTransfers;
+    // two ints per transfer, the destination trip and stop_sequence
+    private final DataAccess transfers;
+    private int trips;
+    private int slots;
+    private int transferCount;
+
+    public TripTransfers(Directory dir, LocalDate trafficDay) {
+        this.trafficDay = trafficDay;
+        tripSlots = create(dir, "trip_transfer_trips_" + trafficDay);
+        slotTransfers = create(dir, "trip_transfer_slots_" + trafficDay);
+        transfers = create(dir, "trip_transfer_destinations_" + trafficDay);
+    }
+
+    private static DataAccess create(Directory dir, String name) {
+        return dir.create(name, dir.getDefaultType(name, true), -1);
+    }
+
+    /**
+     * Computes the transfers of all trips which are active on the traffic day. The trips are processed in batches,
+     * the transfers of the trips of one batch are computed in parallel and then appended in the order of the trips.
+     */
+    public TripTransfers create(Trips tripsToStore, Map<String, Transfers> transfersByFeed, ArrayListMultimap<Integer, GtfsStorage.FeedIdWithStopId> stopsForStationNode) {
+        if (trips > 0)
+            throw new IllegalStateException("TripTransfers can only be created once");
+        tripSlots.create(1024);
+        slotTransfers.create(1024);
+        transfers.create(1024);
+        int tripCount = tripsToStore.trips.size();
+        for (int batchStart = 0; batchStart < tripCount; batchStart += BATCH_SIZE) {
+            int batchEnd = Math.min(tripCount, batchStart + BATCH_SIZE);
+            List<Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>>> batch = new ArrayList<>(Collections.nCopies(batchEnd - batchStart, null));
+            int offset = batchStart;
+            IntStream.range(batchStart, batchEnd).parallel().forEach(tripIdx -> {
+                GTFSFeed.StopTimesForTripWithTripPatternKey trip = tripsToStore.getTrip(tripIdx);
+                if (trip.service.activeOn(trafficDay))
+                    batch.set(tripIdx - offset, tripsToStore.findTripTransfers(trip, trip.feedId, trafficDay, transfersByFeed, stopsForStationNode));
+            });
+            for (int tripIdx = batchStart; tripIdx < batchEnd; tripIdx++)
+                addTrip(tripsToStore.getTrip(tripIdx), batch.get(tripIdx - batchStart));
+        }
+        tripSlots.ensureCapacity((trips + 1L) * 4);
+        tripSlots.setInt((long) trips * 4, slots);
+        slotTransfers.ensureCapacity((slots + 1L) * 4);
+        slotTransfers.setInt((long) slots * 4, transferCount);
+        return this;
+    }
+
+    private void addTrip(GTFSFeed.StopTimesForTripWithTripPatternKey trip, Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> tripTransfers) {
+        if (trip.idx != trips)
+            throw new IllegalStateException("Trips must be sorted by their index, expected " + trips + " but got " + trip.idx);
+        tripSlots.ensureCapacity((trips + 1L) * 4);
+        tripSlots.setInt((long) trips * 4, slots);
+        int stopSequences = trip.stopTimes.size();
+        slotTransfers.ensureCapacity(((long) slots + stopSequences) * 4);
+        for (int stopSequence = 0; stopSequence < stopSequences; stopSequence++) {
+            slotTransfers.setInt((long) slots * 4, transferCount);
+            slots++;
+            Collection<Trips.TripAtStopTime> destinations = tripTransfers == null ? null : tripTransfers.get(new Trips.TripAtStopTime(trip.idx, stopSequence));
+            if (destinations == null)
+                continue;
+            transfers.ensureCapacity((transferCount + (long) destinations.size()) * 8);
+            for (Trips.TripAtStopTime destination : destinations) {
+                transfers.setInt((long) transferCount * 8, destination.tripIdx);
+                transfers.setInt((long) transferCount * 8 + 4, destination.stop_sequence);
+                transferCount++;
+                if (transferCount == Integer.MAX_VALUE)
+                    throw new IllegalStateException("Too many trip transfers for " + trafficDay);
+            }
+        }
+        if (slots < 0)
+            throw new IllegalStateException("Too many stop times for " + trafficDay);
+        trips++;
+    }
+
+    public boolean loadExisting() {
+        if (!tripSlots.loadExisting() || !slotTransfers.loadExisting() || !transfers.loadExisting())
+            return false;
+        GHUtility.checkDAVersion(tripSlots.getName(), VERSION, tripSlots.getHeader(0));
+        trips = tripSlots.getHeader(4);
+        slots = tripSlots.getHeader(8);
+        transferCount = tripSlots.getHeader(12);
+        return true;
+    }
+
+    public void flush() {
+        tripSlots.setHeader(0, VERSION);
+        tripSlots.setHeader(4, trips);
+        tripSlots.setHeader(8, slots);
+        tripSlots.setHeader(12, transferCount);
+        tripSlots.flush();
+        slotTransfers.flush();
+        transfers.flush();
+    }
+
+    public void close() {
+        tripSlots.close();
+        slotTransfers.close();
+        transfers.close();
+    }
+
+    public long getCapacity() {
+        return tripSlots.getCapacity() + slotTransfers.getCapacity() + transfers.getCapacity();
+    }
+
+    public String toDetailsString() {
+        return "trips: " + Helper.nf(trips) + ", transfers: " + Helper.nf(transferCount) + ", " + Helper.nf(getCapacity() / Helper.MB) + "MB";
+    }
+
+    public LocalDate getTrafficDay() {
+        return trafficDay;
+    }
+
+    public int getTrips() {
+        return trips;
+    }
+
+    /**
+     * @return the index of the first transfer when alighting from the specified trip at the specified stop_sequence
+     */
+    public int getFirstTransfer(int tripIdx, int stopSequence) {
+        int slot = getSlot(tripIdx, stopSequence);
+        return slot < 0 ? 0 : slotTransfers.getInt((long) slot * 4);
+    }
+
+    /**
+     * @return the index after the last transfer when alighting from the specified trip at the specified stop_sequence
+     */
+    public int getEndTransfer(int tripIdx, int stopSequence) {
+        int slot = getSlot(tripIdx, stopSequence);
+        return slot < 0 ? 0 : slotTransfers.getInt((slot + 1L) * 4);
+    }
+
+    private int getSlot(int tripIdx, int stopSequence) {
+        int firstSlot = tripSlots.getInt((long) tripIdx * 4);
+        int endSlot = tripSlots.getInt((tripIdx + 1L) * 4);
+        return stopSequence < 0 || firstSlot + stopSequence >= endSlot ? -1 : firstSlot + stopSequence;
+    }
+
+    public int getDestinationTrip(int transfer) {
+        return transfers.getInt((long) transfer * 8);
+    }
+
+    public int getDestinationStopSequence(int transfer) {
+        return transfers.getInt((long) transfer * 8 + 4);
+    }
+
+    public List<Trips.TripAtStopTime> getTransfers(Trips.TripAtStopTime origin) {
+        int end = getEndTransfer(origin.tripIdx, origin.stop_sequence);
+        List<Trips.TripAtStopTime> result = new ArrayList<>();
+        for (int transfer = getFirstTransfer(origin.tripIdx, origin.stop_sequence); transfer < end; transfer++)
+            result.add(new Trips.TripAtStopTime(getDestinationTrip(transfer), getDestinationStopSequence(transfer)));
+        return result;
+    }
+}
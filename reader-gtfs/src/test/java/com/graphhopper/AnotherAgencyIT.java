@@ -19,6 +19,7 @@
 package com.graphhopper;
 
 import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.StopTime;
 import com.graphhopper.config.Profile;
 import com.graphhopper.gtfs.*;
 import com.graphhopper.gtfs.Trips;
@@ -34,9 +35,13 @@ import org.locationtech.jts.io.WKTReader;
 
 import java.io.File;
 import java.time.*;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import static com.graphhopper.gtfs.GtfsHelper.time;
@@ -100,14 +105,14 @@ public interface AnotherAgencyIT<T extends PtRouter> {
 
         @Test
         public void testMuseum() {
-            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().tripTransfers;
+            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().getTrips();
             int tripIdx = findTrip("MUSEUMAIRPORT1", LocalTime.of(10, 40), 2, ARRIVAL);
-            Collection<Trips.TripAtStopTime> transferDestinations = tripTransfers.getTripTransfers(LocalDate.of(2007, 1, 1)).get(new Trips.TripAtStopTime(tripIdx, 2));
+            Collection<Trips.TripAtStopTime> transferDestinations = graphHopperGtfs().getGtfsStorage().getTripTransfers(LocalDate.of(2007, 1, 1)).getTransfers(new Trips.TripAtStopTime(tripIdx, 2));
             assertThat(transferDestinations).extracting(td -> print(td, tripTransfers, DEPARTURE)).contains("8 AB3_NO_BLOCK @ 1 BEATTY_AIRPORT 50400");
         }
 
         private int findTrip(String tripId, LocalTime time, int stopSequence, Trips.TripAtStopTime.ArrivalDeparture arrivalDeparture) {
-            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().tripTransfers;
+            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().getTrips();
             int tripIdx = 0;
             for (GTFSFeed.StopTimesForTripWithTripPatternKey trip : tripTransfers.trips) {
                 if (trip.trip.trip_id.equals(tripId) && LocalTime.ofSecondOfDay(arrivalDeparture == ARRIVAL ? trip.stopTimes.get(stopSequence).arrival_time : trip.stopTimes.get(stopSequence).departure_time).equals(time)) {
@@ -124,6 +129,162 @@ public interface AnotherAgencyIT<T extends PtRouter> {
         }
     }
 
+    class RaptorPtRouterTest implements AnotherAgencyIT<PtRouterTripBasedImpl> {
+
+        private static GraphHopperGtfs graphHopperGtfs;
+        private static GraphHopperConfig ghConfig;
+        static PtRouterTripBasedImpl ptRouter;
+
+        @BeforeAll
+        static void init() {
+            ghConfig = new GraphHopperConfig();
+            ghConfig.putObject("graph.location", GRAPH_LOC);
+            ghConfig.putObject("import.osm.ignored_highways", "");
+            ghConfig.putObject("datareader.file", "files/beatty.osm");
+            ghConfig.putObject("gtfs.file", "files/sample-feed,files/another-sample-feed");
+            ghConfig.putObject("gtfs.raptor", true);
+            ghConfig.putObject("gtfs.access_egress_table_walk_time_seconds", 3600);
+            ghConfig.putObject("graph.encoded_values", "foot_access, foot_priority, foot_average_speed, car_access, car_average_speed");
+            ghConfig.setProfiles(List.of(
+                    TestProfiles.accessSpeedAndPriority("foot"),
+                    TestProfiles.accessAndSpeed("car")));
+            Helper.removeDir(new File(GRAPH_LOC));
+            graphHopperGtfs = new GraphHopperGtfs(ghConfig);
+            graphHopperGtfs.init(ghConfig);
+            graphHopperGtfs.importOrLoad();
+            ptRouter = new PtRouterTripBasedImpl(graphHopperGtfs, ghConfig, new TranslationMap().doImport(), graphHopperGtfs.getBaseGraph(), graphHopperGtfs.getEncodingManager(), graphHopperGtfs.getLocationIndex(), graphHopperGtfs.getGtfsStorage(), graphHopperGtfs.getPathDetailsBuilderFactory());
+        }
+
+        public GraphHopperGtfs graphHopperGtfs() {
+            return graphHopperGtfs;
+        }
+
+        public PtRouterTripBasedImpl ptRouter() {
+            return ptRouter;
+        }
+
+        @Test
+        void testRaptorData() {
+            RaptorData raptorData = graphHopperGtfs.getGtfsStorage().getRaptorData();
+            int airport = raptorData.getStopIndex(new GtfsStorage.FeedIdWithStopId("gtfs_1", "AIRPORT"));
+            assertTrue(airport >= 0);
+            assertEquals(-1, raptorData.getStopIndex(new GtfsStorage.FeedIdWithStopId("gtfs_1", "NO_SUCH_STOP")));
+            // every trip is part of exactly one pattern
+            assertEquals(graphHopperGtfs.getGtfsStorage().getTrips().trips.size(), raptorData.getTrips());
+        }
+
+        @Test
+        void testAccessEgressTable() {
+            GtfsStorage gtfsStorage = graphHopperGtfs.getGtfsStorage();
+            AccessEgressTable table = gtfsStorage.getAccessEgressTable();
+            assertNotNull(table);
+            for (int stationNode : gtfsStorage.getStationNodes().values()) {
+                int streetNode = gtfsStorage.getPtToStreet().get(stationNode);
+                for (boolean egress : new boolean[]{false, true}) {
+                    boolean found = false;
+                    for (int entry = table.getFirstEntry(streetNode, egress); entry < table.getEndEntry(streetNode, egress); entry++) {
+                        assertTrue(table.getMillis(entry, egress) <= table.getMaxWalkMillis());
+                        if (table.getStationNode(entry, egress) == stationNode) {
+                            assertEquals(0, table.getMillis(entry, egress));
+                            found = true;
+                        }
+                    }
+                    assertTrue(found, "station " + stationNode + " is reachable from its own street node");
+                }
+            }
+        }
+
+        @Test
+        void testAccessibility() {
+            PtAccessibility accessibility = new PtAccessibility(ghConfig, graphHopperGtfs.getBaseGraph(), graphHopperGtfs.getEncodingManager(), graphHopperGtfs.getLocationIndex(), graphHopperGtfs.getGtfsStorage())
+                    .setEarliestDepartureTime(LocalDateTime.of(2007, 1, 1, 8, 30, 0).atZone(zoneId).toInstant())
+                    .setDepartureWindow(Duration.ofHours(1), 600)
+                    .setMaxTravelTimeSeconds(3 * 3600)
+                    .setWalkSpeedKmH(0.005); // Prevent walking to other stations
+            RaptorData raptorData = accessibility.getRaptorData();
+            int justiceCourt = raptorData.getStopIndex(new GtfsStorage.FeedIdWithStopId("gtfs_1", "JUSTICE_COURT"));
+            int museum = raptorData.getStopIndex(new GtfsStorage.FeedIdWithStopId("gtfs_1", "MUSEUM"));
+            assertEquals(7, accessibility.getDepartures());
+            List<Integer> origins = new ArrayList<>();
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            accessibility.calcTravelTimes(Arrays.asList(new GHStationLocation("JUSTICE_COURT"), new GHStationLocation("JUSTICE_COURT")), (origin, travelTimes) -> {
+                synchronized (origins) {
+                    origins.add(origin);
+                }
+                assertEquals(7, travelTimes.getDepartures());
+                assertEquals(0, travelTimes.getMinTravelTime(justiceCourt));
+                assertEquals(7, travelTimes.getReachedDepartures(justiceCourt));
+                // see testRoute1, the travel time includes the wait time
+                assertTrue(travelTimes.getMinTravelTime(museum) > 0);
+                assertTrue(travelTimes.getMinTravelTime(museum) <= time(1, 30) / 1000);
+                assertTrue(travelTimes.getAvgTravelTime(museum) >= travelTimes.getMinTravelTime(museum));
+            }, executor, 2);
+            executor.shutdown();
+            assertThat(origins).containsExactlyInAnyOrder(0, 1);
+        }
+
+        @Test
+        void testScheduleStorage() {
+            ScheduleStorage schedule = graphHopperGtfs.getGtfsStorage().getSchedule();
+            Trips trips = graphHopperGtfs.getGtfsStorage().getTrips();
+            assertEquals(trips.trips.size(), schedule.getTrips());
+            for (GTFSFeed.StopTimesForTripWithTripPatternKey trip : trips.trips) {
+                assertEquals(trip.feedId, schedule.getString(schedule.getFeed(trip.idx)));
+                assertEquals(trip.trip.trip_id, schedule.getTripId(trip.idx));
+                assertEquals(trip.trip.route_id, schedule.getRouteId(trip.idx));
+                List<StopTime> stopTimes = trip.stopTimes.stream().filter(Objects::nonNull).collect(Collectors.toList());
+                assertEquals(stopTimes.size(), schedule.getStopTimeCount(trip.idx));
+                for (int i = 0; i < stopTimes.size(); i++) {
+                    int stopTime = schedule.getFirstStopTime(trip.idx) + i;
+                    assertEquals(stopTimes.get(i).stop_id, schedule.getString(schedule.getStop(stopTime)));
+                    assertEquals(stopTimes.get(i).stop_sequence, schedule.getStopSequence(stopTime));
+                    assertEquals(stopTimes.get(i).arrival_time, schedule.getArrivalTime(stopTime));
+                    assertEquals(stopTimes.get(i).departure_time, schedule.getDepartureTime(stopTime));
+                }
+                for (LocalDate day = LocalDate.of(2006, 12, 30); day.isBefore(LocalDate.of(2007, 1, 10)); day = day.plusDays(1))
+                    assertEquals(trip.service.activeOn(day), schedule.isActive(schedule.getService(trip.idx), day), trip.trip.trip_id + " " + day);
+            }
+        }
+
+        @Test
+        void testLoadWithoutScheduleStorage() {
+            // graphs imported before the schedule storage existed do not have its files
+            String location = GRAPH_LOC + "-without-schedule";
+            GraphHopperConfig config = new GraphHopperConfig(ghConfig).putObject("graph.location", location);
+            Helper.removeDir(new File(location));
+            GraphHopperGtfs hopper = new GraphHopperGtfs(config);
+            hopper.init(config);
+            hopper.importOrLoad();
+            int trips = hopper.getGtfsStorage().getSchedule().getTrips();
+            hopper.close();
+            File[] scheduleFiles = new File(location).listFiles((dir, name) -> name.startsWith("schedule_"));
+            assertEquals(6, scheduleFiles.length);
+            for (File file : scheduleFiles)
+                assertTrue(file.delete());
+
+            hopper = new GraphHopperGtfs(config);
+            hopper.init(config);
+            hopper.importOrLoad();
+            assertEquals(trips, hopper.getGtfsStorage().getSchedule().getTrips());
+            assertTrue(hopper.getGtfsStorage().getRaptorData().getTrips() > 0);
+            hopper.close();
+            // the schedule that was created from the feeds was stored
+            assertEquals(6, new File(location).listFiles((dir, name) -> name.startsWith("schedule_")).length);
+
+            hopper = new GraphHopperGtfs(config);
+            hopper.init(config);
+            hopper.importOrLoad();
+            assertEquals(trips, hopper.getGtfsStorage().getSchedule().getTrips());
+            hopper.close();
+            Helper.removeDir(new File(location));
+        }
+
+        @AfterAll
+        public static void close() {
+            graphHopperGtfs.close();
+        }
+    }
+
     class DefaultPtRouterTest implements AnotherAgencyIT<PtRouterImpl> {
 
         private static GraphHopperGtfs graphHopperGtfs;
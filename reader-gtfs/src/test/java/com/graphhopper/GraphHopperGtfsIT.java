@@ -102,14 +102,14 @@ public interface GraphHopperGtfsIT<T extends PtRouter> {
 
         @Test
         public void testTransferForRoute5IsAvailable() {
-            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().tripTransfers;
+            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().getTrips();
             int tripIdx = findTrip("STBA", LocalTime.of(7, 50), 2, ARRIVAL);
-            Collection<Trips.TripAtStopTime> transferDestinations = tripTransfers.getTripTransfers(LocalDate.of(2007, 1, 1)).get(new Trips.TripAtStopTime(tripIdx, 2));
+            Collection<Trips.TripAtStopTime> transferDestinations = graphHopperGtfs().getGtfsStorage().getTripTransfers(LocalDate.of(2007, 1, 1)).getTransfers(new Trips.TripAtStopTime(tripIdx, 2));
             assertThat(transferDestinations).extracting(td -> print(td, tripTransfers, DEPARTURE)).contains("4 AB1 @ 1 BEATTY_AIRPORT 28800");
         }
 
         private int findTrip(String tripId, LocalTime time, int stopSequence, Trips.TripAtStopTime.ArrivalDeparture arrivalDeparture) {
-            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().tripTransfers;
+            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().getTrips();
             int tripIdx = 0;
             for (GTFSFeed.StopTimesForTripWithTripPatternKey trip : tripTransfers.trips) {
                 if (trip.trip.trip_id.equals(tripId) && LocalTime.ofSecondOfDay(arrivalDeparture == ARRIVAL ? trip.stopTimes.get(stopSequence).arrival_time : trip.stopTimes.get(stopSequence).departure_time).equals(time)) {
@@ -22,6 +22,7 @@ import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.gtfs.GraphHopperGtfs;
 import com.graphhopper.gtfs.PtRouter;
 import com.graphhopper.gtfs.PtRouterImpl;
+import com.graphhopper.gtfs.RealtimeFeed;
 import com.graphhopper.gtfs.Request;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.util.Helper;
@@ -114,6 +115,62 @@ public class RealtimeIT {
         assertTrue(((Trip.PtLeg) impossibleAlternative.getLegs().get(0)).stops.get(0).departureCancelled);
     }
 
+    @Test
+    public void testIncrementalUpdate() {
+        final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
+        final double TO_LAT = 36.914944, TO_LON = -116.761472; // NANAA stop
+        Request ghRequest = new Request(
+                FROM_LAT, FROM_LON,
+                TO_LAT, TO_LON
+        );
+        ghRequest.setEarliestDepartureTime(LocalDateTime.of(2007, 1, 1, 6, 44).atZone(zoneId).toInstant());
+
+        final GtfsRealtime.FeedMessage.Builder feedMessageBuilder = GtfsRealtime.FeedMessage.newBuilder();
+        feedMessageBuilder.setHeader(GtfsRealtime.FeedHeader.newBuilder()
+                .setGtfsRealtimeVersion("1")
+                .setTimestamp(ZonedDateTime.of(LocalDate.of(2007, 1, 1), LocalTime.of(0, 0), zoneId).toEpochSecond()));
+        feedMessageBuilder.addEntityBuilder()
+                .setId("1")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("AB1"))
+                .addStopTimeUpdateBuilder()
+                .setScheduleRelationship(SCHEDULED)
+                .setStopSequence(1)
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(0).build());
+        GtfsRealtime.FeedMessage first = feedMessageBuilder.build();
+        RealtimeFeed previous = graphHopperFactory.updateRealtimeFeed(RealtimeFeed.empty(), first);
+        assertSame(previous, graphHopperFactory.updateRealtimeFeed(previous, first), "Unchanged feed, nothing to do");
+
+        // The next fetch additionally says that the 6:00 departure of my line is going to skip my departure stop
+        feedMessageBuilder.getHeaderBuilder().setTimestamp(ZonedDateTime.of(LocalDate.of(2007, 1, 1), LocalTime.of(0, 1), zoneId).toEpochSecond());
+        feedMessageBuilder.addEntityBuilder()
+                .setId("2")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY2").setStartTime("06:00:00"))
+                .addStopTimeUpdateBuilder()
+                .setStopSequence(3)
+                .setScheduleRelationship(SKIPPED);
+        RealtimeFeed updated = graphHopperFactory.updateRealtimeFeed(previous, feedMessageBuilder.build());
+        assertNotSame(previous, updated);
+
+        GHResponse response = graphHopperFactory.createWith(updated).route(ghRequest);
+        ResponsePath possibleAlternative = response.getAll().stream().filter(a -> !a.isImpossible()).findFirst().get();
+        assertEquals(time(0, 35), possibleAlternative.getTime(), 0.1, "I have to wait half an hour for the next one (and ride 5 minutes)");
+        ResponsePath impossibleAlternative = response.getAll().stream().filter(a -> a.isImpossible()).findFirst().get();
+        assertTrue(((Trip.PtLeg) impossibleAlternative.getLegs().get(0)).stops.get(0).departureCancelled);
+
+        // The previous snapshot is not affected
+        GHResponse responseWithPrevious = graphHopperFactory.createWith(previous).route(ghRequest);
+        assertTrue(responseWithPrevious.getAll().stream().noneMatch(ResponsePath::isImpossible));
+
+        // The fetch after that does not contain the skipped stop anymore, so its effect is removed again
+        feedMessageBuilder.getHeaderBuilder().setTimestamp(ZonedDateTime.of(LocalDate.of(2007, 1, 1), LocalTime.of(0, 2), zoneId).toEpochSecond());
+        feedMessageBuilder.removeEntity(1);
+        RealtimeFeed reverted = graphHopperFactory.updateRealtimeFeed(updated, feedMessageBuilder.build());
+        GHResponse responseWithReverted = graphHopperFactory.createWith(reverted).route(ghRequest);
+        assertTrue(responseWithReverted.getAll().stream().noneMatch(ResponsePath::isImpossible));
+    }
+
     @Test
     public void testHeavyDelayWhereWeShouldTakeOtherTripInstead() {
         final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
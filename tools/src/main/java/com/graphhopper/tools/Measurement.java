@@ -26,10 +26,16 @@ import com.graphhopper.config.CHProfile;
 import com.graphhopper.config.LMProfile;
 import com.graphhopper.config.Profile;
 import com.graphhopper.jackson.Jackson;
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.lm.LMConfig;
+import com.graphhopper.routing.lm.LMRoutingAlgorithmFactory;
+import com.graphhopper.routing.lm.LandmarkStorage;
 import com.graphhopper.routing.lm.PrepareLandmarks;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.weighting.Weighting;
@@ -40,6 +46,7 @@ import com.graphhopper.util.*;
 import com.graphhopper.util.Parameters.Algorithms;
 import com.graphhopper.util.Parameters.CH;
 import com.graphhopper.util.Parameters.Landmark;
+import com.graphhopper.util.exceptions.ConnectionNotFoundException;
 import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 import org.slf4j.Logger;
@@ -55,6 +62,9 @@ import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -183,6 +193,8 @@ public class Measurement {
             final boolean runSlow = args.getBool("measurement.run_slow_routing", true);
             printGraphDetails(g, vehicle);
             measureGraphTraversal(g, accessEnc, count * 100);
+            if (withTurnCosts)
+                measureTurnCostLookup(g, encodingManager.getTurnBooleanEncodedValue(TurnRestriction.key("profile_tc")), count * 100);
             measureLocationIndex(g, hopper.getLocationIndex(), count);
 
             if (runSlow) {
@@ -219,6 +231,8 @@ public class Measurement {
                                         activeLandmarks(activeLMCount).edgeBased().alternative());
                             }
                         });
+                Helper.parseList(args.getString("measurement.lm.weight_bits", "[16,12,8]")).stream()
+                        .mapToInt(Integer::parseInt).forEach(weightBits -> measureLMWeightBits(hopper, weightBits, count / 20));
             }
 
             if (hopper.getCHPreparationHandler().isEnabled()) {
@@ -264,6 +278,13 @@ public class Measurement {
                             withPoints(100).edgeBased().sod().withInstructions().simplify().pathDetails());
                 }
             }
+            int concurrency = args.getInt("measurement.concurrency", 0);
+            if (concurrency > 0) {
+                if (runSlow)
+                    measureThroughput(hopper, "throughput", count / 20, concurrency, false);
+                if (hopper.getCHGraphs().containsKey("profile_no_tc"))
+                    measureThroughput(hopper, "throughputCH", count, concurrency, true);
+            }
             measureCountryAreaIndex(count);
 
         } catch (Exception ex) {
@@ -456,6 +477,83 @@ public class Measurement {
         print("unit_tests.get_edge_state", miniPerf);
     }
 
+    /**
+     * Looks up the turn restrictions of all pairs of edges at random via nodes that have turn cost entries. Compare the
+     * results of runs with and without graph.turn_cost_index to see the difference between the binary search in the
+     * sorted entries and the walk along the linked list.
+     */
+    private void measureTurnCostLookup(final BaseGraph graph, BooleanEncodedValue turnRestrictionEnc, int count) {
+        final Random rand = new Random(seed);
+        TurnCostStorage turnCostStorage = graph.getTurnCostStorage();
+        IntArrayList viaNodes = new IntArrayList();
+        TurnCostStorage.Iterator tcIter = turnCostStorage.getAllTurnCosts();
+        while (tcIter.next())
+            if (viaNodes.isEmpty() || viaNodes.get(viaNodes.size() - 1) != tcIter.getViaNode())
+                viaNodes.add(tcIter.getViaNode());
+        put("graph.turn_cost_index", turnCostStorage.hasTurnCostIndex());
+        if (viaNodes.isEmpty())
+            return;
+
+        final EdgeExplorer explorer = graph.createEdgeExplorer();
+        final IntArrayList edges = new IntArrayList();
+        MiniPerfTest miniPerf = new MiniPerfTest().setIterations(count).start((warmup, run) -> {
+            int viaNode = viaNodes.get(rand.nextInt(viaNodes.size()));
+            edges.clear();
+            EdgeIterator iter = explorer.setBaseNode(viaNode);
+            while (iter.next())
+                edges.add(iter.getEdge());
+            int restricted = 0;
+            for (int i = 0; i < edges.size(); i++)
+                for (int j = 0; j < edges.size(); j++)
+                    if (turnCostStorage.get(turnRestrictionEnc, edges.get(i), viaNode, edges.get(j)))
+                        restricted++;
+            return restricted;
+        });
+        print("unit_tests.turn_cost_lookup", miniPerf);
+    }
+
+    /**
+     * Prepares the landmarks of the profile without turn costs once more in memory, but with the given number of bits
+     * per weight, and calculates routes between random nodes with them. The routes are calculated on the base graph
+     * without instructions, so the time spent for the landmark weights is not hidden by the rest of the request.
+     */
+    private void measureLMWeightBits(final GraphHopper hopper, int weightBits, int count) {
+        final BaseGraph g = hopper.getBaseGraph();
+        final Weighting weighting = hopper.createWeighting(hopper.getProfile("profile_no_tc"), new PMap());
+        PrepareLandmarks prepare = new PrepareLandmarks(new GHDirectory("", DAType.RAM), g, hopper.getEncodingManager(),
+                new LMConfig("profile_no_tc", weighting), hopper.getLMPreparationHandler().getLandmarks());
+        prepare.setWeightBits(weightBits);
+        prepare.doWork();
+        LandmarkStorage lms = prepare.getLandmarkStorage();
+        String prefix = "routingLM8_weight_bits" + weightBits;
+        put(prefix + ".capacity", lms.getCapacity());
+
+        final RoutingAlgorithmFactory algoFactory = new LMRoutingAlgorithmFactory(lms);
+        final AlgorithmOptions algoOpts = new AlgorithmOptions().setAlgorithm(Algorithms.ASTAR_BI).
+                setTraversalMode(TraversalMode.NODE_BASED).setHints(new PMap().putObject(Landmark.ACTIVE_COUNT, 8));
+        final AtomicLong visitedNodesSum = new AtomicLong(0);
+        final AtomicInteger failedCount = new AtomicInteger(0);
+        final Random rand = new Random(seed);
+        MiniPerfTest miniPerf = new MiniPerfTest().setIterations(count).start((warmup, run) -> {
+            RoutingAlgorithm algo = algoFactory.createAlgo(g, weighting, algoOpts);
+            try {
+                Path path = algo.calcPath(rand.nextInt(maxNode), rand.nextInt(maxNode));
+                if (!warmup)
+                    visitedNodesSum.addAndGet(algo.getVisitedNodes());
+                return path.getEdgeCount();
+            } catch (ConnectionNotFoundException ex) {
+                // the nodes are in different subnetworks
+                if (!warmup)
+                    failedCount.incrementAndGet();
+                return 0;
+            }
+        });
+        put(prefix + ".failed_count", failedCount.get());
+        put(prefix + ".visited_nodes_mean", (float) visitedNodesSum.get() / Math.max(1, count - failedCount.get()));
+        print(prefix, miniPerf);
+        lms.close();
+    }
+
     private void measureGraphTraversalCH(final RoutingCHGraph lg, int count) {
         final Random rand = new Random(seed);
         final int maxEdgesId = lg.getEdges();
@@ -658,6 +756,60 @@ public class Measurement {
         print(prefix, miniPerf);
     }
 
+    /**
+     * Measures the throughput of concurrent route requests, once on a fixed pool of platform threads (like the default
+     * Jetty thread pool) and once on virtual threads where the number of concurrent calculations is bounded by a
+     * semaphore of the same size (like server.enable_virtual_threads together with the ComputeLimiter).
+     */
+    private void measureThroughput(final GraphHopper hopper, String prefix, int count, int concurrency, boolean ch) {
+        final Graph g = hopper.getBaseGraph();
+        final NodeAccess na = g.getNodeAccess();
+        Weighting weighting = hopper.createWeighting(hopper.getProfile("profile_no_tc"), new PMap());
+        final EdgeExplorer edgeExplorer = g.createEdgeExplorer(new DefaultSnapFilter(weighting,
+                hopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key("profile_no_tc"))));
+        final Random rand = new Random(seed);
+        List<GHRequest> requests = new ArrayList<>(count);
+        while (requests.size() < count) {
+            int from = rand.nextInt(maxNode), to = rand.nextInt(maxNode);
+            if (GHUtility.count(edgeExplorer.setBaseNode(from)) == 0 || GHUtility.count(edgeExplorer.setBaseNode(to)) == 0)
+                continue;
+            GHRequest req = new GHRequest(na.getLat(from), na.getLon(from), na.getLat(to), na.getLon(to)).setProfile("profile_no_tc");
+            req.getHints().putObject(CH.DISABLE, !ch).putObject(Landmark.DISABLE, true);
+            requests.add(req);
+        }
+
+        for (boolean virtual : new boolean[]{false, true}) {
+            gcAndWait();
+            final Semaphore semaphore = new Semaphore(concurrency);
+            final AtomicInteger failedCount = new AtomicInteger(0);
+            final AtomicLong pointSum = new AtomicLong(0);
+            StopWatch sw = new StopWatch().start();
+            try (ExecutorService executor = virtual ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(concurrency)) {
+                for (GHRequest req : requests) {
+                    executor.submit(() -> {
+                        semaphore.acquireUninterruptibly();
+                        try {
+                            GHResponse rsp = hopper.route(req);
+                            if (rsp.hasErrors())
+                                failedCount.incrementAndGet();
+                            else
+                                pointSum.addAndGet(rsp.getBest().getPoints().size());
+                        } finally {
+                            semaphore.release();
+                        }
+                    });
+                }
+            }
+            sw.stop();
+            String key = prefix + (virtual ? "_virtual" : "_platform");
+            float requestsPerSecond = count / sw.getSeconds();
+            logger.info(key + ": " + requestsPerSecond + " requests/s, concurrency: " + concurrency + ", dummy: " + pointSum.get());
+            put(key + ".requests_per_second", requestsPerSecond);
+            put(key + ".failed_count", failedCount.get());
+            put(key + ".concurrency", concurrency);
+        }
+    }
+
     void print(String prefix, MiniPerfTest perf) {
         logger.info(prefix + ": " + perf.getReport());
         put(prefix + ".sum", perf.getSum());
@@ -22,7 +22,6 @@ import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.NodeAccess;
-import com.graphhopper.routing.SPTEntry;
 import com.graphhopper.util.EdgeIteratorState;
 
 import java.awt.*;
@@ -47,10 +46,10 @@ public class DebugAStar extends AStar implements DebugAlgo {
     }
 
     @Override
-    public void updateBestPath(EdgeIteratorState es, SPTEntry bestEE, int currLoc) {
+    public void updateBestPath(EdgeIteratorState es, int currLoc) {
         if (g2 != null) {
-            mg.plotEdge(g2, na.getLat(bestEE.parent.adjNode), na.getLon(bestEE.parent.adjNode), na.getLat(currLoc), na.getLon(currLoc), .8f);
+            mg.plotEdge(g2, na.getLat(es.getBaseNode()), na.getLon(es.getBaseNode()), na.getLat(es.getAdjNode()), na.getLon(es.getAdjNode()), .8f);
         }
-        super.updateBestPath(es, bestEE, currLoc);
+        super.updateBestPath(es, currLoc);
     }
 }
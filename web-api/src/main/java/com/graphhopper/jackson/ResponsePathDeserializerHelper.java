@@ -275,6 +275,9 @@ public class ResponsePathDeserializerHelper {
             } else if (exClass.equals(PointOutOfBoundsException.class.getName())) {
                 int pointIndex = error.get(PointNotFoundException.INDEX_KEY).asInt();
                 errors.add(new PointOutOfBoundsException(exMessage, pointIndex));
+            } else if (exClass.equals(ProfileNotReadyException.class.getName())) {
+                errors.add(new ProfileNotReadyException(exMessage, error.get(ProfileNotReadyException.PROFILE_KEY).asText(),
+                        error.get(ProfileNotReadyException.RETRYABLE_KEY).asBoolean()));
             } else if (exClass.isEmpty())
                 errors.add(new DetailedRuntimeException(exMessage, toMap(objectMapper, error)));
             else
@@ -159,6 +159,11 @@ public class Parameters {
          * This property name in HintsMap configures at runtime if CH routing should be ignored.
          */
         public static final String DISABLE = "ch.disable";
+        /**
+         * Algorithm option to calculate only the distance and time of a route using the stored shortcut aggregates.
+         * This is set automatically for requests without points, instructions and path details.
+         */
+        public static final String DISTANCE_AND_TIME_ONLY = "ch.distance_and_time_only";
     }
 
     /**
@@ -184,6 +189,48 @@ public class Parameters {
         public static final String COUNT = PREPARE + "landmarks";
     }
 
+    /**
+     * Properties for routing with the multi-level overlay (cell partition) speedup
+     */
+    public static final class MLD {
+        public static final String PREPARE = "prepare.mld.";
+        /**
+         * This property name in HintsMap configures at runtime if the overlay routing should be ignored.
+         */
+        public static final String DISABLE = "mld.disable";
+        /**
+         * Specifies the maximum number of nodes per cell. Zero disables the partition.
+         */
+        public static final String CELL_SIZE = PREPARE + "cell_size";
+        /**
+         * Specifies how many customized overlays (one per profile and custom model) are kept in memory
+         */
+        public static final String CACHE_SIZE = ROUTING_INIT_PREFIX + "mld.cache_size";
+        /**
+         * Specifies how many overlays are created at the same time
+         */
+        public static final String MAX_CUSTOMIZATIONS = ROUTING_INIT_PREFIX + "mld.max_customizations";
+        /**
+         * Specifies how long a request may wait for and spend on creating an overlay
+         */
+        public static final String CUSTOMIZATION_TIMEOUT_MS = ROUTING_INIT_PREFIX + "mld.customization_timeout_ms";
+        /**
+         * Specifies if the overlay routing is used instead of LM for profiles that have both
+         */
+        public static final String PREFER_OVER_LM = ROUTING_INIT_PREFIX + "mld.prefer_over_lm";
+    }
+
+    /**
+     * Properties for the hub label distance oracle
+     */
+    public static final class HubLabels {
+        public static final String PREPARE = "prepare.hl.";
+        /**
+         * Comma separated list of CH profiles (without turn costs) for which hub labels should be created
+         */
+        public static final String PROFILES = PREPARE + "profiles";
+    }
+
     /**
      * Properties for non-CH routing
      */
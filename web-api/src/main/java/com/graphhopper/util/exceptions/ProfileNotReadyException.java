@@ -0,0 +1,44 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util.exceptions;
+
+import java.util.Map;
+
+/**
+ * Thrown if a profile cannot be used, because the data it needs was not loaded (yet). Unlike the other exceptions
+ * this is not a problem of the request. If the data is still loading the request can be repeated later.
+ */
+public class ProfileNotReadyException extends DetailedRuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String PROFILE_KEY = "profile";
+    public static final String RETRYABLE_KEY = "retryable";
+
+    public ProfileNotReadyException(String message, String profile, boolean retryable) {
+        super(message, Map.of(PROFILE_KEY, profile, RETRYABLE_KEY, retryable));
+    }
+
+    public String getProfile() {
+        return (String) getDetails().get(PROFILE_KEY);
+    }
+
+    public boolean isRetryable() {
+        return (boolean) getDetails().get(RETRYABLE_KEY);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.shapes.GHPoint;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of concurrently executed routing requests per cost class. A request is first classified by a
+ * cheap estimate of its cost (CH or not, beeline distance, number of points, isochrone limit) and then has to acquire
+ * a permit from the budget of its class. Expensive requests like long flexible routes or big isochrones can therefore
+ * not occupy all server threads and the cheap majority of requests (usually CH) stays fast during bursts.
+ * <p>
+ * If the budget of a class is exhausted the request waits for at most routing.admission.queue_timeout_ms. If too many
+ * requests are already waiting the request is rejected immediately with 429, if the timeout is reached it is
+ * rejected with 503.
+ */
+public class AdmissionControl {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControl.class);
+
+    public enum CostClass {CHEAP, MEDIUM, EXPENSIVE}
+
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Permit NO_OP = () -> {
+    };
+
+    private final boolean enabled;
+    private final double expensiveDistance;
+    private final long expensiveIsochroneSeconds;
+    private final long queueTimeoutMillis;
+    private final Map<CostClass, Budget> budgets = new EnumMap<>(CostClass.class);
+
+    public AdmissionControl(GraphHopperConfig config) {
+        enabled = config.getBool("routing.admission.enabled", false);
+        expensiveDistance = config.getDouble("routing.admission.expensive_distance", 200_000);
+        expensiveIsochroneSeconds = config.getLong("routing.admission.expensive_isochrone_time", 1800);
+        queueTimeoutMillis = config.getLong("routing.admission.queue_timeout_ms", 1000);
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int maxQueued = config.getInt("routing.admission.max_queued", 2 * cpus);
+        budgets.put(CostClass.CHEAP, new Budget(config.getInt("routing.admission.cheap.max_concurrent", 4 * cpus), maxQueued));
+        budgets.put(CostClass.MEDIUM, new Budget(config.getInt("routing.admission.medium.max_concurrent", cpus), maxQueued));
+        budgets.put(CostClass.EXPENSIVE, new Budget(config.getInt("routing.admission.expensive.max_concurrent", Math.max(1, cpus / 2)), maxQueued));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Classifies a route request. Requests that are answered via CH are always cheap, because their run time does
+     * hardly depend on the distance. For LM and flexible requests the summed beeline distance between the points
+     * is used.
+     */
+    public CostClass classifyRoute(GraphHopper graphHopper, GHRequest request) {
+        boolean ch = graphHopper.getCHGraphs().containsKey(request.getProfile())
+                && !request.getHints().getBool(Parameters.CH.DISABLE, false)
+                && request.getCustomModel() == null;
+        return classifyRoute(ch, request.getPoints());
+    }
+
+    CostClass classifyRoute(boolean ch, List<GHPoint> points) {
+        if (ch)
+            return CostClass.CHEAP;
+        double beeline = 0;
+        for (int i = 1; i < points.size(); i++) {
+            GHPoint from = points.get(i - 1), to = points.get(i);
+            if (from == null || to == null)
+                continue;
+            beeline += DistanceCalcEarth.DIST_EARTH.calcDist(from.lat, from.lon, to.lat, to.lon);
+        }
+        // every additional point requires another search even if the legs are short
+        double cost = beeline + Math.max(0, points.size() - 2) * expensiveDistance / 20;
+        return cost > expensiveDistance ? CostClass.EXPENSIVE : CostClass.MEDIUM;
+    }
+
+    /**
+     * Classifies an isochrone or shortest path tree request, which never uses CH. Only the limit is known in
+     * advance, distance and weight limits are converted to time with a rough average speed.
+     */
+    public CostClass classifyIsochrone(long timeLimitInSeconds, long distanceLimitInMeter) {
+        long seconds = distanceLimitInMeter > 0 ? Math.round(distanceLimitInMeter / 15.0) : timeLimitInSeconds;
+        return seconds > expensiveIsochroneSeconds ? CostClass.EXPENSIVE : CostClass.MEDIUM;
+    }
+
+    /**
+     * Acquires a permit for the specified class and throws a WebApplicationException (429 or 503) if this is not
+     * possible. Use the returned Permit in a try-with-resources block.
+     */
+    public Permit acquire(CostClass costClass) {
+        if (!enabled)
+            return NO_OP;
+        Budget budget = budgets.get(costClass);
+        if (budget.permits.tryAcquire())
+            return budget::release;
+
+        if (budget.waiting.incrementAndGet() > budget.maxQueued) {
+            budget.waiting.decrementAndGet();
+            throw reject(Response.Status.TOO_MANY_REQUESTS, costClass);
+        }
+        try {
+            if (!budget.permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS))
+                throw reject(Response.Status.SERVICE_UNAVAILABLE, costClass);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw reject(Response.Status.SERVICE_UNAVAILABLE, costClass);
+        } finally {
+            budget.waiting.decrementAndGet();
+        }
+        return budget::release;
+    }
+
+    int getAvailablePermits(CostClass costClass) {
+        return budgets.get(costClass).permits.availablePermits();
+    }
+
+    private WebApplicationException reject(Response.Status status, CostClass costClass) {
+        String message = "Server is busy with " + Helper.toLowerCase(costClass.name()) + " requests, please try again later";
+        logger.info(status.getStatusCode() + " " + message);
+        return new WebApplicationException(Response.status(status).
+                header("Retry-After", Math.max(1, queueTimeoutMillis / 1000)).
+                entity(new JsonErrorEntity(Collections.singletonList(message))).
+                type(MediaType.APPLICATION_JSON).
+                build());
+    }
+
+    private static class Budget {
+        final Semaphore permits;
+        final AtomicInteger waiting = new AtomicInteger();
+        final int maxQueued;
+
+        Budget(int maxConcurrent, int maxQueued) {
+            if (maxConcurrent < 1)
+                throw new IllegalArgumentException("max_concurrent must be at least 1 but was " + maxConcurrent);
+            this.permits = new Semaphore(maxConcurrent, true);
+            this.maxQueued = maxQueued;
+        }
+
+        void release() {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopperConfig;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounds the number of concurrently executed CPU-heavy sections (route calculation, isochrone search, map matching)
+ * when requests are served on virtual threads, i.e. when Jetty is configured with server.enable_virtual_threads.
+ * Without such a bound the number of concurrent searches is unlimited and all of them compete for the carrier
+ * threads. On platform threads the size of the Jetty thread pool already limits the concurrency and this class
+ * does nothing.
+ */
+public class ComputeLimiter {
+
+    private static final AdmissionControl.Permit NO_OP = () -> {
+    };
+
+    private final Semaphore permits;
+
+    public ComputeLimiter(GraphHopperConfig config) {
+        int count = config.getInt("routing.virtual_threads.compute_permits", Runtime.getRuntime().availableProcessors());
+        if (count < 1)
+            throw new IllegalArgumentException("routing.virtual_threads.compute_permits must be at least 1 but was " + count);
+        permits = new Semaphore(count);
+    }
+
+    /**
+     * Blocks until the calling thread may execute a CPU-heavy section. For virtual threads this unmounts the thread
+     * from its carrier while waiting. Use the returned Permit in a try-with-resources block.
+     */
+    public AdmissionControl.Permit enter() {
+        if (!Thread.currentThread().isVirtual())
+            return NO_OP;
+        permits.acquireUninterruptibly();
+        return permits::release;
+    }
+
+    int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+}
@@ -45,6 +45,8 @@ import org.apache.hc.client5.http.classic.HttpClient;
 import org.glassfish.hk2.api.Factory;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
 
+import java.util.concurrent.ExecutorService;
+
 public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConfiguration> {
 
     static class TranslationMapFactory implements Factory<TranslationMap> {
@@ -282,6 +284,8 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
                 bind(graphHopper).to(GraphHopper.class);
 
                 bind(new JTSTriangulator(graphHopper.getRouterConfig())).to(Triangulator.class);
+                bind(new AdmissionControl(configuration.getGraphHopperConfiguration())).to(AdmissionControl.class);
+                bind(new ComputeLimiter(configuration.getGraphHopperConfiguration())).to(ComputeLimiter.class);
                 bindFactory(MapMatchingRouterFactoryFactory.class).to(MapMatchingResource.MapMatchingRouterFactory.class);
                 bindFactory(PathDetailsBuilderFactoryFactory.class).to(PathDetailsBuilderFactory.class);
                 bindFactory(ProfileResolverFactory.class).to(ProfileResolver.class);
@@ -305,12 +309,18 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
             // These are pt-specific implementations of /route and /isochrone, but the same API.
             // We serve them under different paths (/route-pt and /isochrone-pt), and forward
             // requests for ?vehicle=pt there.
+            // the accessibility calculations of all requests share these threads
+            int accessibilityThreads = PtAccessibilityResource.getThreads(configuration.getGraphHopperConfiguration());
+            final ExecutorService accessibilityExecutor = environment.lifecycle().executorService("pt-accessibility-%d")
+                    .minThreads(accessibilityThreads).maxThreads(accessibilityThreads).build();
             environment.jersey().register(new AbstractBinder() {
                 @Override
                 protected void configure() {
+                    bind(accessibilityExecutor).to(ExecutorService.class).named("pt_accessibility");
                     if (configuration.getGraphHopperConfiguration().getBool("gtfs.free_walk", false)) {
                         bind(PtRouterFreeWalkImpl.class).to(PtRouter.class);
-                    } else if (configuration.getGraphHopperConfiguration().getBool("gtfs.trip_based", false)) {
+                    } else if (configuration.getGraphHopperConfiguration().getBool("gtfs.trip_based", false)
+                            || configuration.getGraphHopperConfiguration().getBool("gtfs.raptor", false)) {
                         bind(PtRouterTripBasedImpl.class).to(PtRouter.class);
                     } else {
                         bind(PtRouterImpl.class).to(PtRouter.class);
@@ -322,6 +332,7 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
             });
             environment.jersey().register(PtRouteResource.class);
             environment.jersey().register(PtIsochroneResource.class);
+            environment.jersey().register(PtAccessibilityResource.class);
             environment.jersey().register(PtMVTResource.class);
             environment.jersey().register(PtRedirectFilter.class);
         }
@@ -20,24 +20,45 @@ package com.graphhopper.http;
 
 import com.graphhopper.jackson.MultiException;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.exceptions.ProfileNotReadyException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.ExceptionMapper;
 import jakarta.ws.rs.ext.Provider;
+import java.util.Optional;
 
 @Provider
 public class MultiExceptionMapper implements ExceptionMapper<MultiException> {
     private static final Logger logger = LoggerFactory.getLogger(MultiExceptionMapper.class);
 
+    // the landmarks are loaded within seconds or minutes
+    private static final int RETRY_AFTER_SECONDS = 10;
+
     @Override
     public Response toResponse(MultiException e) {
         logger.info("bad request: " + (Helper.isEmpty(e.getMessage())
                 ? (e.getErrors().isEmpty() ? "unknown reason" : e.getErrors().toString())
                 : e.getErrors()));
-        return Response.status(Response.Status.BAD_REQUEST)
-                .entity(e)
-                .build();
+        return createResponse(e).build();
+    }
+
+    /**
+     * @return a 400 response for the given errors, unless they contain a {@link ProfileNotReadyException}. This is not
+     * a problem of the request and results in a 503 response instead, which includes a Retry-After header if the
+     * profile is still loading.
+     */
+    public static Response.ResponseBuilder createResponse(MultiException e) {
+        Optional<ProfileNotReadyException> notReady = e.getErrors().stream()
+                .filter(ProfileNotReadyException.class::isInstance)
+                .map(ProfileNotReadyException.class::cast)
+                .findFirst();
+        if (notReady.isEmpty())
+            return Response.status(Response.Status.BAD_REQUEST).entity(e);
+        Response.ResponseBuilder builder = Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(e);
+        if (notReady.get().isRetryable())
+            builder.header("Retry-After", RETRY_AFTER_SECONDS);
+        return builder;
     }
 }
@@ -19,11 +19,6 @@
 package com.graphhopper.http;
 
 import com.conveyal.gtfs.GTFSFeed;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListenableFutureTask;
 import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.config.Profile;
 import com.graphhopper.gtfs.*;
@@ -33,6 +28,8 @@ import io.dropwizard.lifecycle.Managed;
 import org.apache.hc.client5.http.classic.HttpClient;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.glassfish.hk2.api.Factory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import jakarta.inject.Inject;
 import java.io.IOException;
@@ -40,18 +37,20 @@ import java.net.URISyntaxException;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed {
 
+    private static final Logger logger = LoggerFactory.getLogger(RealtimeFeedLoadingCache.class);
+
     private final HttpClient httpClient;
     private final GraphHopperGtfs graphHopper;
     private final GraphHopperBundleConfiguration bundleConfiguration;
-    private ExecutorService executor;
-    private LoadingCache<String, RealtimeFeed> cache;
+    private ScheduledExecutorService executor;
+    private final AtomicReference<RealtimeFeed> realtimeFeed = new AtomicReference<>(RealtimeFeed.empty());
     private Map<String, Transfers> transfers;
 
     @Inject
@@ -67,44 +66,48 @@ public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed
         for (Map.Entry<String, GTFSFeed> entry : this.graphHopper.getGtfsStorage().getGtfsFeeds().entrySet()) {
             this.transfers.put(entry.getKey(), new Transfers(entry.getValue()));
         }
-        this.executor = Executors.newSingleThreadExecutor();
-        this.cache = CacheBuilder.newBuilder()
-                .maximumSize(1)
-                .refreshAfterWrite(1, TimeUnit.MINUTES)
-                .build(new CacheLoader<String, RealtimeFeed>() {
-                    public RealtimeFeed load(String key) {
-                        return fetchFeedsAndCreateGraph();
-                    }
+        // The first fetch happens before we accept requests, otherwise they would silently be answered without
+        // realtime information. If it fails the startup fails as well.
+        realtimeFeed.set(fetchFeedsAndCreateGraph(RealtimeFeed.empty()));
+        // Refresh in the background with a fixed delay instead of on access, so requests never wait for a fetch and
+        // always see the latest complete snapshot. Each snapshot is derived from the previous one, so only the
+        // trip updates that changed since the last fetch are recomputed.
+        long refreshMillis = Math.max(1000, bundleConfiguration.gtfsrealtime().getRefreshInterval().toMilliseconds());
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "gtfs-realtime-feed-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleWithFixedDelay(this::refresh, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+    }
 
-                    @Override
-                    public ListenableFuture<RealtimeFeed> reload(String key, RealtimeFeed oldValue) {
-                        ListenableFutureTask<RealtimeFeed> task = ListenableFutureTask.create(() -> fetchFeedsAndCreateGraph());
-                        executor.execute(task);
-                        return task;
-                    }
-                });
+    private void refresh() {
+        try {
+            long start = System.nanoTime();
+            realtimeFeed.set(fetchFeedsAndCreateGraph(realtimeFeed.get()));
+            logger.debug("Refreshed realtime feeds in {}ms", (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            // keep the last snapshot, and do not let the exception cancel the scheduled refreshes
+            logger.error("Could not refresh realtime feeds", e);
+        }
     }
 
     @Override
     public RealtimeFeed provide() {
-        try {
-            return cache.get("pups");
-        } catch (ExecutionException | RuntimeException e) {
-            e.printStackTrace();
-            return RealtimeFeed.empty();
-        }
+        return realtimeFeed.get();
     }
 
     @Override
     public void dispose(RealtimeFeed instance) {
-        this.executor.shutdown();
     }
 
     @Override
     public void stop() {
+        if (executor != null)
+            executor.shutdownNow();
     }
 
-    private RealtimeFeed fetchFeedsAndCreateGraph() {
+    private RealtimeFeed fetchFeedsAndCreateGraph(RealtimeFeed previous) {
         Map<String, GtfsRealtime.FeedMessage> feedMessageMap = new HashMap<>();
         for (FeedConfiguration configuration : bundleConfiguration.gtfsrealtime().getFeeds()) {
             try {
@@ -125,7 +128,7 @@ public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed
                 throw new RuntimeException(e);
             }
         }
-        return RealtimeFeed.fromProtobuf(graphHopper.getGtfsStorage(), this.transfers, feedMessageMap);
+        return previous.update(graphHopper.getGtfsStorage(), this.transfers, feedMessageMap);
     }
 
     private void validate(RealtimeFeed realtimeFeed) {
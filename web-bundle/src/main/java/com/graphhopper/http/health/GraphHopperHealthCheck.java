@@ -21,6 +21,8 @@ package com.graphhopper.http.health;
 import com.codahale.metrics.health.HealthCheck;
 import com.graphhopper.GraphHopper;
 
+import java.util.Map;
+
 public class GraphHopperHealthCheck extends HealthCheck {
 
     private final GraphHopper graphHopper;
@@ -37,6 +39,17 @@ public class GraphHopperHealthCheck extends HealthCheck {
         if (!graphHopper.getFullyLoaded()) {
             return Result.unhealthy("GraphHopper is not fully loaded.");
         }
-        return Result.healthy();
+        // profiles whose landmarks are still loaded in the background are rejected with a retryable 503 until they
+        // are ready, but the instance is healthy. the state of every profile is listed in the details
+        Map<String, GraphHopper.ProfileState> profileStates = graphHopper.getProfileStates();
+        if (profileStates.containsValue(GraphHopper.ProfileState.FAILED)) {
+            return Result.builder().unhealthy().withMessage("Some profiles could not be loaded.")
+                    .withDetail("profiles", profileStates).build();
+        }
+        if (profileStates.containsValue(GraphHopper.ProfileState.LOADING)) {
+            return Result.builder().healthy().withMessage("Some profiles are still loading.")
+                    .withDetail("profiles", profileStates).build();
+        }
+        return Result.builder().healthy().withDetail("profiles", profileStates).build();
     }
 }
@@ -5,6 +5,8 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.config.Profile;
+import com.graphhopper.http.AdmissionControl;
+import com.graphhopper.http.ComputeLimiter;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.ProfileResolver;
 import com.graphhopper.isochrone.algorithm.ContourBuilder;
@@ -53,10 +55,15 @@ public class IsochroneResource {
     private final Triangulator triangulator;
     private final ProfileResolver profileResolver;
     private final String osmDate;
+    private final AdmissionControl admissionControl;
+    private final ComputeLimiter computeLimiter;
 
     @Inject
-    public IsochroneResource(GraphHopperConfig config, GraphHopper graphHopper, Triangulator triangulator, ProfileResolver profileResolver) {
+    public IsochroneResource(GraphHopperConfig config, GraphHopper graphHopper, Triangulator triangulator, ProfileResolver profileResolver,
+                             AdmissionControl admissionControl, ComputeLimiter computeLimiter) {
         this.config = config;
+        this.admissionControl = admissionControl;
+        this.computeLimiter = computeLimiter;
         this.graphHopper = graphHopper;
         this.triangulator = triangulator;
         this.profileResolver = profileResolver;
@@ -125,18 +132,24 @@ public class IsochroneResource {
             zs.add((i + 1) * delta);
         }
 
-        Triangulator.Result result = triangulator.triangulate(snap, queryGraph, shortestPathTree, fz, degreesFromMeters(toleranceInMeter));
-
-        ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
+        // the weight is usually close to the time in seconds, so we treat a weight limit like a time limit
+        AdmissionControl.CostClass costClass = admissionControl.classifyIsochrone(
+                weightLimit.getAsLong() > 0 ? weightLimit.getAsLong() : timeLimitInSeconds.orElse(600), distanceLimitInMeter.orElse(-1));
         ArrayList<Geometry> isochrones = new ArrayList<>();
-        for (Double z : zs) {
-            logger.info("Building contour z={}", z);
-            MultiPolygon isochrone = contourBuilder.computeIsoline(z, result.seedEdges);
-            if (fullGeometry) {
-                isochrones.add(isochrone);
-            } else {
-                Polygon maxPolygon = heuristicallyFindMainConnectedComponent(isochrone, isochrone.getFactory().createPoint(new Coordinate(point.get().lon, point.get().lat)));
-                isochrones.add(isochrone.getFactory().createPolygon(((LinearRing) maxPolygon.getExteriorRing())));
+        // the contours are built while the permits are held, because this is as CPU-heavy as the triangulation
+        try (AdmissionControl.Permit ignored = admissionControl.acquire(costClass);
+             AdmissionControl.Permit ignored2 = computeLimiter.enter()) {
+            Triangulator.Result result = triangulator.triangulate(snap, queryGraph, shortestPathTree, fz, degreesFromMeters(toleranceInMeter));
+            ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
+            for (Double z : zs) {
+                logger.info("Building contour z={}", z);
+                MultiPolygon isochrone = contourBuilder.computeIsoline(z, result.seedEdges);
+                if (fullGeometry) {
+                    isochrones.add(isochrone);
+                } else {
+                    Polygon maxPolygon = heuristicallyFindMainConnectedComponent(isochrone, isochrone.getFactory().createPoint(new Coordinate(point.get().lon, point.get().lat)));
+                    isochrones.add(isochrone.getFactory().createPolygon(((LinearRing) maxPolygon.getExteriorRing())));
+                }
             }
         }
         ArrayList<JsonFeature> features = new ArrayList<>();
@@ -27,6 +27,8 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.gpx.GpxConversions;
+import com.graphhopper.http.AdmissionControl;
+import com.graphhopper.http.ComputeLimiter;
 import com.graphhopper.http.ProfileResolver;
 import com.graphhopper.jackson.Gpx;
 import com.graphhopper.jackson.Jackson;
@@ -71,10 +73,13 @@ public class MapMatchingResource {
     private final MapMatchingRouterFactory mapMatchingRouterFactory;
     private final ObjectMapper objectMapper = Jackson.newObjectMapper();
     private final String osmDate;
+    private final ComputeLimiter computeLimiter;
 
     @Inject
-    public MapMatchingResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, TranslationMap trMap, MapMatchingRouterFactory mapMatchingRouterFactory) {
+    public MapMatchingResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, TranslationMap trMap, MapMatchingRouterFactory mapMatchingRouterFactory,
+                               ComputeLimiter computeLimiter) {
         this.config = config;
+        this.computeLimiter = computeLimiter;
         this.graphHopper = graphHopper;
         this.profileResolver = profileResolver;
         this.trMap = trMap;
@@ -132,7 +137,10 @@ public class MapMatchingResource {
         matching.setCollectDebugInfo(debugMode);
 
         List<Observation> measurements = GpxConversions.getEntries(gpx.trk.get(0));
-        MatchResult matchResult = matching.match(measurements);
+        MatchResult matchResult;
+        try (AdmissionControl.Permit ignored = computeLimiter.enter()) {
+            matchResult = matching.match(measurements);
+        }
 
         sw.stop();
         logger.info(objectMapper.createObjectNode()
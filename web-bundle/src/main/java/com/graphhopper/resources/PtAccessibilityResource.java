@@ -0,0 +1,184 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.resources;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.gtfs.*;
+import com.graphhopper.http.AdmissionControl;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.*;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Batch accessibility: the travel times by public transit from many origins to all stops, for departures spread
+ * over a time window. The result is streamed as CSV with one line per origin and reached stop:
+ * origin,feed_id,stop_id,min_time,avg_time,departures. The times are in seconds, origin is the index of the
+ * origin in the request and departures is the number of departure times within the window for which the stop was
+ * reached within the time limit.
+ * <p>
+ * The calculation runs on the bounded executor named pt_accessibility with at most gtfs.accessibility.threads
+ * threads, which are shared by all accessibility requests. Every request also needs a permit for expensive requests
+ * from {@link AdmissionControl}. The number of origins, the departure window and the number of searches (origins
+ * times departures within the window) of a request are limited.
+ */
+@Path("accessibility-pt")
+public class PtAccessibilityResource {
+
+    private static final Logger logger = LoggerFactory.getLogger(PtAccessibilityResource.class);
+
+    private final GraphHopperConfig config;
+    private final GtfsStorage gtfsStorage;
+    private final EncodingManager encodingManager;
+    private final BaseGraph baseGraph;
+    private final LocationIndex locationIndex;
+    private final AdmissionControl admissionControl;
+    private final ExecutorService executor;
+    private final int threads;
+    private final int maxOrigins;
+    private final long maxDepartureWindowSeconds;
+    private final long maxSearches;
+
+    public static class AccessibilityRequest {
+        // the origins in the format of the point parameter of /route-pt
+        @NotEmpty
+        public List<String> points = new ArrayList<>();
+        @NotNull
+        @JsonProperty("pt.earliest_departure_time")
+        public OffsetDateTime earliestDepartureTime;
+        @JsonProperty("departure_window")
+        public long departureWindowSeconds = 0;
+        @JsonProperty("departure_step")
+        public int departureStepSeconds = 60;
+        @JsonProperty("time_limit")
+        public int timeLimitSeconds = 3600;
+        @JsonProperty("pt.limit_street_time")
+        public long limitStreetTimeSeconds = 20 * 60;
+        @JsonProperty("pt.walk_speed")
+        public double walkSpeedKmH = 5.0;
+        @JsonProperty("pt.blocked_route_types")
+        public int blockedRouteTypes = 0;
+    }
+
+    @Inject
+    public PtAccessibilityResource(GraphHopperConfig config, GtfsStorage gtfsStorage, EncodingManager encodingManager, BaseGraph baseGraph, LocationIndex locationIndex,
+                                   AdmissionControl admissionControl, @Named("pt_accessibility") ExecutorService executor) {
+        this.config = config;
+        this.gtfsStorage = gtfsStorage;
+        this.encodingManager = encodingManager;
+        this.baseGraph = baseGraph;
+        this.locationIndex = locationIndex;
+        this.admissionControl = admissionControl;
+        this.executor = executor;
+        this.threads = getThreads(config);
+        this.maxOrigins = config.getInt("gtfs.accessibility.max_origins", 100_000);
+        this.maxDepartureWindowSeconds = config.getLong("gtfs.accessibility.max_departure_window", 24 * 3600);
+        this.maxSearches = config.getLong("gtfs.accessibility.max_searches", 1_000_000);
+    }
+
+    public static int getThreads(GraphHopperConfig config) {
+        int threads = config.getInt("gtfs.accessibility.threads", Runtime.getRuntime().availableProcessors());
+        if (threads < 1)
+            throw new IllegalArgumentException("gtfs.accessibility.threads must be at least 1, but was " + threads);
+        return threads;
+    }
+
+    // Annotating this as application/json because errors come out as json, see SPTResource
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({"text/csv", "application/json"})
+    public Response doPost(@NotNull AccessibilityRequest request) {
+        if (request.points.size() > maxOrigins)
+            throw new IllegalArgumentException("Too many origins: " + request.points.size() + ", the maximum is " + maxOrigins);
+        if (request.departureStepSeconds < 1)
+            throw new IllegalArgumentException("departure_step must be at least 1, but was " + request.departureStepSeconds);
+        if (request.departureWindowSeconds < 0 || request.departureWindowSeconds > maxDepartureWindowSeconds)
+            throw new IllegalArgumentException("departure_window must be between 0 and " + maxDepartureWindowSeconds + ", but was " + request.departureWindowSeconds);
+        if (request.timeLimitSeconds < 0)
+            throw new IllegalArgumentException("time_limit must not be negative, but was " + request.timeLimitSeconds);
+        List<GHLocation> origins = new ArrayList<>();
+        for (String point : request.points)
+            origins.add(GHLocation.fromString(point));
+
+        PtAccessibility accessibility = new PtAccessibility(config, baseGraph, encodingManager, locationIndex, gtfsStorage)
+                .setEarliestDepartureTime(request.earliestDepartureTime.toInstant())
+                .setDepartureWindow(Duration.ofSeconds(request.departureWindowSeconds), request.departureStepSeconds)
+                .setMaxTravelTimeSeconds(request.timeLimitSeconds)
+                .setMaxWalkMillis(request.limitStreetTimeSeconds * 1000)
+                .setWalkSpeedKmH(request.walkSpeedKmH)
+                .setBlockedRouteTypes(request.blockedRouteTypes);
+        long searches = (long) origins.size() * accessibility.getDepartures();
+        if (searches > maxSearches)
+            throw new IllegalArgumentException("Too many searches: " + origins.size() + " origins with " + accessibility.getDepartures()
+                    + " departures each, the maximum is " + maxSearches + ". Use fewer origins, a shorter departure_window or a larger departure_step.");
+        RaptorData raptorData = accessibility.getRaptorData();
+
+        // acquire the permit before the response is committed, so that a rejected request gets a proper status code.
+        // the calculation itself only runs when the response is streamed, so the permit is released there. the
+        // request thread only waits for the executor, so we do not need a permit from the ComputeLimiter
+        AdmissionControl.Permit permit = admissionControl.acquire(AdmissionControl.CostClass.EXPENSIVE);
+        StreamingOutput out = output -> {
+            StopWatch sw = new StopWatch().start();
+            try (permit; Writer writer = new BufferedWriter(new OutputStreamWriter(output, Helper.UTF_CS))) {
+                writer.write("origin,feed_id,stop_id,min_time,avg_time,departures\n");
+                accessibility.calcTravelTimes(origins, (origin, travelTimes) -> {
+                    // format the lines of one origin outside of the lock, the writer is shared by all threads
+                    StringBuilder sb = new StringBuilder();
+                    for (int stop = 0; stop < travelTimes.getStops(); stop++) {
+                        if (travelTimes.getMinTravelTime(stop) < 0)
+                            continue;
+                        GtfsStorage.FeedIdWithStopId stopId = raptorData.getStop(stop);
+                        sb.append(origin).append(',').append(stopId.feedId).append(',').append(stopId.stopId).append(',')
+                                .append(travelTimes.getMinTravelTime(stop)).append(',')
+                                .append(travelTimes.getAvgTravelTime(stop)).append(',')
+                                .append(travelTimes.getReachedDepartures(stop)).append('\n');
+                    }
+                    try {
+                        synchronized (writer) {
+                            writer.write(sb.toString());
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, executor, threads);
+            }
+            logger.info("took: " + sw.stop().getSeconds() + ", origins: " + origins.size());
+        };
+        return Response.ok(out).type("text/csv").build();
+    }
+}
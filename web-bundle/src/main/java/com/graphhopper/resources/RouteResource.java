@@ -22,8 +22,11 @@ import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.gpx.GpxConversions;
+import com.graphhopper.http.AdmissionControl;
+import com.graphhopper.http.ComputeLimiter;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.GHRequestTransformer;
+import com.graphhopper.http.MultiExceptionMapper;
 import com.graphhopper.http.ProfileResolver;
 import com.graphhopper.jackson.MultiException;
 import com.graphhopper.jackson.ResponsePathSerializer;
@@ -66,10 +69,15 @@ public class RouteResource {
     private final Boolean hasElevation;
     private final String osmDate;
     private final List<String> snapPreventionsDefault;
+    private final AdmissionControl admissionControl;
+    private final ComputeLimiter computeLimiter;
 
     @Inject
-    public RouteResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, GHRequestTransformer ghRequestTransformer, @Named("hasElevation") Boolean hasElevation) {
+    public RouteResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, GHRequestTransformer ghRequestTransformer, @Named("hasElevation") Boolean hasElevation,
+                         AdmissionControl admissionControl, ComputeLimiter computeLimiter) {
         this.config = config;
+        this.admissionControl = admissionControl;
+        this.computeLimiter = computeLimiter;
         this.graphHopper = graphHopper;
         this.profileResolver = profileResolver;
         this.ghRequestTransformer = ghRequestTransformer;
@@ -151,15 +159,14 @@ public class RouteResource {
         removeLegacyParameters(request.getHints());
         request.setProfile(profileName);
 
-        GHResponse ghResponse = graphHopper.route(request);
+        GHResponse ghResponse = route(request);
 
         double took = sw.stop().getMillisDouble();
         String logStr = (httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent")) + " " + points + ", took: " + String.format("%.1f", took) + "ms, algo: " + algoStr + ", profile: " + profileName;
 
         if (ghResponse.hasErrors()) {
             logger.info(logStr + " " + ghResponse);
-            return Response.status(Response.Status.BAD_REQUEST).
-                    entity(new MultiException(ghResponse.getErrors())).
+            return MultiExceptionMapper.createResponse(new MultiException(ghResponse.getErrors())).
                     type(writeGPX ? "application/gpx+xml" : MediaType.APPLICATION_JSON).
                     build();
         } else {
@@ -201,7 +208,7 @@ public class RouteResource {
         request.setProfile(profileResolver.resolveProfile(profileResolverHints));
         removeLegacyParameters(request.getHints());
 
-        GHResponse ghResponse = graphHopper.route(request);
+        GHResponse ghResponse = route(request);
         boolean instructions = request.getHints().getBool(INSTRUCTIONS, true);
         boolean enableElevation = request.getHints().getBool("elevation", false);
         boolean calcPoints = request.getHints().getBool(CALC_POINTS, true);
@@ -230,6 +237,13 @@ public class RouteResource {
         }
     }
 
+    private GHResponse route(GHRequest request) {
+        try (AdmissionControl.Permit ignored = admissionControl.acquire(admissionControl.classifyRoute(graphHopper, request));
+             AdmissionControl.Permit ignored2 = computeLimiter.enter()) {
+            return graphHopper.route(request);
+        }
+    }
+
     public static void removeLegacyParameters(PMap hints) {
         // these parameters should only be used to resolve the profile, but should not be passed to GraphHopper
         hints.remove("weighting");
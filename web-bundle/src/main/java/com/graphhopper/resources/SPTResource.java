@@ -1,5 +1,7 @@
 package com.graphhopper.resources;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.http.GHPointParam;
@@ -27,11 +29,9 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriInfo;
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.*;
 import java.util.*;
+import java.util.zip.GZIPOutputStream;
 
 import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
 import static com.graphhopper.routing.util.TraversalMode.EDGE_BASED;
@@ -40,6 +40,8 @@ import static com.graphhopper.util.Parameters.Details.STREET_NAME;
 
 /**
  * This resource provides the entire shortest path tree as response. In a simple CSV format discussed at #1577.
+ * Alternatively the rows can be requested as newline delimited JSON (format=ndjson) or in a columnar binary format
+ * (format=binary) and compressed with gzip=true. The rows are written while the search is running.
  */
 @Path("spt")
 public class SPTResource {
@@ -68,7 +70,7 @@ public class SPTResource {
     // Annotating this as application/json because errors come out as json, and
     // IllegalArgumentExceptions are not mapped to a fixed mediatype, because in RouteResource, it could be GPX.
     @GET
-    @Produces({"text/csv", "application/json"})
+    @Produces({"text/csv", "application/json", "application/x-ndjson", "application/octet-stream"})
     public Response doGet(
             @Context UriInfo uriInfo,
             @QueryParam("profile") String profileName,
@@ -76,7 +78,9 @@ public class SPTResource {
             @QueryParam("point") @NotNull GHPointParam point,
             @QueryParam("columns") String columnsParam,
             @QueryParam("time_limit") @DefaultValue("600") OptionalLong timeLimitInSeconds,
-            @QueryParam("distance_limit") @DefaultValue("-1") OptionalLong distanceInMeter) {
+            @QueryParam("distance_limit") @DefaultValue("-1") OptionalLong distanceInMeter,
+            @QueryParam("format") @DefaultValue("csv") String format,
+            @QueryParam("gzip") @DefaultValue("false") boolean gzip) {
         StopWatch sw = new StopWatch().start();
         PMap hintsMap = new PMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
@@ -110,7 +114,6 @@ public class SPTResource {
             shortestPathTree.setTimeLimit(limit);
         }
 
-        final String COL_SEP = ",", LINE_SEP = "\n";
         List<String> columns;
         if (!Helper.isEmpty(columnsParam))
             columns = Arrays.asList(columnsParam.split(","));
@@ -126,107 +129,280 @@ public class SPTResource {
                 pathDetails.put(col, encodingManager.getEncodedValue(col, EncodedValue.class));
         }
 
+        if (!Arrays.asList("csv", "ndjson", "binary").contains(format))
+            throw new IllegalArgumentException("Unknown format '" + format + "', use csv, ndjson or binary");
+        // for the binary format the type of each column must be known before the search
+        byte[] binaryTypes = format.equals("binary") ? binaryColumnTypes(columns, pathDetails) : null;
+
+        // the labels are passed to the consumer as soon as they are settled and are not needed afterwards, so the
+        // memory is bounded by the search frontier instead of the size of the tree
+        shortestPathTree.setReleaseSettledLabels(true);
         StreamingOutput out = output -> {
-            try (Writer writer = new BufferedWriter(new OutputStreamWriter(output, Helper.UTF_CS))) {
-                StringBuilder sb = new StringBuilder();
-                for (String col : columns) {
-                    if (sb.length() > 0)
+            OutputStream os = gzip ? new GZIPOutputStream(output, 64 * 1024) : output;
+            ColumnValues columnValues = (label, colIndex) -> columnValue(columns.get(colIndex), label, queryGraph, pathDetails, reverseFlow);
+            if (format.equals("binary")) {
+                writeBinary(os, shortestPathTree, snap.getClosestNode(), nodeAccess, columns, binaryTypes, columnValues);
+            } else if (format.equals("ndjson")) {
+                writeNDJSON(os, shortestPathTree, snap.getClosestNode(), nodeAccess, columns, columnValues);
+            } else {
+                writeCSV(os, shortestPathTree, snap.getClosestNode(), nodeAccess, columns, columnValues);
+            }
+            logger.info("took: " + sw.stop().getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes() + ", " + uriInfo.getQueryParameters());
+        };
+        // Give media type explicitly since we are annotating CSV and JSON, because error messages are JSON.
+        Response.ResponseBuilder response = Response.ok(out).type(format.equals("binary") ? "application/octet-stream"
+                : format.equals("ndjson") ? "application/x-ndjson" : "text/csv");
+        if (gzip)
+            response.header("Content-Encoding", "gzip");
+        return response.build();
+    }
+
+    private interface ColumnValues {
+        Object get(IsoLabelWithCoordinates label, int colIndex);
+    }
+
+    private void writeCSV(OutputStream os, ShortestPathTree shortestPathTree, int from, NodeAccess nodeAccess,
+                          List<String> columns, ColumnValues columnValues) {
+        final String COL_SEP = ",", LINE_SEP = "\n";
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(os, Helper.UTF_CS))) {
+            StringBuilder sb = new StringBuilder();
+            for (String col : columns) {
+                if (sb.length() > 0)
+                    sb.append(COL_SEP);
+                sb.append(col);
+            }
+            sb.append(LINE_SEP);
+            writer.write(sb.toString());
+            shortestPathTree.search(from, l -> {
+                IsoLabelWithCoordinates label = isoLabelWithCoordinates(nodeAccess, l);
+                sb.setLength(0);
+                for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
+                    if (colIndex > 0)
                         sb.append(COL_SEP);
-                    sb.append(col);
+                    Object value = columnValues.get(label, colIndex);
+                    if (value == NO_VALUE)
+                        continue;
+                    if (value instanceof String)
+                        sb.append(((String) value).replaceAll(",", ""));
+                    else
+                        sb.append(value);
                 }
                 sb.append(LINE_SEP);
-                writer.write(sb.toString());
-                shortestPathTree.search(snap.getClosestNode(), l -> {
-                    IsoLabelWithCoordinates label = isoLabelWithCoordinates(nodeAccess, l);
-                    sb.setLength(0);
+                try {
+                    writer.write(sb.toString());
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes one JSON object per line, missing values are null.
+     */
+    private void writeNDJSON(OutputStream os, ShortestPathTree shortestPathTree, int from, NodeAccess nodeAccess,
+                             List<String> columns, ColumnValues columnValues) {
+        try (JsonGenerator json = new JsonFactory().createGenerator(new BufferedOutputStream(os))) {
+            json.setRootValueSeparator(null);
+            shortestPathTree.search(from, l -> {
+                IsoLabelWithCoordinates label = isoLabelWithCoordinates(nodeAccess, l);
+                try {
+                    json.writeStartObject();
                     for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
-                        String col = columns.get(colIndex);
-                        if (colIndex > 0)
-                            sb.append(COL_SEP);
-
-                        switch (col) {
-                            case "node_id":
-                                sb.append(label.nodeId);
-                                continue;
-                            case "prev_node_id":
-                                sb.append(label.prevNodeId);
-                                continue;
-                            case "edge_id":
-                                sb.append(label.edgeId);
-                                continue;
-                            case "prev_edge_id":
-                                sb.append(label.prevEdgeId);
-                                continue;
-                            case "distance":
-                                sb.append(label.distance);
-                                continue;
-                            case "prev_distance":
-                                sb.append(label.prevCoordinate == null ? 0 : label.prevDistance);
-                                continue;
-                            case "time":
-                                sb.append(label.timeMillis);
-                                continue;
-                            case "prev_time":
-                                sb.append(label.prevCoordinate == null ? 0 : label.prevTimeMillis);
-                                continue;
-                            case "longitude":
-                                sb.append(Helper.round6(label.coordinate.lon));
-                                continue;
-                            case "prev_longitude":
-                                sb.append(label.prevCoordinate == null ? null : Helper.round6(label.prevCoordinate.lon));
-                                continue;
-                            case "latitude":
-                                sb.append(Helper.round6(label.coordinate.lat));
-                                continue;
-                            case "prev_latitude":
-                                sb.append(label.prevCoordinate == null ? null : Helper.round6(label.prevCoordinate.lat));
-                                continue;
-                        }
-
-                        if (!EdgeIterator.Edge.isValid(label.edgeId))
-                            continue;
-
-                        EdgeIteratorState edge = queryGraph.getEdgeIteratorState(label.edgeId, label.nodeId);
-                        if (edge == null)
-                            continue;
-
-                        if (col.equals(STREET_NAME)) {
-                            sb.append(edge.getName().replaceAll(",", ""));
-                            continue;
-                        }
-
-                        EncodedValue ev = pathDetails.get(col);
-                        if (ev instanceof DecimalEncodedValue) {
-                            DecimalEncodedValue dev = (DecimalEncodedValue) ev;
-                            sb.append(reverseFlow ? edge.getReverse(dev) : edge.get(dev));
-                        } else if (ev instanceof EnumEncodedValue) {
-                            EnumEncodedValue eev = (EnumEncodedValue) ev;
-                            sb.append(reverseFlow ? edge.getReverse(eev) : edge.get(eev));
-                        } else if (ev instanceof BooleanEncodedValue) {
-                            BooleanEncodedValue eev = (BooleanEncodedValue) ev;
-                            sb.append(reverseFlow ? edge.getReverse(eev) : edge.get(eev));
-                        } else if (ev instanceof IntEncodedValue) {
-                            IntEncodedValue eev = (IntEncodedValue) ev;
-                            sb.append(reverseFlow ? edge.getReverse(eev) : edge.get(eev));
-                        } else {
-                            throw new IllegalArgumentException("Unknown property " + col);
-                        }
+                        json.writeFieldName(columns.get(colIndex));
+                        Object value = columnValues.get(label, colIndex);
+                        if (value == null || value == NO_VALUE)
+                            json.writeNull();
+                        else if (value instanceof Integer)
+                            json.writeNumber((Integer) value);
+                        else if (value instanceof Double)
+                            json.writeNumber((Double) value);
+                        else if (value instanceof Boolean)
+                            json.writeBoolean((Boolean) value);
+                        else
+                            json.writeString(value.toString());
                     }
-                    sb.append(LINE_SEP);
-                    try {
-                        writer.write(sb.toString());
-                    } catch (IOException ex) {
-                        throw new RuntimeException(ex);
-                    }
-                });
+                    json.writeEndObject();
+                    json.writeRaw('\n');
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static final byte INT32 = 0, FLOAT64 = 1;
+    private static final int BINARY_BLOCK_SIZE = 4096;
 
-                logger.info("took: " + sw.stop().getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes() + ", " + uriInfo.getQueryParameters());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+    /**
+     * Writes a columnar binary format (big-endian): the header is the magic "GHSPT", a version byte, the number of
+     * columns and for every column its name (modified UTF-8 like DataOutput.writeUTF) and a type byte (0=int32,
+     * 1=float64). Then the rows follow in blocks: the number of rows of the block and for every column the values of
+     * all rows of the block. A block with zero rows terminates the stream. Missing values are -1 or NaN, boolean
+     * values are 0 or 1 and enum values are their ordinal.
+     */
+    private void writeBinary(OutputStream os, ShortestPathTree shortestPathTree, int from, NodeAccess nodeAccess,
+                             List<String> columns, byte[] types, ColumnValues columnValues) {
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os, 64 * 1024))) {
+            dos.writeBytes("GHSPT");
+            dos.writeByte(1);
+            dos.writeInt(columns.size());
+            for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
+                dos.writeUTF(columns.get(colIndex));
+                dos.writeByte(types[colIndex]);
             }
-        };
-        // Give media type explicitly since we are annotating CSV and JSON, because error messages are JSON.
-        return Response.ok(out).type("text/csv").build();
+            int[][] intValues = new int[columns.size()][];
+            double[][] doubleValues = new double[columns.size()][];
+            for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
+                if (types[colIndex] == INT32)
+                    intValues[colIndex] = new int[BINARY_BLOCK_SIZE];
+                else
+                    doubleValues[colIndex] = new double[BINARY_BLOCK_SIZE];
+            }
+            int[] rows = {0};
+            shortestPathTree.search(from, l -> {
+                IsoLabelWithCoordinates label = isoLabelWithCoordinates(nodeAccess, l);
+                for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
+                    Object value = columnValues.get(label, colIndex);
+                    if (types[colIndex] == INT32)
+                        intValues[colIndex][rows[0]] = toInt(value);
+                    else
+                        doubleValues[colIndex][rows[0]] = value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+                }
+                if (++rows[0] == BINARY_BLOCK_SIZE) {
+                    writeBinaryBlock(dos, types, intValues, doubleValues, rows[0]);
+                    rows[0] = 0;
+                }
+            });
+            if (rows[0] > 0)
+                writeBinaryBlock(dos, types, intValues, doubleValues, rows[0]);
+            dos.writeInt(0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void writeBinaryBlock(DataOutputStream dos, byte[] types, int[][] intValues, double[][] doubleValues, int rows) {
+        try {
+            dos.writeInt(rows);
+            for (int colIndex = 0; colIndex < types.length; colIndex++) {
+                for (int row = 0; row < rows; row++) {
+                    if (types[colIndex] == INT32)
+                        dos.writeInt(intValues[colIndex][row]);
+                    else
+                        dos.writeDouble(doubleValues[colIndex][row]);
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static int toInt(Object value) {
+        if (value instanceof Number)
+            return ((Number) value).intValue();
+        if (value instanceof Boolean)
+            return (Boolean) value ? 1 : 0;
+        if (value instanceof Enum)
+            return ((Enum<?>) value).ordinal();
+        return -1;
+    }
+
+    private static byte[] binaryColumnTypes(List<String> columns, Map<String, EncodedValue> pathDetails) {
+        byte[] types = new byte[columns.size()];
+        for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
+            String col = columns.get(colIndex);
+            switch (col) {
+                case "node_id":
+                case "prev_node_id":
+                case "edge_id":
+                case "prev_edge_id":
+                case "distance":
+                case "prev_distance":
+                case "time":
+                case "prev_time":
+                    types[colIndex] = INT32;
+                    continue;
+                case "longitude":
+                case "prev_longitude":
+                case "latitude":
+                case "prev_latitude":
+                    types[colIndex] = FLOAT64;
+                    continue;
+            }
+            EncodedValue ev = pathDetails.get(col);
+            if (ev instanceof DecimalEncodedValue)
+                types[colIndex] = FLOAT64;
+            else if (ev instanceof EnumEncodedValue || ev instanceof BooleanEncodedValue || ev instanceof IntEncodedValue)
+                types[colIndex] = INT32;
+            else
+                throw new IllegalArgumentException("The column " + col + " is not supported by the binary format");
+        }
+        return types;
+    }
+
+    // the value of a path detail column if the label has no edge, which results in an empty CSV field
+    private static final Object NO_VALUE = new Object();
+
+    private static Object columnValue(String col, IsoLabelWithCoordinates label, QueryGraph queryGraph,
+                                      Map<String, EncodedValue> pathDetails, boolean reverseFlow) {
+        switch (col) {
+            case "node_id":
+                return label.nodeId;
+            case "prev_node_id":
+                return label.prevNodeId;
+            case "edge_id":
+                return label.edgeId;
+            case "prev_edge_id":
+                return label.prevEdgeId;
+            case "distance":
+                return label.distance;
+            case "prev_distance":
+                return label.prevCoordinate == null ? 0 : label.prevDistance;
+            case "time":
+                return label.timeMillis;
+            case "prev_time":
+                return label.prevCoordinate == null ? 0 : label.prevTimeMillis;
+            case "longitude":
+                return Helper.round6(label.coordinate.lon);
+            case "prev_longitude":
+                return label.prevCoordinate == null ? null : Helper.round6(label.prevCoordinate.lon);
+            case "latitude":
+                return Helper.round6(label.coordinate.lat);
+            case "prev_latitude":
+                return label.prevCoordinate == null ? null : Helper.round6(label.prevCoordinate.lat);
+        }
+
+        if (!EdgeIterator.Edge.isValid(label.edgeId))
+            return NO_VALUE;
+
+        EdgeIteratorState edge = queryGraph.getEdgeIteratorState(label.edgeId, label.nodeId);
+        if (edge == null)
+            return NO_VALUE;
+
+        if (col.equals(STREET_NAME))
+            return edge.getName();
+
+        EncodedValue ev = pathDetails.get(col);
+        if (ev instanceof DecimalEncodedValue) {
+            DecimalEncodedValue dev = (DecimalEncodedValue) ev;
+            return reverseFlow ? edge.getReverse(dev) : edge.get(dev);
+        } else if (ev instanceof EnumEncodedValue) {
+            EnumEncodedValue eev = (EnumEncodedValue) ev;
+            return reverseFlow ? edge.getReverse(eev) : edge.get(eev);
+        } else if (ev instanceof BooleanEncodedValue) {
+            BooleanEncodedValue eev = (BooleanEncodedValue) ev;
+            return reverseFlow ? edge.getReverse(eev) : edge.get(eev);
+        } else if (ev instanceof IntEncodedValue) {
+            IntEncodedValue eev = (IntEncodedValue) ev;
+            return reverseFlow ? edge.getReverse(eev) : edge.get(eev);
+        } else {
+            throw new IllegalArgumentException("Unknown property " + col);
+        }
     }
 
     private IsoLabelWithCoordinates isoLabelWithCoordinates(NodeAccess na, ShortestPathTree.IsoLabel label) {
@@ -0,0 +1,81 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.util.shapes.GHPoint;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static com.graphhopper.http.AdmissionControl.CostClass.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControlTest {
+
+    private static AdmissionControl create() {
+        return new AdmissionControl(new GraphHopperConfig().
+                putObject("routing.admission.enabled", true).
+                putObject("routing.admission.expensive.max_concurrent", 1).
+                putObject("routing.admission.max_queued", 0).
+                putObject("routing.admission.queue_timeout_ms", 10));
+    }
+
+    @Test
+    public void testClassifyRoute() {
+        AdmissionControl ac = create();
+        GHPoint berlin = new GHPoint(52.5069704, 13.2846508);
+        GHPoint potsdam = new GHPoint(52.3906, 13.0645);
+        GHPoint munich = new GHPoint(48.1351, 11.5820);
+        assertEquals(CHEAP, ac.classifyRoute(true, Arrays.asList(berlin, munich)));
+        assertEquals(MEDIUM, ac.classifyRoute(false, Arrays.asList(berlin, potsdam)));
+        assertEquals(EXPENSIVE, ac.classifyRoute(false, Arrays.asList(berlin, munich)));
+    }
+
+    @Test
+    public void testClassifyIsochrone() {
+        AdmissionControl ac = create();
+        assertEquals(MEDIUM, ac.classifyIsochrone(600, -1));
+        assertEquals(EXPENSIVE, ac.classifyIsochrone(3600, -1));
+        assertEquals(EXPENSIVE, ac.classifyIsochrone(600, 100_000));
+    }
+
+    @Test
+    public void testRejectWhenSaturated() {
+        AdmissionControl ac = create();
+        try (AdmissionControl.Permit ignored = ac.acquire(EXPENSIVE)) {
+            assertEquals(0, ac.getAvailablePermits(EXPENSIVE));
+            WebApplicationException ex = assertThrows(WebApplicationException.class, () -> ac.acquire(EXPENSIVE));
+            assertEquals(429, ex.getResponse().getStatus());
+            // the budget of other classes is independent
+            ac.acquire(CHEAP).close();
+        }
+        assertEquals(1, ac.getAvailablePermits(EXPENSIVE));
+    }
+
+    @Test
+    public void testDisabled() {
+        AdmissionControl ac = new AdmissionControl(new GraphHopperConfig().putObject("routing.admission.expensive.max_concurrent", 1));
+        assertFalse(ac.isEnabled());
+        try (AdmissionControl.Permit p1 = ac.acquire(EXPENSIVE); AdmissionControl.Permit p2 = ac.acquire(EXPENSIVE)) {
+            assertEquals(1, ac.getAvailablePermits(EXPENSIVE));
+        }
+    }
+}
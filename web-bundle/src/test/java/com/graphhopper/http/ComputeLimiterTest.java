@@ -0,0 +1,48 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopperConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ComputeLimiterTest {
+
+    @Test
+    public void testOnlyVirtualThreadsAreLimited() throws InterruptedException {
+        ComputeLimiter limiter = new ComputeLimiter(new GraphHopperConfig().putObject("routing.virtual_threads.compute_permits", 2));
+        try (AdmissionControl.Permit ignored = limiter.enter()) {
+            // platform thread
+            assertEquals(2, limiter.getAvailablePermits());
+        }
+
+        AtomicInteger available = new AtomicInteger(-1);
+        Thread thread = Thread.ofVirtual().start(() -> {
+            try (AdmissionControl.Permit ignored = limiter.enter()) {
+                available.set(limiter.getAvailablePermits());
+            }
+        });
+        thread.join();
+        assertEquals(1, available.get());
+        assertEquals(2, limiter.getAvailablePermits());
+    }
+}
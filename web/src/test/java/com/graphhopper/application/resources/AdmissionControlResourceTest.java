@@ -0,0 +1,91 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.application.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.http.AdmissionControl;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import jakarta.ws.rs.core.Response;
+import org.glassfish.jersey.servlet.ServletContainer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.File;
+import java.util.Collections;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class AdmissionControlResourceTest {
+    private static final String DIR = "./target/admission-control-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.location", DIR).
+                putObject("graph.encoded_values", "car_access, car_average_speed").
+                putObject("routing.admission.enabled", true).
+                putObject("routing.admission.medium.max_concurrent", 1).
+                putObject("routing.admission.max_queued", 1).
+                putObject("routing.admission.queue_timeout_ms", 10).
+                // no CH, so short routes are medium requests
+                setProfiles(Collections.singletonList(TestProfiles.accessAndSpeed("my_car", "car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    private static AdmissionControl getAdmissionControl() {
+        ServletContainer container = (ServletContainer) app.getEnvironment().getJerseyServletContainer();
+        return container.getApplicationHandler().getInjectionManager().getInstance(AdmissionControl.class);
+    }
+
+    @Test
+    public void testRejectWhenPermitsAreTaken() {
+        String path = "/route?profile=my_car&point=42.554851,1.536198&point=42.510071,1.548128";
+        try (AdmissionControl.Permit ignored = getAdmissionControl().acquire(AdmissionControl.CostClass.MEDIUM);
+             Response response = clientTarget(app, path).request().get()) {
+            assertEquals(503, response.getStatus());
+            assertEquals("1", response.getHeaderString("Retry-After"));
+            JsonNode json = response.readEntity(JsonNode.class);
+            assertTrue(json.get("message").asText().contains("medium requests"), json.toString());
+        }
+
+        // once the permit is released the same request succeeds
+        try (Response response = clientTarget(app, path).request().get()) {
+            assertEquals(200, response.getStatus());
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package com.graphhopper.application.resources;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.graphhopper.application.GraphHopperApplication;
 import com.graphhopper.application.GraphHopperServerConfiguration;
 import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
@@ -26,6 +27,7 @@ import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.util.BodyAndStatus;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.TurnCostsConfig;
+import io.dropwizard.jackson.Jackson;
 import io.dropwizard.testing.junit5.DropwizardAppExtension;
 import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
 import org.junit.jupiter.api.AfterAll;
@@ -33,7 +35,11 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 
@@ -101,6 +107,51 @@ public class SPTResourceTest {
         assertEquals("2385,2821,1234,13121,262", lines[3]);
     }
 
+    @Test
+    public void requestNDJSONAndBinary() throws IOException {
+        String query = "/spt?profile=car_without_turncosts&point=42.531073,1.573792&time_limit=300&columns=node_id,prev_node_id,latitude,road_class";
+        String[] csvLines = clientTarget(app, query).request().get(String.class).split("\n");
+
+        String[] jsonLines = clientTarget(app, query + "&format=ndjson").request().get(String.class).split("\n");
+        assertEquals(csvLines.length - 1, jsonLines.length);
+        ObjectMapper objectMapper = Jackson.newObjectMapper();
+        JsonNode first = objectMapper.readTree(jsonLines[0]);
+        assertEquals(-1, first.get("prev_node_id").asInt());
+        assertTrue(first.get("road_class").isNull());
+        String[] row = csvLines[20].split(",");
+        JsonNode json = objectMapper.readTree(jsonLines[19]);
+        assertEquals(Integer.parseInt(row[0]), json.get("node_id").asInt());
+        assertEquals(Double.parseDouble(row[2]), json.get("latitude").asDouble(), 1.e-6);
+        assertEquals(row[3], json.get("road_class").asText());
+
+        byte[] bytes = clientTarget(app, query + "&format=binary").request().get(byte[].class);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        byte[] magic = new byte[5];
+        in.readFully(magic);
+        assertEquals("GHSPT", new String(magic, StandardCharsets.US_ASCII));
+        assertEquals(1, in.readByte());
+        assertEquals(4, in.readInt());
+        assertEquals("node_id", in.readUTF());
+        assertEquals(0, in.readByte());
+        assertEquals("prev_node_id", in.readUTF());
+        assertEquals(0, in.readByte());
+        assertEquals("latitude", in.readUTF());
+        assertEquals(1, in.readByte());
+        assertEquals("road_class", in.readUTF());
+        assertEquals(0, in.readByte());
+        int rows = in.readInt();
+        // the rows come in blocks of at most 4096
+        assertEquals(Math.min(csvLines.length - 1, 4096), rows);
+        int[] nodes = new int[rows];
+        for (int i = 0; i < rows; i++)
+            nodes[i] = in.readInt();
+        assertEquals(Integer.parseInt(row[0]), nodes[19]);
+        for (int i = 0; i < rows; i++)
+            in.readInt();
+        double firstLatitude = in.readDouble();
+        assertEquals(Double.parseDouble(csvLines[1].split(",")[2]), firstLatitude, 1.e-6);
+    }
+
     @Test
     public void requestDetails() {
         String rspCsvString = clientTarget(app, "/spt?profile=car_without_turncosts&point=42.531073,1.573792&time_limit=300&columns=street_name,road_class,max_speed").request().get(String.class);